@@ -8,5 +8,5 @@
 source cprl_config.sh
 
 # The assembler permits more that one command-line
-# argument to handle the -opt:off/-opt:on switch.
+# argument to handle options such as -opt:off.
 java -ea edu.citadel.cvm.assembler.Assembler $*
@@ -7,7 +7,5 @@
 # set config environment variables
 source cprl_config.sh
 
-for file in *.asm
-do
-   java -ea edu.citadel.cvm.assembler.Assembler $file
-done
+# The assembler assembles the files in parallel in a single JVM.
+java -ea edu.citadel.cvm.assembler.Assembler $* *.asm
@@ -1,10 +1,11 @@
 #!/bin/bash
 
 #
-# Run CPRL compiler on a single ".cprl" file
+# Run CPRL compiler on a single ".cprl" file, optionally preceded by
+# compiler options (e.g., -cache)
 #
 
 # set config environment variables
 source cprl_config.sh
 
-java -ea edu.citadel.cprl.Compiler $1
+java -ea edu.citadel.cprl.Compiler $*
@@ -1,13 +1,12 @@
 #!/bin/bash
 
 #
-# Run CPRL compiler for all ".cprl" files in the current directory
+# Run CPRL compiler for all ".cprl" files in the current directory.
+# Any arguments are passed to the compiler as options (e.g., -cache).
 #
 
 # set config environment variables
 source cprl_config.sh
 
-for file in *.cprl
-do
-   java -ea edu.citadel.cprl.Compiler $file
-done
+# The compiler compiles the files in parallel in a single JVM.
+java -ea edu.citadel.cprl.Compiler $* *.cprl
@@ -1,10 +1,11 @@
 #!/bin/bash
 
 #
-# Run CVM disassembler on a single ".obj" file
+# Run CVM disassembler on a single ".obj" file, optionally preceded
+# by disassembler options (e.g., -annotate)
 #
 
 # set config environment variables
 source cprl_config.sh
 
-java -ea edu.citadel.cvm.Disassembler $1
+java -ea edu.citadel.cvm.Disassembler $*
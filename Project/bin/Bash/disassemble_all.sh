@@ -7,8 +7,6 @@
 # set config environment variables
 source cprl_config.sh
 
-for file in *.obj
-do
-   java -ea edu.citadel.cvm.Disassembler $file
-done
+# The disassembler disassembles the files in parallel in a single JVM.
+java -ea edu.citadel.cvm.Disassembler $* *.obj
 
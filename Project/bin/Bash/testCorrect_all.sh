@@ -1,7 +1,9 @@
 #!/bin/bash
 
 #
-# Run testCorrect on all ".obj" files in the current directory
+# Run testCorrect on all ".obj" files in the current directory.  Any
+# arguments are passed to both the compiler and the assembler as options;
+# e.g., with -cache only the files that changed are compiled and assembled.
 #
 
 echo Deleting all \".asm\", \".obj\", and \".tmp\" files
@@ -11,11 +13,11 @@ rm -f *.tmp
 echo
 
 echo Recompiling all \".cprl\" files
-cprlc_all.sh > /dev/null
+cprlc_all.sh $* > /dev/null
 echo
 
 echo Reasembling all \".asm\" files
-assemble_all.sh > /dev/null
+assemble_all.sh $* > /dev/null
 echo
 
 for file in *.obj
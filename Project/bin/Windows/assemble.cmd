@@ -9,7 +9,7 @@ setlocal
 call cprl_config.cmd
 
 rem The assembler permits more that one command-line
-rem argument to handle the -opt:off/-opt:on switch.
+rem argument to handle options such as -opt:off.
 java -ea edu.citadel.cvm.assembler.Assembler %*
 
 rem restore settings
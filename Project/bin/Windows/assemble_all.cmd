@@ -8,7 +8,10 @@ rem set config environment variables locally
 setlocal
 call cprl_config.cmd
 
-for %%f in (*.asm) do java -ea edu.citadel.cvm.assembler.Assembler %%f
+rem The assembler assembles the files in parallel in a single JVM.
+set files=
+for %%f in (*.asm) do call set files=%%files%% %%f
+java -ea edu.citadel.cvm.assembler.Assembler %* %files%
 
 rem restore settings
 endlocal
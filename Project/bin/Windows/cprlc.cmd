@@ -1,14 +1,15 @@
 @echo off
 
 rem
-rem Run CPRL compiler on a single ".cprl" file
+rem Run CPRL compiler on a single ".cprl" file, optionally preceded by
+rem compiler options (e.g., -cache)
 rem
 
 rem set config environment variables locally
 setlocal
 call cprl_config.cmd
 
-java -ea edu.citadel.cprl.Compiler %1
+java -ea edu.citadel.cprl.Compiler %*
 
 rem restore settings
 endlocal
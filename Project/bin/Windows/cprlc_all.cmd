@@ -1,14 +1,18 @@
 @echo off
 
 rem
-rem Run CPRL compiler for all ".cprl" files in the current directory
+rem Run CPRL compiler for all ".cprl" files in the current directory.
+rem Any arguments are passed to the compiler as options (e.g., -cache).
 rem
 
 rem set config environment variables locally
 setlocal
 call cprl_config.cmd
 
-for %%f in (*.cprl) do java -ea edu.citadel.cprl.Compiler %%f
+rem The compiler compiles the files in parallel in a single JVM.
+set files=
+for %%f in (*.cprl) do call set files=%%files%% %%f
+java -ea edu.citadel.cprl.Compiler %* %files%
 
 rem restore settings
 endlocal
@@ -1,14 +1,15 @@
 @echo off
 
 rem
-rem Run CVM disassembler on a single ".obj" file
+rem Run CVM disassembler on a single ".obj" file, optionally preceded
+rem by disassembler options (e.g., -annotate)
 rem
 
 rem set config environment variables locally
 setlocal
 call cprl_config.cmd
 
-java -ea edu.citadel.cvm.Disassembler %1
+java -ea edu.citadel.cvm.Disassembler %*
 
 rem restore settings
 endlocal
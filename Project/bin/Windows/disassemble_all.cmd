@@ -8,7 +8,10 @@ rem set config environment variables locally
 setlocal
 call cprl_config.cmd
 
-for %%f in (*.obj) do java -ea edu.citadel.cvm.Disassembler %%f
+rem The disassembler disassembles the files in parallel in a single JVM.
+set files=
+for %%f in (*.obj) do call set files=%%files%% %%f
+java -ea edu.citadel.cvm.Disassembler %* %files%
 
 rem restore settings
 endlocal
@@ -1,7 +1,9 @@
 @echo off
 
 rem
-rem Run testCorrect on all ".obj" files in the current directory
+rem Run testCorrect on all ".obj" files in the current directory.  Any
+rem arguments are passed to both the compiler and the assembler as options;
+rem e.g., with -cache only the files that changed are compiled and assembled.
 rem
 
 echo Deleting all ".asm", ".obj", and ".tmp" files
@@ -11,11 +13,11 @@ del *.tmp
 echo.
 
 echo Recompiling all ".cprl" files
-call cprlc_all > nul
+call cprlc_all %* > nul
 echo.
 
 echo Reasembling all ".asm" files
-call assemble_all > nul
+call assemble_all %* > nul
 echo.
 
 for %%f in (*.obj) do (call testCorrect %%~nf)
@@ -6,12 +6,30 @@ import edu.citadel.compiler.util.StringUtil;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.ForkJoinTask;
 
 
 /**
  * This class implements a virtual machine for the programming language CPRL.
- * It interprets instructions for a hypothetical CPRL computer.
+ * It interprets instructions for a hypothetical CPRL computer. <br>
+ *
+ * Instruction SPAWN runs a procedure call as a task in parallel with its
+ * caller.  Each task is interpreted by its own CVM instance that shares
+ * memory and I/O with the other tasks but has its own registers and its
+ * own stack region (see class TaskScheduler).  Instruction JOIN waits for
+ * all tasks spawned by the current task.  The CVM does not synchronize
+ * accesses to memory; instead, tasks must follow these rules:
+ * <ul>
+ *   <li>A task may read memory that is written by no other running task.</li>
+ *   <li>A task may write memory that is read or written by no other running
+ *       task; e.g., tasks may update disjoint parts of an array.</li>
+ *   <li>Writes made by a task are visible to the spawning task after JOIN.</li>
+ * </ul>
+ * Individual I/O instructions are atomic, but the order of I/O performed
+ * by concurrent tasks is unspecified.
  */
 public class CVM
   {
@@ -68,9 +86,33 @@ public class CVM
     /** bottom of the stack */
     private int sb;
 
+    /** address of the first instruction to be executed */
+    private int entryPoint;
+
+    /** address of the string pool (the read-only data) */
+    private int poolAddr;
+
+    /** true if string literals are embedded in the code (legacy object files) */
+    private boolean inlineStrings;
+
     /** true if the virtual computer is currently running */
     private boolean running;
 
+    /** scheduler for spawned tasks (shared by all tasks; created by the first SPAWN) */
+    private TaskScheduler scheduler;
+
+    /** tasks spawned by this task that have not yet been joined */
+    private List<ForkJoinTask<?>> spawnedTasks;
+
+    /** stack regions of the tasks spawned by this task */
+    private List<Integer> spawnedStacks;
+
+    /** the stack must remain below this address */
+    private int stackLimit;
+
+    /** return address marking the end of a spawned task */
+    private static final int TASK_EXIT = -1;
+
     /** field width for printing memory addresses */
     private static final int FIELD_WIDTH = 4;
 
@@ -96,10 +138,19 @@ public class CVM
             System.exit(FAILURE);
           }
 
-        FileInputStream codeFile = new FileInputStream(sourceFile);
+        ObjectFile objectFile = null;
+
+        try
+          {
+            objectFile = ObjectFile.read(sourceFile);
+          }
+        catch (IOException e)
+          {
+            error("*** " + e.getMessage() + " ***");
+          }
 
         CVM vm = new CVM(DEFAULT_MEMORY_SIZE);
-        vm.loadProgram(codeFile);
+        vm.loadProgram(objectFile);
         vm.run();
       }
 
@@ -126,29 +177,58 @@ public class CVM
         sp = 0;
         sb = 0;
 
+        entryPoint = 0;
+        poolAddr = 0;
+        inlineStrings = false;
         running = false;
+
+        scheduler     = null;
+        spawnedTasks  = new ArrayList<>();
+        spawnedStacks = new ArrayList<>();
+        stackLimit    = numOfBytes;
       }
 
 
     /**
-     * Loads the program into memory.
+     * Construct a CPRL virtual machine for a task spawned by the parent
+     * virtual machine.  The new virtual machine shares memory and I/O with
+     * its parent, and its stack occupies the region starting at regionStart.
+     */
+    private CVM(CVM parent, int regionStart)
+      {
+        scanner = parent.scanner;
+        reader  = parent.reader;
+        out     = parent.out;
+        memory  = parent.memory;
+
+        pc = 0;
+        bp = regionStart;
+        sp = regionStart - 1;
+        sb = parent.sb;
+
+        entryPoint    = parent.entryPoint;
+        poolAddr      = parent.poolAddr;
+        inlineStrings = parent.inlineStrings;
+        running       = false;
+
+        scheduler     = parent.scheduler;
+        spawnedTasks  = new ArrayList<>();
+        spawnedStacks = new ArrayList<>();
+        stackLimit    = regionStart + TaskScheduler.TASK_STACK_SIZE;
+      }
+
+
+    /**
+     * Loads the program into memory.  The object code can be in either
+     * the sectioned object file format or the legacy raw format.
      *
      * @param codeFile the FileInputStream containing the object code
      */
     public void loadProgram(FileInputStream codeFile)
       {
-        int address = 0;
-        int inByte;
-
-        try
+        try (codeFile)
           {
-            while ((inByte = codeFile.read()) != -1)
-                memory[address++] = (byte) inByte;
-
-            bp = address;
-            sb = address;
-            sp = bp - 1;
-            codeFile.close();
+            loadProgram(ObjectFile.read(codeFile));
           }
         catch (IOException e)
           {
@@ -157,6 +237,34 @@ public class CVM
       }
 
 
+    /**
+     * Loads the program into memory.  The code is loaded starting at
+     * address 0, followed by the read-only data.  The stack starts
+     * immediately after the read-only data.
+     *
+     * @param objectFile the object file containing the program
+     */
+    public void loadProgram(ObjectFile objectFile)
+      {
+        byte[] code   = objectFile.getCode();
+        byte[] roData = objectFile.getRoData();
+
+        if (objectFile.getLoadSize() > memory.length)
+            error("*** Out of memory ***");
+
+        System.arraycopy(code, 0, memory, 0, code.length);
+        System.arraycopy(roData, 0, memory, code.length, roData.length);
+
+        entryPoint    = objectFile.getEntryPoint();
+        poolAddr      = code.length;
+        inlineStrings = objectFile.isLegacyFormat();
+
+        bp = objectFile.getLoadSize();
+        sb = bp;
+        sp = bp - 1;
+      }
+
+
     /**
      * Prints values of internal registers to standard output.
      */
@@ -171,14 +279,10 @@ public class CVM
      */
     private void printMemory()
       {
-        int memAddr   = 0;
-        int strLength = 0;
-        byte byte0;
-        byte byte1;
-        byte byte2;
-        byte byte3;
+        CodeDecoder decoder = new CodeDecoder(memory, inlineStrings, this::getPoolString);
+        int memAddr = 0;
 
-        while (memAddr < sb)
+        while (memAddr < poolAddr)
           {
             // Prints "PC ->" in front of the correct memory address
             if (pc == memAddr)
@@ -187,112 +291,15 @@ public class CVM
                 out.print("     ");
 
             String memAddrStr = StringUtil.format(memAddr, FIELD_WIDTH);
-            byte opCode = memory[memAddr];
 
-            switch (opCode)
+            if (!decoder.isValid(memAddr))
               {
-                // opcodes with zero operands
-                case OpCode.ADD:
-                case OpCode.CMP:
-                case OpCode.DEC:
-                case OpCode.DIV:
-                case OpCode.GETCH:
-                case OpCode.GETINT:
-                case OpCode.HALT:
-                case OpCode.LOADB:
-                case OpCode.LOAD2B:
-                case OpCode.LOADW:
-                case OpCode.LDCB0:
-                case OpCode.LDCB1:
-                case OpCode.LDCINT0:
-                case OpCode.LDCINT1:
-                case OpCode.INC:
-                case OpCode.MOD:
-                case OpCode.MUL:
-                case OpCode.NEG:
-                case OpCode.NOT:
-                case OpCode.PUTBYTE:
-                case OpCode.PUTCH:
-                case OpCode.PUTINT:
-                case OpCode.PUTEOL:
-                case OpCode.PUTSTR:
-                case OpCode.STOREB:
-                case OpCode.STORE2B:
-                case OpCode.STOREW:
-                case OpCode.SUB:
-                    out.println(memAddrStr + ":  " + OpCode.toString(opCode));
-                    ++memAddr;
-                    break;
-
-                // opcodes with one byte operand
-                case OpCode.SHL:
-                case OpCode.SHR:
-                case OpCode.LDCB:
-                    out.print(memAddrStr + ":  " + OpCode.toString(opCode));
-                    ++memAddr;
-                    out.println(" " + memory[memAddr++]);
-                  break;
-
-                // opcodes with one int operand
-                case OpCode.ALLOC:
-                case OpCode.BR:
-                case OpCode.BG:
-                case OpCode.BGE:
-                case OpCode.BL:
-                case OpCode.BLE:
-                case OpCode.BNZ:
-                case OpCode.BZ:
-                case OpCode.CALL:
-                case OpCode.LOAD:
-                case OpCode.LDCINT:
-                case OpCode.LDLADDR:
-                case OpCode.LDGADDR:
-                case OpCode.PROC:
-                case OpCode.PROGRAM:
-                case OpCode.RET:
-                case OpCode.STORE:
-                    out.print(memAddrStr + ":  " + OpCode.toString(opCode));
-                    ++memAddr;
-                    byte0 = memory[memAddr++];
-                    byte1 = memory[memAddr++];
-                    byte2 = memory[memAddr++];
-                    byte3 = memory[memAddr++];
-                    out.println(" " + ByteUtil.bytesToInt(byte0, byte1, byte2, byte3));
-                    break;
-
-                // special case: LDCCH
-                case OpCode.LDCCH:
-                    out.print(memAddrStr + ":  " + OpCode.toString(opCode));
-                    ++memAddr;
-                    byte0 = memory[memAddr++];
-                    byte1 = memory[memAddr++];
-                    out.println(" " + ByteUtil.bytesToChar(byte0, byte1));
-                    break;
-
-                // special case: LDCSTR
-                case OpCode.LDCSTR:
-                    out.print(memAddrStr + ":  " + OpCode.toString(opCode));
-                    ++memAddr;
-                    // now print the string
-                    out.print("  \"");
-                    byte0 = memory[memAddr++];
-                    byte1 = memory[memAddr++];
-                    byte2 = memory[memAddr++];
-                    byte3 = memory[memAddr++];
-                    strLength = ByteUtil.bytesToInt(byte0, byte1, byte2, byte3);
-                    for (int i = 0;  i < strLength;  ++i)
-                      {
-                        byte0 = memory[memAddr++];
-                        byte1 = memory[memAddr++];
-                        out.print(ByteUtil.bytesToChar(byte0, byte1));
-                      }
-                    out.println("\"");
-                    break;
-
-                default:
-                    out.println("*** Unknown opCode ***");
-                    System.exit(-1);
+                out.println("*** Unknown opCode ***");
+                System.exit(-1);
               }
+
+            out.println(memAddrStr + ":  " + decoder.toString(memAddr));
+            memAddr = memAddr + decoder.getSize(memAddr);
           }
 
         // now print remaining values that compose the stack
@@ -337,11 +344,21 @@ public class CVM
      * Runs the program currently in memory.
      */
     public void run()
+      {
+        running = true;
+        pc = entryPoint;
+        execute();
+      }
+
+
+    /**
+     * Executes instructions starting at the current pc until the program
+     * halts or, for a spawned task, until the task returns.
+     */
+    private void execute()
       {
         byte opCode;
 
-        running = true;
-        pc = 0;
         while (running)
           {
             if (DEBUG)
@@ -359,31 +376,85 @@ public class CVM
                     add();
                     break;
                 case OpCode.ALLOC:
-                    allocate();
+                    allocate(Constants.BYTES_PER_INTEGER);
+                    break;
+                case OpCode.ALLOC1B:
+                    allocate(1);
+                    break;
+                case OpCode.ALLOC2B:
+                    allocate(2);
                     break;
                 case OpCode.BG:
-                    branchGreater();
+                    branchGreater(Constants.BYTES_PER_INTEGER);
+                    break;
+                case OpCode.BG1B:
+                    branchGreater(1);
+                    break;
+                case OpCode.BG2B:
+                    branchGreater(2);
                     break;
                 case OpCode.BGE:
-                    branchGreaterOrEqual();
+                    branchGreaterOrEqual(Constants.BYTES_PER_INTEGER);
+                    break;
+                case OpCode.BGE1B:
+                    branchGreaterOrEqual(1);
+                    break;
+                case OpCode.BGE2B:
+                    branchGreaterOrEqual(2);
                     break;
                 case OpCode.BL:
-                    branchLess();
+                    branchLess(Constants.BYTES_PER_INTEGER);
+                    break;
+                case OpCode.BL1B:
+                    branchLess(1);
+                    break;
+                case OpCode.BL2B:
+                    branchLess(2);
                     break;
                 case OpCode.BLE:
-                    branchLessOrEqual();
+                    branchLessOrEqual(Constants.BYTES_PER_INTEGER);
+                    break;
+                case OpCode.BLE1B:
+                    branchLessOrEqual(1);
+                    break;
+                case OpCode.BLE2B:
+                    branchLessOrEqual(2);
                     break;
                 case OpCode.BNZ:
-                    branchNonZero();
+                    branchNonZero(Constants.BYTES_PER_INTEGER);
+                    break;
+                case OpCode.BNZ1B:
+                    branchNonZero(1);
+                    break;
+                case OpCode.BNZ2B:
+                    branchNonZero(2);
                     break;
                 case OpCode.BR:
-                    branch();
+                    branch(Constants.BYTES_PER_INTEGER);
+                    break;
+                case OpCode.BR1B:
+                    branch(1);
+                    break;
+                case OpCode.BR2B:
+                    branch(2);
                     break;
                 case OpCode.BZ:
-                    branchZero();
+                    branchZero(Constants.BYTES_PER_INTEGER);
+                    break;
+                case OpCode.BZ1B:
+                    branchZero(1);
+                    break;
+                case OpCode.BZ2B:
+                    branchZero(2);
                     break;
                 case OpCode.CALL:
-                    call();
+                    call(Constants.BYTES_PER_INTEGER);
+                    break;
+                case OpCode.CALL1B:
+                    call(1);
+                    break;
+                case OpCode.CALL2B:
+                    call(2);
                     break;
                 case OpCode.CMP:
                     compare();
@@ -394,6 +465,12 @@ public class CVM
                 case OpCode.DIV:
                     divide();
                     break;
+                case OpCode.DUP:
+                    duplicate();
+                    break;
+                case OpCode.ENTER:
+                    enter();
+                    break;
                 case OpCode.GETCH:
                     getCh();
                     break;
@@ -406,6 +483,18 @@ public class CVM
                 case OpCode.INC:
                     increment();
                     break;
+                case OpCode.JOIN:
+                    join();
+                    break;
+                case OpCode.LEAVE:
+                    leave(Constants.BYTES_PER_INTEGER);
+                    break;
+                case OpCode.LEAVE1B:
+                    leave(1);
+                    break;
+                case OpCode.LEAVE2B:
+                    leave(2);
+                    break;
                 case OpCode.LDCB:
                      loadConstByte();
                      break;
@@ -431,10 +520,22 @@ public class CVM
                     loadConstStr();
                     break;
                 case OpCode.LDLADDR:
-                    loadLocalAddress();
+                    loadLocalAddress(Constants.BYTES_PER_INTEGER);
+                    break;
+                case OpCode.LDLADDR1B:
+                    loadLocalAddress(1);
+                    break;
+                case OpCode.LDLADDR2B:
+                    loadLocalAddress(2);
                     break;
                 case OpCode.LDGADDR:
-                    loadGlobalAddress();
+                    loadGlobalAddress(Constants.BYTES_PER_INTEGER);
+                    break;
+                case OpCode.LDGADDR1B:
+                    loadGlobalAddress(1);
+                    break;
+                case OpCode.LDGADDR2B:
+                    loadGlobalAddress(2);
                     break;
                 case OpCode.LOAD:
                     load();
@@ -460,6 +561,9 @@ public class CVM
                 case OpCode.NOT:
                     not();
                     break;
+                case OpCode.OVER:
+                    over();
+                    break;
                 case OpCode.PROC:
                     procedure();
                     break;
@@ -487,6 +591,9 @@ public class CVM
                 case OpCode.SHL:
                   shiftLeft();
                   break;
+                case OpCode.SPAWN:
+                    spawn();
+                    break;
                 case OpCode.SHR:
                   shiftRight();
                   break;
@@ -505,10 +612,19 @@ public class CVM
                 case OpCode.SUB:
                     subtract();
                     break;
+                case OpCode.SWAP:
+                    swap();
+                    break;
+                case OpCode.TAIL:
+                    tailCall();
+                    break;
                 default:
                     error("invalid machine instruction");
               }
           }
+
+        // a task implicitly joins any tasks that it spawned
+        join();
       }
 
 
@@ -552,12 +668,8 @@ public class CVM
      */
     private int popInt()
       {
-        byte b3 = popByte();
-        byte b2 = popByte();
-        byte b1 = popByte();
-        byte b0 = popByte();
-
-        return ByteUtil.bytesToInt(b0, b1, b2, b3);
+        sp = sp - Constants.BYTES_PER_INTEGER;
+        return getInt(sp + 1);
       }
 
 
@@ -566,6 +678,9 @@ public class CVM
      */
     private void pushByte(byte b)
       {
+        if (sp + 1 >= stackLimit)
+            error("*** Out of memory ***");
+
         memory[++sp] = b;
       }
 
@@ -587,12 +702,11 @@ public class CVM
      */
     private void pushInt(int n)
       {
-        byte[] bytes = ByteUtil.intToBytes(n);
+        if (sp + Constants.BYTES_PER_INTEGER >= stackLimit)
+            error("*** Out of memory ***");
 
-        pushByte(bytes[0]);
-        pushByte(bytes[1]);
-        pushByte(bytes[2]);
-        pushByte(bytes[3]);
+        putInt(sp + 1, n);
+        sp = sp + Constants.BYTES_PER_INTEGER;
       }
 
 
@@ -619,6 +733,36 @@ public class CVM
       }
 
 
+    /**
+     * Fetch the next instruction short operand from memory.
+     */
+    private short fetchShort()
+      {
+        byte b0 = fetchByte();
+        byte b1 = fetchByte();
+
+        return (short) ByteUtil.bytesToChar(b0, b1);
+      }
+
+
+    /**
+     * Fetch the next instruction operand from memory, where the operand is
+     * a signed integer stored in the specified number of bytes (1, 2, or 4).
+     */
+    private int fetchOperand(int numBytes)
+      {
+        switch (numBytes)
+          {
+            case 1:
+                return fetchByte();
+            case 2:
+                return fetchShort();
+            default:
+                return fetchInt();
+          }
+      }
+
+
     /**
      * Fetch the next instruction char operand from memory.
      */
@@ -637,12 +781,49 @@ public class CVM
      */
     private int getInt(int address)
       {
-        byte b0 = memory[address + 0];
-        byte b1 = memory[address + 1];
-        byte b2 = memory[address + 2];
-        byte b3 = memory[address + 3];
+        return  (memory[address + 0]         << 24)
+             | ((memory[address + 1] & 0xFF) << 16)
+             | ((memory[address + 2] & 0xFF) <<  8)
+             |  (memory[address + 3] & 0xFF);
+      }
 
-        return ByteUtil.bytesToInt(b0, b1, b2, b3);
+
+    /**
+     * Stores the integer at the specified memory address.
+     * Does not alter pc, sp, or bp.
+     */
+    private void putInt(int address, int n)
+      {
+        memory[address + 0] = (byte) (n >>> 24);
+        memory[address + 1] = (byte) (n >>> 16);
+        memory[address + 2] = (byte) (n >>>  8);
+        memory[address + 3] = (byte) n;
+      }
+
+
+    /**
+     * Returns the address of the entry for the specified index in the
+     * entry table of the string pool.
+     */
+    private int getPoolEntryAddr(int index)
+      {
+        if (poolAddr >= sb || index < 0 || index >= getInt(poolAddr))
+            error("*** Invalid string pool index " + index + " ***");
+
+        return poolAddr + Constants.BYTES_PER_INTEGER + index*StringPool.ENTRY_SIZE;
+      }
+
+
+    /**
+     * Returns the string with the specified index in the string pool.
+     */
+    private String getPoolString(int index)
+      {
+        int entryAddr = getPoolEntryAddr(index);
+        int strAddr   = poolAddr + getInt(entryAddr);
+        int strLength = getInt(entryAddr + Constants.BYTES_PER_INTEGER);
+
+        return new String(memory, strAddr, strLength, StandardCharsets.UTF_8);
       }
 
 
@@ -662,30 +843,33 @@ public class CVM
       }
 
 
-    private void allocate()
+    private void allocate(int operandSize)
       {
-        int numBytes = fetchInt();
+        int numBytes = fetchOperand(operandSize);
 
         sp = sp + numBytes;
+
+        if (sp >= stackLimit)
+            error("*** Out of memory ***");
       }
 
 
     /**
      * Unconditional branch.
      */
-    private void branch()
+    private void branch(int operandSize)
       {
         int opCodeAddr   = pc - 1;
-        int displacement = fetchInt();
+        int displacement = fetchOperand(operandSize);
 
         pc = opCodeAddr + displacement;
       }
 
 
-    private void branchGreater()
+    private void branchGreater(int operandSize)
       {
         int  opCodeAddr   = pc - 1;
-        int  displacement = fetchInt();
+        int  displacement = fetchOperand(operandSize);
         byte value        = popByte();
 
         if (value > 0)
@@ -693,10 +877,10 @@ public class CVM
       }
 
 
-    private void branchGreaterOrEqual()
+    private void branchGreaterOrEqual(int operandSize)
       {
         int  opCodeAddr   = pc - 1;
-        int  displacement = fetchInt();
+        int  displacement = fetchOperand(operandSize);
         byte value        = popByte();
 
         if (value >= 0)
@@ -704,10 +888,10 @@ public class CVM
       }
 
 
-    private void branchLess()
+    private void branchLess(int operandSize)
       {
         int  opCodeAddr   = pc - 1;
-        int  displacement = fetchInt();
+        int  displacement = fetchOperand(operandSize);
         byte value        = popByte();
 
         if (value < 0)
@@ -715,10 +899,10 @@ public class CVM
       }
 
 
-    private void branchLessOrEqual()
+    private void branchLessOrEqual(int operandSize)
       {
         int  opCodeAddr   = pc - 1;
-        int  displacement = fetchInt();
+        int  displacement = fetchOperand(operandSize);
         byte value        = popByte();
 
         if (value <= 0)
@@ -729,10 +913,10 @@ public class CVM
     /**
      * Branch if the byte on the top of the stack is nonzero (true).
      */
-    private void branchNonZero()
+    private void branchNonZero(int operandSize)
       {
         int  opCodeAddr   = pc - 1;
-        int  displacement = fetchInt();
+        int  displacement = fetchOperand(operandSize);
         byte value        = popByte();
 
         if (value != 0)
@@ -743,10 +927,10 @@ public class CVM
     /**
      * Branch if ZF (zero flag) is true.
      */
-    private void branchZero()
+    private void branchZero(int operandSize)
       {
         int  opCodeAddr   = pc - 1;
-        int  displacement = fetchInt();
+        int  displacement = fetchOperand(operandSize);
         byte value        = popByte();
 
         if (value == 0)
@@ -754,10 +938,10 @@ public class CVM
       }
 
 
-    private void call()
+    private void call(int operandSize)
       {
         int opCodeAddr   = pc - 1;
-        int displacement = fetchInt();
+        int displacement = fetchOperand(operandSize);
 
         pushInt(bp);          // dynamic link
         pushInt(pc);          // return address
@@ -803,11 +987,50 @@ public class CVM
       }
 
 
+    /**
+     * Pushes a copy of the integer on the top of the stack.
+     */
+    private void duplicate()
+      {
+        pushInt(getInt(sp - Constants.BYTES_PER_INTEGER + 1));
+      }
+
+
+    /**
+     * Calls a subprogram and allocates its local variables in a single step.
+     * The first operand is the displacement to the instruction following the
+     * PROC instruction of the subprogram, and the second operand is the number
+     * of bytes of local variables.  ENTER is equivalent to CALL followed by
+     * PROC, but it writes the frame directly.
+     */
+    private void enter()
+      {
+        int opCodeAddr   = pc - 1;
+        int displacement = fetchInt();
+        int varLength    = fetchInt();
+        int frameAddr    = sp + 1;
+
+        putInt(frameAddr, bp);                                 // dynamic link
+        putInt(frameAddr + Constants.BYTES_PER_INTEGER, pc);   // return address
+
+        bp = frameAddr;
+        sp = frameAddr + Constants.BYTES_PER_FRAME + varLength - 1;
+        pc = opCodeAddr + displacement;
+
+        if (sp >= stackLimit)
+            error("*** Out of memory ***");
+      }
+
+
     private void getInt()
       {
         try
           {
-            int n = scanner.nextInt();
+            int n;
+            synchronized (scanner)
+              {
+                n = scanner.nextInt();
+              }
             pushInt(n);
           }
         catch (NumberFormatException e)
@@ -821,7 +1044,11 @@ public class CVM
       {
         try
           {
-            int ch = reader.read();
+            int ch;
+            synchronized (scanner)
+              {
+                ch = reader.read();
+              }
 
             if (ch == EOF)
                 error("Invalid input: EOF");
@@ -842,6 +1069,23 @@ public class CVM
       }
 
 
+    /**
+     * Waits for all tasks spawned by this task to finish and
+     * frees their stack regions.
+     */
+    private void join()
+      {
+        for (ForkJoinTask<?> task : spawnedTasks)
+            task.join();
+
+        for (Integer regionStart : spawnedStacks)
+            scheduler.freeStack(regionStart.intValue());
+
+        spawnedTasks.clear();
+        spawnedStacks.clear();
+      }
+
+
     private void increment()
       {
         int operand = popInt();
@@ -864,6 +1108,24 @@ public class CVM
       }
 
 
+    /**
+     * Returns from a subprogram, removing the frame and the parameters in a
+     * single step.  The operand is the number of bytes of parameters.
+     */
+    private void leave(int operandSize)
+      {
+        int frameAddr   = bp;
+        int paramLength = fetchOperand(operandSize);
+
+        pc = getInt(frameAddr + Constants.BYTES_PER_INTEGER);
+        bp = getInt(frameAddr);
+        sp = frameAddr - paramLength - 1;
+
+        if (pc == TASK_EXIT)
+            running = false;
+      }
+
+
     private void loadConstByte()
       {
         byte b = fetchByte();
@@ -910,27 +1172,43 @@ public class CVM
       }
 
 
+    /**
+     * Loads the length and address of a string literal onto the stack.  For
+     * legacy object files, the string literal follows the instruction in the
+     * code as 2-byte chars; otherwise the instruction contains the index of
+     * the string literal in the string pool, stored as UTF-8 bytes.
+     */
     private void loadConstStr()
       {
-        int strLength = fetchInt();
-        int strAddr   = pc;
+        if (inlineStrings)
+          {
+            int strLength = fetchInt();
+            int strAddr   = pc;
 
-        pushInt(strLength);
-        pushInt(strAddr);
-        pc = pc + 2*strLength;
+            pushInt(strLength);
+            pushInt(strAddr);
+            pc = pc + 2*strLength;
+          }
+        else
+          {
+            int entryAddr = getPoolEntryAddr(fetchInt());
+
+            pushInt(getInt(entryAddr + Constants.BYTES_PER_INTEGER));   // length in bytes
+            pushInt(poolAddr + getInt(entryAddr));                      // address
+          }
       }
 
 
-    private void loadLocalAddress()
+    private void loadLocalAddress(int operandSize)
       {
-        int displacement = fetchInt();
+        int displacement = fetchOperand(operandSize);
         pushInt(bp + displacement);
       }
 
 
-    private void loadGlobalAddress()
+    private void loadGlobalAddress(int operandSize)
       {
-        int displacement = fetchInt();
+        int displacement = fetchOperand(operandSize);
         pushInt(sb + displacement);
       }
 
@@ -1019,9 +1297,18 @@ public class CVM
       }
 
 
+    /**
+     * Pushes a copy of the integer below the integer on the top of the stack.
+     */
+    private void over()
+      {
+        pushInt(getInt(sp - 2*Constants.BYTES_PER_INTEGER + 1));
+      }
+
+
     private void procedure()
       {
-        allocate();
+        allocate(Constants.BYTES_PER_INTEGER);
       }
 
 
@@ -1066,19 +1353,22 @@ public class CVM
         int strAddr   = popInt();
         int strLength = popInt();
 
-        char[] str = new char[strLength];
-        byte[] bytes = new byte[strLength];
-
-        for (int i = 0;  i < strLength;  ++i)
+        if (inlineStrings)
           {
-            byte b0 = memory[strAddr++];
-            byte b1 = memory[strAddr++];
+            char[] str = new char[strLength];
 
-            str[i] = ByteUtil.bytesToChar(b0, b1);
-            bytes[i] = memory[strLength];
-          }
+            for (int i = 0;  i < strLength;  ++i)
+              {
+                byte b0 = memory[strAddr++];
+                byte b1 = memory[strAddr++];
+
+                str[i] = ByteUtil.bytesToChar(b0, b1);
+              }
 
-        out.print(str);
+            out.print(str);
+          }
+        else
+            out.write(memory, strAddr, strLength);   // already encoded as UTF-8
       }
 
 
@@ -1090,6 +1380,9 @@ public class CVM
         sp = bpSave - paramLength - 1;
         bp = getInt(bpSave);
         pc = getInt(bpSave + Constants.BYTES_PER_INTEGER);
+
+        if (pc == TASK_EXIT)
+            running = false;
       }
 
 
@@ -1133,6 +1426,63 @@ public class CVM
       }
 
 
+    /**
+     * Spawns a procedure call as a task.  The length of the parameters is
+     * popped off the stack, and the parameters are moved from the stack of
+     * this task to the stack region of the new task.  If no stack region is
+     * available, or if the parameters, the frame, and the local variables
+     * of the procedure do not fit in a stack region, the procedure is called
+     * synchronously instead.
+     */
+    private void spawn()
+      {
+        int opCodeAddr   = pc - 1;
+        int displacement = fetchInt();
+        int paramLength  = popInt();
+        int procAddr     = opCodeAddr + displacement;
+
+        if (scheduler == null)
+          {
+            // first spawn: reserve the upper half of the free memory for task stacks
+            int low = sp + 1 + (memory.length - sp - 1)/2;
+            scheduler  = new TaskScheduler(low, memory.length);
+            stackLimit = scheduler.getAreaStart();
+          }
+
+        // the local variables are allocated by the PROC instruction
+        int varLength = memory[procAddr] == OpCode.PROC ? getInt(procAddr + 1) : 0;
+        int frameSize = paramLength + Constants.BYTES_PER_FRAME + varLength;
+
+        int regionStart = frameSize <= TaskScheduler.TASK_STACK_SIZE ? scheduler.allocateStack() : -1;
+        if (regionStart < 0)
+          {
+            // no free stack region or the frame is too large; run the procedure in this task
+            pushInt(bp);          // dynamic link
+            pushInt(pc);          // return address
+            bp = sp - Constants.BYTES_PER_FRAME + 1;
+            pc = procAddr;
+            return;
+          }
+
+        CVM task = new CVM(this, regionStart);
+
+        // move the parameters to the stack region of the task
+        int paramAddr = sp - paramLength + 1;
+        System.arraycopy(memory, paramAddr, memory, regionStart, paramLength);
+        sp = paramAddr - 1;
+
+        task.sp = regionStart + paramLength - 1;
+        task.pushInt(TASK_EXIT);   // dynamic link (unused)
+        task.pushInt(TASK_EXIT);   // return address
+        task.bp = task.sp - Constants.BYTES_PER_FRAME + 1;
+        task.pc = procAddr;
+        task.running = true;
+
+        spawnedTasks.add(scheduler.start(task::execute));
+        spawnedStacks.add(Integer.valueOf(regionStart));
+      }
+
+
     private void storeByte()
       {
         byte value   = popByte();
@@ -1177,6 +1527,57 @@ public class CVM
       }
 
 
+    /**
+     * Exchanges the two integers on the top of the stack.
+     */
+    private void swap()
+      {
+        int operand2 = popInt();
+        int operand1 = popInt();
+
+        pushInt(operand2);
+        pushInt(operand1);
+      }
+
+
+    /**
+     * Calls a subprogram in place of the current subprogram, reusing its
+     * frame (a tail call).  The operands are the same as for ENTER.  The
+     * parameters for the called subprogram are on the stack, followed by the
+     * number of bytes of parameters of the current subprogram and the number
+     * of bytes of parameters of the called subprogram.  The parameters are
+     * moved over the parameters of the current subprogram, and the new frame
+     * keeps the dynamic link and return address of the current frame, so the
+     * called subprogram returns directly to the caller of the current one.
+     * For a function, the return value of the called function is stored in
+     * the space allocated for the return value of the current function.
+     */
+    private void tailCall()
+      {
+        int opCodeAddr      = pc - 1;
+        int displacement    = fetchInt();
+        int varLength       = fetchInt();
+        int paramLength     = popInt();
+        int currParamLength = popInt();
+
+        int dynamicLink = getInt(bp);
+        int returnAddr  = getInt(bp + Constants.BYTES_PER_INTEGER);
+        int paramAddr   = bp - currParamLength;
+
+        System.arraycopy(memory, sp - paramLength + 1, memory, paramAddr, paramLength);
+
+        bp = paramAddr + paramLength;
+        putInt(bp, dynamicLink);
+        putInt(bp + Constants.BYTES_PER_INTEGER, returnAddr);
+
+        sp = bp + Constants.BYTES_PER_FRAME + varLength - 1;
+        pc = opCodeAddr + displacement;
+
+        if (sp >= stackLimit)
+            error("*** Out of memory ***");
+      }
+
+
     // End: machine instructions corresponding to OpCodes
     //----------------------------------------------------
   }
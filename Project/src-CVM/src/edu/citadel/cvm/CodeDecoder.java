@@ -0,0 +1,222 @@
+package edu.citadel.cvm;
+
+
+import java.nio.ByteBuffer;
+import java.util.function.IntFunction;
+
+
+/**
+ * Decodes CVM machine code in memory using the operand formats in the
+ * metadata table of class OpCode.  The decoder reads the code directly
+ * with absolute gets, so it can be used for the code in an object file
+ * (including a memory-mapped one) as well as for the memory of the CVM.
+ */
+public class CodeDecoder
+  {
+    private ByteBuffer code;
+    private boolean inlineStrings;
+    private IntFunction<String> stringPool;
+
+
+    /**
+     * Construct a decoder for the specified code.
+     *
+     * @param inlineStrings  true if the characters of string literals follow
+     *                       the LDCSTR opcode (legacy object files)
+     * @param stringPool     returns the string with a specified index in the
+     *                       string pool (not used if inlineStrings is true)
+     */
+    public CodeDecoder(byte[] code, boolean inlineStrings, IntFunction<String> stringPool)
+      {
+        this.code          = ByteBuffer.wrap(code);
+        this.inlineStrings = inlineStrings;
+        this.stringPool    = stringPool;
+      }
+
+
+    /**
+     * Returns the opcode at the specified address.
+     */
+    public byte getOpCode(int addr)
+      {
+        return code.get(addr);
+      }
+
+
+    /**
+     * Returns true if the byte at the specified address is a valid opcode
+     * and the operands of the instruction fit in the code.
+     */
+    public boolean isValid(int addr)
+      {
+        byte opCode = code.get(addr);
+        return OpCode.isDefined(opCode) && addr + getSize(addr) <= code.capacity();
+      }
+
+
+    /**
+     * Returns the number of bytes occupied by the instruction at the
+     * specified address.
+     */
+    public int getSize(int addr)
+      {
+        OperandFormat format = OpCode.getOperandFormat(code.get(addr));
+        int size = Constants.BYTES_PER_OPCODE + format.getSize();
+
+        if (format == OperandFormat.STRING && inlineStrings
+                && addr + size <= code.capacity())
+            size = size + getOperand(addr)*Constants.BYTES_PER_CHAR;
+
+        return size;
+      }
+
+
+    /**
+     * Returns the (first) operand of the instruction at the specified
+     * address.  Byte and short operands are sign extended.
+     */
+    public int getOperand(int addr)
+      {
+        int operandAddr = addr + Constants.BYTES_PER_OPCODE;
+
+        switch (OpCode.getOperandFormat(code.get(addr)))
+          {
+            case BYTE:
+                return code.get(operandAddr);
+            case SHORT:
+                return code.getShort(operandAddr);
+            case CHAR:
+                return code.getChar(operandAddr);
+            case INT:
+            case INT_INT:
+            case STRING:
+                return code.getInt(operandAddr);
+            default:
+                throw new IllegalArgumentException("Instruction at " + addr + " has no operands.");
+          }
+      }
+
+
+    /**
+     * Returns the second operand of an instruction with two int operands.
+     */
+    public int getSecondOperand(int addr)
+      {
+        return code.getInt(addr + Constants.BYTES_PER_OPCODE + Constants.BYTES_PER_INTEGER);
+      }
+
+
+    /**
+     * Returns true if the instruction at the specified address has a
+     * target in the code; i.e., if it is a branch or a call.
+     */
+    public boolean hasTarget(int addr)
+      {
+        byte opCode = code.get(addr);
+        return OpCode.isBranch(opCode) || OpCode.isCall(opCode);
+      }
+
+
+    /**
+     * Returns the address of the target of a branch or call instruction.
+     */
+    public int getTarget(int addr)
+      {
+        return addr + getOperand(addr);
+      }
+
+
+    /**
+     * Returns the string literal of the LDCSTR instruction at the specified address.
+     */
+    public String getString(int addr)
+      {
+        if (!inlineStrings)
+            return stringPool.apply(getOperand(addr));
+
+        int  strLength = getOperand(addr);
+        int  charAddr  = addr + Constants.BYTES_PER_OPCODE + Constants.BYTES_PER_INTEGER;
+        char[] chars   = new char[strLength];
+        for (int i = 0;  i < strLength;  ++i)
+            chars[i] = code.getChar(charAddr + i*Constants.BYTES_PER_CHAR);
+
+        return new String(chars);
+      }
+
+
+    /**
+     * Returns the assembly language text for the instruction at the
+     * specified address, without labels.
+     */
+    public String toString(int addr)
+      {
+        StringBuilder buffer = new StringBuilder(24);
+        append(buffer, addr);
+        return buffer.toString();
+      }
+
+
+    /**
+     * Appends the assembly language text for the instruction at the
+     * specified address, without labels, to the buffer.
+     */
+    public void append(StringBuilder buffer, int addr)
+      {
+        byte opCode = code.get(addr);
+        buffer.append(OpCode.toString(opCode));
+
+        switch (OpCode.getOperandFormat(opCode))
+          {
+            case NONE:
+                break;
+
+            case INT_INT:
+                buffer.append(' ')
+                      .append(getOperand(addr))
+                      .append(' ')
+                      .append(getSecondOperand(addr));
+                break;
+
+            case CHAR:
+                buffer.append(" \'")
+                      .append(getUnescapedChar((char) getOperand(addr)))
+                      .append('\'');
+                break;
+
+            case STRING:
+                String str = getString(addr);
+                buffer.append("  \"");
+                for (int i = 0;  i < str.length();  ++i)
+                    buffer.append(getUnescapedChar(str.charAt(i)));
+                buffer.append('\"');
+                break;
+
+            default:
+                buffer.append(' ')
+                      .append(getOperand(addr));
+          }
+      }
+
+
+    /**
+     * Unescapes characters.  For example, if the parameter c is a tab,
+     * this method will return "\\t"
+     *
+     * @return the string for an escaped character.
+     */
+    private static String getUnescapedChar(char c)
+      {
+        switch (c)
+          {
+            case '\b' : return "\\b";    // backspace
+            case '\t' : return "\\t";    // tab
+            case '\n' : return "\\n";    // linefeed (a.k.a. newline)
+            case '\f' : return "\\f";    // form feed
+            case '\r' : return "\\r";    // carriage return
+            case '\"' : return "\\\"";   // double quote
+            case '\'' : return "\\\'";   // single quote
+            case '\\' : return "\\\\";   // backslash
+            default   : return Character.toString(c);
+          }
+      }
+  }
@@ -1,227 +1,269 @@
 package edu.citadel.cvm;
 
 
-import edu.citadel.compiler.util.ByteUtil;
 import edu.citadel.compiler.util.StringUtil;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 
 /**
- * Translates CVM machine code into CVM assembly language. 
+ * Translates CVM machine code into CVM assembly language.  The object file
+ * is memory mapped and decoded with a CodeDecoder, and the assembly language
+ * is written through a buffered writer.  When more than one object file is
+ * specified on the command line, the files are disassembled in parallel.
+ * With option -annotate, the start of each basic block and the target of
+ * each branch or call are shown as comments.
  */
 public class Disassembler
   {
     private static final String SUFFIX   = ".obj";
     private static final int FIELD_WIDTH = 4;
 
-    public static final int EOF = -1;
+    /** size of the buffer for the output file */
+    private static final int BUFFER_SIZE = 64*1024;
 
+    private static boolean annotate = false;
 
-    public static void main(String[] args) throws IOException
+    private File objectFile;
+
+
+    public static void main(String[] args) throws Exception
       {
-        if (args.length == 0 || args.length > 1)
-          {
-            System.err.println("Usage: java edu.citadel.cvm.Disassembler filename");
-            System.exit(0);
-          }
+        // options precede the file names
+        int argNum = 0;
+        while (argNum < args.length && args[argNum].startsWith("-"))
+            processOption(args[argNum++]);
 
-        String fileName = args[0];
-        FileInputStream file = new FileInputStream(fileName);
+        if (argNum == args.length)
+            printUsageAndExit();
 
-        // get object code file name minus the suffix
-        int suffixIndex = fileName.lastIndexOf(SUFFIX);
-        String baseName = fileName.substring(0, suffixIndex);
+        List<File> objectFiles = new ArrayList<>(args.length - argNum);
+        for (;  argNum < args.length;  ++argNum)
+            objectFiles.add(new File(args[argNum]));
 
-        String outputFileName = baseName + ".dis.txt";
-        FileWriter writer = new FileWriter(outputFileName, StandardCharsets.UTF_8);
-        PrintWriter out = new PrintWriter(writer, true);
-        
-        System.out.println("Disassembling " + fileName + " to " + outputFileName);
+        if (objectFiles.size() == 1)
+            System.out.print(new Disassembler(objectFiles.get(0)).disassemble());
+        else
+            disassembleAll(objectFiles);
+      }
 
-        int inByte;
-        int opCodeAddr = 0;
-        int strLength  = 0;
 
-        char c;
+    /**
+     * Disassembles the object files in parallel.  The messages for each
+     * file are printed in the order of the files on the command line.
+     */
+    private static void disassembleAll(List<File> objectFiles) throws InterruptedException
+      {
+        int numThreads = Math.min(objectFiles.size(), Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
 
-        while ((inByte = file.read()) != -1)
-          {
-            byte opCode = (byte) inByte;
+        List<Future<String>> results = new ArrayList<>(objectFiles.size());
+        for (File objectFile : objectFiles)
+            results.add(executor.submit(() -> new Disassembler(objectFile).disassemble()));
 
-            switch (opCode)
+        executor.shutdown();
+
+        for (int i = 0;  i < results.size();  ++i)
+          {
+            try
               {
-                // opcodes with zero operands
-                case OpCode.ADD:
-                case OpCode.CMP:
-                case OpCode.DEC:
-                case OpCode.DIV:
-                case OpCode.GETCH:
-                case OpCode.GETINT:
-                case OpCode.HALT:
-                case OpCode.LOADB:
-                case OpCode.LOAD2B:
-                case OpCode.LOADW:
-                case OpCode.LDCB0:
-                case OpCode.LDCB1:
-                case OpCode.LDCINT0:
-                case OpCode.LDCINT1:
-                case OpCode.INC:
-                case OpCode.MOD:
-                case OpCode.MUL:
-                case OpCode.NEG:
-                case OpCode.NOT:
-                case OpCode.PUTBYTE:
-                case OpCode.PUTCH:
-                case OpCode.PUTINT:
-                case OpCode.PUTEOL:
-                case OpCode.PUTSTR:
-                case OpCode.STOREB:
-                case OpCode.STORE2B:
-                case OpCode.STOREW:
-                case OpCode.SUB:
-                    out.println(StringUtil.format(opCodeAddr, FIELD_WIDTH) + ":  "
-                        + OpCode.toString(opCode));
-                    opCodeAddr = opCodeAddr + 1;
-                    break;
-
-                // opcodes with one byte operand
-                case OpCode.SHL:
-                case OpCode.SHR:
-                case OpCode.LDCB:
-                    out.print(StringUtil.format(opCodeAddr, FIELD_WIDTH) + ":  "
-                        + OpCode.toString(opCode));
-                    out.println(" " + readByte(file));
-                    opCodeAddr = opCodeAddr + 2;  // one byte for opcode and one byte for shift amount
-                  break;
-                    
-                // opcodes with one int operand
-                case OpCode.ALLOC:
-                case OpCode.BR:
-                case OpCode.BG:
-                case OpCode.BGE:
-                case OpCode.BL:
-                case OpCode.BLE:
-                case OpCode.BNZ:
-                case OpCode.BZ:
-                case OpCode.CALL:
-                case OpCode.LOAD:
-                case OpCode.LDCINT:
-                case OpCode.LDLADDR:
-                case OpCode.LDGADDR:
-                case OpCode.PROC:
-                case OpCode.PROGRAM:
-                case OpCode.RET:
-                case OpCode.STORE:
-                    out.print(StringUtil.format(opCodeAddr, FIELD_WIDTH) + ":  "
-                        + OpCode.toString(opCode));
-                    out.println(" " + readInt(file));
-                    opCodeAddr = opCodeAddr + 1 + Constants.BYTES_PER_INTEGER;
-                    break;
-
-                // special case: LDCCH
-                case OpCode.LDCCH:
-                    out.print(StringUtil.format(opCodeAddr, FIELD_WIDTH) + ":  "
-                        + OpCode.toString(opCode));
-                    out.print(" \'");
-                    
-                    c = readChar(file);
-                    if (c == '\b' || c == '\t' || c == '\n' || c == '\f' 
-                     || c == '\r' || c == '\"' || c == '\'' || c == '\\')
-                        out.print(getUnescapedChar(c));
-                    else
-                        out.print(c);
-
-                    out.println("\'");
-                    opCodeAddr = opCodeAddr + 1 + Constants.BYTES_PER_CHAR;
-                    break;
-
-                // special case: LDCSTR
-                case OpCode.LDCSTR:
-                    out.print(StringUtil.format(opCodeAddr, FIELD_WIDTH) + ":  "
-                        + OpCode.toString(opCode));
-                    // now print the string
-                    out.print("  \"");
-                    strLength = readInt(file);
-                    for (int i = 0;  i < strLength;  ++i)
-                      {
-                        c = readChar(file);
-                        if (c == '\b' || c == '\t' || c == '\n' || c == '\f' 
-                         || c == '\r' || c == '\"' || c == '\'' || c == '\\')
-                            out.print(getUnescapedChar(c));
-                        else
-                            out.print(c);
-                      }
-                    out.println("\"");
-                    opCodeAddr = opCodeAddr + 1 + Constants.BYTES_PER_INTEGER
-                                 + strLength*Constants.BYTES_PER_CHAR;
-                    break;
-
-                default:
-                    System.err.println("*** Unknown opCode in file " + fileName + " ***");
-                    break;
+                System.out.print(results.get(i).get());
+              }
+            catch (ExecutionException e)
+              {
+                System.err.println("*** " + objectFiles.get(i).getName() + ": "
+                                 + e.getCause().getMessage() + " ***");
               }
           }
-
-        out.close();
       }
 
 
     /**
-     * Reads an integer argument from the stream.
+     * Construct a disassembler for the specified object file.
      */
-    private static int readInt(InputStream in) throws IOException
+    public Disassembler(File objectFile)
       {
-        byte b0 = (byte) in.read();
-        byte b1 = (byte) in.read();
-        byte b2 = (byte) in.read();
-        byte b3 = (byte) in.read();
-
-        return ByteUtil.bytesToInt(b0, b1, b2, b3);
+        this.objectFile = objectFile;
       }
 
 
     /**
-     * Reads a char argument from the stream.
+     * Disassembles the object file into a file with the same base file name
+     * as the object file but with a ".dis.txt" suffix.  Returns the messages
+     * for the file.
+     *
+     * @throws IOException if there are problems reading the object file
+     *                     or writing to the output file.
      */
-    private static char readChar(InputStream in) throws IOException
+    public String disassemble() throws IOException
       {
-        byte b0 = (byte) in.read();
-        byte b1 = (byte) in.read();
+        String fileName = objectFile.getPath();
+
+        // get object code file name minus the suffix
+        int suffixIndex = fileName.lastIndexOf(SUFFIX);
+        String baseName = suffixIndex >= 0 ? fileName.substring(0, suffixIndex) : fileName;
+        String outputFileName = baseName + ".dis.txt";
+
+        StringWriter messages = new StringWriter();
+        PrintWriter  log      = new PrintWriter(messages);
+        log.println("Disassembling " + fileName + " to " + outputFileName);
+
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(
+                 Files.newOutputStream(new File(outputFileName).toPath()),
+                 StandardCharsets.UTF_8), BUFFER_SIZE))
+          {
+            disassemble(ObjectFile.read(objectFile), out, log);
+          }
 
-        return ByteUtil.bytesToChar(b0, b1);
+        log.flush();
+        return messages.toString();
       }
 
 
     /**
-     * Reads a byte argument from the stream.
+     * Writes the assembly language for the code in the object file.
+     * Problems with the code are reported to log.
      */
-    private static byte readByte(InputStream in) throws IOException
+    private void disassemble(ObjectFile objFile, Writer out, PrintWriter log) throws IOException
       {
-        return (byte) in.read();
+        byte[] code = objFile.getCode();
+        CodeDecoder decoder = new CodeDecoder(code, objFile.isLegacyFormat(),
+            index -> StringPool.getString(objFile.getRoData(), index));
+
+        // the symbol section is decoded when it is first used
+        Map<String, Integer> symbols;
+        try
+          {
+            symbols = objFile.getSymbols();
+          }
+        catch (UncheckedIOException e)
+          {
+            throw e.getCause();
+          }
+
+        // maps addresses to the names of the labels defined at those addresses
+        Map<Integer, List<String>> labels = new HashMap<>();
+        for (Map.Entry<String, Integer> symbol : symbols.entrySet())
+            labels.computeIfAbsent(symbol.getValue(), k -> new ArrayList<>()).add(symbol.getKey());
+
+        // maps the start of each basic block to the branches and calls with that target
+        Map<Integer, List<Integer>> blocks = annotate ? findBlocks(decoder, code.length) : null;
+
+        StringBuilder line = new StringBuilder(80);
+        int opCodeAddr = 0;
+        int blockNum   = 0;
+
+        while (opCodeAddr < code.length)
+          {
+            if (!decoder.isValid(opCodeAddr))
+              {
+                log.println("*** Unknown opCode at address " + opCodeAddr
+                          + " in file " + objectFile.getName() + " ***");
+                ++opCodeAddr;
+                continue;
+              }
+
+            line.setLength(0);
+
+            if (blocks != null && blocks.containsKey(opCodeAddr))
+              {
+                if (opCodeAddr > 0)
+                    line.append('\n');
+
+                line.append("; block ").append(blockNum++);
+                List<Integer> sources = blocks.get(opCodeAddr);
+                if (!sources.isEmpty())
+                  {
+                    line.append(" (target of");
+                    for (int source : sources)
+                        line.append(' ').append(source);
+                    line.append(')');
+                  }
+                line.append('\n');
+              }
+
+            for (String label : labels.getOrDefault(opCodeAddr, Collections.emptyList()))
+                line.append(label).append(":\n");
+
+            line.append(StringUtil.format(opCodeAddr, FIELD_WIDTH)).append(":  ");
+            decoder.append(line, opCodeAddr);
+
+            if (blocks != null && decoder.hasTarget(opCodeAddr))
+              {
+                int target = decoder.getTarget(opCodeAddr);
+                line.append("   ; -> ").append(target);
+                for (String label : labels.getOrDefault(target, Collections.emptyList()))
+                    line.append(' ').append(label);
+              }
+
+            line.append('\n');
+            out.append(line);
+
+            opCodeAddr = opCodeAddr + decoder.getSize(opCodeAddr);
+          }
       }
 
 
     /**
-     * Unescapes characters.  For example, if the parameter c is a tab,
-     * this method will return "\\t" 
-     *
-     * @return the string for an escaped character.
+     * Returns a map from the start address of each basic block to the addresses
+     * of the branches and calls having that address as their target.  A block
+     * starts at address 0, at the target of a branch or call, and after a branch
+     * or an instruction that does not fall through (e.g., RET or HALT).
      */
-    private static String getUnescapedChar(char c)
+    private static Map<Integer, List<Integer>> findBlocks(CodeDecoder decoder, int codeSize)
       {
-        switch (c)
+        Map<Integer, List<Integer>> blocks = new TreeMap<>();
+        blocks.put(0, new ArrayList<>());
+
+        int opCodeAddr = 0;
+        while (opCodeAddr < codeSize)
           {
-            case '\b' : return "\\b";    // backspace
-            case '\t' : return "\\t";    // tab
-            case '\n' : return "\\n";    // linefeed (a.k.a. newline)
-            case '\f' : return "\\f";    // form feed
-            case '\r' : return "\\r";    // carriage return
-            case '\"' : return "\\\"";   // double quote
-            case '\'' : return "\\\'";   // single quote
-            case '\\' : return "\\\\";   // backslash
-            default   : return Character.toString(c);
+            if (!decoder.isValid(opCodeAddr))
+              {
+                ++opCodeAddr;
+                continue;
+              }
+
+            byte opCode  = decoder.getOpCode(opCodeAddr);
+            int nextAddr = opCodeAddr + decoder.getSize(opCodeAddr);
+
+            if (decoder.hasTarget(opCodeAddr))
+              {
+                int target = decoder.getTarget(opCodeAddr);
+                blocks.computeIfAbsent(target, k -> new ArrayList<>()).add(opCodeAddr);
+              }
+
+            if ((OpCode.isBranch(opCode) || !OpCode.fallsThrough(opCode)) && nextAddr < codeSize)
+                blocks.computeIfAbsent(nextAddr, k -> new ArrayList<>());
+
+            opCodeAddr = nextAddr;
           }
+
+        return blocks;
+      }
+
+
+    private static void printUsageAndExit()
+      {
+        System.err.println("Usage: java edu.citadel.cvm.Disassembler <options> <object files>");
+        System.err.println("where the options are omitted or are the following:");
+        System.err.println("-annotate      Shows basic blocks and the targets of branches and calls");
+        System.exit(0);
+      }
+
+
+    private static void processOption(String option)
+      {
+        if (option.equals("-annotate"))
+            annotate = true;
+        else
+            printUsageAndExit();
       }
   }
@@ -0,0 +1,505 @@
+package edu.citadel.cvm;
+
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.CRC32;
+
+
+/**
+ * The object file format for the CPRL Virtual Machine.  An object file
+ * consists of a fixed-size header, a section table, and the sections. <br>
+ *
+ * The header contains (as 4-byte integers in big-endian order) the magic
+ * number, the format version, flags (reserved), the entry point, the load
+ * size (the number of bytes of code and read-only data that are loaded
+ * into memory), the number of sections, and a CRC-32 checksum computed
+ * over everything that follows the header.  Each entry in the section
+ * table contains the section type, the offset of the section from the
+ * start of the file, and the length of the section in bytes. <br>
+ *
+ * The symbol and debug sections of an object file that is read are
+ * decoded only when the symbols or line numbers are first used, so
+ * that loading a program for execution reads only the code and the
+ * read-only data. <br>
+ *
+ * Files that do not start with the magic number are treated as legacy
+ * object files; i.e., raw memory images consisting only of machine code.
+ * No legacy image can start with the magic number since its first byte
+ * is not a valid opcode.
+ */
+public class ObjectFile
+  {
+    /** magic number for an object file (the characters "CVMO") */
+    public static final int MAGIC = 0x43564D4F;
+
+    /**
+     * Current version of the object file format.  Version 2 introduced
+     * the string pool in the read-only data section.
+     */
+    public static final int VERSION = 2;
+
+    /** section containing the machine code */
+    public static final int SECTION_CODE = 1;
+
+    /** section containing read-only data (the string pool) */
+    public static final int SECTION_RODATA = 2;
+
+    /** section mapping label names to addresses */
+    public static final int SECTION_SYMBOLS = 3;
+
+    /** section mapping instruction addresses to source line numbers */
+    public static final int SECTION_DEBUG = 4;
+
+    private static final int HEADER_SIZE        = 7*Constants.BYTES_PER_INTEGER;
+    private static final int SECTION_ENTRY_SIZE = 3*Constants.BYTES_PER_INTEGER;
+
+    private int     version;
+    private boolean legacyFormat;
+    private int     entryPoint;
+
+    private byte[] code;
+    private byte[] roData;
+
+    // maps label names to addresses
+    private Map<String, Integer> symbols;
+
+    // maps instruction addresses to source line numbers
+    private SortedMap<Integer, Integer> lineNumbers;
+
+    // symbol and debug sections that have been read but not yet decoded (or null)
+    private ByteBuffer symbolSection;
+    private ByteBuffer debugSection;
+
+
+    /**
+     * Construct an object file for the specified machine code.
+     */
+    public ObjectFile(byte[] code)
+      {
+        this.version       = VERSION;
+        this.legacyFormat  = false;
+        this.entryPoint    = 0;
+        this.code          = code;
+        this.roData        = new byte[0];
+        this.symbols       = new LinkedHashMap<>();
+        this.lineNumbers   = new TreeMap<>();
+        this.symbolSection = null;
+        this.debugSection  = null;
+      }
+
+
+    /**
+     * Returns the version of the object file format.  Legacy
+     * object files have version 0.
+     */
+    public int getVersion()
+      {
+        return version;
+      }
+
+
+    /**
+     * Returns true if this object file was read from a legacy raw image.
+     */
+    public boolean isLegacyFormat()
+      {
+        return legacyFormat;
+      }
+
+
+    /**
+     * Returns the address of the first instruction to be executed.
+     */
+    public int getEntryPoint()
+      {
+        return entryPoint;
+      }
+
+
+    public void setEntryPoint(int entryPoint)
+      {
+        this.entryPoint = entryPoint;
+      }
+
+
+    public byte[] getCode()
+      {
+        return code;
+      }
+
+
+    public byte[] getRoData()
+      {
+        return roData;
+      }
+
+
+    public void setRoData(byte[] roData)
+      {
+        this.roData = roData;
+      }
+
+
+    /**
+     * Returns the number of bytes loaded into memory; i.e., the
+     * combined size of the code and the read-only data.
+     */
+    public int getLoadSize()
+      {
+        return code.length + roData.length;
+      }
+
+
+    /**
+     * Returns the map from label names to addresses.
+     *
+     * @throws UncheckedIOException if the symbol section that was read is malformed.
+     */
+    public Map<String, Integer> getSymbols()
+      {
+        if (symbolSection != null)
+          {
+            ByteBuffer section = symbolSection;
+            symbolSection = null;
+
+            try
+              {
+                decodeSymbols(section);
+              }
+            catch (RuntimeException e)
+              {
+                symbols.clear();
+                throw new UncheckedIOException(error("malformed symbol section"));
+              }
+          }
+
+        return symbols;
+      }
+
+
+    public void addSymbol(String name, int address)
+      {
+        getSymbols().put(name, Integer.valueOf(address));
+      }
+
+
+    /**
+     * Returns the map from instruction addresses to source line numbers.
+     *
+     * @throws UncheckedIOException if the debug section that was read is malformed.
+     */
+    public SortedMap<Integer, Integer> getLineNumbers()
+      {
+        if (debugSection != null)
+          {
+            ByteBuffer section = debugSection;
+            debugSection = null;
+
+            try
+              {
+                decodeLineNumbers(section);
+              }
+            catch (RuntimeException e)
+              {
+                lineNumbers.clear();
+                throw new UncheckedIOException(error("malformed debug section"));
+              }
+          }
+
+        return lineNumbers;
+      }
+
+
+    public void addLineNumber(int address, int lineNumber)
+      {
+        getLineNumbers().put(Integer.valueOf(address), Integer.valueOf(lineNumber));
+      }
+
+
+    /**
+     * Writes this object file to the specified output stream.
+     */
+    public void write(OutputStream out) throws IOException
+      {
+        out.write(toByteBuffer().array());
+      }
+
+
+    /**
+     * Writes this object file to the specified file using a single
+     * channel write.
+     */
+    public void write(File file) throws IOException
+      {
+        ByteBuffer buffer = toByteBuffer();
+
+        try (FileOutputStream out = new FileOutputStream(file);
+             FileChannel channel = out.getChannel())
+          {
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+          }
+      }
+
+
+    /**
+     * Returns a buffer containing the complete object file, positioned
+     * at the start of the file.
+     */
+    public ByteBuffer toByteBuffer()
+      {
+        byte[] symbolBytes = encodeSymbols();
+        byte[] debugBytes  = encodeLineNumbers();
+
+        byte[][] sections = { code, roData, symbolBytes, debugBytes };
+        int[] sectionTypes = { SECTION_CODE, SECTION_RODATA, SECTION_SYMBOLS, SECTION_DEBUG };
+
+        int fileSize = HEADER_SIZE + sections.length*SECTION_ENTRY_SIZE;
+        for (byte[] section : sections)
+            fileSize += section.length;
+
+        ByteBuffer buffer = ByteBuffer.allocate(fileSize);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(0);   // flags (reserved)
+        buffer.putInt(entryPoint);
+        buffer.putInt(getLoadSize());
+        buffer.putInt(sections.length);
+        buffer.putInt(0);   // placeholder for checksum
+
+        int offset = HEADER_SIZE + sections.length*SECTION_ENTRY_SIZE;
+        for (int i = 0;  i < sections.length;  ++i)
+          {
+            buffer.putInt(sectionTypes[i]);
+            buffer.putInt(offset);
+            buffer.putInt(sections[i].length);
+            offset += sections[i].length;
+          }
+
+        for (byte[] section : sections)
+            buffer.put(section);
+
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), HEADER_SIZE, fileSize - HEADER_SIZE);
+        buffer.putInt(HEADER_SIZE - Constants.BYTES_PER_INTEGER, (int) crc.getValue());
+
+        return buffer.flip();
+      }
+
+
+    /**
+     * Reads an object file by mapping the specified file into memory.
+     *
+     * @throws IOException if the file can't be read or is not a valid object file.
+     */
+    public static ObjectFile read(File file) throws IOException
+      {
+        try (FileInputStream in = new FileInputStream(file);
+             FileChannel channel = in.getChannel())
+          {
+            return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+          }
+      }
+
+
+    /**
+     * Reads an object file from the specified input stream.
+     *
+     * @throws IOException if the stream can't be read or is not a valid object file.
+     */
+    public static ObjectFile read(InputStream in) throws IOException
+      {
+        return read(ByteBuffer.wrap(in.readAllBytes()));
+      }
+
+
+    /**
+     * Reads an object file from the bytes remaining in the specified buffer.
+     *
+     * @throws IOException if the bytes do not form a valid object file.
+     */
+    public static ObjectFile read(ByteBuffer buffer) throws IOException
+      {
+        buffer = buffer.slice();
+        int fileSize = buffer.remaining();
+
+        if (fileSize < Constants.BYTES_PER_INTEGER || buffer.getInt(0) != MAGIC)
+          {
+            // legacy format: the entire file is machine code
+            byte[] code = new byte[fileSize];
+            buffer.get(code);
+
+            ObjectFile objectFile = new ObjectFile(code);
+            objectFile.version = 0;
+            objectFile.legacyFormat = true;
+            return objectFile;
+          }
+
+        if (fileSize < HEADER_SIZE)
+            throw error("truncated header");
+
+        buffer.getInt();   // magic
+        int version     = buffer.getInt();
+        buffer.getInt();   // flags (reserved)
+        int entryPoint  = buffer.getInt();
+        int loadSize    = buffer.getInt();
+        int numSections = buffer.getInt();
+        int checksum    = buffer.getInt();
+
+        if (version != VERSION)
+            throw error("unsupported version " + version);
+
+        if (numSections < 0 || numSections > (fileSize - HEADER_SIZE)/SECTION_ENTRY_SIZE)
+            throw error("invalid section table");
+
+        // verify checksum before interpreting anything that follows the header
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate());
+        if ((int) crc.getValue() != checksum)
+            throw error("checksum mismatch");
+
+        byte[] code = null;
+        byte[] roData = new byte[0];
+        ByteBuffer symbolSection = null;
+        ByteBuffer debugSection  = null;
+
+        for (int i = 0;  i < numSections;  ++i)
+          {
+            int type   = buffer.getInt();
+            int offset = buffer.getInt();
+            int length = buffer.getInt();
+
+            if (offset < HEADER_SIZE || length < 0 || offset > fileSize - length)
+                throw error("section " + i + " out of bounds");
+
+            ByteBuffer section = buffer.duplicate();
+            section.position(offset).limit(offset + length);
+
+            switch (type)
+              {
+                case SECTION_CODE:
+                    code = new byte[length];
+                    section.get(code);
+                    break;
+                case SECTION_RODATA:
+                    roData = new byte[length];
+                    section.get(roData);
+                    break;
+                case SECTION_SYMBOLS:
+                    symbolSection = section;
+                    break;
+                case SECTION_DEBUG:
+                    debugSection = section;
+                    break;
+                default:
+                    // ignore unknown sections
+                    break;
+              }
+          }
+
+        if (code == null)
+            throw error("missing code section");
+
+        ObjectFile objectFile = new ObjectFile(code);
+        objectFile.version    = version;
+        objectFile.entryPoint = entryPoint;
+        objectFile.roData     = roData;
+
+        if (objectFile.getLoadSize() != loadSize)
+            throw error("load size does not match section sizes");
+
+        if (entryPoint < 0 || entryPoint >= Math.max(code.length, 1))
+            throw error("invalid entry point " + entryPoint);
+
+        // the symbol and debug sections are decoded when they are first used
+        objectFile.symbolSection = symbolSection;
+        objectFile.debugSection  = debugSection;
+
+        return objectFile;
+      }
+
+
+    /**
+     * Encodes the symbol table as a count followed by
+     * (address, name length, UTF-8 name) entries.
+     */
+    private byte[] encodeSymbols()
+      {
+        Map<String, Integer> symbols = getSymbols();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        try
+          {
+            out.writeInt(symbols.size());
+            for (Map.Entry<String, Integer> entry : symbols.entrySet())
+              {
+                byte[] name = entry.getKey().getBytes(StandardCharsets.UTF_8);
+                out.writeInt(entry.getValue().intValue());
+                out.writeInt(name.length);
+                out.write(name);
+              }
+          }
+        catch (IOException e)
+          {
+            // not possible when writing to a byte array
+            throw new UncheckedIOException(e);
+          }
+
+        return bytes.toByteArray();
+      }
+
+
+    private void decodeSymbols(ByteBuffer section)
+      {
+        int count = section.getInt();
+        for (int i = 0;  i < count;  ++i)
+          {
+            int address = section.getInt();
+            byte[] name = new byte[section.getInt()];
+            section.get(name);
+            addSymbol(new String(name, StandardCharsets.UTF_8), address);
+          }
+      }
+
+
+    /**
+     * Encodes the line number table as a count followed by (address, line) pairs.
+     */
+    private byte[] encodeLineNumbers()
+      {
+        SortedMap<Integer, Integer> lineNumbers = getLineNumbers();
+
+        ByteBuffer buffer = ByteBuffer.allocate(Constants.BYTES_PER_INTEGER*(1 + 2*lineNumbers.size()));
+        buffer.putInt(lineNumbers.size());
+        for (Map.Entry<Integer, Integer> entry : lineNumbers.entrySet())
+          {
+            buffer.putInt(entry.getKey().intValue());
+            buffer.putInt(entry.getValue().intValue());
+          }
+
+        return buffer.array();
+      }
+
+
+    private void decodeLineNumbers(ByteBuffer section)
+      {
+        int count = section.getInt();
+        for (int i = 0;  i < count;  ++i)
+          {
+            int address = section.getInt();
+            addLineNumber(address, section.getInt());
+          }
+      }
+
+
+    private static IOException error(String message)
+      {
+        return new IOException("Invalid object file: " + message);
+      }
+  }
@@ -2,7 +2,10 @@ package edu.citadel.cvm;
 
 
 /**
- * The set of opcodes for the CPRL virtual machine
+ * The set of opcodes for the CPRL virtual machine, together with a table
+ * of metadata for each opcode (its name, the format of its operands, and
+ * how it affects control flow).  The table is shared by everything that
+ * decodes machine code; e.g., see CodeDecoder.
  */
 public final class OpCode
   {
@@ -27,12 +30,23 @@ public final class OpCode
     public static final byte LDCINT0 = 22;
     public static final byte LDCINT1 = 23;
 
+    // address loads with compact (1-byte or 2-byte) displacements
+    public static final byte LDLADDR1B = 24;
+    public static final byte LDLADDR2B = 25;
+    public static final byte LDGADDR1B = 26;
+    public static final byte LDGADDR2B = 27;
+
     // store opcodes (move data from top of stack to memory)
     public static final byte STORE   = 30;
     public static final byte STOREB  = 31;
     public static final byte STORE2B = 32;
     public static final byte STOREW  = 33;
 
+    // stack manipulation opcodes (operate on integers)
+    public static final byte DUP     = 35;
+    public static final byte SWAP    = 36;
+    public static final byte OVER    = 37;
+
     // compare/branch opcodes
     public static final byte CMP     = 40;
     public static final byte BR      = 41;
@@ -76,6 +90,54 @@ public final class OpCode
     public static final byte RET     = 93;
     public static final byte ALLOC   = 94;
 
+    // allocation with compact (1-byte or 2-byte) size
+    public static final byte ALLOC1B = 95;
+    public static final byte ALLOC2B = 96;
+
+    // parallel task opcodes
+    public static final byte SPAWN   = 97;
+    public static final byte JOIN    = 98;
+
+    // branch/call opcodes with 1-byte displacements
+    public static final byte BR1B    = 100;
+    public static final byte BNZ1B   = 101;
+    public static final byte BZ1B    = 102;
+    public static final byte BG1B    = 103;
+    public static final byte BGE1B   = 104;
+    public static final byte BL1B    = 105;
+    public static final byte BLE1B   = 106;
+    public static final byte CALL1B  = 107;
+
+    // branch/call opcodes with 2-byte displacements
+    public static final byte BR2B    = 110;
+    public static final byte BNZ2B   = 111;
+    public static final byte BZ2B    = 112;
+    public static final byte BG2B    = 113;
+    public static final byte BGE2B   = 114;
+    public static final byte BL2B    = 115;
+    public static final byte BLE2B   = 116;
+    public static final byte CALL2B  = 117;
+
+    // fused call/return opcodes
+    public static final byte ENTER   = 120;
+    public static final byte LEAVE   = 121;
+    public static final byte LEAVE1B = 122;
+    public static final byte LEAVE2B = 123;
+
+    // tail call opcode
+    public static final byte TAIL    = 124;
+
+
+    // properties of opcodes in the metadata table
+    private static final int BRANCH      = 1;   // the first operand is a displacement to a branch target
+    private static final int CALL_TARGET = 2;   // the first operand is a displacement to a subprogram
+    private static final int EXIT        = 4;   // control never continues to the next instruction
+
+    // the metadata table, indexed by opcode (as an unsigned byte)
+    private static final String[]        names      = new String[256];
+    private static final OperandFormat[] formats    = new OperandFormat[256];
+    private static final int[]           properties = new int[256];
+
 
     /**
      * Returns a string representation for an opcode.  Returns Byte.toString(n) if
@@ -83,110 +145,153 @@ public final class OpCode
      */
     public static String toString(byte n)
       {
-        switch(n)
-          {
-            case HALT:
-                return "HALT";
-            case LOAD:
-                return "LOAD";
-            case LOADB:
-                return "LOADB";
-            case LOAD2B:
-                return "LOAD2B";
-            case LOADW:
-                return "LOADW";
-            case LDCB:
-                return "LDCB";
-            case LDCCH:
-                return "LDCCH";
-            case LDCINT:
-                return "LDCINT";
-            case LDCSTR:
-                return "LDCSTR";
-            case LDLADDR:
-                return "LDLADDR";
-            case LDGADDR:
-                return "LDGADDR";
-            case LDCB0:
-                return "LDCB0";
-            case LDCB1:
-                return "LDCB1";
-            case LDCINT0:
-                return "LDCINT0";
-            case LDCINT1:
-                return "LDCINT1";
-            case STORE:
-                return "STORE";
-            case STOREB:
-                return "STOREB";
-            case STORE2B:
-                return "STORE2B";
-            case STOREW:
-                return "STOREW";
-            case CMP:
-                return "CMP";
-            case BR:
-                return "BR";
-            case BNZ:
-                return "BNZ";
-            case BZ:
-                return "BZ";
-            case BG:
-                return "BG";
-            case BGE:
-                return "BGE";
-            case BL:
-                return "BL";
-            case BLE:
-                return "BLE";
-            case SHL:
-                return "SHL";
-            case SHR:
-                return "SHR";
-            case NOT:
-                return "NOT";
-            case ADD:
-                return "ADD";
-            case SUB:
-                return "SUB";
-            case MUL:
-                return "MUL";
-            case DIV:
-                return "DIV";
-            case MOD:
-                return "MOD";
-            case NEG:
-                return "NEG";
-            case INC:
-                return "INC";
-            case DEC:
-                return "DEC";
-            case GETCH:
-                return "GETCH";
-            case GETINT:
-                return "GETINT";
-            case PUTBYTE:
-                return "PUTBYTE";
-            case PUTCH:
-                return "PUTCH";
-            case PUTINT:
-                return "PUTINT";
-            case PUTEOL:
-                return "PUTEOL";
-            case PUTSTR:
-                return "PUTSTR";
-            case CALL:
-                return "CALL";
-            case PROC:
-                return "PROC";
-            case PROGRAM:
-                return "PROGRAM";
-            case RET:
-                return "RET";
-            case ALLOC:
-                return "ALLOC";
-            default:
-                return Byte.toString(n);
-          }
+        String name = names[n & 0xFF];
+        return name != null ? name : Byte.toString(n);
+      }
+
+
+    /**
+     * Returns true if the argument is equal to one of the declared opcodes.
+     */
+    public static boolean isDefined(byte opCode)
+      {
+        return formats[opCode & 0xFF] != null;
+      }
+
+
+    /**
+     * Returns the format of the operands of an opcode, or null if the
+     * argument is not equal to one of the declared opcodes.
+     */
+    public static OperandFormat getOperandFormat(byte opCode)
+      {
+        return formats[opCode & 0xFF];
+      }
+
+
+    /**
+     * Returns true if the opcode is a conditional or unconditional branch.
+     * The first operand of a branch is a displacement relative to the
+     * address of the opcode.
+     */
+    public static boolean isBranch(byte opCode)
+      {
+        return (properties[opCode & 0xFF] & BRANCH) != 0;
+      }
+
+
+    /**
+     * Returns true if the opcode calls or spawns a subprogram (CALL, ENTER,
+     * TAIL, or SPAWN).  The first operand is a displacement relative to the
+     * address of the opcode.
+     */
+    public static boolean isCall(byte opCode)
+      {
+        return (properties[opCode & 0xFF] & CALL_TARGET) != 0;
+      }
+
+
+    /**
+     * Returns true if control can continue from an instruction with the
+     * opcode to the next instruction; i.e., false for BR, RET, LEAVE, TAIL, HALT.
+     */
+    public static boolean fallsThrough(byte opCode)
+      {
+        return (properties[opCode & 0xFF] & EXIT) == 0;
+      }
+
+
+    private static void define(byte opCode, String name, OperandFormat format, int opCodeProperties)
+      {
+        names[opCode & 0xFF]      = name;
+        formats[opCode & 0xFF]    = format;
+        properties[opCode & 0xFF] = opCodeProperties;
+      }
+
+
+    static
+      {
+        define(HALT,      "HALT",      OperandFormat.NONE,    EXIT);
+        define(LOAD,      "LOAD",      OperandFormat.INT,     0);
+        define(LOADB,     "LOADB",     OperandFormat.NONE,    0);
+        define(LOAD2B,    "LOAD2B",    OperandFormat.NONE,    0);
+        define(LOADW,     "LOADW",     OperandFormat.NONE,    0);
+        define(LDCB,      "LDCB",      OperandFormat.BYTE,    0);
+        define(LDCCH,     "LDCCH",     OperandFormat.CHAR,    0);
+        define(LDCINT,    "LDCINT",    OperandFormat.INT,     0);
+        define(LDCSTR,    "LDCSTR",    OperandFormat.STRING,  0);
+        define(LDLADDR,   "LDLADDR",   OperandFormat.INT,     0);
+        define(LDGADDR,   "LDGADDR",   OperandFormat.INT,     0);
+        define(LDCB0,     "LDCB0",     OperandFormat.NONE,    0);
+        define(LDCB1,     "LDCB1",     OperandFormat.NONE,    0);
+        define(LDCINT0,   "LDCINT0",   OperandFormat.NONE,    0);
+        define(LDCINT1,   "LDCINT1",   OperandFormat.NONE,    0);
+        define(LDLADDR1B, "LDLADDR1B", OperandFormat.BYTE,    0);
+        define(LDLADDR2B, "LDLADDR2B", OperandFormat.SHORT,   0);
+        define(LDGADDR1B, "LDGADDR1B", OperandFormat.BYTE,    0);
+        define(LDGADDR2B, "LDGADDR2B", OperandFormat.SHORT,   0);
+        define(STORE,     "STORE",     OperandFormat.INT,     0);
+        define(STOREB,    "STOREB",    OperandFormat.NONE,    0);
+        define(STORE2B,   "STORE2B",   OperandFormat.NONE,    0);
+        define(STOREW,    "STOREW",    OperandFormat.NONE,    0);
+        define(DUP,       "DUP",       OperandFormat.NONE,    0);
+        define(SWAP,      "SWAP",      OperandFormat.NONE,    0);
+        define(OVER,      "OVER",      OperandFormat.NONE,    0);
+        define(CMP,       "CMP",       OperandFormat.NONE,    0);
+        define(BR,        "BR",        OperandFormat.INT,     BRANCH | EXIT);
+        define(BNZ,       "BNZ",       OperandFormat.INT,     BRANCH);
+        define(BZ,        "BZ",        OperandFormat.INT,     BRANCH);
+        define(BG,        "BG",        OperandFormat.INT,     BRANCH);
+        define(BGE,       "BGE",       OperandFormat.INT,     BRANCH);
+        define(BL,        "BL",        OperandFormat.INT,     BRANCH);
+        define(BLE,       "BLE",       OperandFormat.INT,     BRANCH);
+        define(SHL,       "SHL",       OperandFormat.BYTE,    0);
+        define(SHR,       "SHR",       OperandFormat.BYTE,    0);
+        define(NOT,       "NOT",       OperandFormat.NONE,    0);
+        define(ADD,       "ADD",       OperandFormat.NONE,    0);
+        define(SUB,       "SUB",       OperandFormat.NONE,    0);
+        define(MUL,       "MUL",       OperandFormat.NONE,    0);
+        define(DIV,       "DIV",       OperandFormat.NONE,    0);
+        define(MOD,       "MOD",       OperandFormat.NONE,    0);
+        define(NEG,       "NEG",       OperandFormat.NONE,    0);
+        define(INC,       "INC",       OperandFormat.NONE,    0);
+        define(DEC,       "DEC",       OperandFormat.NONE,    0);
+        define(GETCH,     "GETCH",     OperandFormat.NONE,    0);
+        define(GETINT,    "GETINT",    OperandFormat.NONE,    0);
+        define(PUTBYTE,   "PUTBYTE",   OperandFormat.NONE,    0);
+        define(PUTCH,     "PUTCH",     OperandFormat.NONE,    0);
+        define(PUTINT,    "PUTINT",    OperandFormat.NONE,    0);
+        define(PUTEOL,    "PUTEOL",    OperandFormat.NONE,    0);
+        define(PUTSTR,    "PUTSTR",    OperandFormat.NONE,    0);
+        define(PROGRAM,   "PROGRAM",   OperandFormat.INT,     0);
+        define(PROC,      "PROC",      OperandFormat.INT,     0);
+        define(CALL,      "CALL",      OperandFormat.INT,     CALL_TARGET);
+        define(RET,       "RET",       OperandFormat.INT,     EXIT);
+        define(ALLOC,     "ALLOC",     OperandFormat.INT,     0);
+        define(ALLOC1B,   "ALLOC1B",   OperandFormat.BYTE,    0);
+        define(ALLOC2B,   "ALLOC2B",   OperandFormat.SHORT,   0);
+        define(SPAWN,     "SPAWN",     OperandFormat.INT,     CALL_TARGET);
+        define(JOIN,      "JOIN",      OperandFormat.NONE,    0);
+        define(BR1B,      "BR1B",      OperandFormat.BYTE,    BRANCH | EXIT);
+        define(BNZ1B,     "BNZ1B",     OperandFormat.BYTE,    BRANCH);
+        define(BZ1B,      "BZ1B",      OperandFormat.BYTE,    BRANCH);
+        define(BG1B,      "BG1B",      OperandFormat.BYTE,    BRANCH);
+        define(BGE1B,     "BGE1B",     OperandFormat.BYTE,    BRANCH);
+        define(BL1B,      "BL1B",      OperandFormat.BYTE,    BRANCH);
+        define(BLE1B,     "BLE1B",     OperandFormat.BYTE,    BRANCH);
+        define(CALL1B,    "CALL1B",    OperandFormat.BYTE,    CALL_TARGET);
+        define(BR2B,      "BR2B",      OperandFormat.SHORT,   BRANCH | EXIT);
+        define(BNZ2B,     "BNZ2B",     OperandFormat.SHORT,   BRANCH);
+        define(BZ2B,      "BZ2B",      OperandFormat.SHORT,   BRANCH);
+        define(BG2B,      "BG2B",      OperandFormat.SHORT,   BRANCH);
+        define(BGE2B,     "BGE2B",     OperandFormat.SHORT,   BRANCH);
+        define(BL2B,      "BL2B",      OperandFormat.SHORT,   BRANCH);
+        define(BLE2B,     "BLE2B",     OperandFormat.SHORT,   BRANCH);
+        define(CALL2B,    "CALL2B",    OperandFormat.SHORT,   CALL_TARGET);
+        define(ENTER,     "ENTER",     OperandFormat.INT_INT, CALL_TARGET);
+        define(LEAVE,     "LEAVE",     OperandFormat.INT,     EXIT);
+        define(LEAVE1B,   "LEAVE1B",   OperandFormat.BYTE,    EXIT);
+        define(LEAVE2B,   "LEAVE2B",   OperandFormat.SHORT,   EXIT);
+        define(TAIL,      "TAIL",      OperandFormat.INT_INT, CALL_TARGET | EXIT);
       }
   }
@@ -0,0 +1,35 @@
+package edu.citadel.cvm;
+
+
+/**
+ * The formats of the operands of CVM instructions.
+ */
+public enum OperandFormat
+  {
+    NONE(0),      // no operands
+    BYTE(1),      // a signed byte
+    SHORT(2),     // a signed 2-byte integer
+    INT(4),       // a 4-byte integer
+    CHAR(2),      // a 2-byte character
+    INT_INT(8),   // two 4-byte integers
+    STRING(4);    // a string pool index, or, in legacy object files, a
+                  // 4-byte length followed by the characters of the string
+
+    private final int size;
+
+
+    private OperandFormat(int size)
+      {
+        this.size = size;
+      }
+
+
+    /**
+     * Returns the number of bytes occupied by the operands, not counting
+     * the characters of a string in a legacy object file.
+     */
+    public int getSize()
+      {
+        return size;
+      }
+  }
@@ -0,0 +1,106 @@
+package edu.citadel.cvm;
+
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+
+/**
+ * A pool of string constants stored in the read-only data section of an
+ * object file.  Identical strings are stored only once, and each string
+ * is referenced by its index in the pool. <br>
+ *
+ * The pool consists of the number of strings, followed by an entry table
+ * containing the offset (from the start of the pool) and the length in
+ * bytes of each string, followed by the strings themselves.  Strings are
+ * stored pre-encoded in UTF-8 so that they can be written in bulk; in
+ * particular, ASCII strings occupy a single byte per character.
+ */
+public class StringPool
+  {
+    /** the number of bytes in an entry of the entry table */
+    public static final int ENTRY_SIZE = 2*Constants.BYTES_PER_INTEGER;
+
+    // maps each string to its index in the pool
+    private Map<String, Integer> indexMap;
+
+
+    /**
+     * Construct an empty string pool.
+     */
+    public StringPool()
+      {
+        indexMap = new LinkedHashMap<>();
+      }
+
+
+    /**
+     * Adds the string to the pool if it is not already there.
+     *
+     * @return the index of the string in the pool.
+     */
+    public int add(String str)
+      {
+        return indexMap.computeIfAbsent(str, s -> Integer.valueOf(indexMap.size()));
+      }
+
+
+    /**
+     * Returns the number of strings in the pool.
+     */
+    public int size()
+      {
+        return indexMap.size();
+      }
+
+
+    /**
+     * Returns the encoded pool.  Returns an empty array if the pool is empty.
+     */
+    public byte[] toByteArray()
+      {
+        if (indexMap.isEmpty())
+            return new byte[0];
+
+        List<byte[]> strings = new ArrayList<>(indexMap.size());
+        int dataSize = 0;
+        for (String str : indexMap.keySet())
+          {
+            byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+            strings.add(bytes);
+            dataSize += bytes.length;
+          }
+
+        int tableSize = Constants.BYTES_PER_INTEGER + strings.size()*ENTRY_SIZE;
+        ByteBuffer buffer = ByteBuffer.allocate(tableSize + dataSize);
+        buffer.putInt(strings.size());
+
+        int offset = tableSize;
+        for (byte[] bytes : strings)
+          {
+            buffer.putInt(offset);
+            buffer.putInt(bytes.length);
+            offset += bytes.length;
+          }
+
+        for (byte[] bytes : strings)
+            buffer.put(bytes);
+
+        return buffer.array();
+      }
+
+
+    /**
+     * Returns the string with the specified index in an encoded pool.
+     */
+    public static String getString(byte[] pool, int index)
+      {
+        ByteBuffer buffer = ByteBuffer.wrap(pool);
+        int entryAddr = Constants.BYTES_PER_INTEGER + index*ENTRY_SIZE;
+        int offset = buffer.getInt(entryAddr);
+        int length = buffer.getInt(entryAddr + Constants.BYTES_PER_INTEGER);
+
+        return new String(pool, offset, length, StandardCharsets.UTF_8);
+      }
+  }
@@ -0,0 +1,94 @@
+package edu.citadel.cvm;
+
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+
+/**
+ * Schedules the tasks created by SPAWN instructions on a fork-join pool
+ * and manages their stack regions.  The stack regions are carved out of
+ * the top of the memory of the virtual machine; each region has a fixed
+ * size, and a region is in use from the time its task is spawned until
+ * the task is joined.  When no region is free, or when the parameters,
+ * frame, and local variables of the spawned procedure do not fit in a
+ * region, the virtual machine runs the procedure as an ordinary call, so
+ * a program never fails for lack of task stacks.
+ */
+public class TaskScheduler
+  {
+    /** number of bytes in the stack region of a task */
+    public static final int TASK_STACK_SIZE = 1024;
+
+    private ForkJoinPool pool;
+    private int areaStart;
+    private boolean[] inUse;
+
+
+    /**
+     * Construct a task scheduler whose stack regions lie within the
+     * memory addresses from low (inclusive) to high (exclusive).
+     */
+    public TaskScheduler(int low, int high)
+      {
+        int numRegions = Math.max(high - low, 0)/TASK_STACK_SIZE;
+
+        pool      = ForkJoinPool.commonPool();
+        areaStart = high - numRegions*TASK_STACK_SIZE;
+        inUse     = new boolean[numRegions];
+      }
+
+
+    /**
+     * Returns the lowest memory address used for task stacks.
+     */
+    public int getAreaStart()
+      {
+        return areaStart;
+      }
+
+
+    /**
+     * Allocates a stack region for a task.
+     *
+     * @return the starting address of the region, or -1 if all regions are in use.
+     */
+    public synchronized int allocateStack()
+      {
+        for (int i = 0;  i < inUse.length;  ++i)
+          {
+            if (!inUse[i])
+              {
+                inUse[i] = true;
+                return areaStart + i*TASK_STACK_SIZE;
+              }
+          }
+
+        return -1;
+      }
+
+
+    /**
+     * Returns the stack region starting at the specified address to the free regions.
+     */
+    public synchronized void freeStack(int regionStart)
+      {
+        inUse[(regionStart - areaStart)/TASK_STACK_SIZE] = false;
+      }
+
+
+    /**
+     * Starts running the task asynchronously.  A task started from within
+     * another task is forked onto the current worker's queue, where idle
+     * workers can steal it.
+     */
+    public ForkJoinTask<?> start(Runnable task)
+      {
+        ForkJoinTask<?> forkJoinTask = ForkJoinTask.adapt(task);
+
+        if (ForkJoinTask.inForkJoinPool())
+            return forkJoinTask.fork();
+        else
+            return pool.submit(forkJoinTask);
+      }
+  }
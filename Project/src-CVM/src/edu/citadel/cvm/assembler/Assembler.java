@@ -2,18 +2,32 @@ package edu.citadel.cvm.assembler;
 
 
 import edu.citadel.compiler.ErrorHandler;
+import edu.citadel.compiler.FatalErrorException;
 import edu.citadel.compiler.Source;
-import edu.citadel.cvm.assembler.ast.AST;
+import edu.citadel.compiler.util.OutputCache;
+import edu.citadel.cvm.ObjectFile;
 import edu.citadel.cvm.assembler.ast.Instruction;
 import edu.citadel.cvm.assembler.ast.Program;
+import edu.citadel.cvm.assembler.optimize.Optimizations;
+import edu.citadel.cvm.assembler.optimize.PassManager;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 
 /**
- * Assembler for the CPRL Virtual Machine.
+ * Assembler for the CPRL Virtual Machine.  When more than one source file
+ * is specified on the command line, the files are assembled in parallel,
+ * each with its own AssemblyContext, and the messages for each file are
+ * printed together in the order of the files on the command line.
  */
 public class Assembler
   {
@@ -22,23 +36,58 @@ public class Assembler
     private static final String  SUFFIX  = ".asm";
     private static final int     FAILURE = -1;
 
-    private static boolean optimize = true;
+    /**
+     * Identifies the assembler in the keys of cached object files.  Change
+     * this whenever a change to the assembler changes the object code
+     * produced for a source file.
+     */
+    private static final String VERSION = "CVM Assembler 2.1";
+
+    private static boolean printStats = false;
+
+    // cache for object files (null if the cache is not used)
+    private static OutputCache cache = null;
 
     private File sourceFile;
+    private PrintWriter out;
+    private PrintWriter err;
 
 
     public static void main(String[] args) throws Exception
       {
         // check arguments
-        if (args.length == 0 || args.length > 2)
+        if (args.length == 0)
             printUsageAndExit();
 
-        // filename is the last argument
-        String filename = args[args.length - 1];
+        // options precede the file names
+        int argNum = 0;
+        while (argNum < args.length && args[argNum].startsWith("-"))
+            processOption(args[argNum++]);
+
+        if (argNum == args.length)
+            printUsageAndExit();
 
-        for (int i = 0;  i < args.length - 1; ++i)
-            processOption(args[i]);
+        List<File> sourceFiles = new ArrayList<>(args.length - argNum);
+        for (;  argNum < args.length;  ++argNum)
+            sourceFiles.add(getSourceFile(args[argNum]));
 
+        if (sourceFiles.size() == 1)
+          {
+            Assembler assembler = new Assembler(sourceFiles.get(0));
+            assembler.assemble();
+            System.out.println();
+          }
+        else
+            assembleAll(sourceFiles);
+      }
+
+
+    /**
+     * Returns the source file with the specified name, appending the suffix
+     * ".asm" if necessary.  Exits if the file can't be found.
+     */
+    private static File getSourceFile(String filename)
+      {
         File sourceFile = new File(filename);
 
         if (!sourceFile.isFile())
@@ -65,43 +114,246 @@ public class Assembler
               }
           }
 
-        Assembler assembler = new Assembler(sourceFile);
-        assembler.assemble();
+        return sourceFile;
+      }
 
-        System.out.println();
+
+    /**
+     * Assembles the source files in parallel.  The messages for each file
+     * are buffered and printed after the file has been assembled, so that
+     * messages for different files are not interleaved.
+     */
+    private static void assembleAll(List<File> sourceFiles) throws InterruptedException
+      {
+        int numThreads = Math.min(sourceFiles.size(), Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+
+        List<Future<String[]>> results = new ArrayList<>(sourceFiles.size());
+        for (File sourceFile : sourceFiles)
+            results.add(executor.submit(() -> assembleBuffered(sourceFile)));
+
+        executor.shutdown();
+
+        for (Future<String[]> result : results)
+          {
+            try
+              {
+                String[] messages = result.get();
+                System.out.print(messages[0]);
+                System.out.flush();
+                System.err.print(messages[1]);
+                System.err.flush();
+              }
+            catch (ExecutionException e)
+              {
+                e.getCause().printStackTrace();
+              }
+          }
       }
 
 
     /**
-     * Construct an assembler with the specified source file.
+     * Assembles the source file and returns the progress messages
+     * and the error messages written during the assembly.
+     */
+    private static String[] assembleBuffered(File sourceFile)
+      {
+        StringWriter outBuffer = new StringWriter();
+        StringWriter errBuffer = new StringWriter();
+
+        try (PrintWriter out = new PrintWriter(outBuffer);
+             PrintWriter err = new PrintWriter(errBuffer))
+          {
+            Assembler assembler = new Assembler(sourceFile, out, err);
+            try
+              {
+                assembler.assemble();
+              }
+            catch (IOException e)
+              {
+                err.println("*** " + sourceFile.getName() + ": " + e.getMessage() + " ***");
+              }
+
+            out.println();
+          }
+
+        return new String[] { outBuffer.toString(), errBuffer.toString() };
+      }
+
+
+    /**
+     * Construct an assembler with the specified source file that writes
+     * messages to System.out and System.err.
      */
     public Assembler(File sourceFile)
+      {
+        this(sourceFile, new PrintWriter(System.out, true, StandardCharsets.UTF_8),
+                         new PrintWriter(System.err, true, StandardCharsets.UTF_8));
+      }
+
+
+    /**
+     * Construct an assembler with the specified source file that writes
+     * progress messages to out and error messages to err.
+     */
+    public Assembler(File sourceFile, PrintWriter out, PrintWriter err)
       {
         this.sourceFile = sourceFile;
+        this.out        = out;
+        this.err        = err;
       }
 
 
     /**
      * Assembles the source file.  If there are no errors in the source file,
      * the object code is placed in a file with the same base file name as
-     * the source file but with a ".obj" suffix.
+     * the source file but with a ".obj" suffix.  The object file contains
+     * the machine code together with the label addresses and the source
+     * line numbers of the instructions (see edu.citadel.cvm.ObjectFile).
+     * If the cache is used and contains the object file for the same source
+     * text and optimization options, the cached object file is used instead.
      *
      * @throws IOException if there are problems reading the source file
      *                     or writing to the target file.
      */
     public void assemble() throws IOException
       {
-        FileReader reader  = new FileReader(sourceFile, StandardCharsets.UTF_8);
-        Source     source  = new Source(reader);
-        Scanner    scanner = new Scanner(source);
-        Parser     parser  = new Parser(scanner);
+        byte[] sourceText = Files.readAllBytes(sourceFile.toPath());
+        File   targetFile = getTargetFile(sourceFile);
+
+        String key = null;
+        if (cache != null)
+          {
+            key = OutputCache.computeKey(VERSION, Optimizations.getConfiguration(), sourceText);
+            byte[] objectCode = cache.get(key);
+            if (objectCode != null)
+              {
+                Files.write(targetFile.toPath(), objectCode);
+                printProgressMessage("Using cached object code for " + sourceFile.getName() + ".");
+                return;
+              }
+          }
+
+        ObjectFile objectFile = assembleObjectFile(sourceText);
+
+        if (objectFile != null)
+          {
+            objectFile.write(targetFile);
+
+            if (cache != null)
+                cache.put(key, objectFile.toByteBuffer().array());
+          }
+      }
+
+
+    /**
+     * Assembles the source file into an object file in memory without
+     * writing it.  Returns null if there are errors in the source file.
+     *
+     * @throws IOException if there are problems reading the source file.
+     */
+    public ObjectFile assembleObjectFile() throws IOException
+      {
+        return assembleObjectFile(Files.readAllBytes(sourceFile.toPath()));
+      }
+
+
+    /**
+     * Returns a builder for a program that is handed to the assembler as
+     * instructions instead of assembly language text (see assemble(ProgramBuilder)).
+     * Errors are reported with the messages for the source file.
+     */
+    public ProgramBuilder newProgramBuilder()
+      {
+        return new ProgramBuilder(newAssemblyContext());
+      }
 
-        ErrorHandler errorHandler = ErrorHandler.getInstance();
+
+    /**
+     * Assembles the program of a builder obtained from newProgramBuilder()
+     * and places the object code in the same file as assemble() would for
+     * the source file, which need not exist.  This avoids writing, scanning,
+     * and parsing assembly language text when a compiler produces code for
+     * the assembler.
+     *
+     * @throws IOException if there are problems writing to the target file.
+     */
+    public void assemble(ProgramBuilder builder) throws IOException
+      {
+        ObjectFile objectFile = assembleObjectFile(builder);
+
+        if (objectFile != null)
+            objectFile.write(getTargetFile(sourceFile));
+      }
+
+
+    /**
+     * Assembles the program of a builder obtained from newProgramBuilder()
+     * into an object file in memory without writing it.  Returns null if
+     * there are errors in the program.
+     */
+    public ObjectFile assembleObjectFile(ProgramBuilder builder) throws IOException
+      {
+        printProgressMessage("Starting assembly for " + sourceFile.getName() + "...");
+
+        try
+          {
+            return assembleProgram(builder.getProgram());
+          }
+        catch (FatalErrorException e)
+          {
+            return null;   // the error has been reported
+          }
+      }
+
+
+    /**
+     * Assembles the source text into an object file in memory.
+     * Returns null if there are errors in the source text.
+     */
+    private ObjectFile assembleObjectFile(byte[] sourceText) throws IOException
+      {
+        AssemblyContext context = newAssemblyContext();
+
+        Source     source  = new Source(StandardCharsets.UTF_8.decode(ByteBuffer.wrap(sourceText)));
+        Scanner    scanner = new Scanner(source, context.getErrorHandler());
+        Parser     parser  = new Parser(scanner, context);
 
         printProgressMessage("Starting assembly for " + sourceFile.getName() + "...");
 
-        // parse source file
-        Program prog = parser.parseProgram();
+        try
+          {
+            // parse source file
+            return assembleProgram(parser.parseProgram());
+          }
+        catch (FatalErrorException e)
+          {
+            return null;   // the error has been reported
+          }
+      }
+
+
+    /**
+     * Returns a new assembly context that reports errors to err.
+     */
+    private AssemblyContext newAssemblyContext()
+      {
+        ErrorHandler errorHandler = new ErrorHandler();
+        errorHandler.setPrintWriter(err);
+        return new AssemblyContext(errorHandler);
+      }
+
+
+    /**
+     * Optimizes the program, sets addresses, checks constraints, and generates
+     * the object code in memory.  Returns null if there are errors in the program.
+     */
+    private ObjectFile assembleProgram(Program prog) throws IOException
+      {
+        ObjectFile objectFile = null;
+
+        AssemblyContext context = prog.getContext();
+        ErrorHandler errorHandler = context.getErrorHandler();
 
         if (DEBUG)
           {
@@ -110,10 +362,14 @@ public class Assembler
           }
 
         // optimize
-        if (!errorHandler.errorsExist() && optimize)
+        PassManager passManager = new PassManager();
+        if (!errorHandler.errorsExist() && passManager.hasPasses())
           {
             printProgressMessage("Performing optimizations...");
-            prog.optimize();
+            prog.optimize(passManager);
+
+            if (printStats)
+                passManager.printStatistics(out);
           }
 
         if (DEBUG)
@@ -146,17 +402,25 @@ public class Assembler
         if (!errorHandler.errorsExist())
           {
             printProgressMessage("Generating code...");
-            AST.setOutputStream(getTargetOutputStream(sourceFile));
 
             // no error recovery from errors detected during code generation
             prog.emit();
+
+            // the code buffer has exactly the size of the code
+            objectFile = new ObjectFile(context.getCodeBuffer().array());
+            objectFile.setRoData(prog.getStringPool().toByteArray());
+            prog.addDebugInfo(objectFile);
           }
 
         if (errorHandler.errorsExist())
+          {
             errorHandler.printMessage("*** Errors detected in " + sourceFile.getName()
                                     + " -- assembly terminated. ***");
-        else
-            printProgressMessage("Assembly complete.");
+            return null;
+          }
+
+        printProgressMessage("Assembly complete.");
+        return objectFile;
       }
 
 
@@ -178,18 +442,26 @@ public class Assembler
           }
       }
 
-    private static void printProgressMessage(String message)
+    private void printProgressMessage(String message)
       {
-         System.out.println(message);
+         out.println(message);
       }
 
 
     private static void printUsageAndExit()
       {
-        System.out.println("Usage: java edu.citadel.cvm.assembler.Assembler <option> <source file>");
-        System.out.println("where the option is omitted or is one of the following:");
-        System.out.println("-opt:off   Turns off all assembler optimizations");
-        System.out.println("-opt:on    Turns on all assembler optimizations (default)");
+        System.out.println("Usage: java edu.citadel.cvm.assembler.Assembler <options> <source files>");
+        System.out.println("where the options are omitted or are the following:");
+        System.out.println("-O<n>          Sets the optimization level to n (0 to 3, default 2)");
+        System.out.println("-opt:off       Turns off all assembler optimizations (same as -O0)");
+        System.out.println("-opt:on        Turns on the default assembler optimizations (same as -O2)");
+        System.out.println("-pass:+<name>  Enables the optimization pass with the specified name");
+        System.out.println("-pass:-<name>  Disables the optimization pass with the specified name");
+        System.out.println("               (passes: " + String.join(", ", Optimizations.getPassNames()) + ")");
+        System.out.println("-rules:<file>  Adds the peephole rules in the file to the optimizations");
+        System.out.println("-stats         Prints statistics for each optimization pass");
+        System.out.println("-cache         Reuses object files cached in " + OutputCache.getDefaultDirectory());
+        System.out.println("-cache:<dir>   Reuses object files cached in the specified directory");
         System.out.println();
         System.exit(0);
       }
@@ -198,15 +470,70 @@ public class Assembler
     private static void processOption(String option)
       {
         if (option.equals("-opt:off"))
-            optimize = false;
+            Optimizations.setLevel(0);
         else if (option.equals("-opt:on"))
-            optimize = true;
+            Optimizations.setLevel(Optimizations.DEFAULT_LEVEL);
+        else if (option.matches("-O\\d"))
+          {
+            try
+              {
+                Optimizations.setLevel(option.charAt(2) - '0');
+              }
+            catch (IllegalArgumentException e)
+              {
+                System.err.println("*** " + e.getMessage() + " ***");
+                System.exit(FAILURE);
+              }
+          }
+        else if (option.startsWith("-pass:+") || option.startsWith("-pass:-"))
+          {
+            boolean enabled  = option.charAt("-pass:".length()) == '+';
+            String  passName = option.substring("-pass:+".length());
+
+            try
+              {
+                Optimizations.setPassEnabled(passName, enabled);
+              }
+            catch (IllegalArgumentException e)
+              {
+                System.err.println("*** " + e.getMessage() + " ***");
+                System.exit(FAILURE);
+              }
+          }
+        else if (option.equals("-stats"))
+            printStats = true;
+        else if (option.equals("-cache"))
+            cache = new OutputCache(OutputCache.getDefaultDirectory(), OutputCache.DEFAULT_MAX_SIZE);
+        else if (option.startsWith("-cache:"))
+          {
+            File cacheDir = new File(option.substring("-cache:".length()));
+            cache = new OutputCache(cacheDir, OutputCache.DEFAULT_MAX_SIZE);
+          }
+        else if (option.startsWith("-rules:"))
+          {
+            String rulesFileName = option.substring("-rules:".length());
+
+            try
+              {
+                Optimizations.loadRules(new File(rulesFileName));
+              }
+            catch (IOException e)
+              {
+                System.err.println("*** Unable to read rules file " + rulesFileName + " ***");
+                System.exit(FAILURE);
+              }
+            catch (IllegalArgumentException e)
+              {
+                System.err.println("*** " + e.getMessage() + " ***");
+                System.exit(FAILURE);
+              }
+          }
         else
             printUsageAndExit();
       }
 
 
-    private OutputStream getTargetOutputStream(File sourceFile)
+    private File getTargetFile(File sourceFile)
       {
         // get source file name minus the suffix
         String baseName = sourceFile.getName();
@@ -216,20 +543,6 @@ public class Assembler
 
         String targetFileName = baseName + ".obj";
 
-        File targetFile = null;
-        OutputStream targetStream = null;
-
-        try
-          {
-            targetFile = new File(sourceFile.getParent(), targetFileName);
-            targetStream = new FileOutputStream(targetFile);
-          }
-        catch (IOException e)
-          {
-            e.printStackTrace();
-            System.exit(FAILURE);
-          }
-
-        return targetStream;
+        return new File(sourceFile.getParent(), targetFileName);
       }
   }
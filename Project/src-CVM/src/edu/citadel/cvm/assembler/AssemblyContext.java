@@ -0,0 +1,120 @@
+package edu.citadel.cvm.assembler;
+
+
+import edu.citadel.compiler.ErrorHandler;
+import edu.citadel.cvm.Constants;
+import edu.citadel.cvm.StringPool;
+import edu.citadel.cvm.assembler.ast.InstructionPROC;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * The state of a single assembly: the symbol tables built while setting
+ * addresses, the string pool, the buffer receiving the machine code, and
+ * the error handler.  Each source file is assembled with its own context,
+ * so several files can be assembled at the same time in one JVM.
+ */
+public class AssemblyContext
+  {
+    private ErrorHandler errorHandler;
+
+    // Maps label text (type String) to an address (type Integer).
+    // Note that the label text always includes the colon (:) at the end.
+    private Map<String, Integer> labelMap;
+
+    // Maps identifier text (type String) to a stack address (type Integer).
+    private Map<String, Integer> idMap;
+
+    // Next address for identifiers (e.g., used in DEFINT).
+    private int idAddress;
+
+    // Maps label text (type String) to the PROC instruction having that label.
+    // Used by ENTER and TAIL instructions to find the local variable size of a subprogram.
+    private Map<String, InstructionPROC> procMap;
+
+    // Pool for the string literals referenced by LDCSTR instructions.
+    private StringPool stringPool;
+
+    // buffer for the machine code
+    private ByteBuffer code;
+
+
+    /**
+     * Construct an assembly context that reports errors to the specified
+     * error handler.
+     */
+    public AssemblyContext(ErrorHandler errorHandler)
+      {
+        this.errorHandler = errorHandler;
+        this.labelMap     = new HashMap<>();
+        this.idMap        = new HashMap<>();
+        this.idAddress    = Constants.BYTES_PER_FRAME;
+        this.procMap      = new HashMap<>();
+        this.stringPool   = new StringPool();
+        this.code         = null;
+      }
+
+
+    public ErrorHandler getErrorHandler()
+      {
+        return errorHandler;
+      }
+
+
+    public Map<String, Integer> getLabelMap()
+      {
+        return labelMap;
+      }
+
+
+    public Map<String, Integer> getIdMap()
+      {
+        return idMap;
+      }
+
+
+    /**
+     * Returns the stack address for a new identifier and reserves
+     * the specified number of bytes at that address.
+     */
+    public int allocateIdAddress(int size)
+      {
+        int address = idAddress;
+        idAddress = idAddress + size;
+        return address;
+      }
+
+
+    public Map<String, InstructionPROC> getProcMap()
+      {
+        return procMap;
+      }
+
+
+    public StringPool getStringPool()
+      {
+        return stringPool;
+      }
+
+
+    /**
+     * Returns the buffer that receives the machine code.
+     */
+    public ByteBuffer getCodeBuffer()
+      {
+        return code;
+      }
+
+
+    /**
+     * Sets the buffer that receives the machine code.  The buffer must
+     * be large enough to hold the machine code for all instructions.
+     */
+    public void setCodeBuffer(ByteBuffer code)
+      {
+        this.code = code;
+      }
+  }
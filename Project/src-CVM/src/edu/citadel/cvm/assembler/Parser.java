@@ -1,7 +1,6 @@
 package edu.citadel.cvm.assembler;
 
 
-import edu.citadel.compiler.ErrorHandler;
 import edu.citadel.compiler.ParserException;
 import edu.citadel.compiler.Position;
 import edu.citadel.cvm.assembler.ast.*;
@@ -21,21 +20,23 @@ public class Parser
     private static final Symbol[] instructionFollowers = makeInstructionFollowers();
 
     private Scanner scanner;
+    private AssemblyContext context;
 
 
     /**
-     * Construct a parser with the specified scanner.
+     * Construct a parser with the specified scanner and assembly context.
      */
-    public Parser(Scanner scanner)
+    public Parser(Scanner scanner, AssemblyContext context)
       {
         this.scanner = scanner;
+        this.context = context;
       }
 
 
     // program = ( instruction )* .
     public Program parseProgram() throws IOException
       {
-        Program prog = new Program();
+        Program prog = new Program(context);
 
         try
           {
@@ -56,7 +57,7 @@ public class Parser
           }
         catch (ParserException e)
           {
-            ErrorHandler.getInstance().reportError(e);
+            context.getErrorHandler().reportError(e);
 
             Symbol[] followers = {Symbol.EOF};
             scanner.advanceTo(followers);
@@ -100,7 +101,7 @@ public class Parser
           }
         catch (ParserException e)
           {
-            ErrorHandler.getInstance().reportError(e);
+            context.getErrorHandler().reportError(e);
             scanner.advanceTo(instructionFollowers);
           }
 
@@ -113,63 +114,7 @@ public class Parser
       {
         checkArgs(opCode, arg);
 
-        switch (opCode.getSymbol())
-          {
-            case HALT:    return new InstructionHALT(labels, opCode);
-            case LOAD:    return new InstructionLOAD(labels, opCode, arg);
-            case LOADB:   return new InstructionLOADB(labels, opCode);
-            case LOAD2B:  return new InstructionLOAD2B(labels, opCode);
-            case LOADW:   return new InstructionLOADW(labels, opCode);
-            case LDCB:    return new InstructionLDCB(labels, opCode, arg);
-            case LDCB0:   return new InstructionLDCB0(labels, opCode);
-            case LDCB1:   return new InstructionLDCB1(labels, opCode);
-            case LDCCH:   return new InstructionLDCCH(labels, opCode, arg);
-            case LDCINT:  return new InstructionLDCINT(labels, opCode, arg);
-            case LDCINT0: return new InstructionLDCINT0(labels, opCode);
-            case LDCINT1: return new InstructionLDCINT1(labels, opCode);
-            case LDCSTR:  return new InstructionLDCSTR(labels, opCode, arg);
-            case LDLADDR: return new InstructionLDLADDR(labels, opCode, arg);
-            case LDGADDR: return new InstructionLDGADDR(labels, opCode, arg);
-            case STORE:   return new InstructionSTORE(labels, opCode, arg);
-            case STOREB:  return new InstructionSTOREB(labels, opCode);
-            case STORE2B: return new InstructionSTORE2B(labels, opCode);
-            case STOREW:  return new InstructionSTOREW(labels, opCode);
-            case CMP:     return new InstructionCMP(labels, opCode);
-            case BR:      return new InstructionBR(labels, opCode, arg);
-            case BNZ:     return new InstructionBNZ(labels, opCode, arg);
-            case BZ:      return new InstructionBZ(labels, opCode, arg);
-            case BG:      return new InstructionBG(labels, opCode, arg);
-            case BGE:     return new InstructionBGE(labels, opCode, arg);
-            case BL:      return new InstructionBL(labels, opCode, arg);
-            case BLE:     return new InstructionBLE(labels, opCode, arg);
-            case SHL:     return new InstructionSHL(labels, opCode, arg);
-            case SHR:     return new InstructionSHR(labels, opCode, arg);
-            case NOT:     return new InstructionNOT(labels, opCode);
-            case ADD:     return new InstructionADD(labels, opCode);
-            case SUB:     return new InstructionSUB(labels, opCode);
-            case MUL:     return new InstructionMUL(labels, opCode);
-            case DIV:     return new InstructionDIV(labels, opCode);
-            case MOD:     return new InstructionMOD(labels, opCode);
-            case NEG:     return new InstructionNEG(labels, opCode);
-            case INC:     return new InstructionINC(labels, opCode);
-            case DEC:     return new InstructionDEC(labels, opCode);
-            case GETCH:   return new InstructionGETCH(labels, opCode);
-            case GETINT:  return new InstructionGETINT(labels, opCode);
-            case PUTBYTE: return new InstructionPUTBYTE(labels, opCode);
-            case PUTCH:   return new InstructionPUTCH(labels, opCode);
-            case PUTINT:  return new InstructionPUTINT(labels, opCode);
-            case PUTEOL:  return new InstructionPUTEOL(labels, opCode);
-            case PUTSTR:  return new InstructionPUTSTR(labels, opCode);
-            case PROGRAM: return new InstructionPROGRAM(labels, opCode, arg);
-            case PROC:    return new InstructionPROC(labels, opCode, arg);
-            case CALL:    return new InstructionCALL(labels, opCode, arg);
-            case RET:     return new InstructionRET(labels, opCode, arg);
-            case ALLOC:   return new InstructionALLOC(labels, opCode, arg);
-            case DEFINT:  return new InstructionDEFINT(labels, opCode, arg);
-            default:
-                // force an exception
-                throw new IllegalArgumentException("Parser.makeInstruction(): opcode not handled at position " + opCode.getPosition());
-          }
+        return InstructionFactory.makeInstruction(context, labels, opCode, arg);
       }
 
 
@@ -0,0 +1,394 @@
+package edu.citadel.cvm.assembler;
+
+
+import edu.citadel.compiler.ParserException;
+import edu.citadel.compiler.Position;
+import edu.citadel.compiler.util.StringUtil;
+import edu.citadel.cvm.OpCode;
+import edu.citadel.cvm.assembler.ast.Instruction;
+import edu.citadel.cvm.assembler.ast.InstructionFactory;
+import edu.citadel.cvm.assembler.ast.Program;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Builds the program for an assembly directly from labels and instructions
+ * handed to it by a code generator (e.g., the CPRL compiler), without
+ * writing, scanning, and parsing assembly language text.  The instructions
+ * are checked the same way that the parser checks them, and each label and
+ * instruction is given the position that it would have in an assembly
+ * language file with one label or instruction per line, so that the line
+ * numbers in the object file are the same as for the assembly language file.
+ * <p>
+ * A code generator that works with opcodes and label IDs (e.g., through an
+ * instruction buffer) can hand them over as they are; the opcode symbol is
+ * then found by indexing a table, the argument token is made without
+ * scanning any text, and the name of each label is created only once.
+ */
+public class ProgramBuilder
+  {
+    // column of the opcode in an assembly language file (after three spaces)
+    private static final int OPCODE_CHAR_NUMBER = 4;
+
+    /** maps strings to opcode symbols */
+    private static final Map<String, Symbol> opCodeMap = makeOpCodeMap();
+
+    /** maps opcodes (as unsigned bytes) to opcode symbols */
+    private static final Symbol[] opCodeSymbols = makeOpCodeSymbols();
+
+    private AssemblyContext context;
+    private Program prog;
+
+    // labels for the next instruction
+    private List<Token> labels;
+
+    // line number of the last label or instruction
+    private int lineNumber;
+
+    // names of the labels with integer IDs, indexed by ID (created when first used)
+    private List<String> labelNames;
+
+
+    /**
+     * Construct a program builder for the specified assembly context.
+     */
+    public ProgramBuilder(AssemblyContext context)
+      {
+        this.context    = context;
+        this.prog       = new Program(context);
+        this.labels     = new LinkedList<>();
+        this.lineNumber = 0;
+        this.labelNames = new ArrayList<>();
+      }
+
+
+    public AssemblyContext getContext()
+      {
+        return context;
+      }
+
+
+    /**
+     * Returns the program built so far.  Labels that are not followed
+     * by an instruction are not part of the program.
+     */
+    public Program getProgram()
+      {
+        return prog;
+      }
+
+
+    /**
+     * Adds a label for the next instruction.  The label is specified
+     * without the colon at the end.
+     */
+    public void addLabel(String label)
+      {
+        Position position = new Position(++lineNumber, 1);
+        labels.add(new Token(Symbol.labelId, position, label + ":"));
+      }
+
+
+    /**
+     * Adds the label with the specified integer ID for the next instruction.
+     * The name of the label is "L" followed by the ID.
+     */
+    public void addLabel(int label)
+      {
+        Position position = new Position(++lineNumber, 1);
+        labels.add(new Token(Symbol.labelId, position, getLabelName(label) + ":"));
+      }
+
+
+    /**
+     * Adds an instruction without arguments.
+     *
+     * @throws IllegalArgumentException if the opcode is not an assembly language opcode.
+     */
+    public void addInstruction(byte opCode)
+      {
+        Symbol symbol = getOpCodeSymbol(opCode);
+        addInstruction(symbol, null);
+      }
+
+
+    /**
+     * Adds an instruction with an integer argument.
+     *
+     * @throws IllegalArgumentException if the opcode is not an assembly language opcode.
+     */
+    public void addInstruction(byte opCode, int arg)
+      {
+        Symbol symbol = getOpCodeSymbol(opCode);
+        addInstruction(symbol, new Token(Symbol.intLiteral, getArgPosition(symbol), Integer.toString(arg)));
+      }
+
+
+    /**
+     * Adds an instruction whose argument is the label with the specified
+     * integer ID; e.g., a branch or a call.
+     *
+     * @throws IllegalArgumentException if the opcode is not an assembly language opcode.
+     */
+    public void addLabelInstruction(byte opCode, int label)
+      {
+        Symbol symbol = getOpCodeSymbol(opCode);
+        addInstruction(symbol, new Token(Symbol.identifier, getArgPosition(symbol), getLabelName(label)));
+      }
+
+
+    /**
+     * Adds an instruction with a char or string literal argument written the
+     * same way as in assembly language; i.e., including the quotes.  Errors
+     * are reported to the error handler of the assembly context.
+     *
+     * @throws IllegalArgumentException if the opcode is not an assembly language opcode.
+     */
+    public void addInstruction(byte opCode, String literal)
+      {
+        Symbol symbol = getOpCodeSymbol(opCode);
+
+        try
+          {
+            addInstruction(symbol, makeArgToken(getArgPosition(symbol), literal));
+          }
+        catch (ParserException e)
+          {
+            ++lineNumber;
+            context.getErrorHandler().reportError(e);
+            labels = new LinkedList<>();
+          }
+      }
+
+
+    /**
+     * Adds an instruction without arguments.
+     */
+    public void addInstruction(String opCode)
+      {
+        addInstruction(opCode, null);
+      }
+
+
+    /**
+     * Adds an instruction with an integer argument.
+     */
+    public void addInstruction(String opCode, int arg)
+      {
+        addInstruction(opCode, Integer.toString(arg));
+      }
+
+
+    /**
+     * Adds an instruction with the specified argument, which is written the
+     * same way as in assembly language; e.g., a label is an identifier, and
+     * a char or string literal includes the quotes and may contain escaped
+     * characters.  An argument of null means that there is no argument.
+     * Errors are reported to the error handler of the assembly context.
+     */
+    public void addInstruction(String opCode, String arg)
+      {
+        Position position = new Position(++lineNumber, OPCODE_CHAR_NUMBER);
+
+        try
+          {
+            Symbol symbol = opCodeMap.get(opCode.toUpperCase());
+            if (symbol == null)
+                throw new ParserException(position, "Expecting an opcode but found \""
+                                                  + opCode + "\" instead");
+
+            Token opCodeToken = new Token(symbol, position, opCode);
+            Token argToken    = null;
+            if (arg != null)
+              {
+                Position argPosition = new Position(lineNumber, OPCODE_CHAR_NUMBER + opCode.length() + 1);
+                argToken = makeArgToken(argPosition, arg);
+              }
+
+            checkArgs(opCodeToken, argToken);
+
+            Instruction inst = InstructionFactory.makeInstruction(context, labels, opCodeToken, argToken);
+            prog.addInstruction(inst);
+          }
+        catch (ParserException e)
+          {
+            context.getErrorHandler().reportError(e);
+          }
+
+        labels = new LinkedList<>();
+      }
+
+
+    /**
+     * Adds the instruction for an opcode symbol and argument token, which
+     * should be null for opcodes without arguments.  Errors are reported to
+     * the error handler of the assembly context.
+     */
+    private void addInstruction(Symbol opCode, Token arg)
+      {
+        Position position = new Position(++lineNumber, OPCODE_CHAR_NUMBER);
+
+        try
+          {
+            Token opCodeToken = new Token(opCode, position, opCode.toString());
+            checkArgs(opCodeToken, arg);
+
+            Instruction inst = InstructionFactory.makeInstruction(context, labels, opCodeToken, arg);
+            prog.addInstruction(inst);
+          }
+        catch (ParserException e)
+          {
+            context.getErrorHandler().reportError(e);
+          }
+
+        labels = new LinkedList<>();
+      }
+
+
+    /**
+     * Returns the position of the argument of the next instruction.
+     */
+    private Position getArgPosition(Symbol opCode)
+      {
+        return new Position(lineNumber + 1, OPCODE_CHAR_NUMBER + opCode.toString().length() + 1);
+      }
+
+
+    /**
+     * Returns the name of the label with the specified integer ID.
+     */
+    private String getLabelName(int label)
+      {
+        while (labelNames.size() <= label)
+            labelNames.add(null);
+
+        String name = labelNames.get(label);
+        if (name == null)
+          {
+            name = "L" + label;
+            labelNames.set(label, name);
+          }
+
+        return name;
+      }
+
+
+    /**
+     * Returns the opcode symbol for an opcode.
+     *
+     * @throws IllegalArgumentException if the opcode is not an assembly language opcode.
+     */
+    private static Symbol getOpCodeSymbol(byte opCode)
+      {
+        Symbol symbol = opCodeSymbols[opCode & 0xFF];
+        if (symbol == null)
+            throw new IllegalArgumentException("Invalid opcode " + OpCode.toString(opCode) + ".");
+
+        return symbol;
+      }
+
+
+    /**
+     * Returns the token for an argument, with the symbol and text that the
+     * scanner would give it.
+     */
+    private static Token makeArgToken(Position position, String arg) throws ParserException
+      {
+        if (arg.isEmpty())
+            throw new ParserException(position, "Invalid Token");
+
+        char c = arg.charAt(0);
+
+        if (c == '\'' || c == '\"')
+          {
+            if (arg.length() < 2 || arg.charAt(arg.length() - 1) != c)
+                throw new ParserException(position, "Invalid Token");
+
+            String text;
+            try
+              {
+                text = c + StringUtil.unescape(arg.substring(1, arg.length() - 1)) + c;
+              }
+            catch (IllegalArgumentException e)
+              {
+                throw new ParserException(position, e.getMessage());
+              }
+
+            if (c == '\'')
+              {
+                if (text.length() != 3)
+                    throw new ParserException(position, "Char literal must contain exactly one character");
+
+                return new Token(Symbol.charLiteral, position, text);
+              }
+            else
+                return new Token(Symbol.stringLiteral, position, text);
+          }
+        else if (Character.isDigit(c) || c == '-')
+          {
+            for (int i = 1;  i < arg.length();  ++i)
+              {
+                if (!Character.isDigit(arg.charAt(i)))
+                    throw new ParserException(position, "Invalid Token");
+              }
+
+            if (arg.length() == 1 && c == '-')
+                throw new ParserException(position, "Expecting an integer literal");
+
+            return new Token(Symbol.intLiteral, position, arg);
+          }
+        else if (Character.isLetter(c))
+          {
+            Symbol symbol = opCodeMap.getOrDefault(arg.toUpperCase(), Symbol.identifier);
+            return new Token(symbol, position, arg);
+          }
+        else
+            throw new ParserException(position, "Invalid Token");
+      }
+
+
+    /**
+     * Checks the number of arguments the same way as the parser.
+     */
+    private static void checkArgs(Token opCode, Token arg) throws ParserException
+      {
+        int numArgs = opCode.getSymbol().getNumArgs();
+
+        if (numArgs == 0 && arg != null)
+            throw new ParserException(opCode.getPosition(), "No arguments allowed for this opcode.");
+        else if (numArgs == 1 && arg == null)
+            throw new ParserException(opCode.getPosition(), "One argument is required for this opcode.");
+      }
+
+
+    private static Map<String, Symbol> makeOpCodeMap()
+      {
+        Map<String, Symbol> opCodeMap = new HashMap<>(100);
+        for (Symbol symbol : Symbol.values())
+          {
+            if (symbol.isOpCode())
+                opCodeMap.put(symbol.toString(), symbol);
+          }
+
+        return opCodeMap;
+      }
+
+
+    private static Symbol[] makeOpCodeSymbols()
+      {
+        Symbol[] opCodeSymbols = new Symbol[256];
+        for (int i = 0;  i < opCodeSymbols.length;  ++i)
+          {
+            byte opCode = (byte) i;
+            if (OpCode.isDefined(opCode))
+                opCodeSymbols[i] = opCodeMap.get(OpCode.toString(opCode));
+          }
+
+        return opCodeSymbols;
+      }
+  }
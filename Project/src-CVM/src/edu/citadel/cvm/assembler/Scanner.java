@@ -16,6 +16,7 @@ import java.util.HashMap;
 public class Scanner
   {
     private Source   source;
+    private ErrorHandler errorHandler;
     private Symbol   symbol;
     private Position position;
     private String   text;
@@ -27,11 +28,13 @@ public class Scanner
 
 
     /**
-     * Initialize scanner with its associated source and advance to the first token.
+     * Initialize scanner with its associated source and error handler
+     * and advance to the first token.
      */
-    public Scanner(Source source) throws IOException
+    public Scanner(Source source, ErrorHandler errorHandler) throws IOException
       {
         this.source  = source;
+        this.errorHandler = errorHandler;
         scanBuffer   = new StringBuilder(100);
 
         // initialize HashMap with reserved word symbols
@@ -76,10 +79,14 @@ public class Scanner
 
 
     /**
-     * Advance to the next token in the source file.
+     * Advance to the next token in the source file.  The scanner stays
+     * at EOF once it has been reached or an error has been reported.
      */
     public void advance() throws IOException
       {
+        if (symbol == Symbol.EOF)
+            return;
+
         try
           {
             skipWhiteSpace();
@@ -154,8 +161,8 @@ public class Scanner
         catch (ScannerException e)
           {
             // stop on first error -- no error recovery
-            ErrorHandler.getInstance().reportError(e);
-            System.exit(1);
+            errorHandler.reportError(e);
+            symbol = Symbol.EOF;
           }
       }
 
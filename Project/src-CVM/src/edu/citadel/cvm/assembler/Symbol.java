@@ -32,6 +32,11 @@ public enum Symbol
     STORE2B("STORE2B", 0),
     STOREW("STOREW", 0),
 
+    // stack manipulation opcodes
+    DUP("DUP", 0),
+    SWAP("SWAP", 0),
+    OVER("OVER", 0),
+
     // compare/branch opcodes
     CMP("CMP", 0),
     BR("BR", 1),
@@ -75,6 +80,17 @@ public enum Symbol
     RET("RET", 1),
     ALLOC("ALLOC", 1),
 
+    // fused call/return opcodes
+    ENTER("ENTER", 1),
+    LEAVE("LEAVE", 1),
+
+    // tail call opcode
+    TAIL("TAIL", 1),
+
+    // parallel task opcodes
+    SPAWN("SPAWN", 1),
+    JOIN("JOIN", 0),
+
     // pseudo opcodes
     DEFINT("DEFINT", 1),
 //    DEFCHAR("DEFCHAR", 1),
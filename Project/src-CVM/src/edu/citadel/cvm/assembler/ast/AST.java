@@ -2,11 +2,10 @@ package edu.citadel.cvm.assembler.ast;
 
 
 import java.io.IOException;
-import java.io.OutputStream;
 
 import edu.citadel.compiler.ConstraintException;
 import edu.citadel.compiler.Position;
-import edu.citadel.compiler.util.ByteUtil;
+import edu.citadel.cvm.assembler.AssemblyContext;
 
 
 /**
@@ -14,7 +13,7 @@ import edu.citadel.compiler.util.ByteUtil;
  */
 public abstract class AST
   {
-    private static OutputStream out = null;
+    private AssemblyContext context = null;
 
 
     /**
@@ -27,48 +26,30 @@ public abstract class AST
 
 
     /**
-     * Set the OutputStream to be used for code generation.
+     * Returns the context of the assembly that this AST belongs to.
      */
-    public static void setOutputStream(OutputStream out)
+    public AssemblyContext getContext()
       {
-        AST.out = out;
+        return context;
       }
 
 
     /**
-     * Creates/returns a new constraint exception with the specified position and message. 
+     * Sets the context of the assembly that this AST belongs to.
      */
-    protected ConstraintException error(Position errorPos, String errorMsg)
+    void setContext(AssemblyContext context)
       {
-        return new ConstraintException(errorPos, errorMsg);
+        this.context = context;
       }
 
 
     /**
-     * emit the opCode for the instruction
-     */
-   protected void emit(byte opCode) throws IOException
-     {
-       out.write(opCode);
-     }
-
-
-    /**
-     * emit an integer argument for the instruction
-     */
-   protected void emit(int arg) throws IOException
-     {
-       out.write(ByteUtil.intToBytes(arg));
-     }
-
-
-    /**
-     * emit a character argument for the instruction
+     * Creates/returns a new constraint exception with the specified position and message. 
      */
-   protected void emit(char arg) throws IOException
-     {
-       out.write(ByteUtil.charToBytes(arg));
-     }
+    protected ConstraintException error(Position errorPos, String errorMsg)
+      {
+        return new ConstraintException(errorPos, errorMsg);
+      }
 
 
    /**
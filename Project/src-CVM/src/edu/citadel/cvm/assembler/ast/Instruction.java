@@ -6,6 +6,7 @@ import edu.citadel.cvm.Constants;
 import edu.citadel.cvm.assembler.Symbol;
 import edu.citadel.cvm.assembler.Token;
 
+import java.io.IOException;
 import java.util.*;
 
 
@@ -15,21 +16,14 @@ import java.util.*;
  */
 public abstract class Instruction extends AST
   {
-    // Maps label text (type String) to an address (type Integer).
-    // Note that the label text always includes the colon (:) at the end.
-    protected static Map<String, Integer> labelMap = new HashMap<>();
-
-    // Maps identifier text (type String) to a stack address (type Integer).
-    protected static Map<String, Integer> idMap = new HashMap<>();
-
-    // Initialize address for identifiers (e.g., used in DEFINT).
-    private static int idAddress = Constants.BYTES_PER_FRAME;
-
     private List<Token> labels;
     private Token opCode;
 
     private int address;
 
+    // address at which the next byte of machine code is emitted
+    private int emitAddress;
+
 
     /**
      * Construct an instruction with a list of labels and an opcode.
@@ -61,6 +55,7 @@ public abstract class Instruction extends AST
         this.address = address;
 
         // define addresses for labels
+        Map<String, Integer> labelMap = getContext().getLabelMap();
         for (Token label : labels)
           {
             if (labelMap.containsKey(label.getText()))
@@ -74,6 +69,19 @@ public abstract class Instruction extends AST
       }
 
 
+    /**
+     * Changes the memory address of an instruction whose labels have already
+     * been defined, updating the label values.  Used during branch relaxation.
+     */
+    public void updateAddress(int address)
+      {
+        this.address = address;
+
+        for (Token label : labels)
+            getContext().getLabelMap().put(label.getText(), Integer.valueOf(address));
+      }
+
+
     /**
      * Returns the address of this instruction. 
      */
@@ -92,6 +100,7 @@ public abstract class Instruction extends AST
         assert identifier.getSymbol() == Symbol.identifier :
             "Expecting an identifier but found " + identifier.getSymbol() + ".";
 
+        Map<String, Integer> idMap = getContext().getIdMap();
         if (idMap.containsKey(identifier.getText()))
           {
             String errorMsg  = "This identifier has already been defined.";
@@ -99,8 +108,8 @@ public abstract class Instruction extends AST
           }
         else
           {
+            int idAddress = getContext().allocateIdAddress(size);
             idMap.put(identifier.getText(), Integer.valueOf(idAddress));
-            idAddress = idAddress + size;
           }
       }
 
@@ -113,6 +122,7 @@ public abstract class Instruction extends AST
         assert identifier != null : "Identifier can't be null.";
         assert identifier.getSymbol() == Symbol.identifier :
             "Expecting an identifier but found " + identifier.getSymbol() + ".";
+        Map<String, Integer> idMap = getContext().getIdMap();
         assert idMap.containsKey(identifier.getText()) :
             "Identifier " + identifier.getText() + " not found.";
 
@@ -122,12 +132,80 @@ public abstract class Instruction extends AST
       }
 
 
+    /**
+     * Emits the machine code for the instruction into the code buffer of the
+     * assembly context, starting at the address of the instruction.  Only
+     * absolute puts are used, so instructions can be emitted in any order
+     * and in parallel once the addresses have been set.
+     */
+    public void emitCode() throws IOException
+      {
+        emitAddress = address;
+        emit();
+
+        assert emitAddress == address + getSize() :
+            "Wrong number of bytes emitted for " + opCode.getText() + ".";
+      }
+
+
+    /**
+     * emit the opCode for the instruction
+     */
+    protected void emit(byte opCode)
+      {
+        getContext().getCodeBuffer().put(emitAddress, opCode);
+        emitAddress += Constants.BYTES_PER_OPCODE;
+      }
+
+
+    /**
+     * emit an integer argument for the instruction
+     */
+    protected void emit(int arg)
+      {
+        getContext().getCodeBuffer().putInt(emitAddress, arg);
+        emitAddress += Constants.BYTES_PER_INTEGER;
+      }
+
+
+    /**
+     * emit a short argument for the instruction
+     */
+    protected void emit(short arg)
+      {
+        getContext().getCodeBuffer().putShort(emitAddress, arg);
+        emitAddress += 2;
+      }
+
+
+    /**
+     * emit a character argument for the instruction
+     */
+    protected void emit(char arg)
+      {
+        getContext().getCodeBuffer().putChar(emitAddress, arg);
+        emitAddress += Constants.BYTES_PER_CHAR;
+      }
+
+
     /**
      * Returns the number of bytes in memory occupied by the argument.
      */
     protected abstract int getArgSize();
 
 
+    /**
+     * Selects a larger encoding for the instruction if its argument doesn't fit
+     * in the current one, based on the current label values.  Returns true if
+     * the size of the instruction changed.  Instructions with a fixed size
+     * always return false.
+     */
+    public boolean relax()
+      {
+        return false;
+      }
+
+
     /**
      * Returns the number of bytes in memory occupied by the instruction,
      * computed as 1 (for the opcode) plus the sizes of the operands.
@@ -146,6 +224,7 @@ public abstract class Instruction extends AST
      */
     protected void checkLabels() throws ConstraintException
       {
+        Map<String, Integer> labelMap = getContext().getLabelMap();
         for (Token label : labels)
           {
             if (!labelMap.containsKey(label.getText()))
@@ -165,6 +244,7 @@ public abstract class Instruction extends AST
     protected int getDisplacement(Token labelArg)
       {
         String labelId = labelArg.getText() + ":";
+        Map<String, Integer> labelMap = getContext().getLabelMap();
 
         assert labelMap.containsKey(labelId) :
             "Label " + labelArg.getText() + " not found.";
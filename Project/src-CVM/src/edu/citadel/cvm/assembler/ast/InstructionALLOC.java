@@ -2,7 +2,6 @@ package edu.citadel.cvm.assembler.ast;
 
 
 import edu.citadel.compiler.ConstraintException;
-import edu.citadel.cvm.Constants;
 import edu.citadel.cvm.OpCode;
 import edu.citadel.cvm.assembler.Symbol;
 import edu.citadel.cvm.assembler.Token;
@@ -15,7 +14,7 @@ import java.io.IOException;
  * This class implements the abstract syntax tree for the assembly
  * language instruction ALLOC.
  */
-public class InstructionALLOC extends InstructionOneArg
+public class InstructionALLOC extends InstructionCompactArg
   {
     public InstructionALLOC(List<Token> labels, Token opCode, Token arg)
       {
@@ -35,16 +34,9 @@ public class InstructionALLOC extends InstructionOneArg
       }
 
 
-    public int getArgSize()
-      {
-        return Constants.BYTES_PER_INTEGER;
-      }
-
-
     @Override
     public void emit() throws IOException
       {
-        emit(OpCode.ALLOC);
-        emit(argToInt());
+        emit(OpCode.ALLOC1B, OpCode.ALLOC2B, OpCode.ALLOC);
       }
   }
@@ -2,7 +2,6 @@ package edu.citadel.cvm.assembler.ast;
 
 
 import edu.citadel.compiler.ConstraintException;
-import edu.citadel.cvm.Constants;
 import edu.citadel.cvm.OpCode;
 import edu.citadel.cvm.assembler.Symbol;
 import edu.citadel.cvm.assembler.Token;
@@ -15,7 +14,7 @@ import java.io.IOException;
  * This class implements the abstract syntax tree for the assembly
  * language instruction BNZ.
  */
-public class InstructionBNZ extends InstructionOneArg
+public class InstructionBNZ extends InstructionCompactArg
   {
     public InstructionBNZ(List<Token> labels, Token opCode, Token arg)
       {
@@ -36,16 +35,9 @@ public class InstructionBNZ extends InstructionOneArg
       }
 
 
-    public int getArgSize()
-      {
-        return Constants.BYTES_PER_INTEGER;
-      }
-
-
     @Override
     public void emit() throws IOException
       {
-        emit(OpCode.BNZ);
-        emit(getDisplacement(getArg()));
+        emit(OpCode.BNZ1B, OpCode.BNZ2B, OpCode.BNZ);
       }
   }
@@ -0,0 +1,120 @@
+package edu.citadel.cvm.assembler.ast;
+
+
+import edu.citadel.cvm.Constants;
+import edu.citadel.cvm.assembler.Symbol;
+import edu.citadel.cvm.assembler.Token;
+
+import java.util.List;
+import java.io.IOException;
+
+
+/**
+ * This class serves as a base class for the abstract syntax tree for an
+ * assembly language instruction whose integer argument (a displacement or
+ * a size) can be encoded in the machine code using 1, 2, or 4 bytes, with
+ * a different opcode for each encoding.  The argument size starts at the
+ * smallest encoding and grows during branch relaxation (see method
+ * Program.setAddresses()) until the value of the argument fits.
+ */
+public abstract class InstructionCompactArg extends InstructionOneArg
+  {
+    private int argSize;
+
+
+    /**
+     * Construct a compact-argument instruction with a list of labels,
+     * an opcode, and an argument.
+     */
+    public InstructionCompactArg(List<Token> labels, Token opCode, Token arg)
+      {
+        super(labels, opCode, arg);
+        argSize = 1;
+      }
+
+
+    @Override
+    public int getArgSize()
+      {
+        return argSize;
+      }
+
+
+    /**
+     * Returns true if the value of the argument can be computed; i.e., the
+     * argument is an integer literal or a label that has an address.
+     */
+    private boolean isArgValueDefined()
+      {
+        if (arg.getSymbol() == Symbol.identifier)
+            return getContext().getLabelMap().containsKey(arg.getText() + ":");
+        else
+            return arg.getSymbol() == Symbol.intLiteral;
+      }
+
+
+    /**
+     * Returns the value of the argument; i.e., the displacement
+     * for a label argument or the value of an integer literal.
+     */
+    private int getArgValue()
+      {
+        if (arg.getSymbol() == Symbol.identifier)
+            return getDisplacement(arg);
+        else
+            return argToInt();
+      }
+
+
+    /**
+     * Grows the argument size if the current value of the argument does
+     * not fit.  Arguments never shrink, so repeated relaxation terminates.
+     */
+    @Override
+    public boolean relax()
+      {
+        if (argSize == Constants.BYTES_PER_INTEGER || !isArgValueDefined())
+            return false;
+
+        int value = getArgValue();
+        int size;
+        if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE)
+            size = 1;
+        else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE)
+            size = 2;
+        else
+            size = Constants.BYTES_PER_INTEGER;
+
+        if (size > argSize)
+          {
+            argSize = size;
+            return true;
+          }
+        else
+            return false;
+      }
+
+
+    /**
+     * Emits the opcode for the current argument size followed by the argument.
+     */
+    protected void emit(byte opCode1B, byte opCode2B, byte opCode4B) throws IOException
+      {
+        int value = getArgValue();
+
+        switch (argSize)
+          {
+            case 1:
+                emit(opCode1B);
+                emit((byte) value);
+                break;
+            case 2:
+                emit(opCode2B);
+                emit((short) value);
+                break;
+            default:
+                emit(opCode4B);
+                emit(value);
+          }
+      }
+  }
@@ -0,0 +1,36 @@
+package edu.citadel.cvm.assembler.ast;
+
+
+import edu.citadel.cvm.OpCode;
+import edu.citadel.cvm.assembler.Symbol;
+import edu.citadel.cvm.assembler.Token;
+
+import java.util.List;
+import java.io.IOException;
+
+
+/**
+ * This class implements the abstract syntax tree for the assembly
+ * language instruction DUP, which pushes a copy of the integer
+ * on the top of the stack.
+ */
+public class InstructionDUP extends InstructionNoArgs
+  {
+    public InstructionDUP(List<Token> labels, Token opCode)
+      {
+        super(labels, opCode);
+      }
+
+
+    public void assertOpCode()
+      {
+        assertOpCode(Symbol.DUP);
+      }
+
+
+    @Override
+    public void emit() throws IOException
+      {
+        emit(OpCode.DUP);
+      }
+  }
@@ -0,0 +1,36 @@
+package edu.citadel.cvm.assembler.ast;
+
+
+import edu.citadel.cvm.OpCode;
+import edu.citadel.cvm.assembler.Symbol;
+import edu.citadel.cvm.assembler.Token;
+
+import java.util.List;
+import java.io.IOException;
+
+
+/**
+ * This class implements the abstract syntax tree for the assembly
+ * language instruction ENTER.  The argument is the label of a PROC
+ * instruction.  ENTER combines CALL with that PROC instruction.
+ */
+public class InstructionENTER extends InstructionProcArg
+  {
+    public InstructionENTER(List<Token> labels, Token opCode, Token arg)
+      {
+        super(labels, opCode, arg);
+      }
+
+
+    public void assertOpCode()
+      {
+        assertOpCode(Symbol.ENTER);
+      }
+
+
+    @Override
+    public void emit() throws IOException
+      {
+        emitProcArg(OpCode.ENTER);
+      }
+  }
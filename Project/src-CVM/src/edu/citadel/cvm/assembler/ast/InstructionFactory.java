@@ -0,0 +1,101 @@
+package edu.citadel.cvm.assembler.ast;
+
+
+import edu.citadel.cvm.assembler.AssemblyContext;
+import edu.citadel.cvm.assembler.Token;
+
+import java.util.List;
+
+
+/**
+ * Creates the abstract syntax tree for an assembly language instruction
+ * from its labels, opcode, and argument.  Used by the parser and by
+ * optimizations that construct new instructions.
+ */
+public class InstructionFactory
+  {
+    /**
+     * Returns the instruction for the specified opcode in the specified
+     * assembly context.  The argument should be null for opcodes without
+     * arguments.
+     *
+     * @throws IllegalArgumentException if the opcode symbol is not an opcode.
+     */
+    public static Instruction makeInstruction(AssemblyContext context, List<Token> labels,
+                                              Token opCode, Token arg)
+      {
+        Instruction inst = createInstruction(labels, opCode, arg);
+        inst.setContext(context);
+        return inst;
+      }
+
+
+    private static Instruction createInstruction(List<Token> labels, Token opCode, Token arg)
+      {
+        switch (opCode.getSymbol())
+          {
+            case HALT:    return new InstructionHALT(labels, opCode);
+            case LOAD:    return new InstructionLOAD(labels, opCode, arg);
+            case LOADB:   return new InstructionLOADB(labels, opCode);
+            case LOAD2B:  return new InstructionLOAD2B(labels, opCode);
+            case LOADW:   return new InstructionLOADW(labels, opCode);
+            case LDCB:    return new InstructionLDCB(labels, opCode, arg);
+            case LDCB0:   return new InstructionLDCB0(labels, opCode);
+            case LDCB1:   return new InstructionLDCB1(labels, opCode);
+            case LDCCH:   return new InstructionLDCCH(labels, opCode, arg);
+            case LDCINT:  return new InstructionLDCINT(labels, opCode, arg);
+            case LDCINT0: return new InstructionLDCINT0(labels, opCode);
+            case LDCINT1: return new InstructionLDCINT1(labels, opCode);
+            case LDCSTR:  return new InstructionLDCSTR(labels, opCode, arg);
+            case LDLADDR: return new InstructionLDLADDR(labels, opCode, arg);
+            case LDGADDR: return new InstructionLDGADDR(labels, opCode, arg);
+            case STORE:   return new InstructionSTORE(labels, opCode, arg);
+            case STOREB:  return new InstructionSTOREB(labels, opCode);
+            case STORE2B: return new InstructionSTORE2B(labels, opCode);
+            case STOREW:  return new InstructionSTOREW(labels, opCode);
+            case CMP:     return new InstructionCMP(labels, opCode);
+            case BR:      return new InstructionBR(labels, opCode, arg);
+            case BNZ:     return new InstructionBNZ(labels, opCode, arg);
+            case BZ:      return new InstructionBZ(labels, opCode, arg);
+            case BG:      return new InstructionBG(labels, opCode, arg);
+            case BGE:     return new InstructionBGE(labels, opCode, arg);
+            case BL:      return new InstructionBL(labels, opCode, arg);
+            case BLE:     return new InstructionBLE(labels, opCode, arg);
+            case SHL:     return new InstructionSHL(labels, opCode, arg);
+            case SHR:     return new InstructionSHR(labels, opCode, arg);
+            case NOT:     return new InstructionNOT(labels, opCode);
+            case ADD:     return new InstructionADD(labels, opCode);
+            case SUB:     return new InstructionSUB(labels, opCode);
+            case MUL:     return new InstructionMUL(labels, opCode);
+            case DIV:     return new InstructionDIV(labels, opCode);
+            case MOD:     return new InstructionMOD(labels, opCode);
+            case NEG:     return new InstructionNEG(labels, opCode);
+            case INC:     return new InstructionINC(labels, opCode);
+            case DEC:     return new InstructionDEC(labels, opCode);
+            case GETCH:   return new InstructionGETCH(labels, opCode);
+            case GETINT:  return new InstructionGETINT(labels, opCode);
+            case PUTBYTE: return new InstructionPUTBYTE(labels, opCode);
+            case PUTCH:   return new InstructionPUTCH(labels, opCode);
+            case PUTINT:  return new InstructionPUTINT(labels, opCode);
+            case PUTEOL:  return new InstructionPUTEOL(labels, opCode);
+            case PUTSTR:  return new InstructionPUTSTR(labels, opCode);
+            case PROGRAM: return new InstructionPROGRAM(labels, opCode, arg);
+            case PROC:    return new InstructionPROC(labels, opCode, arg);
+            case CALL:    return new InstructionCALL(labels, opCode, arg);
+            case RET:     return new InstructionRET(labels, opCode, arg);
+            case ALLOC:   return new InstructionALLOC(labels, opCode, arg);
+            case ENTER:   return new InstructionENTER(labels, opCode, arg);
+            case LEAVE:   return new InstructionLEAVE(labels, opCode, arg);
+            case TAIL:    return new InstructionTAIL(labels, opCode, arg);
+            case SPAWN:   return new InstructionSPAWN(labels, opCode, arg);
+            case JOIN:    return new InstructionJOIN(labels, opCode);
+            case DUP:     return new InstructionDUP(labels, opCode);
+            case SWAP:    return new InstructionSWAP(labels, opCode);
+            case OVER:    return new InstructionOVER(labels, opCode);
+            case DEFINT:  return new InstructionDEFINT(labels, opCode, arg);
+            default:
+                // force an exception
+                throw new IllegalArgumentException("InstructionFactory.makeInstruction(): opcode not handled at position " + opCode.getPosition());
+          }
+      }
+  }
@@ -15,11 +15,16 @@ import java.io.IOException;
  * This class implements the abstract syntax tree for the assembly
  * language instruction LDCSTR. <br>
  * 
- * Note: Only one argument (the string literal) is specified for this instruction
- * in assembly language, but two args are generated for the CVM machine code.
+ * Note: The string literal is not embedded in the machine code.  It is
+ * added to the string pool, and the generated machine code contains only
+ * the index of the string in the pool.
  */
 public class InstructionLDCSTR extends InstructionOneArg
   {
+    // index of the string literal in the string pool
+    private int index;
+
+
     public InstructionLDCSTR(List<Token> labels, Token opCode, Token arg)
       {
         super(labels, opCode, arg);
@@ -32,39 +37,42 @@ public class InstructionLDCSTR extends InstructionOneArg
       }
 
 
-    public void checkArgType() throws ConstraintException
+    /**
+     * Also adds the string literal to the string pool, so that the pool
+     * is complete before code is emitted (possibly in parallel).
+     */
+    @Override
+    public void setAddress(int address) throws ConstraintException
       {
-        checkArgType(Symbol.stringLiteral);
+        super.setAddress(address);
+
+        // an argument of the wrong type is reported by checkConstraints()
+        if (getArg().getSymbol() == Symbol.stringLiteral)
+          {
+            String text = getArg().getText();
+
+            // omit opening and closing quotes
+            index = getContext().getStringPool().add(text.substring(1, text.length() - 1));
+          }
       }
 
 
-    private int getStrLength()
+    public void checkArgType() throws ConstraintException
       {
-        // need to subtract 2 to handle the opening and closing quotes
-        return getArg().getText().length() - 2;
+        checkArgType(Symbol.stringLiteral);
       }
 
 
     public int getArgSize()
       {
-        // Note: We must return the size for both the integer arg and
-        //       the string arg that will be generated in machine code
-        return Constants.BYTES_PER_INTEGER + Constants.BYTES_PER_CHAR*getStrLength();
+        return Constants.BYTES_PER_INTEGER;
       }
 
 
     @Override
     public void emit() throws IOException
       {
-        int strLength = getStrLength();
-        
         emit(OpCode.LDCSTR);
-        emit(strLength);
-
-        String text = getArg().getText();
-
-        // omit opening and closing quotes
-        for (int i = 1;  i <= strLength;  ++i)
-            emit(text.charAt(i));
+        emit(index);
       }
   }
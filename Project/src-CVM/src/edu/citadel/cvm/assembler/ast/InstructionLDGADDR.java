@@ -2,7 +2,6 @@ package edu.citadel.cvm.assembler.ast;
 
 
 import edu.citadel.compiler.ConstraintException;
-import edu.citadel.cvm.Constants;
 import edu.citadel.cvm.OpCode;
 import edu.citadel.cvm.assembler.Symbol;
 import edu.citadel.cvm.assembler.Token;
@@ -15,7 +14,7 @@ import java.io.IOException;
  * This class implements the abstract syntax tree for the assembly
  * language instruction LDGADDR.
  */
-public class InstructionLDGADDR extends InstructionOneArg
+public class InstructionLDGADDR extends InstructionCompactArg
   {
     public InstructionLDGADDR(List<Token> labels, Token opCode, Token arg)
       {
@@ -35,16 +34,9 @@ public class InstructionLDGADDR extends InstructionOneArg
       }
 
 
-    public int getArgSize()
-      {
-        return Constants.BYTES_PER_INTEGER;
-      }
-
-
     @Override
     public void emit() throws IOException
       {
-        emit(OpCode.LDGADDR);
-        emit(argToInt());
+        emit(OpCode.LDGADDR1B, OpCode.LDGADDR2B, OpCode.LDGADDR);
       }
   }
@@ -2,7 +2,6 @@ package edu.citadel.cvm.assembler.ast;
 
 
 import edu.citadel.compiler.ConstraintException;
-import edu.citadel.cvm.Constants;
 import edu.citadel.cvm.OpCode;
 import edu.citadel.cvm.assembler.Symbol;
 import edu.citadel.cvm.assembler.Token;
@@ -15,7 +14,7 @@ import java.io.IOException;
  * This class implements the abstract syntax tree for the assembly
  * language instruction LDLADDR.
  */
-public class InstructionLDLADDR extends InstructionOneArg
+public class InstructionLDLADDR extends InstructionCompactArg
   {
     public InstructionLDLADDR(List<Token> labels, Token opCode, Token arg)
       {
@@ -35,16 +34,9 @@ public class InstructionLDLADDR extends InstructionOneArg
       }
 
 
-    public int getArgSize()
-      {
-        return Constants.BYTES_PER_INTEGER;
-      }
-
-
     @Override
     public void emit() throws IOException
       {
-        emit(OpCode.LDLADDR);
-        emit(argToInt());
+        emit(OpCode.LDLADDR1B, OpCode.LDLADDR2B, OpCode.LDLADDR);
       }
   }
@@ -0,0 +1,44 @@
+package edu.citadel.cvm.assembler.ast;
+
+
+import edu.citadel.compiler.ConstraintException;
+import edu.citadel.cvm.OpCode;
+import edu.citadel.cvm.assembler.Symbol;
+import edu.citadel.cvm.assembler.Token;
+
+import java.util.List;
+import java.io.IOException;
+
+
+/**
+ * This class implements the abstract syntax tree for the assembly
+ * language instruction LEAVE.  LEAVE has the same effect as RET,
+ * but its argument (the number of bytes of parameters) is encoded
+ * compactly.
+ */
+public class InstructionLEAVE extends InstructionCompactArg
+  {
+    public InstructionLEAVE(List<Token> labels, Token opCode, Token arg)
+      {
+        super(labels, opCode, arg);
+      }
+
+
+    public void assertOpCode()
+      {
+        assertOpCode(Symbol.LEAVE);
+      }
+
+
+    public void checkArgType() throws ConstraintException
+      {
+        checkArgType(Symbol.intLiteral);
+      }
+
+
+    @Override
+    public void emit() throws IOException
+      {
+        emit(OpCode.LEAVE1B, OpCode.LEAVE2B, OpCode.LEAVE);
+      }
+  }
@@ -2,7 +2,6 @@ package edu.citadel.cvm.assembler.ast;
 
 
 import edu.citadel.compiler.ConstraintException;
-import edu.citadel.compiler.ErrorHandler;
 import edu.citadel.cvm.assembler.Token;
 
 import java.util.List;
@@ -33,7 +32,7 @@ public abstract class InstructionNoArgs extends Instruction
           }
         catch (ConstraintException e)
           {
-            ErrorHandler.getInstance().reportError(e);
+            getContext().getErrorHandler().reportError(e);
           }
       }
 
@@ -2,7 +2,6 @@ package edu.citadel.cvm.assembler.ast;
 
 
 import edu.citadel.compiler.ConstraintException;
-import edu.citadel.compiler.ErrorHandler;
 import edu.citadel.cvm.assembler.Symbol;
 import edu.citadel.cvm.assembler.Token;
 
@@ -48,7 +47,7 @@ public abstract class InstructionOneArg extends Instruction
           }
         catch (ConstraintException e)
           {
-            ErrorHandler.getInstance().reportError(e);
+            getContext().getErrorHandler().reportError(e);
           }
       }
 
@@ -66,7 +65,7 @@ public abstract class InstructionOneArg extends Instruction
           }
 
         String label = arg.getText() + ":";
-        if (!labelMap.containsKey(label))
+        if (!getContext().getLabelMap().containsKey(label))
           {
             String errorMsg = "label \"" + arg.getText() + "\" has not been defined.";
             throw error(arg.getPosition(), errorMsg);
@@ -29,6 +29,16 @@ public class InstructionPROC extends InstructionOneArg
       }
 
 
+    @Override
+    public void setAddress(int address) throws ConstraintException
+      {
+        super.setAddress(address);
+
+        for (Token label : getLabels())
+            getContext().getProcMap().put(label.getText(), this);
+      }
+
+
     public void checkArgType() throws ConstraintException
       {
         checkArgType(Symbol.intLiteral);
@@ -0,0 +1,64 @@
+package edu.citadel.cvm.assembler.ast;
+
+
+import edu.citadel.compiler.ConstraintException;
+import edu.citadel.cvm.Constants;
+import edu.citadel.cvm.assembler.Symbol;
+import edu.citadel.cvm.assembler.Token;
+
+import java.util.List;
+import java.io.IOException;
+
+
+/**
+ * This class serves as a base class for the abstract syntax tree for an
+ * assembly language instruction whose argument is the label of a PROC
+ * instruction (ENTER and TAIL).  The instruction combines a call with
+ * that PROC instruction, so the machine code contains the displacement
+ * to the instruction following the PROC instruction and the argument of
+ * the PROC instruction (the number of bytes of local variables).
+ */
+public abstract class InstructionProcArg extends InstructionOneArg
+  {
+    /**
+     * Construct an instruction with a list of labels, an opcode,
+     * and the label of a PROC instruction as its argument.
+     */
+    public InstructionProcArg(List<Token> labels, Token opCode, Token arg)
+      {
+        super(labels, opCode, arg);
+      }
+
+
+    public void checkArgType() throws ConstraintException
+      {
+        checkArgType(Symbol.identifier);
+        checkLabelArgDefined();
+
+        if (!getContext().getProcMap().containsKey(arg.getText() + ":"))
+          {
+            String errorMsg = "label \"" + arg.getText() + "\" is not the label of a PROC instruction.";
+            throw error(arg.getPosition(), errorMsg);
+          }
+      }
+
+
+    public int getArgSize()
+      {
+        return 2*Constants.BYTES_PER_INTEGER;
+      }
+
+
+    /**
+     * Emits the opcode followed by the displacement to the instruction
+     * following the PROC instruction and the argument of the PROC instruction.
+     */
+    protected void emitProcArg(byte opCode) throws IOException
+      {
+        InstructionPROC proc = getContext().getProcMap().get(arg.getText() + ":");
+
+        emit(opCode);
+        emit(getDisplacement(arg) + proc.getSize());
+        emit(proc.argToInt());
+      }
+  }
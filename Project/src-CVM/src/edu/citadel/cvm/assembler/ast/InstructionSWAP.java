@@ -0,0 +1,36 @@
+package edu.citadel.cvm.assembler.ast;
+
+
+import edu.citadel.cvm.OpCode;
+import edu.citadel.cvm.assembler.Symbol;
+import edu.citadel.cvm.assembler.Token;
+
+import java.util.List;
+import java.io.IOException;
+
+
+/**
+ * This class implements the abstract syntax tree for the assembly
+ * language instruction SWAP, which exchanges the two integers
+ * on the top of the stack.
+ */
+public class InstructionSWAP extends InstructionNoArgs
+  {
+    public InstructionSWAP(List<Token> labels, Token opCode)
+      {
+        super(labels, opCode);
+      }
+
+
+    public void assertOpCode()
+      {
+        assertOpCode(Symbol.SWAP);
+      }
+
+
+    @Override
+    public void emit() throws IOException
+      {
+        emit(OpCode.SWAP);
+      }
+  }
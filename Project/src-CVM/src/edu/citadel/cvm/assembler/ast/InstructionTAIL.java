@@ -0,0 +1,40 @@
+package edu.citadel.cvm.assembler.ast;
+
+
+import edu.citadel.cvm.OpCode;
+import edu.citadel.cvm.assembler.Symbol;
+import edu.citadel.cvm.assembler.Token;
+
+import java.util.List;
+import java.io.IOException;
+
+
+/**
+ * This class implements the abstract syntax tree for the assembly
+ * language instruction TAIL.  The argument is the label of a PROC
+ * instruction, and the machine code has the same form as for ENTER.  TAIL
+ * calls the subprogram in the frame of the current subprogram, so
+ * it must be preceded by the parameters for the called subprogram,
+ * the number of bytes of parameters of the current subprogram, and
+ * the number of bytes of parameters of the called subprogram.
+ */
+public class InstructionTAIL extends InstructionProcArg
+  {
+    public InstructionTAIL(List<Token> labels, Token opCode, Token arg)
+      {
+        super(labels, opCode, arg);
+      }
+
+
+    public void assertOpCode()
+      {
+        assertOpCode(Symbol.TAIL);
+      }
+
+
+    @Override
+    public void emit() throws IOException
+      {
+        emitProcArg(OpCode.TAIL);
+      }
+  }
@@ -2,12 +2,18 @@ package edu.citadel.cvm.assembler.ast;
 
 
 import edu.citadel.compiler.ConstraintException;
-import edu.citadel.compiler.ErrorHandler;
-import edu.citadel.cvm.assembler.optimize.Optimization;
-import edu.citadel.cvm.assembler.optimize.Optimizations;
+import edu.citadel.compiler.Position;
+import edu.citadel.cvm.ObjectFile;
+import edu.citadel.cvm.StringPool;
+import edu.citadel.cvm.assembler.AssemblyContext;
+import edu.citadel.cvm.assembler.Token;
+import edu.citadel.cvm.assembler.optimize.PassManager;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.stream.IntStream;
 
 
 /**
@@ -15,13 +21,27 @@ import java.util.*;
  */
 public class Program extends AST
   {
+    /** minimum number of instructions for which code is emitted in parallel */
+    private static final int PARALLEL_EMIT_THRESHOLD = 50000;
+
+    /** number of consecutive instructions emitted by one parallel task */
+    private static final int EMIT_RANGE_SIZE = 10000;
+
     private ArrayList<Instruction> instructions;
 
+    // number of bytes of machine code (known after setAddresses())
+    private int codeSize;
+
 
-    public Program()
+    /**
+     * Construct an empty program for the specified assembly context.
+     */
+    public Program(AssemblyContext context)
       {
         super();
+        setContext(context);
         instructions = new ArrayList<Instruction>(200);
+        codeSize = 0;
       }
 
 
@@ -46,23 +66,30 @@ public class Program extends AST
 
 
     /**
-     * Perform code transformations that improve performance.  This method
-     * is normally called after checkConstraints() and before emit();
+     * Perform code transformations that improve performance by running the
+     * optimization passes of the pass manager.  The peephole optimizations
+     * are applied until none of them applies, followed by the global
+     * optimizations based on the control flow graph.  Since the global
+     * optimizations can bring instructions together, the peephole
+     * optimizations are then applied again.  Finally, values are kept on
+     * the stack instead of being computed or loaded a second time (see
+     * StackOptimizer), since the instructions used for this (DUP, SWAP, and
+     * OVER) would keep the peephole optimizations from matching.  This
+     * method is normally called after checkConstraints() and before emit();
      */
-    public void optimize()
+    public void optimize(PassManager passManager)
       {
-        for (int n = 0; n < instructions.size(); ++n)
-          {
-            for (Optimization optimization : Optimizations.getOptimizations())
-                optimization.optimize(instructions, n);
-          }
+        instructions = passManager.optimize(instructions);
       }
 
 
     /**
      * Sets the starting memory address for each instruction and defines label
-     * addresses.  Note: This method should be called after optimizations have
-     * been performed and immediately before code generation.
+     * addresses.  Instructions with compact encodings start with their smallest
+     * encoding, and branch relaxation then grows those whose arguments don't fit
+     * and recomputes the addresses, repeating until no instruction changes size.
+     * Note: This method should be called after optimizations have been performed
+     * and immediately before code generation.
      */
     public void setAddresses()
       {
@@ -78,17 +105,134 @@ public class Program extends AST
               }
            catch (ConstraintException e)
              {
-               ErrorHandler.getInstance().reportError(e);
+               getContext().getErrorHandler().reportError(e);
              }
           }
+
+        // Sizes only grow during relaxation, so the loop terminates.
+        while (relax())
+          {
+            address = 0;
+            for (Instruction inst : instructions)
+              {
+                inst.updateAddress(address);
+                address += inst.getSize();
+              }
+          }
+
+        codeSize = address;
+      }
+
+
+    /**
+     * Returns the number of bytes of machine code for the program.  This
+     * method should be called after setAddresses().
+     */
+    public int getCodeSize()
+      {
+        return codeSize;
+      }
+
+
+    /**
+     * Relaxes all instructions.  Returns true if any instruction changed size.
+     */
+    private boolean relax()
+      {
+        boolean changed = false;
+
+        for (Instruction inst : instructions)
+          {
+            if (inst.relax())
+                changed = true;
+          }
+
+        return changed;
+      }
+
+
+    /**
+     * Returns the pool containing the string literals of the program.
+     * The pool is complete only after the addresses have been set.
+     */
+    public StringPool getStringPool()
+      {
+        return getContext().getStringPool();
+      }
+
+
+    /**
+     * Adds the label addresses and the source line numbers of the instructions
+     * to the object file.  This method should be called after setAddresses().
+     */
+    public void addDebugInfo(ObjectFile objectFile)
+      {
+        for (Instruction inst : instructions)
+          {
+            for (Token label : inst.getLabels())
+              {
+                // omit the colon at the end of the label text
+                String labelText = label.getText();
+                objectFile.addSymbol(labelText.substring(0, labelText.length() - 1),
+                                     inst.getAddress());
+              }
+
+            Position position = inst.getOpCode().getPosition();
+            if (position != null)
+                objectFile.addLineNumber(inst.getAddress(), position.getLineNumber());
+          }
       }
 
 
+    /**
+     * Emits the machine code into a buffer of exactly getCodeSize() bytes,
+     * which becomes the code buffer of the assembly context.  Since every
+     * instruction is emitted at its own address, large programs are emitted
+     * in parallel, one range of instructions per task.
+     */
     @Override
     public void emit() throws IOException
       {
-        for (Instruction inst : instructions)
-            inst.emit();
+        getContext().setCodeBuffer(ByteBuffer.allocate(codeSize));
+
+        if (instructions.size() < PARALLEL_EMIT_THRESHOLD)
+            emit(0, instructions.size());
+        else
+          {
+            int numRanges = (instructions.size() + EMIT_RANGE_SIZE - 1)/EMIT_RANGE_SIZE;
+            try
+              {
+                IntStream.range(0, numRanges).parallel().forEach(range ->
+                  {
+                    int start = range*EMIT_RANGE_SIZE;
+                    int end   = Math.min(start + EMIT_RANGE_SIZE, instructions.size());
+
+                    try
+                      {
+                        emit(start, end);
+                      }
+                    catch (IOException e)
+                      {
+                        throw new UncheckedIOException(e);
+                      }
+                  });
+              }
+            catch (UncheckedIOException e)
+              {
+                throw e.getCause();
+              }
+          }
+      }
+
+
+    /**
+     * Emits the machine code for the instructions from index start
+     * (inclusive) to index end (exclusive).
+     */
+    private void emit(int start, int end) throws IOException
+      {
+        for (int i = start;  i < end;  ++i)
+            instructions.get(i).emitCode();
       }
 
 
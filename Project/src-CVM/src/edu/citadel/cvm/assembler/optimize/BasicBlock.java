@@ -0,0 +1,122 @@
+package edu.citadel.cvm.assembler.optimize;
+
+
+import edu.citadel.cvm.assembler.Token;
+import edu.citadel.cvm.assembler.ast.Instruction;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * A basic block: a maximal sequence of instructions that is entered only
+ * at its first instruction and left only after its last instruction.
+ * Only the first instruction of a block can have labels, and only the
+ * last instruction can be a branch or a return.
+ */
+public class BasicBlock
+  {
+    private List<Instruction> instructions;
+    private List<BasicBlock>  successors;
+    private List<BasicBlock>  predecessors;
+
+
+    /**
+     * Construct an empty basic block.
+     */
+    public BasicBlock()
+      {
+        instructions = new ArrayList<>();
+        successors   = new ArrayList<>(2);
+        predecessors = new ArrayList<>(2);
+      }
+
+
+    public List<Instruction> getInstructions()
+      {
+        return instructions;
+      }
+
+
+    public Instruction getFirst()
+      {
+        return instructions.get(0);
+      }
+
+
+    public Instruction getLast()
+      {
+        return instructions.get(instructions.size() - 1);
+      }
+
+
+    /**
+     * Returns the labels of the block; i.e., the labels of its first instruction.
+     */
+    public List<Token> getLabels()
+      {
+        return getFirst().getLabels();
+      }
+
+
+    /**
+     * Returns true if the block has the specified label.  The label
+     * text includes the colon (:) at the end.
+     */
+    public boolean hasLabel(String labelText)
+      {
+        for (Token label : getLabels())
+          {
+            if (label.getText().equals(labelText))
+                return true;
+          }
+
+        return false;
+      }
+
+
+    /**
+     * Returns true if control can continue from the last instruction
+     * of this block to the block that follows it in the program.
+     */
+    public boolean fallsThrough()
+      {
+        return ControlFlowGraph.fallsThrough(getLast());
+      }
+
+
+    /**
+     * Returns the blocks to which control can pass from this block,
+     * by a branch or by falling through.
+     */
+    public List<BasicBlock> getSuccessors()
+      {
+        return successors;
+      }
+
+
+    public List<BasicBlock> getPredecessors()
+      {
+        return predecessors;
+      }
+
+
+    void addSuccessor(BasicBlock block)
+      {
+        successors.add(block);
+        block.predecessors.add(this);
+      }
+
+
+    @Override
+    public String toString()
+      {
+        StringBuilder buffer = new StringBuilder(100);
+
+        for (Instruction inst : instructions)
+            buffer.append(inst.toString())
+                  .append("\n");
+
+        return buffer.toString();
+      }
+  }
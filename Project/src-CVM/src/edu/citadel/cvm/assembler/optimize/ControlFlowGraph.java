@@ -0,0 +1,200 @@
+package edu.citadel.cvm.assembler.optimize;
+
+
+import edu.citadel.cvm.assembler.Symbol;
+import edu.citadel.cvm.assembler.Token;
+import edu.citadel.cvm.assembler.ast.Instruction;
+import edu.citadel.cvm.assembler.ast.InstructionOneArg;
+
+import java.util.*;
+
+
+/**
+ * The control flow graph of a list of instructions.  The blocks are kept
+ * in program order; i.e., concatenating the instructions of the blocks
+ * gives the original list.  The first block is the entry block.  A block
+ * ends at a branch (BR, BZ, BNZ, BG, BGE, BL, BLE), a return (RET, LEAVE),
+ * a tail call (TAIL), or HALT, and a new block starts at every labeled
+ * instruction.
+ */
+public class ControlFlowGraph
+  {
+    private List<BasicBlock> blocks;
+
+    // Maps label text (including the colon) to the block having that label.
+    private Map<String, BasicBlock> labelMap;
+
+
+    /**
+     * Construct the control flow graph for the specified instructions.
+     */
+    public ControlFlowGraph(List<Instruction> instructions)
+      {
+        blocks   = new ArrayList<>();
+        labelMap = new HashMap<>();
+
+        // partition the instructions into blocks
+        BasicBlock block = null;
+        for (Instruction inst : instructions)
+          {
+            if (block == null || !inst.getLabels().isEmpty())
+              {
+                block = new BasicBlock();
+                blocks.add(block);
+              }
+
+            block.getInstructions().add(inst);
+
+            for (Token label : inst.getLabels())
+                labelMap.put(label.getText(), block);
+
+            if (endsBlock(inst))
+                block = null;
+          }
+
+        // add the edges
+        for (int i = 0;  i < blocks.size();  ++i)
+          {
+            block = blocks.get(i);
+
+            Instruction last = block.getLast();
+            if (isBranch(last))
+              {
+                BasicBlock target = labelMap.get(getTargetLabel(last));
+                if (target != null)
+                    block.addSuccessor(target);
+              }
+
+            if (block.fallsThrough() && i + 1 < blocks.size())
+                block.addSuccessor(blocks.get(i + 1));
+          }
+      }
+
+
+    /**
+     * Returns the blocks in program order.
+     */
+    public List<BasicBlock> getBlocks()
+      {
+        return blocks;
+      }
+
+
+    /**
+     * Returns the entry block, or null if there are no instructions.
+     */
+    public BasicBlock getEntry()
+      {
+        return blocks.isEmpty() ? null : blocks.get(0);
+      }
+
+
+    /**
+     * Returns the block with the specified label (including the colon),
+     * or null if no block has the label.
+     */
+    public BasicBlock getBlock(String labelText)
+      {
+        return labelMap.get(labelText);
+      }
+
+
+    /**
+     * Returns the instructions of the blocks in program order.
+     */
+    public ArrayList<Instruction> getInstructions()
+      {
+        ArrayList<Instruction> instructions = new ArrayList<>();
+        for (BasicBlock block : blocks)
+            instructions.addAll(block.getInstructions());
+
+        return instructions;
+      }
+
+
+    /**
+     * Returns true if the instruction is a conditional or unconditional branch.
+     */
+    public static boolean isBranch(Instruction inst)
+      {
+        Symbol opCode = inst.getOpCode().getSymbol();
+        return opCode == Symbol.BR || isConditionalBranch(inst);
+      }
+
+
+    /**
+     * Returns true if the instruction is a conditional branch.
+     */
+    public static boolean isConditionalBranch(Instruction inst)
+      {
+        switch (inst.getOpCode().getSymbol())
+          {
+            case BZ:
+            case BNZ:
+            case BG:
+            case BGE:
+            case BL:
+            case BLE:
+                return true;
+            default:
+                return false;
+          }
+      }
+
+
+    /**
+     * Returns true if control can continue from the instruction to the
+     * instruction that follows it in the program.
+     */
+    public static boolean fallsThrough(Instruction inst)
+      {
+        switch (inst.getOpCode().getSymbol())
+          {
+            case BR:
+            case RET:
+            case LEAVE:
+            case TAIL:
+            case HALT:
+                return false;
+            default:
+                return true;
+          }
+      }
+
+
+    /**
+     * Returns true if the instruction is the last instruction of a block.
+     */
+    public static boolean endsBlock(Instruction inst)
+      {
+        return isBranch(inst) || !fallsThrough(inst);
+      }
+
+
+    /**
+     * Returns the text of the label (including the colon) that is the target
+     * of a branch instruction.
+     */
+    public static String getTargetLabel(Instruction inst)
+      {
+        assert isBranch(inst) : "Instruction " + inst.getOpCode().getText() + " is not a branch.";
+        return ((InstructionOneArg) inst).getArg().getText() + ":";
+      }
+
+
+    @Override
+    public String toString()
+      {
+        StringBuilder buffer = new StringBuilder(1000);
+
+        for (int i = 0;  i < blocks.size();  ++i)
+          {
+            buffer.append("block ")
+                  .append(i)
+                  .append(":\n")
+                  .append(blocks.get(i).toString());
+          }
+
+        return buffer.toString();
+      }
+  }
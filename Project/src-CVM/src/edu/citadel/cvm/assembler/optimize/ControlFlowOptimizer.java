@@ -0,0 +1,542 @@
+package edu.citadel.cvm.assembler.optimize;
+
+
+import edu.citadel.compiler.Position;
+import edu.citadel.cvm.assembler.Symbol;
+import edu.citadel.cvm.assembler.Token;
+import edu.citadel.cvm.assembler.ast.Instruction;
+import edu.citadel.cvm.assembler.ast.InstructionFactory;
+import edu.citadel.cvm.assembler.ast.InstructionOneArg;
+
+import java.util.*;
+
+
+/**
+ * Global optimizations based on the control flow graph of the program.
+ * The following passes are applied repeatedly until none of them changes
+ * the program.
+ * <ul>
+ *   <li> Jump threading: a branch to a BR instruction is changed into a
+ *        branch to the target of that BR, and a BR to a return or HALT
+ *        is replaced by a copy of that instruction.
+ *   <li> Loop rotation: a BR back to a loop header that ends with a
+ *        conditional branch out of the loop is replaced by a copy of the
+ *        header with the inverse condition, so that each iteration
+ *        executes one branch instead of two.
+ *   <li> Block reordering: the chain of blocks targeted by a BR is moved
+ *        to follow the BR if no block falls through into the chain, and
+ *        the BR is removed.
+ *   <li> Removal of BR instructions that branch to the next instruction.
+ *   <li> Removal of blocks that can't be reached from the first instruction.
+ * </ul>
+ * A block is reachable if it is the entry block, a successor of a reachable
+ * block, or has a label that is the argument of an instruction other than a
+ * branch in a reachable block (e.g., CALL, ENTER, or SPAWN).
+ */
+public class ControlFlowOptimizer implements Pass
+  {
+    /** maximum number of instructions in a loop header that is copied by loop rotation */
+    private static final int MAX_ROTATED_HEADER_SIZE = 8;
+
+    /** maximum number of times the passes are applied */
+    private static final int MAX_ROUNDS = 10;
+
+    // the text of all labels in the program (used to create new labels)
+    private Set<String> labelTexts;
+    private int labelNum;
+
+    private int changeCount;
+
+
+    public ControlFlowOptimizer()
+      {
+        labelTexts  = new HashSet<>();
+        labelNum    = 0;
+        changeCount = 0;
+      }
+
+
+    @Override
+    public String getName()
+      {
+        return Optimizations.CFG;
+      }
+
+
+    /**
+     * Returns the number of changes made; e.g., a branch threaded, a loop
+     * rotated, a block moved, or an unreachable instruction removed.
+     */
+    @Override
+    public int getChangeCount()
+      {
+        return changeCount;
+      }
+
+
+    /**
+     * Optimizes the list of instructions and returns the optimized list.
+     */
+    @Override
+    public ArrayList<Instruction> optimize(List<Instruction> instructions)
+      {
+        if (instructions.isEmpty())
+            return new ArrayList<>(instructions);
+
+        for (Instruction inst : instructions)
+          {
+            for (Token label : inst.getLabels())
+                labelTexts.add(label.getText());
+          }
+
+        ControlFlowGraph cfg = new ControlFlowGraph(instructions);
+        for (int round = 0;  round < MAX_ROUNDS;  ++round)
+          {
+            boolean changed = false;
+
+            if (threadJumps(cfg))
+              {
+                cfg = new ControlFlowGraph(cfg.getInstructions());
+                changed = true;
+              }
+
+            if (rotateLoops(cfg))
+              {
+                cfg = new ControlFlowGraph(cfg.getInstructions());
+                changed = true;
+              }
+
+            if (reorderBlocks(cfg))
+              {
+                cfg = new ControlFlowGraph(cfg.getInstructions());
+                changed = true;
+              }
+
+            if (removeBranchesToNext(cfg))
+              {
+                cfg = new ControlFlowGraph(cfg.getInstructions());
+                changed = true;
+              }
+
+            if (removeUnreachableBlocks(cfg))
+              {
+                cfg = new ControlFlowGraph(cfg.getInstructions());
+                changed = true;
+              }
+
+            if (!changed)
+                break;
+          }
+
+        return cfg.getInstructions();
+      }
+
+
+    /**
+     * Changes branches to BR instructions into branches to the final target,
+     * and replaces a BR to a RET, LEAVE, or HALT instruction with a copy of
+     * that instruction.  Returns true if any instruction was changed.
+     */
+    private boolean threadJumps(ControlFlowGraph cfg)
+      {
+        boolean changed = false;
+
+        for (BasicBlock block : cfg.getBlocks())
+          {
+            Instruction last = block.getLast();
+            if (!ControlFlowGraph.isBranch(last))
+                continue;
+
+            // follow the chain of BR instructions, stopping at a cycle
+            String targetLabel = ControlFlowGraph.getTargetLabel(last);
+            BasicBlock target  = cfg.getBlock(targetLabel);
+            Set<BasicBlock> visited = new HashSet<>();
+            while (target != null && target != block && visited.add(target)
+                && target.getInstructions().size() == 1
+                && target.getFirst().getOpCode().getSymbol() == Symbol.BR)
+              {
+                targetLabel = ControlFlowGraph.getTargetLabel(target.getFirst());
+                target = cfg.getBlock(targetLabel);
+              }
+
+            Instruction newInst = null;
+            if (target != null && last.getOpCode().getSymbol() == Symbol.BR
+                && target.getFirst().getOpCode().getSymbol() != Symbol.BR
+                && !ControlFlowGraph.fallsThrough(target.getFirst()))
+              {
+                // BR to a return or HALT
+                Instruction exit = target.getFirst();
+                newInst = copy(exit, last.getLabels(), exit.getOpCode().getSymbol(), getArg(exit));
+              }
+            else if (!targetLabel.equals(ControlFlowGraph.getTargetLabel(last)))
+                newInst = copy(last, last.getLabels(), last.getOpCode().getSymbol(),
+                               makeLabelArg(targetLabel, last));
+
+            if (newInst != null)
+              {
+                replaceLast(block, newInst);
+                changed = true;
+                ++changeCount;
+              }
+          }
+
+        return changed;
+      }
+
+
+    /**
+     * Rotates loops of the form
+     * <pre>
+     *   H:  header instructions
+     *       Bcc X
+     *   F:  ...
+     *       BR H
+     *   X:
+     * </pre>
+     * by replacing "BR H" with a copy of the header instructions followed
+     * by a branch to F with the inverse condition.  Returns true if any loop
+     * was rotated.
+     */
+    private boolean rotateLoops(ControlFlowGraph cfg)
+      {
+        boolean changed = false;
+        List<BasicBlock> blocks = cfg.getBlocks();
+
+        for (int i = 0;  i + 1 < blocks.size();  ++i)
+          {
+            BasicBlock block = blocks.get(i);
+            Instruction last = block.getLast();
+            if (last.getOpCode().getSymbol() != Symbol.BR)
+                continue;
+
+            BasicBlock header = cfg.getBlock(ControlFlowGraph.getTargetLabel(last));
+            if (header == null || header == block || !canCopyHeader(header))
+                continue;
+
+            // the header must exit the loop to the block following the BR
+            Instruction headerBranch = header.getLast();
+            BasicBlock exit = cfg.getBlock(ControlFlowGraph.getTargetLabel(headerBranch));
+            if (exit != blocks.get(i + 1))
+                continue;
+
+            int headerIndex = blocks.indexOf(header);
+            if (headerIndex + 1 >= blocks.size())
+                continue;
+
+            BasicBlock body = blocks.get(headerIndex + 1);
+            if (body == header)
+                continue;
+
+            // the body may be this block, so get the label before the BR is replaced
+            String bodyLabel = getLabel(body);
+            last = block.getLast();
+
+            // replace the BR with a copy of the header
+            List<Instruction> instructions = block.getInstructions();
+            List<Token> labels = last.getLabels();
+            instructions.remove(instructions.size() - 1);
+
+            List<Instruction> headerInsts = header.getInstructions();
+            for (int j = 0;  j < headerInsts.size() - 1;  ++j)
+              {
+                Instruction inst = headerInsts.get(j);
+                instructions.add(copy(inst, labels, inst.getOpCode().getSymbol(), getArg(inst)));
+                labels = new LinkedList<>();
+              }
+
+            Symbol inverse = getInverseBranch(headerBranch.getOpCode().getSymbol());
+            instructions.add(copy(headerBranch, labels, inverse, makeLabelArg(bodyLabel, headerBranch)));
+            changed = true;
+            ++changeCount;
+          }
+
+        return changed;
+      }
+
+
+    /**
+     * Returns true if the loop header can be copied by loop rotation.
+     */
+    private static boolean canCopyHeader(BasicBlock header)
+      {
+        List<Instruction> instructions = header.getInstructions();
+        if (instructions.size() - 1 > MAX_ROTATED_HEADER_SIZE
+            || !ControlFlowGraph.isConditionalBranch(header.getLast()))
+            return false;
+
+        for (Instruction inst : instructions)
+          {
+            switch (inst.getOpCode().getSymbol())
+              {
+                case DEFINT:
+                case PROGRAM:
+                case PROC:
+                    return false;
+                default:
+                    break;
+              }
+          }
+
+        return true;
+      }
+
+
+    /**
+     * Moves the chain of blocks targeted by a BR instruction to follow
+     * the BR and removes the BR.  A chain consists of a block that isn't
+     * entered by falling through and the blocks that it falls through to,
+     * ending with a block that doesn't fall through.  Returns true if any
+     * chain was moved.
+     */
+    private boolean reorderBlocks(ControlFlowGraph cfg)
+      {
+        boolean changed = false;
+        List<BasicBlock> blocks = cfg.getBlocks();
+
+        for (int i = 0;  i < blocks.size();  ++i)
+          {
+            BasicBlock block = blocks.get(i);
+            Instruction last = block.getLast();
+            if (last.getOpCode().getSymbol() != Symbol.BR)
+                continue;
+
+            BasicBlock target = cfg.getBlock(ControlFlowGraph.getTargetLabel(last));
+            int start = blocks.indexOf(target);
+            if (start <= 0 || start == i + 1 || blocks.get(start - 1).fallsThrough())
+                continue;
+
+            int end = start;
+            while (end < blocks.size() && blocks.get(end).fallsThrough())
+                ++end;
+
+            if (end == blocks.size() || (i >= start && i <= end))
+                continue;
+
+            // move the chain and remove the BR
+            List<BasicBlock> chain = new ArrayList<>(blocks.subList(start, end + 1));
+            blocks.subList(start, end + 1).clear();
+            int insertIndex = blocks.indexOf(block) + 1;
+            blocks.addAll(insertIndex, chain);
+            removeLast(blocks, block, chain.get(0));
+
+            changed = true;
+            ++changeCount;
+            i = blocks.indexOf(chain.get(0)) - 1;   // continue with the moved chain
+          }
+
+        return changed;
+      }
+
+
+    /**
+     * Removes BR instructions that branch to the next instruction.
+     * Returns true if any instruction was removed.
+     */
+    private boolean removeBranchesToNext(ControlFlowGraph cfg)
+      {
+        boolean changed = false;
+        List<BasicBlock> blocks = cfg.getBlocks();
+
+        for (int i = 0;  i + 1 < blocks.size();  ++i)
+          {
+            BasicBlock block = blocks.get(i);
+            Instruction last = block.getLast();
+            BasicBlock next  = blocks.get(i + 1);
+            if (last.getOpCode().getSymbol() == Symbol.BR
+                && next.hasLabel(ControlFlowGraph.getTargetLabel(last)))
+              {
+                if (removeLast(blocks, block, next))
+                    --i;
+
+                changed = true;
+                ++changeCount;
+              }
+          }
+
+        return changed;
+      }
+
+
+    /**
+     * Removes the blocks that can't be reached from the entry block.
+     * DEFINT instructions in unreachable blocks are kept since they
+     * define identifiers.  Returns true if any instruction was removed.
+     */
+    private boolean removeUnreachableBlocks(ControlFlowGraph cfg)
+      {
+        Set<BasicBlock> reachable = new HashSet<>();
+        Deque<BasicBlock> worklist = new ArrayDeque<>();
+        reachable.add(cfg.getEntry());
+        worklist.add(cfg.getEntry());
+
+        while (!worklist.isEmpty())
+          {
+            BasicBlock block = worklist.poll();
+
+            List<BasicBlock> targets = new ArrayList<>(block.getSuccessors());
+            for (Instruction inst : block.getInstructions())
+              {
+                // labels used by CALL, ENTER, SPAWN, etc.
+                Token arg = getArg(inst);
+                if (arg != null && arg.getSymbol() == Symbol.identifier
+                    && !ControlFlowGraph.isBranch(inst))
+                  {
+                    BasicBlock target = cfg.getBlock(arg.getText() + ":");
+                    if (target != null)
+                        targets.add(target);
+                  }
+              }
+
+            for (BasicBlock target : targets)
+              {
+                if (reachable.add(target))
+                    worklist.add(target);
+              }
+          }
+
+        boolean changed = false;
+        for (BasicBlock block : cfg.getBlocks())
+          {
+            if (reachable.contains(block))
+                continue;
+
+            List<Instruction> instructions = block.getInstructions();
+            for (int i = 0;  i < instructions.size();  ++i)
+              {
+                Instruction inst = instructions.get(i);
+                if (inst.getOpCode().getSymbol() != Symbol.DEFINT)
+                  {
+                    instructions.remove(i--);
+                    changed = true;
+                    ++changeCount;
+                  }
+                else if (!inst.getLabels().isEmpty())
+                  {
+                    instructions.set(i, copy(inst, new LinkedList<>(), Symbol.DEFINT, getArg(inst)));
+                    changed = true;
+                    ++changeCount;
+                  }
+              }
+          }
+
+        if (changed)
+            cfg.getBlocks().removeIf(block -> block.getInstructions().isEmpty());
+
+        return changed;
+      }
+
+
+    /**
+     * Removes the last instruction (a BR) of a block.  If the block becomes
+     * empty, it is removed and its labels are added to the labels of the
+     * next block.  Returns true if the block was removed.
+     */
+    private static boolean removeLast(List<BasicBlock> blocks, BasicBlock block, BasicBlock next)
+      {
+        List<Instruction> instructions = block.getInstructions();
+        Instruction last = instructions.remove(instructions.size() - 1);
+
+        if (instructions.isEmpty())
+          {
+            Instruction first = next.getFirst();
+            List<Token> labels = new LinkedList<>(last.getLabels());
+            labels.addAll(first.getLabels());
+            next.getInstructions().set(0, copy(first, labels, first.getOpCode().getSymbol(),
+                                               getArg(first)));
+            blocks.remove(block);
+            return true;
+          }
+
+        return false;
+      }
+
+
+    /**
+     * Replaces the last instruction of a block.
+     */
+    private static void replaceLast(BasicBlock block, Instruction inst)
+      {
+        List<Instruction> instructions = block.getInstructions();
+        instructions.set(instructions.size() - 1, inst);
+      }
+
+
+    /**
+     * Returns the text of a label of the block (without the colon), adding
+     * a new label to the first instruction of the block if it has none.
+     */
+    private String getLabel(BasicBlock block)
+      {
+        Instruction first = block.getFirst();
+        if (!first.getLabels().isEmpty())
+          {
+            String labelText = first.getLabels().get(0).getText();
+            return labelText.substring(0, labelText.length() - 1);
+          }
+
+        String labelText;
+        do
+            labelText = "R" + labelNum++ + ":";
+        while (!labelTexts.add(labelText));
+
+        Position position = first.getOpCode().getPosition();
+        List<Token> labels = new LinkedList<>();
+        labels.add(new Token(Symbol.labelId, position, labelText));
+        block.getInstructions().set(0, copy(first, labels, first.getOpCode().getSymbol(),
+                                            getArg(first)));
+
+        return labelText.substring(0, labelText.length() - 1);
+      }
+
+
+    /**
+     * Returns the branch opcode with the inverse condition.
+     */
+    private static Symbol getInverseBranch(Symbol opCode)
+      {
+        switch (opCode)
+          {
+            case BZ:  return Symbol.BNZ;
+            case BNZ: return Symbol.BZ;
+            case BG:  return Symbol.BLE;
+            case BLE: return Symbol.BG;
+            case BGE: return Symbol.BL;
+            case BL:  return Symbol.BGE;
+            default:
+                throw new IllegalArgumentException("Not a conditional branch: " + opCode);
+          }
+      }
+
+
+    /**
+     * Returns an identifier token for a label argument.  The label text
+     * may include the colon, which is omitted from the argument.
+     */
+    private static Token makeLabelArg(String labelText, Instruction inst)
+      {
+        if (labelText.endsWith(":"))
+            labelText = labelText.substring(0, labelText.length() - 1);
+
+        return new Token(Symbol.identifier, inst.getOpCode().getPosition(), labelText);
+      }
+
+
+    /**
+     * Returns the argument of the instruction, or null if it has no argument.
+     */
+    private static Token getArg(Instruction inst)
+      {
+        return inst instanceof InstructionOneArg ? ((InstructionOneArg) inst).getArg() : null;
+      }
+
+
+    /**
+     * Creates an instruction with the specified labels, opcode, and argument
+     * in the same assembly context and at the same source position as inst.
+     */
+    private static Instruction copy(Instruction inst, List<Token> labels, Symbol opCode, Token arg)
+      {
+        Token opCodeToken = new Token(opCode, inst.getOpCode().getPosition(), opCode.toString());
+        return InstructionFactory.makeInstruction(inst.getContext(), labels, opCodeToken, arg);
+      }
+  }
@@ -1,37 +1,308 @@
 package edu.citadel.cvm.assembler.optimize;
 
 
-import java.util.List;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
 
 
 /**
- * This class is used to retrieve the list of all optimizations. 
+ * This class is used to configure the optimizations.  The optimization
+ * passes that are enabled depend on the optimization level and on the
+ * passes that have been explicitly enabled or disabled.  A pass also
+ * enables the passes that it requires, unless they have been explicitly
+ * disabled, in which case the pass itself is disabled.  The peephole pass
+ * uses peephole rules (see RuleParser for the syntax), and additional
+ * rules can be loaded from a file.
  */
 public class Optimizations
   {
-    private static final List<Optimization> optimizations;
+    /** names of the optimization passes, in the order in which they are run */
+    public static final String PEEPHOLE = "peephole";
+    public static final String CFG      = "cfg";
+    public static final String STACK    = "stack";
 
+    /** the default optimization level */
+    public static final int DEFAULT_LEVEL = 2;
 
+    /** the maximum optimization level */
+    public static final int MAX_LEVEL = 3;
+
+    // the lowest optimization level at which each pass is enabled
+    private static final Map<String, Integer> passLevels = new LinkedHashMap<>();
+
+    // the passes required by each pass
+    private static final Map<String, List<String>> requiredPasses = new HashMap<>();
+
+    // passes that have been explicitly enabled (true) or disabled (false)
+    private static final Map<String, Boolean> passToggles = new HashMap<>();
+
+    private static int level = DEFAULT_LEVEL;
+
+    /** the built-in peephole rules */
+    private static final String[] BUILT_IN_RULES =
+      {
+        // constant folding
+        "fold-add: LDCINT $a; LDCINT $b; ADD => LDCINT $a + $b",
+        "fold-sub: LDCINT $a; LDCINT $b; SUB => LDCINT $a - $b",
+        "fold-mul: LDCINT $a; LDCINT $b; MUL => LDCINT $a * $b",
+        "fold-div: LDCINT $a; LDCINT $b; DIV => LDCINT $a / $b when $b != 0",
+        "fold-mod: LDCINT $a; LDCINT $b; MOD => LDCINT $a % $b when $b != 0",
+        "fold-neg: LDCINT $a; NEG => LDCINT -$a",
+
+        // increment/decrement
+        "inc:        LDCINT 1; ADD => INC",
+        "dec:        LDCINT 1; SUB => DEC",
+        "inc-local:  LDCINT 1; LDLADDR $x; LOADW; ADD => LDLADDR $x; LOADW; INC",
+        "inc-global: LDCINT 1; LDGADDR $x; LOADW; ADD => LDGADDR $x; LOADW; INC",
+
+        // multiplication by a power of 2
+        "shl:        LDCINT $n; MUL => SHL log2($n) when pow2($n)",
+        "shl-local:  LDCINT $n; LDLADDR $x; LOADW; MUL => LDLADDR $x; LOADW; SHL log2($n) when pow2($n)",
+        "shl-global: LDCINT $n; LDGADDR $x; LOADW; MUL => LDGADDR $x; LOADW; SHL log2($n) when pow2($n)",
+
+        // a conditional branch around an unconditional branch
+        "branch-bnz: BNZ $t; BR $f => BZ $f  when follows($t)",
+        "branch-bz:  BZ $t;  BR $f => BNZ $f when follows($t)",
+        "branch-bg:  BG $t;  BR $f => BLE $f when follows($t)",
+        "branch-bge: BGE $t; BR $f => BL $f  when follows($t)",
+        "branch-bl:  BL $t;  BR $f => BGE $f when follows($t)",
+        "branch-ble: BLE $t; BR $f => BG $f  when follows($t)",
+
+        // allocation
+        "alloc: ALLOC $a; ALLOC $b => ALLOC $a + $b",
+
+        // unlabeled instructions after a branch, return, or tail call are unreachable
+        "dead-br:    BR $l; *    => BR $l",
+        "dead-ret:   RET $n; *   => RET $n",
+        "dead-leave: LEAVE $n; * => LEAVE $n",
+        "dead-tail:  TAIL $l; *  => TAIL $l",
+
+        // special constants (final since the other rules match only LDCINT/LDCB)
+        "final ldcint0: LDCINT 0 => LDCINT0",
+        "final ldcint1: LDCINT 1 => LDCINT1",
+        "final ldcb0:   LDCB 0   => LDCB0",
+        "final ldcb1:   LDCB 1   => LDCB1",
+      };
+
+    private static final RuleSet rules;
+    private static final RuleSet finalRules;
+
+    // the text of all rules that have been added
+    private static final List<String> ruleTexts;
+
+
+    /**
+     * Returns the optimizations that are applied repeatedly until none applies.
+     */
     public static List<Optimization> getOptimizations()
       {
-        return optimizations;
+        return List.of(rules);
+      }
+
+
+    /**
+     * Returns the optimizations that are applied once after all other
+     * optimizations, since they would keep the others from matching.
+     */
+    public static List<Optimization> getFinalOptimizations()
+      {
+        return List.of(finalRules);
+      }
+
+
+    /**
+     * Adds a rule to the optimizations.
+     *
+     * @throws IllegalArgumentException if the text is not a valid rule.
+     */
+    public static void addRule(String ruleText)
+      {
+        PeepholeRule rule = RuleParser.parse(ruleText);
+        ruleTexts.add(ruleText.trim());
+
+        if (rule.isFinal())
+            finalRules.addRule(rule);
+        else
+            rules.addRule(rule);
+      }
+
+
+    /**
+     * Loads rules from a file containing one rule per line.  Blank lines
+     * and lines starting with "#" are ignored.
+     *
+     * @throws IOException if the file can't be read.
+     * @throws IllegalArgumentException if a line is not a valid rule.
+     */
+    public static void loadRules(File file) throws IOException
+      {
+        List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+
+        for (int i = 0;  i < lines.size();  ++i)
+          {
+            String line = lines.get(i).trim();
+            if (line.isEmpty() || line.startsWith("#"))
+                continue;
+
+            try
+              {
+                addRule(line);
+              }
+            catch (IllegalArgumentException e)
+              {
+                String errorMsg = file.getName() + ", line " + (i + 1) + ": " + e.getMessage();
+                throw new IllegalArgumentException(errorMsg, e);
+              }
+          }
+      }
+
+
+    /**
+     * Returns the names of all optimization passes in the order in which
+     * they are run.
+     */
+    public static Set<String> getPassNames()
+      {
+        return Collections.unmodifiableSet(passLevels.keySet());
+      }
+
+
+    public static int getLevel()
+      {
+        return level;
+      }
+
+
+    /**
+     * Sets the optimization level.  Level 0 disables all passes, level 1
+     * enables the peephole pass, level 2 (the default) adds the control flow
+     * and stack passes, and level 3 repeats the peephole and control flow
+     * passes until they no longer change the program.
+     *
+     * @throws IllegalArgumentException if the level is out of range.
+     */
+    public static void setLevel(int level)
+      {
+        if (level < 0 || level > MAX_LEVEL)
+            throw new IllegalArgumentException("Invalid optimization level " + level + ".");
+
+        Optimizations.level = level;
+      }
+
+
+    /**
+     * Explicitly enables or disables the pass with the specified name,
+     * independent of the optimization level.
+     *
+     * @throws IllegalArgumentException if there is no pass with the name.
+     */
+    public static void setPassEnabled(String passName, boolean enabled)
+      {
+        if (!passLevels.containsKey(passName))
+            throw new IllegalArgumentException("Unknown optimization pass \"" + passName + "\".");
+
+        passToggles.put(passName, enabled);
+      }
+
+
+    /**
+     * Returns the names of the passes that are enabled, in the order
+     * in which they are run.
+     */
+    public static List<String> getEnabledPasses()
+      {
+        Set<String> enabled = new HashSet<>();
+        for (String passName : passLevels.keySet())
+          {
+            Boolean toggle = passToggles.get(passName);
+            if (toggle != null ? toggle : level >= passLevels.get(passName))
+                enabled.add(passName);
+          }
+
+        // add required passes until nothing changes
+        boolean changed = true;
+        while (changed)
+          {
+            changed = false;
+            for (String passName : new ArrayList<>(enabled))
+              {
+                for (String required : requiredPasses.get(passName))
+                  {
+                    if (passToggles.get(required) == Boolean.FALSE)
+                        changed |= enabled.remove(passName);
+                    else
+                        changed |= enabled.add(required);
+                  }
+              }
+          }
+
+        List<String> passNames = new ArrayList<>(passLevels.keySet());
+        passNames.retainAll(enabled);
+        return passNames;
+      }
+
+
+    /**
+     * Returns a description of everything that determines the result of
+     * the optimizations: the level, the enabled passes, and the rules.
+     */
+    public static String getConfiguration()
+      {
+        StringBuilder config = new StringBuilder(4000);
+        config.append("level ").append(level).append('\n')
+              .append("passes ").append(String.join(",", getEnabledPasses())).append('\n');
+
+        for (String ruleText : ruleTexts)
+            config.append(ruleText).append('\n');
+
+        return config.toString();
+      }
+
+
+    /**
+     * Creates a new instance of the pass with the specified name.
+     *
+     * @throws IllegalArgumentException if there is no pass with the name.
+     */
+    public static Pass createPass(String passName)
+      {
+        switch (passName)
+          {
+            case PEEPHOLE:
+                return new PeepholeOptimizer(getOptimizations(), getFinalOptimizations());
+            case CFG:
+                return new ControlFlowOptimizer();
+            case STACK:
+                return new StackOptimizer();
+            default:
+                throw new IllegalArgumentException("Unknown optimization pass \"" + passName + "\".");
+          }
+      }
+
+
+    private static void addPass(String passName, int level, String... required)
+      {
+        passLevels.put(passName, level);
+        requiredPasses.put(passName, List.of(required));
       }
 
 
     static
       {
-        optimizations = List.of
-          (
-            new ConstFolding(),
-            new IncDec(),
-            new IncDec2(),
-            new ShiftLeftRight(),
-            new ShiftLeft(),
-            new BranchingReduction(),
-            new ConstNeg(),
-            new LoadSpecialConstants(),
-            new Allocate(),
-            new DeadCodeElimination()
-          );
+        // the control flow pass brings instructions together that
+        // the peephole pass can then combine
+        addPass(PEEPHOLE, 1);
+        addPass(CFG,      2, PEEPHOLE);
+        addPass(STACK,    2);
+
+        rules      = new RuleSet();
+        finalRules = new RuleSet();
+        ruleTexts  = new ArrayList<>();
+
+        for (String ruleText : BUILT_IN_RULES)
+            addRule(ruleText);
       }
   }
@@ -0,0 +1,33 @@
+package edu.citadel.cvm.assembler.optimize;
+
+
+import edu.citadel.cvm.assembler.ast.Instruction;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * An optimization pass over the complete list of instructions.  The passes
+ * are created by class Optimizations and run by class PassManager.
+ */
+public interface Pass
+  {
+    /**
+     * Returns the name used to enable or disable the pass on the command line.
+     */
+    public String getName();
+
+
+    /**
+     * Optimizes the list of instructions and returns the optimized list.
+     */
+    public ArrayList<Instruction> optimize(List<Instruction> instructions);
+
+
+    /**
+     * Returns the number of changes made to the instructions by all
+     * calls of optimize() for this pass.
+     */
+    public int getChangeCount();
+  }
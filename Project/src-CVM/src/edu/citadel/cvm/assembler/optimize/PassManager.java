@@ -0,0 +1,169 @@
+package edu.citadel.cvm.assembler.optimize;
+
+
+import edu.citadel.cvm.assembler.ast.Instruction;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Runs the enabled optimization passes (see Optimizations) and collects
+ * statistics for each pass: the number of times it was run, the number
+ * of changes it made, the number of instructions and bytes it removed,
+ * and the time spent in it.  The peephole and control flow passes are
+ * run first, followed by the peephole pass again if the control flow pass
+ * is enabled, and then the stack pass.  At optimization level 3, the
+ * peephole and control flow passes are repeated until they no longer
+ * change the program.  A new pass manager is used for each assembly.
+ */
+public class PassManager
+  {
+    /** maximum number of times the peephole and control flow passes are repeated */
+    private static final int MAX_REPETITIONS = 4;
+
+    private Map<String, Pass> passes;
+    private Map<String, PassStatistics> statistics;
+    private int repetitions;
+
+
+    /**
+     * Construct a pass manager for the passes that are currently enabled.
+     */
+    public PassManager()
+      {
+        passes     = new LinkedHashMap<>();
+        statistics = new LinkedHashMap<>();
+
+        for (String passName : Optimizations.getEnabledPasses())
+          {
+            passes.put(passName, Optimizations.createPass(passName));
+            statistics.put(passName, new PassStatistics());
+          }
+
+        repetitions = Optimizations.getLevel() >= 3 ? MAX_REPETITIONS : 1;
+      }
+
+
+    /**
+     * Returns true if at least one pass is enabled.
+     */
+    public boolean hasPasses()
+      {
+        return !passes.isEmpty();
+      }
+
+
+    /**
+     * Optimizes the list of instructions and returns the optimized list.
+     */
+    public ArrayList<Instruction> optimize(List<Instruction> instructions)
+      {
+        ArrayList<Instruction> result = new ArrayList<>(instructions);
+
+        for (int i = 0;  i < repetitions;  ++i)
+          {
+            int changeCount = getChangeCount();
+
+            result = run(Optimizations.PEEPHOLE, result);
+            result = run(Optimizations.CFG, result);
+
+            if (getChangeCount() == changeCount)
+                break;
+          }
+
+        if (passes.containsKey(Optimizations.CFG))
+            result = run(Optimizations.PEEPHOLE, result);
+
+        return run(Optimizations.STACK, result);
+      }
+
+
+    /**
+     * Runs the pass with the specified name if it is enabled and updates
+     * its statistics.
+     */
+    private ArrayList<Instruction> run(String passName, ArrayList<Instruction> instructions)
+      {
+        Pass pass = passes.get(passName);
+        if (pass == null)
+            return instructions;
+
+        PassStatistics stats = statistics.get(passName);
+        int  numInsts    = instructions.size();
+        int  numBytes    = getSize(instructions);
+        int  changeCount = pass.getChangeCount();
+        long startTime   = System.nanoTime();
+
+        ArrayList<Instruction> result = pass.optimize(instructions);
+
+        stats.time    = stats.time + System.nanoTime() - startTime;
+        stats.runs    = stats.runs + 1;
+        stats.changes = stats.changes + pass.getChangeCount() - changeCount;
+        stats.instructionsRemoved = stats.instructionsRemoved + numInsts - result.size();
+        stats.bytesRemoved        = stats.bytesRemoved + numBytes - getSize(result);
+
+        return result;
+      }
+
+
+    /**
+     * Returns the total number of changes made by all passes.
+     */
+    private int getChangeCount()
+      {
+        int changeCount = 0;
+        for (Pass pass : passes.values())
+            changeCount = changeCount + pass.getChangeCount();
+
+        return changeCount;
+      }
+
+
+    /**
+     * Returns the number of bytes occupied by the instructions, using
+     * the smallest encoding of instructions with compact encodings.
+     */
+    private static int getSize(List<Instruction> instructions)
+      {
+        int size = 0;
+        for (Instruction inst : instructions)
+            size = size + inst.getSize();
+
+        return size;
+      }
+
+
+    /**
+     * Prints a table with the statistics for each pass that was enabled.
+     */
+    public void printStatistics(PrintWriter out)
+      {
+        out.println(String.format("%-10s %6s %8s %14s %14s %10s", "pass", "runs",
+                                  "changes", "insts removed", "bytes removed", "time (ms)"));
+
+        for (Map.Entry<String, PassStatistics> entry : statistics.entrySet())
+          {
+            PassStatistics stats = entry.getValue();
+            out.println(String.format("%-10s %6d %8d %14d %14d %10.3f", entry.getKey(),
+                                      stats.runs, stats.changes, stats.instructionsRemoved,
+                                      stats.bytesRemoved, stats.time/1.0e6));
+          }
+      }
+
+
+    /**
+     * The statistics for one pass.
+     */
+    private static class PassStatistics
+      {
+        int  runs;
+        int  changes;
+        int  instructionsRemoved;
+        int  bytesRemoved;
+        long time;   // in nanoseconds
+      }
+  }
@@ -0,0 +1,271 @@
+package edu.citadel.cvm.assembler.optimize;
+
+
+import edu.citadel.cvm.assembler.ast.Instruction;
+
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+
+/**
+ * Applies peephole optimizations to a list of instructions until no more
+ * optimizations apply (a fixpoint).  The instructions are kept in a doubly
+ * linked list so that removing an instruction takes constant time, and a
+ * worklist holds the positions that still need to be examined.  After an
+ * optimization changes the instructions, only the positions whose window
+ * overlaps the change are examined again, so the total work is linear in
+ * the number of instructions plus the number of changes. <br>
+ *
+ * Each optimization sees a window of at most MAX_PATTERN_LENGTH
+ * instructions starting at the position being examined, presented as
+ * a list in which the instruction at that position has index 0.
+ */
+public class PeepholeOptimizer implements Pass
+  {
+    /** the maximum number of instructions examined by one optimization */
+    public static final int MAX_PATTERN_LENGTH = 8;
+
+    private List<Optimization> optimizations;
+    private List<Optimization> finalOptimizations;
+    private int changeCount;
+
+
+    /**
+     * Construct a peephole optimizer.  The optimizations are applied repeatedly
+     * until none of them applies, after which each final optimization is applied
+     * once at every position.  Final optimizations are those that would prevent
+     * other optimizations from matching; e.g., replacing LDCINT 0 with LDCINT0.
+     */
+    public PeepholeOptimizer(List<Optimization> optimizations,
+                             List<Optimization> finalOptimizations)
+      {
+        this.optimizations      = optimizations;
+        this.finalOptimizations = finalOptimizations;
+        this.changeCount        = 0;
+      }
+
+
+    @Override
+    public String getName()
+      {
+        return Optimizations.PEEPHOLE;
+      }
+
+
+    /**
+     * Returns the number of optimizations that have been applied.
+     */
+    @Override
+    public int getChangeCount()
+      {
+        return changeCount;
+      }
+
+
+    /**
+     * Optimizes the list of instructions and returns the optimized list.
+     */
+    @Override
+    public ArrayList<Instruction> optimize(List<Instruction> instructions)
+      {
+        Node head = new Node(null);   // sentinel
+        Node tail = head;
+        Deque<Node> worklist = new ArrayDeque<>(instructions.size());
+
+        for (Instruction inst : instructions)
+          {
+            Node node = new Node(inst);
+            node.prev = tail;
+            tail.next = node;
+            tail = node;
+
+            node.queued = true;
+            worklist.add(node);
+          }
+
+        Window window = new Window();
+        while (!worklist.isEmpty())
+          {
+            Node node = worklist.poll();
+            node.queued = false;
+
+            if (node.removed)
+                continue;
+
+            window.reset(node.prev);
+            for (Optimization optimization : optimizations)
+              {
+                optimization.optimize(window, 0);
+                if (window.changed)
+                  {
+                    ++changeCount;
+                    requeue(window, worklist);
+                    break;
+                  }
+              }
+          }
+
+        for (Optimization optimization : finalOptimizations)
+          {
+            for (Node node = head.next;  node != null;  node = node.next)
+              {
+                window.reset(node.prev);
+                optimization.optimize(window, 0);
+                if (window.changed)
+                    ++changeCount;
+
+                node = window.before.next;
+                if (node == null)
+                    break;
+              }
+          }
+
+        ArrayList<Instruction> result = new ArrayList<>(instructions.size());
+        for (Node node = head.next;  node != null;  node = node.next)
+            result.add(node.inst);
+
+        return result;
+      }
+
+
+    /**
+     * Adds to the front of the worklist every position whose window could
+     * include an instruction in the changed window; i.e., the window itself
+     * and the MAX_PATTERN_LENGTH - 1 positions preceding it.  Re-examining
+     * these positions first lets a rewrite combine with the instructions
+     * that follow it before those instructions are rewritten on their own.
+     */
+    private void requeue(Window window, Deque<Node> worklist)
+      {
+        Node start = window.before;
+        for (int i = 1;  i < MAX_PATTERN_LENGTH && start.inst != null;  ++i)
+            start = start.prev;
+
+        if (start.inst == null)
+            start = start.next;   // skip the sentinel
+
+        Node end = window.before;
+        for (int i = 0;  i < MAX_PATTERN_LENGTH && end.next != null;  ++i)
+            end = end.next;
+
+        if (end.inst == null)
+            return;   // no instructions remain
+
+        // push in reverse order so that the earliest position is examined next
+        for (Node node = end;  node != null;  node = node.prev)
+          {
+            if (!node.queued)
+              {
+                node.queued = true;
+                worklist.addFirst(node);
+              }
+
+            if (node == start)
+                break;
+          }
+      }
+
+
+    /**
+     * A node in the doubly linked list of instructions.
+     */
+    private static class Node
+      {
+        Instruction inst;
+        Node prev;
+        Node next;
+        boolean queued;
+        boolean removed;
+
+        Node(Instruction inst)
+          {
+            this.inst = inst;
+          }
+      }
+
+
+    /**
+     * A view of at most MAX_PATTERN_LENGTH instructions following a node.
+     * Changes made through the view are applied to the linked list.
+     */
+    private static class Window extends AbstractList<Instruction>
+      {
+        Node before;       // the node preceding the window (possibly the sentinel)
+        boolean changed;   // true if the instructions have been changed
+
+        void reset(Node before)
+          {
+            this.before  = before;
+            this.changed = false;
+          }
+
+        private Node getNode(int index)
+          {
+            if (index < 0 || index >= MAX_PATTERN_LENGTH)
+                throw new IndexOutOfBoundsException("Index: " + index);
+
+            Node node = before.next;
+            for (int i = 0;  i < index && node != null;  ++i)
+                node = node.next;
+
+            if (node == null)
+                throw new IndexOutOfBoundsException("Index: " + index);
+
+            return node;
+          }
+
+        @Override
+        public int size()
+          {
+            int size = 0;
+            for (Node node = before.next;  node != null && size < MAX_PATTERN_LENGTH;  node = node.next)
+                ++size;
+
+            return size;
+          }
+
+        @Override
+        public Instruction get(int index)
+          {
+            return getNode(index).inst;
+          }
+
+        @Override
+        public Instruction set(int index, Instruction inst)
+          {
+            Node node = getNode(index);
+            Instruction oldInst = node.inst;
+            node.inst = inst;
+            changed = true;
+            return oldInst;
+          }
+
+        @Override
+        public void add(int index, Instruction inst)
+          {
+            Node prev = index == 0 ? before : getNode(index - 1);
+            Node node = new Node(inst);
+            node.prev = prev;
+            node.next = prev.next;
+            if (prev.next != null)
+                prev.next.prev = node;
+            prev.next = node;
+            changed = true;
+          }
+
+        @Override
+        public Instruction remove(int index)
+          {
+            Node node = getNode(index);
+            node.prev.next = node.next;
+            if (node.next != null)
+                node.next.prev = node.prev;
+            node.removed = true;
+            changed = true;
+            return node.inst;
+          }
+      }
+  }
@@ -0,0 +1,271 @@
+package edu.citadel.cvm.assembler.optimize;
+
+
+import edu.citadel.compiler.Position;
+import edu.citadel.cvm.assembler.Symbol;
+import edu.citadel.cvm.assembler.Token;
+import edu.citadel.cvm.assembler.ast.*;
+
+import java.util.*;
+
+
+/**
+ * A peephole optimization declared as data: a sequence of instruction
+ * patterns, a sequence of replacement instructions, and conditions that
+ * must hold for the rule to apply.  Rules are created by RuleParser from
+ * text such as
+ * <pre>
+ *   fold-add: LDCINT $a; LDCINT $b; ADD => LDCINT $a + $b
+ * </pre>
+ * Only the first matched instruction may have labels; its labels are moved
+ * to the first replacement instruction.  A rule with an empty replacement
+ * applies only if the first matched instruction has no labels.
+ */
+public class PeepholeRule
+  {
+    /**
+     * Pattern for one instruction.  A null opcode matches any instruction.
+     * The argument pattern is null (any argument), "*" (any argument),
+     * a variable name starting with "$", or an integer literal.
+     */
+    static class InstPattern
+      {
+        Symbol opCode;
+        String argPattern;
+
+        InstPattern(Symbol opCode, String argPattern)
+          {
+            this.opCode     = opCode;
+            this.argPattern = argPattern;
+          }
+      }
+
+
+    /**
+     * Replacement instruction.  The argument is copied from the token bound
+     * to a variable (argVariable) or computed from an expression (argExpr);
+     * both are null for opcodes without arguments.
+     */
+    static class InstReplacement
+      {
+        Symbol opCode;
+        String argVariable;
+        RuleExpression argExpr;
+
+        InstReplacement(Symbol opCode, String argVariable, RuleExpression argExpr)
+          {
+            this.opCode      = opCode;
+            this.argVariable = argVariable;
+            this.argExpr     = argExpr;
+          }
+      }
+
+
+    /**
+     * Condition that must hold for a rule to apply.  The following
+     * instruction is the one after the matched instructions (or null).
+     */
+    interface Condition
+      {
+        boolean test(Map<String, Token> bindings, Instruction following);
+      }
+
+
+    private String name;
+    private boolean isFinal;
+    private List<InstPattern> pattern;
+    private List<InstReplacement> replacement;
+    private List<Condition> conditions;
+
+
+    PeepholeRule(String name, boolean isFinal, List<InstPattern> pattern,
+                 List<InstReplacement> replacement, List<Condition> conditions)
+      {
+        this.name        = name;
+        this.isFinal     = isFinal;
+        this.pattern     = pattern;
+        this.replacement = replacement;
+        this.conditions  = conditions;
+      }
+
+
+    public String getName()
+      {
+        return name;
+      }
+
+
+    /**
+     * Returns true if this rule is applied only once, after all other rules.
+     */
+    public boolean isFinal()
+      {
+        return isFinal;
+      }
+
+
+    /**
+     * Returns the opcode of the first instruction matched by this rule.
+     */
+    public Symbol getFirstOpCode()
+      {
+        return pattern.get(0).opCode;
+      }
+
+
+    /**
+     * Returns the number of instructions matched by this rule.
+     */
+    public int getPatternLength()
+      {
+        return pattern.size();
+      }
+
+
+    /**
+     * Returns the number of instructions in the replacement.
+     */
+    public int getReplacementLength()
+      {
+        return replacement.size();
+      }
+
+
+    /**
+     * Applies this rule to the instructions starting at position instNum
+     * if they match.  Returns true if the instructions were replaced.
+     */
+    public boolean apply(List<Instruction> instructions, int instNum)
+      {
+        int numInsts = instructions.size();
+        if (instNum + pattern.size() > numInsts)
+            return false;
+
+        Map<String, Token> bindings = new HashMap<>();
+        for (int i = 0;  i < pattern.size();  ++i)
+          {
+            Instruction inst = instructions.get(instNum + i);
+            if (i > 0 && !inst.getLabels().isEmpty())
+                return false;
+
+            if (!matches(pattern.get(i), inst, bindings))
+                return false;
+          }
+
+        Instruction first = instructions.get(instNum);
+        List<Token> labels = first.getLabels();
+        if (replacement.isEmpty() && !labels.isEmpty())
+            return false;
+
+        Instruction following = null;
+        if (instNum + pattern.size() < numInsts)
+            following = instructions.get(instNum + pattern.size());
+
+        List<Instruction> newInsts = new ArrayList<>(replacement.size());
+        try
+          {
+            for (Condition condition : conditions)
+              {
+                if (!condition.test(bindings, following))
+                    return false;
+              }
+
+            for (InstReplacement repl : replacement)
+              {
+                List<Token> instLabels = newInsts.isEmpty() ? labels : new LinkedList<>();
+                newInsts.add(makeInstruction(first, repl, instLabels, bindings));
+              }
+          }
+        catch (NumberFormatException | ArithmeticException e)
+          {
+            // a variable is not an integer or an expression divides by zero
+            return false;
+          }
+
+        // replace the matched instructions
+        int numCommon = Math.min(pattern.size(), newInsts.size());
+        for (int i = 0;  i < numCommon;  ++i)
+            instructions.set(instNum + i, newInsts.get(i));
+
+        for (int i = numCommon;  i < pattern.size();  ++i)
+            instructions.remove(instNum + numCommon);
+
+        for (int i = numCommon;  i < newInsts.size();  ++i)
+            instructions.add(instNum + i, newInsts.get(i));
+
+        return true;
+      }
+
+
+    /**
+     * Returns true if the instruction matches the pattern, binding
+     * any variables in the pattern that are not already bound.
+     */
+    private static boolean matches(InstPattern instPattern, Instruction inst,
+                                   Map<String, Token> bindings)
+      {
+        if (instPattern.opCode != null && inst.getOpCode().getSymbol() != instPattern.opCode)
+            return false;
+
+        String argPattern = instPattern.argPattern;
+        if (argPattern == null || argPattern.equals("*"))
+            return true;
+
+        if (!(inst instanceof InstructionOneArg))
+            return false;
+
+        Token arg = ((InstructionOneArg) inst).getArg();
+
+        if (argPattern.startsWith("$"))
+          {
+            Token boundArg = bindings.putIfAbsent(argPattern, arg);
+            return boundArg == null || boundArg.getText().equals(arg.getText());
+          }
+        else
+          {
+            try
+              {
+                return arg.getSymbol() == Symbol.intLiteral
+                    && Integer.parseInt(arg.getText()) == Integer.parseInt(argPattern);
+              }
+            catch (NumberFormatException e)
+              {
+                return false;
+              }
+          }
+      }
+
+
+    /**
+     * Creates a replacement instruction.  The new tokens have the position of
+     * the opcode of the first matched instruction so that the instruction
+     * keeps its source line number.
+     */
+    private static Instruction makeInstruction(Instruction first, InstReplacement repl,
+                                               List<Token> labels, Map<String, Token> bindings)
+      {
+        Position position = first.getOpCode().getPosition();
+
+        Token arg = null;
+        if (repl.argVariable != null)
+          {
+            Token boundArg = bindings.get(repl.argVariable);
+            arg = new Token(boundArg.getSymbol(), boundArg.getPosition(), boundArg.getText());
+          }
+        else if (repl.argExpr != null)
+          {
+            int value = repl.argExpr.evaluate(bindings);
+            arg = new Token(Symbol.intLiteral, position, Integer.toString(value));
+          }
+
+        Token opCode = new Token(repl.opCode, position, repl.opCode.toString());
+        return InstructionFactory.makeInstruction(first.getContext(), labels, opCode, arg);
+      }
+
+
+    @Override
+    public String toString()
+      {
+        return name;
+      }
+  }
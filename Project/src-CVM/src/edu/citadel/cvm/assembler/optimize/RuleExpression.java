@@ -0,0 +1,23 @@
+package edu.citadel.cvm.assembler.optimize;
+
+
+import edu.citadel.cvm.assembler.Token;
+
+import java.util.Map;
+
+
+/**
+ * An integer expression in a peephole rule; e.g., the argument
+ * <code>$a + $b</code> of a replacement instruction.  Variables
+ * are bound to the argument tokens of the matched instructions.
+ */
+public interface RuleExpression
+  {
+    /**
+     * Evaluates the expression with the specified variable bindings.
+     *
+     * @throws NumberFormatException if a variable is not bound to an integer literal.
+     * @throws ArithmeticException if the expression divides by zero.
+     */
+    public int evaluate(Map<String, Token> bindings);
+  }
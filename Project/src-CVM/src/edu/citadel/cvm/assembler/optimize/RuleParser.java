@@ -0,0 +1,454 @@
+package edu.citadel.cvm.assembler.optimize;
+
+
+import edu.citadel.cvm.assembler.Symbol;
+import edu.citadel.cvm.assembler.Token;
+
+import java.util.*;
+
+
+/**
+ * Parses the text of a peephole rule.  The syntax of a rule is
+ * <pre>
+ *   rule        = [ "final" ] name ":" pattern "=&gt;" [ replacement ]
+ *                 [ "when" condition { "," condition } ] .
+ *   pattern     = instPattern { ";" instPattern } .
+ *   instPattern = ( opcode | "*" ) [ intLiteral | "$" name | "*" ] .
+ *   replacement = instRepl { ";" instRepl } .
+ *   instRepl    = opcode [ "$" name | expr ] .
+ *   condition   = "pow2" "(" expr ")" | "follows" "(" "$" name ")"
+ *               | expr relOp expr .
+ *   expr        = term { ( "+" | "-" ) term } .
+ *   term        = unary { ( "*" | "/" | "%" ) unary } .
+ *   unary       = "-" unary | intLiteral | "$" name
+ *               | "log2" "(" expr ")" | "(" expr ")" .
+ * </pre>
+ * Variables ($name) are bound to the arguments of the matched instructions.
+ * A pattern instruction without an argument pattern matches any argument.
+ * Condition follows($L) holds if the instruction after the matched
+ * instructions has the label bound to $L.  Since rules are applied until
+ * none applies, a rule that is not final must replace the matched
+ * instructions with fewer instructions.
+ */
+public class RuleParser
+  {
+    private String text;
+    private int    pos;
+
+    // names of the variables bound by the pattern of the current rule
+    private Set<String> patternVars;
+
+
+    /**
+     * Parses the text of a rule.
+     *
+     * @throws IllegalArgumentException if the text is not a valid rule.
+     */
+    public static PeepholeRule parse(String text)
+      {
+        return new RuleParser(text).parseRule();
+      }
+
+
+    private RuleParser(String text)
+      {
+        this.text        = text;
+        this.pos         = 0;
+        this.patternVars = new HashSet<>();
+      }
+
+
+    private PeepholeRule parseRule()
+      {
+        boolean isFinal = false;
+        String name = scanName();
+        if (name.equals("final") && !lookingAt(":"))
+          {
+            isFinal = true;
+            name = scanName();
+          }
+
+        expect(":");
+
+        List<PeepholeRule.InstPattern> pattern = new ArrayList<>();
+        pattern.add(parseInstPattern());
+        while (accept(";"))
+            pattern.add(parseInstPattern());
+
+        if (pattern.get(0).opCode == null)
+            throw error("the first instruction of a pattern must have an opcode");
+
+        if (pattern.size() > PeepholeOptimizer.MAX_PATTERN_LENGTH)
+            throw error("pattern has more than " + PeepholeOptimizer.MAX_PATTERN_LENGTH
+                      + " instructions");
+
+        expect("=>");
+
+        List<PeepholeRule.InstReplacement> replacement = new ArrayList<>();
+        if (!atEnd() && !lookingAt("when"))
+          {
+            replacement.add(parseInstReplacement());
+            while (accept(";"))
+                replacement.add(parseInstReplacement());
+          }
+
+        if (!isFinal && replacement.size() >= pattern.size())
+            throw error("the replacement must have fewer instructions than the pattern");
+
+        List<PeepholeRule.Condition> conditions = new ArrayList<>();
+        if (accept("when"))
+          {
+            conditions.add(parseCondition());
+            while (accept(","))
+                conditions.add(parseCondition());
+          }
+
+        if (!atEnd())
+            throw error("unexpected text");
+
+        return new PeepholeRule(name, isFinal, pattern, replacement, conditions);
+      }
+
+
+    private PeepholeRule.InstPattern parseInstPattern()
+      {
+        Symbol opCode = null;
+        if (!accept("*"))
+            opCode = scanOpCode();
+
+        String argPattern = null;
+        skipSpaces();
+        if (peek() == '$')
+          {
+            argPattern = scanVariable();
+            patternVars.add(argPattern);
+          }
+        else if (peek() == '*')
+          {
+            ++pos;
+            argPattern = "*";
+          }
+        else if (peek() == '-' || Character.isDigit(peek()))
+            argPattern = Integer.toString(scanInt());
+
+        if (argPattern != null && opCode != null && opCode.getNumArgs() == 0)
+            throw error("opcode " + opCode + " has no argument");
+
+        return new PeepholeRule.InstPattern(opCode, argPattern);
+      }
+
+
+    private PeepholeRule.InstReplacement parseInstReplacement()
+      {
+        Symbol opCode = scanOpCode();
+        skipSpaces();
+
+        if (opCode.getNumArgs() == 0)
+            return new PeepholeRule.InstReplacement(opCode, null, null);
+
+        if (atEnd() || peek() == ';' || lookingAt("when"))
+            throw error("opcode " + opCode + " requires an argument");
+
+        // a lone variable copies the argument token (e.g., a label)
+        int start = pos;
+        if (peek() == '$')
+          {
+            String var = scanVariable();
+            skipSpaces();
+            if (atEnd() || peek() == ';' || lookingAt("when"))
+                return new PeepholeRule.InstReplacement(opCode, checkBound(var), null);
+
+            pos = start;
+          }
+
+        return new PeepholeRule.InstReplacement(opCode, null, parseExpr());
+      }
+
+
+    private PeepholeRule.Condition parseCondition()
+      {
+        if (accept("pow2"))
+          {
+            expect("(");
+            RuleExpression expr = parseExpr();
+            expect(")");
+            return (bindings, following) ->
+                OptimizationUtil.getShiftAmount(expr.evaluate(bindings)) > 0;
+          }
+        else if (accept("follows"))
+          {
+            expect("(");
+            skipSpaces();
+            String var = checkBound(scanVariable());
+            expect(")");
+            return (bindings, following) ->
+              {
+                if (following == null)
+                    return false;
+
+                String label = bindings.get(var).getText() + ":";
+                for (Token l : following.getLabels())
+                  {
+                    if (l.getText().equals(label))
+                        return true;
+                  }
+
+                return false;
+              };
+          }
+
+        RuleExpression left = parseExpr();
+        String relOp = scanRelOp();
+        RuleExpression right = parseExpr();
+
+        switch (relOp)
+          {
+            case "==": return (b, f) -> left.evaluate(b) == right.evaluate(b);
+            case "!=": return (b, f) -> left.evaluate(b) != right.evaluate(b);
+            case "<":  return (b, f) -> left.evaluate(b) <  right.evaluate(b);
+            case "<=": return (b, f) -> left.evaluate(b) <= right.evaluate(b);
+            case ">":  return (b, f) -> left.evaluate(b) >  right.evaluate(b);
+            default:   return (b, f) -> left.evaluate(b) >= right.evaluate(b);
+          }
+      }
+
+
+    private RuleExpression parseExpr()
+      {
+        RuleExpression expr = parseTerm();
+        while (true)
+          {
+            RuleExpression left = expr;
+            if (accept("+"))
+              {
+                RuleExpression right = parseTerm();
+                expr = b -> left.evaluate(b) + right.evaluate(b);
+              }
+            else if (accept("-"))
+              {
+                RuleExpression right = parseTerm();
+                expr = b -> left.evaluate(b) - right.evaluate(b);
+              }
+            else
+                return expr;
+          }
+      }
+
+
+    private RuleExpression parseTerm()
+      {
+        RuleExpression expr = parseUnary();
+        while (true)
+          {
+            RuleExpression left = expr;
+            if (accept("*"))
+              {
+                RuleExpression right = parseUnary();
+                expr = b -> left.evaluate(b)*right.evaluate(b);
+              }
+            else if (accept("/"))
+              {
+                RuleExpression right = parseUnary();
+                expr = b -> left.evaluate(b)/right.evaluate(b);
+              }
+            else if (accept("%"))
+              {
+                RuleExpression right = parseUnary();
+                expr = b -> left.evaluate(b)%right.evaluate(b);
+              }
+            else
+                return expr;
+          }
+      }
+
+
+    private RuleExpression parseUnary()
+      {
+        skipSpaces();
+        if (accept("-"))
+          {
+            RuleExpression operand = parseUnary();
+            return b -> -operand.evaluate(b);
+          }
+        else if (accept("("))
+          {
+            RuleExpression expr = parseExpr();
+            expect(")");
+            return expr;
+          }
+        else if (accept("log2"))
+          {
+            expect("(");
+            RuleExpression operand = parseExpr();
+            expect(")");
+            return b -> OptimizationUtil.getShiftAmount(operand.evaluate(b));
+          }
+        else if (peek() == '$')
+          {
+            String var = checkBound(scanVariable());
+            return b -> Integer.parseInt(b.get(var).getText());
+          }
+        else if (Character.isDigit(peek()))
+          {
+            int value = scanInt();
+            return b -> value;
+          }
+        else
+            throw error("expecting an expression");
+      }
+
+
+    private String checkBound(String var)
+      {
+        if (!patternVars.contains(var))
+            throw error("variable " + var + " is not bound by the pattern");
+
+        return var;
+      }
+
+
+    // Start: scanning methods
+    //------------------------
+
+    private boolean atEnd()
+      {
+        skipSpaces();
+        return pos >= text.length();
+      }
+
+
+    private char peek()
+      {
+        return pos < text.length() ? text.charAt(pos) : '\0';
+      }
+
+
+    private void skipSpaces()
+      {
+        while (pos < text.length() && Character.isWhitespace(text.charAt(pos)))
+            ++pos;
+      }
+
+
+    /**
+     * Returns true if the remaining text starts with the specified
+     * string, where a word must not be followed by a name character.
+     */
+    private boolean lookingAt(String s)
+      {
+        skipSpaces();
+        if (!text.startsWith(s, pos))
+            return false;
+
+        int end = pos + s.length();
+        return !Character.isLetter(s.charAt(0)) || end >= text.length()
+            || !isNameChar(text.charAt(end));
+      }
+
+
+    private boolean accept(String s)
+      {
+        if (lookingAt(s))
+          {
+            pos += s.length();
+            return true;
+          }
+        else
+            return false;
+      }
+
+
+    private void expect(String s)
+      {
+        if (!accept(s))
+            throw error("expecting \"" + s + "\"");
+      }
+
+
+    private static boolean isNameChar(char c)
+      {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '-';
+      }
+
+
+    private String scanName()
+      {
+        skipSpaces();
+        int start = pos;
+        while (pos < text.length() && isNameChar(text.charAt(pos)))
+            ++pos;
+
+        if (start == pos)
+            throw error("expecting a name");
+
+        return text.substring(start, pos);
+      }
+
+
+    private Symbol scanOpCode()
+      {
+        String name = scanName();
+        try
+          {
+            Symbol symbol = Symbol.valueOf(name);
+            if (symbol.isOpCode())
+                return symbol;
+          }
+        catch (IllegalArgumentException e)
+          {
+            // handled below
+          }
+
+        throw error("unknown opcode " + name);
+      }
+
+
+    private String scanVariable()
+      {
+        if (peek() != '$')
+            throw error("expecting a variable");
+
+        ++pos;
+        return "$" + scanName();
+      }
+
+
+    private int scanInt()
+      {
+        skipSpaces();
+        int start = pos;
+        if (peek() == '-')
+            ++pos;
+
+        while (Character.isDigit(peek()))
+            ++pos;
+
+        try
+          {
+            return Integer.parseInt(text.substring(start, pos));
+          }
+        catch (NumberFormatException e)
+          {
+            throw error("invalid integer");
+          }
+      }
+
+
+    private String scanRelOp()
+      {
+        for (String relOp : new String[] { "==", "!=", "<=", ">=", "<", ">" })
+          {
+            if (accept(relOp))
+                return relOp;
+          }
+
+        throw error("expecting a relational operator");
+      }
+
+
+    private IllegalArgumentException error(String message)
+      {
+        return new IllegalArgumentException("Invalid rule \"" + text + "\": " + message
+                                          + " at column " + (pos + 1) + ".");
+      }
+  }
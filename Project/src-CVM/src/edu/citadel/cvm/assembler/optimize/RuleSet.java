@@ -0,0 +1,48 @@
+package edu.citadel.cvm.assembler.optimize;
+
+
+import edu.citadel.cvm.assembler.Symbol;
+import edu.citadel.cvm.assembler.ast.Instruction;
+
+import java.util.*;
+
+
+/**
+ * A set of peephole rules indexed by the opcode of the first instruction
+ * they match, so that only the candidate rules for an instruction are
+ * tried.  Rules for the same opcode are tried in the order in which
+ * they were added, and at most one rule is applied per call.
+ */
+public class RuleSet implements Optimization
+  {
+    private Map<Symbol, List<PeepholeRule>> rules;
+
+
+    public RuleSet()
+      {
+        rules = new EnumMap<>(Symbol.class);
+      }
+
+
+    public void addRule(PeepholeRule rule)
+      {
+        rules.computeIfAbsent(rule.getFirstOpCode(), s -> new ArrayList<>()).add(rule);
+      }
+
+
+    @Override
+    public void optimize(List<Instruction> instructions, int instNum)
+      {
+        Symbol symbol = instructions.get(instNum).getOpCode().getSymbol();
+        List<PeepholeRule> candidates = rules.get(symbol);
+
+        if (candidates != null)
+          {
+            for (PeepholeRule rule : candidates)
+              {
+                if (rule.apply(instructions, instNum))
+                    return;
+              }
+          }
+      }
+  }
@@ -0,0 +1,356 @@
+package edu.citadel.cvm.assembler.optimize;
+
+
+import edu.citadel.cvm.assembler.Symbol;
+import edu.citadel.cvm.assembler.Token;
+import edu.citadel.cvm.assembler.ast.Instruction;
+import edu.citadel.cvm.assembler.ast.InstructionFactory;
+import edu.citadel.cvm.assembler.ast.InstructionOneArg;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+
+/**
+ * Optimizations that keep values on the stack instead of computing or
+ * loading them a second time.  The instructions are scanned once, and
+ * the following rewrites are applied to the end of the output.
+ * <ul>
+ *   <li> Redundant computation: a pure sequence S that pushes an integer
+ *        and is immediately repeated (S; S) is replaced by S; DUP.  This
+ *        reuses addresses (e.g., x := x + 1) and loaded values (e.g., x*x).
+ *   <li> Store-to-load forwarding: A; V; STOREW; A; LOADW, where A pushes
+ *        the address of a variable, is replaced by A; V; SWAP; OVER; STOREW,
+ *        which leaves a copy of the stored value on the stack instead of
+ *        loading it from memory again.
+ * </ul>
+ * Only straight-line code is rewritten; i.e., no instruction after the first
+ * one of a rewritten sequence can have a label.
+ */
+public class StackOptimizer implements Pass
+  {
+    /** maximum number of instructions in a repeated sequence */
+    private static final int MAX_REPEATED_LENGTH = 4;
+
+    /** maximum number of instructions in the value of a forwarded store */
+    private static final int MAX_STORED_VALUE_LENGTH = 16;
+
+    private int computationsEliminated;
+    private int loadsEliminated;
+
+
+    public StackOptimizer()
+      {
+        computationsEliminated = 0;
+        loadsEliminated        = 0;
+      }
+
+
+    @Override
+    public String getName()
+      {
+        return Optimizations.STACK;
+      }
+
+
+    /**
+     * Returns the number of repeated computations and loads eliminated.
+     */
+    @Override
+    public int getChangeCount()
+      {
+        return computationsEliminated + loadsEliminated;
+      }
+
+
+    /**
+     * Returns the number of repeated computations replaced by DUP.
+     */
+    public int getComputationsEliminated()
+      {
+        return computationsEliminated;
+      }
+
+
+    /**
+     * Returns the number of loads replaced by forwarding a stored value.
+     */
+    public int getLoadsEliminated()
+      {
+        return loadsEliminated;
+      }
+
+
+    /**
+     * Optimizes the list of instructions and returns the optimized list.
+     */
+    @Override
+    public ArrayList<Instruction> optimize(List<Instruction> instructions)
+      {
+        ArrayList<Instruction> out = new ArrayList<>(instructions.size());
+
+        for (Instruction inst : instructions)
+          {
+            out.add(inst);
+
+            if (!forwardStore(out))
+                removeRepeated(out);
+          }
+
+        return out;
+      }
+
+
+    /**
+     * Replaces S; S at the end of the list with S; DUP if S is a pure
+     * sequence that pushes an integer.  Returns true if the list changed.
+     */
+    private boolean removeRepeated(ArrayList<Instruction> out)
+      {
+        for (int length = MAX_REPEATED_LENGTH;  length >= 1;  --length)
+          {
+            int second = out.size() - length;
+            int first  = second - length;
+            if (first < 0)
+                continue;
+
+            if (length == 1 && isConstant(out.get(second)))
+                continue;   // DUP would not be smaller
+
+            if (hasLabels(out, first + 1, out.size()) || !isPure(out, first, second)
+                    || getNetEffect(out, first, second) != 4)
+                continue;
+
+            boolean repeated = true;
+            for (int i = 0;  i < length && repeated;  ++i)
+                repeated = isSame(out.get(first + i), out.get(second + i));
+
+            if (repeated)
+              {
+                Instruction dup = makeInstruction(out.get(second), Symbol.DUP);
+                truncate(out, second);
+                out.add(dup);
+                ++computationsEliminated;
+                return true;
+              }
+          }
+
+        return false;
+      }
+
+
+    /**
+     * Replaces A; V; STOREW; A; LOADW at the end of the list with
+     * A; V; SWAP; OVER; STOREW.  Returns true if the list changed.
+     */
+    private boolean forwardStore(ArrayList<Instruction> out)
+      {
+        int n = out.size();
+        if (n < 5 || out.get(n - 1).getOpCode().getSymbol() != Symbol.LOADW
+                  || out.get(n - 3).getOpCode().getSymbol() != Symbol.STOREW
+                  || hasLabels(out, n - 3, n))
+            return false;
+
+        Instruction address = out.get(n - 2);
+        if (!isVariableAddress(address))
+            return false;
+
+        int store = n - 3;
+        int limit = Math.max(0, store - 1 - MAX_STORED_VALUE_LENGTH);
+        for (int i = store - 2;  i >= limit;  --i)
+          {
+            if (hasLabels(out, i + 1, i + 2))
+                return false;   // the value can be entered from elsewhere
+
+            if (isSame(out.get(i), address) && getNetEffect(out, i + 1, store) == 4)
+              {
+                Instruction storeInst = out.get(store);
+                Instruction swap = makeInstruction(storeInst, Symbol.SWAP);
+                Instruction over = makeInstruction(storeInst, Symbol.OVER);
+
+                truncate(out, store);
+                out.add(swap);
+                out.add(over);
+                out.add(storeInst);
+                ++loadsEliminated;
+                return true;
+              }
+          }
+
+        return false;
+      }
+
+
+    /**
+     * Returns the net number of bytes pushed by the instructions from start
+     * (inclusive) to end (exclusive), or -1 if the effect of an instruction is
+     * unknown or the instructions use values on the stack before start.
+     */
+    private static int getNetEffect(List<Instruction> out, int start, int end)
+      {
+        int depth = 0;
+        for (int i = start;  i < end;  ++i)
+          {
+            int[] effect = getStackEffect(out.get(i));
+            if (effect == null || depth < effect[0])
+                return -1;
+
+            depth = depth + effect[1];
+          }
+
+        return depth;
+      }
+
+
+    /**
+     * Returns the stack effect of an instruction as an array containing the
+     * number of bytes read from the top of the stack and the net number of
+     * bytes pushed, or null if the effect is not known.
+     */
+    private static int[] getStackEffect(Instruction inst)
+      {
+        switch (inst.getOpCode().getSymbol())
+          {
+            case LDGADDR:
+            case LDLADDR:
+            case LDCINT:
+            case LDCINT0:
+            case LDCINT1:
+            case GETINT:
+                return new int[] { 0, 4 };
+            case LDCB:
+            case LDCB0:
+            case LDCB1:
+                return new int[] { 0, 1 };
+            case LDCCH:
+            case GETCH:
+                return new int[] { 0, 2 };
+            case LDCSTR:
+                return new int[] { 0, 8 };
+            case LOADW:
+            case NEG:
+            case INC:
+            case DEC:
+            case SHL:
+            case SHR:
+                return new int[] { 4, 0 };
+            case LOADB:
+                return new int[] { 4, -3 };
+            case LOAD2B:
+                return new int[] { 4, -2 };
+            case NOT:
+                return new int[] { 1, 0 };
+            case ADD:
+            case SUB:
+            case MUL:
+            case DIV:
+            case MOD:
+                return new int[] { 8, -4 };
+            case CMP:
+                return new int[] { 8, -7 };
+            case DUP:
+                return new int[] { 4, 4 };
+            case OVER:
+                return new int[] { 8, 4 };
+            case SWAP:
+                return new int[] { 8, 0 };
+            default:
+                return null;
+          }
+      }
+
+
+    /**
+     * Returns true if the instructions from start (inclusive) to end
+     * (exclusive) have no effect other than on the stack; i.e., they
+     * can be executed twice with the same result.
+     */
+    private static boolean isPure(List<Instruction> out, int start, int end)
+      {
+        for (int i = start;  i < end;  ++i)
+          {
+            Symbol opCode = out.get(i).getOpCode().getSymbol();
+            if (opCode == Symbol.GETINT || opCode == Symbol.GETCH
+                    || getStackEffect(out.get(i)) == null)
+                return false;
+          }
+
+        return true;
+      }
+
+
+    private static boolean isConstant(Instruction inst)
+      {
+        switch (inst.getOpCode().getSymbol())
+          {
+            case LDCINT0:
+            case LDCINT1:
+            case LDCB0:
+            case LDCB1:
+                return true;
+            default:
+                return false;
+          }
+      }
+
+
+    private static boolean isVariableAddress(Instruction inst)
+      {
+        Symbol opCode = inst.getOpCode().getSymbol();
+        return opCode == Symbol.LDGADDR || opCode == Symbol.LDLADDR;
+      }
+
+
+    /**
+     * Returns true if any instruction from start (inclusive) to end
+     * (exclusive) has a label.
+     */
+    private static boolean hasLabels(List<Instruction> out, int start, int end)
+      {
+        for (int i = start;  i < end;  ++i)
+          {
+            if (!out.get(i).getLabels().isEmpty())
+                return true;
+          }
+
+        return false;
+      }
+
+
+    /**
+     * Returns true if the two instructions have the same opcode and argument.
+     */
+    private static boolean isSame(Instruction inst1, Instruction inst2)
+      {
+        if (inst1.getOpCode().getSymbol() != inst2.getOpCode().getSymbol())
+            return false;
+
+        String arg1 = getArgText(inst1);
+        String arg2 = getArgText(inst2);
+        return arg1 == null ? arg2 == null : arg1.equals(arg2);
+      }
+
+
+    private static String getArgText(Instruction inst)
+      {
+        return inst instanceof InstructionOneArg ? ((InstructionOneArg) inst).getArg().getText() : null;
+      }
+
+
+    private static void truncate(ArrayList<Instruction> out, int size)
+      {
+        out.subList(size, out.size()).clear();
+      }
+
+
+    /**
+     * Creates an instruction without labels or arguments in the same
+     * assembly context and at the same source position as inst.
+     */
+    private static Instruction makeInstruction(Instruction inst, Symbol opCode)
+      {
+        Token opCodeToken = new Token(opCode, inst.getOpCode().getPosition(), opCode.toString());
+        return InstructionFactory.makeInstruction(inst.getContext(), new LinkedList<>(), opCodeToken, null);
+      }
+  }
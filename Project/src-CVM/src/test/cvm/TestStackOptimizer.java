@@ -0,0 +1,94 @@
+package test.cvm;
+
+
+import edu.citadel.cvm.CVM;
+import edu.citadel.cvm.ObjectFile;
+import edu.citadel.cvm.assembler.Assembler;
+import edu.citadel.cvm.assembler.optimize.Optimizations;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+
+/**
+ * Assembles and runs a program at each optimization level and compares
+ * its output with the expected output.  In the program, the sequence
+ * LDGADDR 0; LOADW is repeated, but the LOADW of the first copy has a
+ * label, so the second copy must not be replaced by DUP.
+ */
+public class TestStackOptimizer
+  {
+    private static final String PROGRAM =
+          "   PROGRAM 8\n"
+        + "   LDGADDR 0\n"
+        + "   LDCINT 5\n"
+        + "   STOREW\n"
+        + "   LDGADDR 4\n"
+        + "   LDCINT 9\n"
+        + "   STOREW\n"
+        + "   LDCINT 0\n"
+        + "   LDCINT 1\n"
+        + "   CMP\n"
+        + "   BG L0\n"
+        + "   LDGADDR 4\n"
+        + "   BR L1\n"
+        + "L0:\n"
+        + "   LDGADDR 0\n"
+        + "L1:\n"
+        + "   LOADW\n"
+        + "   LDGADDR 0\n"
+        + "   LOADW\n"
+        + "   PUTINT\n"
+        + "   PUTEOL\n"
+        + "   PUTINT\n"
+        + "   PUTEOL\n"
+        + "   HALT\n";
+
+    private static final String EXPECTED = "5" + System.lineSeparator()
+                                         + "9" + System.lineSeparator();
+
+
+    public static void main(String[] args) throws IOException
+      {
+        File sourceFile = File.createTempFile("TestStackOptimizer", ".asm");
+        sourceFile.deleteOnExit();
+        Files.writeString(sourceFile.toPath(), PROGRAM);
+
+        PrintWriter quiet  = new PrintWriter(Writer.nullWriter());
+        PrintStream stdout = System.out;
+        int failures = 0;
+
+        for (int level = 0;  level <= Optimizations.MAX_LEVEL;  ++level)
+          {
+            Optimizations.setLevel(level);
+            Assembler  assembler  = new Assembler(sourceFile, quiet, new PrintWriter(System.err, true));
+            ObjectFile objectFile = assembler.assembleObjectFile();
+
+            // run the program with its output redirected
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            System.setOut(new PrintStream(output, true, StandardCharsets.UTF_8));
+            try
+              {
+                CVM cvm = new CVM(1024);
+                cvm.loadProgram(objectFile);
+                cvm.run();
+              }
+            finally
+              {
+                System.setOut(stdout);
+              }
+
+            String actual = output.toString(StandardCharsets.UTF_8);
+            if (actual.equals(EXPECTED))
+                System.out.println("-O" + level + ": OK");
+            else
+              {
+                System.out.println("-O" + level + ": FAILED, output was " + actual.replace(System.lineSeparator(), " "));
+                ++failures;
+              }
+          }
+
+        System.out.println(failures == 0 ? "All tests passed." : failures + " test(s) failed.");
+      }
+  }
@@ -6,8 +6,15 @@ import java.nio.charset.StandardCharsets;
 
 
 /**
- * This class handles the reporting of error messages. <br>
- * (implements the singleton pattern)
+ * This class handles the reporting of error messages.  Each compilation
+ * or assembly constructs its own error handler, so that several source
+ * files can be processed at the same time in one JVM.  The instance
+ * returned by getInstance() is used only by the earlier versions of the
+ * CPRL parser and by the scanner and parser tests.  A constructed error
+ * handler never exits the JVM; it throws a FatalErrorException to stop the
+ * processing of a file.  The instance returned by getInstance() exits with
+ * a nonzero status code instead, since its callers do not handle that
+ * exception.
  */
 public class ErrorHandler
   {
@@ -19,19 +26,23 @@ public class ErrorHandler
     /**
      * Maximum number of errors to be reported.
      */
-    private static int MAX_ERRORS = 15;
+    private static final int MAX_ERRORS = 15;
 
 
     private int errorCount;
 
+    // true if fatal errors exit the JVM instead of throwing a FatalErrorException
+    private boolean exitOnFatalError;
+
 
     /**
-     * Constructs a new ErrorHandler.
+     * Constructs a new ErrorHandler that writes to System.err.
      */
-    protected ErrorHandler()
+    public ErrorHandler()
       {
         errorCount = 0;
         err = new PrintWriter(System.err, true, StandardCharsets.UTF_8);
+        exitOnFatalError = false;
       }
 
     
@@ -41,7 +52,10 @@ public class ErrorHandler
     public static ErrorHandler getInstance()
       {
         if (instance == null)
+          {
             instance = new ErrorHandler();
+            instance.exitOnFatalError = true;
+          }
 
         return instance;
       }
@@ -69,6 +83,9 @@ public class ErrorHandler
     /**
      * Reports the error.  Stops compilation if the maximum number of
      * errors have been reported.
+     *
+     * @throws FatalErrorException if the maximum number of errors is exceeded
+     *                             (except for the instance returned by getInstance()).
      */
     public void reportError(CompilerException e)
       {
@@ -79,19 +96,37 @@ public class ErrorHandler
           }
         else
           {
-            err.println("*** Max errors exceeded.  Compilation halted***");
-            System.exit(1);       // stop the compiler with a nonzero status code
+            String message = "*** Max errors exceeded.  Compilation halted***";
+            err.println(message);
+            stop(new FatalErrorException(message));
           }
       }
 
 
     /**
-     * Reports the error and exits compilation.
+     * Reports the error and stops compilation.
+     *
+     * @throws FatalErrorException always (except for the instance returned by getInstance()).
      */
     public void reportFatalError(Exception e)
       {
-        e.printStackTrace();
-        System.exit(1);       // stop the compiler with a nonzero status code
+        ++errorCount;
+        e.printStackTrace(err);
+        err.flush();
+        stop(new FatalErrorException(e));
+      }
+
+
+    /**
+     * Stops the processing of the source file after a fatal error, either
+     * by throwing the exception or by exiting with a nonzero status code.
+     */
+    private void stop(FatalErrorException e)
+      {
+        if (exitOnFatalError)
+            System.exit(1);       // stop the compiler with a nonzero status code
+        else
+            throw e;
       }
 
 
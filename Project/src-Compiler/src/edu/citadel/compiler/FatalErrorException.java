@@ -0,0 +1,32 @@
+package edu.citadel.compiler;
+
+
+/**
+ * Thrown by an error handler to stop a compilation (or an assembly), either
+ * because the maximum number of errors has been reported or because of a
+ * fatal error.  The error has already been reported when this exception is
+ * thrown, so the tool that catches it only needs to stop processing the
+ * source file; other source files processed in the same JVM are not affected.
+ */
+public class FatalErrorException extends RuntimeException
+  {
+    private static final long serialVersionUID = 3794562780163427561L;
+
+
+    /**
+     * Construct a FatalErrorException with the specified error message.
+     */
+    public FatalErrorException(String errorMessage)
+      {
+        super(errorMessage);
+      }
+
+
+    /**
+     * Construct a FatalErrorException for the specified fatal error.
+     */
+    public FatalErrorException(Exception cause)
+      {
+        super(cause);
+      }
+  }
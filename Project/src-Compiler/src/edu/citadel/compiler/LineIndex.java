@@ -0,0 +1,81 @@
+package edu.citadel.compiler;
+
+
+import java.util.Arrays;
+
+
+/**
+ * The start offsets of the lines in the characters of a source file, used
+ * to compute the line and character numbers of positions given as offsets.
+ * The index is built when it is first needed, which is normally only when
+ * an error message or debugging information needs a line number.
+ */
+final class LineIndex
+  {
+    private char[] chars;
+    private int length;
+
+    // offsets of the first characters of the lines (null until first needed)
+    private int[] lineStarts;
+
+
+    /**
+     * Construct a line index for the first length characters of the array.
+     */
+    LineIndex(char[] chars, int length)
+      {
+        this.chars      = chars;
+        this.length     = length;
+        this.lineStarts = null;
+      }
+
+
+    /**
+     * Returns the line number (starting at 1) of the character at the offset.
+     */
+    int getLineNumber(int offset)
+      {
+        int[] starts = getLineStarts();
+        int index = Arrays.binarySearch(starts, offset);
+
+        // if the offset is not a line start, binarySearch() returns -(insertion point) - 1,
+        // where the insertion point is the index of the next line; i.e., the line number
+        return index >= 0 ? index + 1 : -index - 1;
+      }
+
+
+    /**
+     * Returns the character number (starting at 1) of the character
+     * at the offset within its line.
+     */
+    int getCharNumber(int offset)
+      {
+        return offset - getLineStarts()[getLineNumber(offset) - 1] + 1;
+      }
+
+
+    private synchronized int[] getLineStarts()
+      {
+        if (lineStarts == null)
+          {
+            int numLines = 1;
+            for (int i = 0;  i < length;  ++i)
+              {
+                if (chars[i] == '\n')
+                    ++numLines;
+              }
+
+            int[] starts = new int[numLines];
+            int line = 1;
+            for (int i = 0;  i < length;  ++i)
+              {
+                if (chars[i] == '\n')
+                    starts[line++] = i + 1;
+              }
+
+            lineStarts = starts;
+          }
+
+        return lineStarts;
+      }
+  }
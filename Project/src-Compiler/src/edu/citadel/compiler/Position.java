@@ -5,6 +5,9 @@ package edu.citadel.compiler;
  * This class encapsulates the concept of a position in a source file, where
  * the position is characterized by an ordered pair of integers: a line number
  * relative to the source file and a character number relative to that line.
+ * A position in a Source is represented by the offset of its character, and
+ * the line and character numbers are computed from the offset only when they
+ * are needed (e.g., for an error message).
  * Note: Position objects are immutable.
  */
 public final class Position
@@ -21,6 +24,19 @@ public final class Position
     private int charNumber;
 
 
+    /**
+     * The line index used to compute the line and character numbers from
+     * the offset, or null if they are given explicitly.
+     */
+    private LineIndex lineIndex;
+
+
+    /**
+     * The offset of the character in the source file if lineIndex is not null.
+     */
+    private int offset;
+
+
     /**
      * Construct a position with the default values of 0
      * for both line number and character number.
@@ -38,6 +54,18 @@ public final class Position
       {
         this.lineNumber = lineNumber;
         this.charNumber = charNumber;
+        this.lineIndex  = null;
+        this.offset     = 0;
+      }
+
+
+    /**
+     * Construct a position for the character at the offset in a source file.
+     */
+    Position(LineIndex lineIndex, int offset)
+      {
+        this.lineIndex = lineIndex;
+        this.offset    = offset;
       }
 
 
@@ -46,7 +74,7 @@ public final class Position
      */
     public int getLineNumber()
       {
-        return lineNumber;
+        return lineIndex != null ? lineIndex.getLineNumber(offset) : lineNumber;
       }
 
 
@@ -55,13 +83,13 @@ public final class Position
      */
     public int getCharNumber()
       {
-        return charNumber;
+        return lineIndex != null ? lineIndex.getCharNumber(offset) : charNumber;
       }
 
 
     @Override
     public String toString()
       {
-        return "line " + lineNumber + ", character " + charNumber;
+        return "line " + getLineNumber() + ", character " + getCharNumber();
       }
   }
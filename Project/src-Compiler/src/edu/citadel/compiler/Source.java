@@ -2,37 +2,53 @@ package edu.citadel.compiler;
 
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 
 
 /**
  * This class encapsulates the source file reader.  It maintains
- * the position of each character in the source file.
+ * the position of each character in the source file.  All characters
+ * of the source file are held in an array, and the position of a character
+ * is represented by its offset in the array.  Line and character numbers
+ * are computed from the offset only when they are needed (see Position).
  */
 public final class Source
   {
+    /** size of the buffer used when reading characters from a Reader */
+    private static final int READ_BUFFER_SIZE = 8192;
+
+
     /**
-     * The reader used to read characters from the source file.
+     * The characters of the source file.  Only the first length
+     * characters of the array are part of the source file.
      */
-    private Reader sourceReader;
+    private char[] chars;
+    private int length;
 
 
     /**
-     * An integer representing the current character in the source file.  This
-     * field has the value EOF (-1) when the end of file has been reached.
+     * The offset of the current character in the source file.
      */
-    private int currentChar;
+    private int offset;
 
 
     /**
-     * The source line number of the current character.
+     * An integer representing the current character in the source file.  This
+     * field has the value EOF (-1) when the end of file has been reached.
      */
-    private int lineNumber;
+    private int currentChar;
 
 
     /**
-     * The offset of the current character within its line.
+     * The start offsets of the lines, used to compute line numbers.
      */
-    private int charNumber;
+    private LineIndex lineIndex;
 
 
     /**
@@ -43,19 +59,73 @@ public final class Source
 
     /**
      * Initialize Source with a Reader and advance to the first character.
+     * All characters are read from the Reader before the first character.
      */
     public Source(Reader sourceReader) throws IOException
       {
-        // wrap a FileReader or an InputStreamReader in a BufferedReader to improve performance
-        if (sourceReader instanceof FileReader || sourceReader instanceof InputStreamReader)
-            sourceReader = new BufferedReader(sourceReader);
+        char[] buffer = new char[READ_BUFFER_SIZE];
+        int    size   = 0;
+        int    count;
 
-        this.sourceReader = sourceReader;
-        currentChar = 0;
-        lineNumber  = 1;
-        charNumber  = 0;
+        while ((count = sourceReader.read(buffer, size, buffer.length - size)) != -1)
+          {
+            size = size + count;
+            if (size == buffer.length)
+                buffer = Arrays.copyOf(buffer, 2*buffer.length);
+          }
 
-        advance();      // advance to the first character
+        init(buffer, size);
+      }
+
+
+    /**
+     * Initialize Source with the characters remaining in a CharBuffer
+     * (e.g., the result of decoding the bytes of a source file).
+     */
+    public Source(CharBuffer sourceText)
+      {
+        if (sourceText.hasArray() && sourceText.arrayOffset() + sourceText.position() == 0)
+            init(sourceText.array(), sourceText.limit());
+        else
+          {
+            char[] buffer = new char[sourceText.remaining()];
+            sourceText.duplicate().get(buffer);
+            init(buffer, buffer.length);
+          }
+      }
+
+
+    /**
+     * Initialize Source with a file, which is memory mapped and decoded
+     * with the specified character set.
+     */
+    public Source(File sourceFile, Charset charset) throws IOException
+      {
+        try (FileChannel channel = FileChannel.open(sourceFile.toPath(), StandardOpenOption.READ))
+          {
+            ByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            CharBuffer text  = charset.decode(bytes);
+            init(text.array(), text.limit());
+          }
+      }
+
+
+    /**
+     * Initialize Source with a UTF-8 encoded file.
+     */
+    public Source(File sourceFile) throws IOException
+      {
+        this(sourceFile, StandardCharsets.UTF_8);
+      }
+
+
+    private void init(char[] chars, int length)
+      {
+        this.chars       = chars;
+        this.length      = length;
+        this.offset      = 0;
+        this.currentChar = length > 0 ? chars[0] : EOF;
+        this.lineIndex   = new LineIndex(chars, length);
       }
 
 
@@ -69,13 +139,52 @@ public final class Source
       }
 
 
+    /**
+     * Returns the offset of the current character in the source file.
+     */
+    public int getCharOffset()
+      {
+        return offset;
+      }
+
+
     /**
      * Returns the position (line number, char number) of the
      * current character in the source file.
      */
     public Position getCharPosition()
       {
-        return new Position(lineNumber, charNumber);
+        return new Position(lineIndex, offset);
+      }
+
+
+    /**
+     * Returns the position (line number, char number) of the
+     * character at the specified offset in the source file.
+     */
+    public Position getPosition(int offset)
+      {
+        return new Position(lineIndex, offset);
+      }
+
+
+    /**
+     * Returns the character at the specified offset in the source file,
+     * which must not be the offset of the end of file.
+     */
+    public char charAt(int offset)
+      {
+        return chars[offset];
+      }
+
+
+    /**
+     * Returns the characters of the source file from offset start
+     * (inclusive) to offset end (exclusive) as a string.
+     */
+    public String getText(int start, int end)
+      {
+        return new String(chars, start, end - start);
       }
 
 
@@ -84,14 +193,9 @@ public final class Source
      */
     public void advance() throws IOException
       {
-        if (currentChar == '\n')
-          {
-            ++lineNumber;
-            charNumber = 1;
-          }
-        else
-            ++charNumber;
+        if (offset < length)
+            ++offset;
 
-        currentChar = sourceReader.read();
+        currentChar = offset < length ? chars[offset] : EOF;
       }
   }
@@ -0,0 +1,130 @@
+package edu.citadel.compiler.util;
+
+
+import edu.citadel.compiler.Source;
+
+
+/**
+ * A pool of the distinct identifiers in a source file.  A scanner interns
+ * the text of each identifier directly from the characters of the source,
+ * so a string is created only the first time that an identifier occurs,
+ * and all occurrences of an identifier share the same string.  The pool is
+ * an open addressing hash table keyed by the hash code of the text, which
+ * the scanner computes while it scans the identifier.
+ */
+public class IdentifierPool
+  {
+    private static final int INITIAL_CAPACITY = 256;   // a power of 2
+
+    private String[] identifiers;
+    private int[]    hashCodes;
+    private int      size;
+
+
+    /**
+     * Construct an empty identifier pool.
+     */
+    public IdentifierPool()
+      {
+        identifiers = new String[INITIAL_CAPACITY];
+        hashCodes   = new int[INITIAL_CAPACITY];
+        size        = 0;
+      }
+
+
+    /**
+     * Returns the number of identifiers in the pool.
+     */
+    public int size()
+      {
+        return size;
+      }
+
+
+    /**
+     * Returns the string for the characters of the source from offset start
+     * (inclusive) to offset end (exclusive), adding it to the pool if it
+     * is not already there.
+     *
+     * @param hashCode  the hash code of the characters, computed the same
+     *                  way as String.hashCode()
+     */
+    public String intern(Source source, int start, int end, int hashCode)
+      {
+        int mask  = identifiers.length - 1;
+        int index = spread(hashCode) & mask;
+
+        while (identifiers[index] != null)
+          {
+            if (hashCodes[index] == hashCode && matches(identifiers[index], source, start, end))
+                return identifiers[index];
+
+            index = (index + 1) & mask;
+          }
+
+        String identifier = source.getText(start, end);
+        identifiers[index] = identifier;
+        hashCodes[index]   = hashCode;
+
+        if (++size*2 > identifiers.length)
+            grow();
+
+        return identifier;
+      }
+
+
+    /**
+     * Returns true if the string contains the characters of the
+     * source from offset start (inclusive) to offset end (exclusive).
+     */
+    public static boolean matches(String str, Source source, int start, int end)
+      {
+        if (str.length() != end - start)
+            return false;
+
+        for (int i = 0;  i < str.length();  ++i)
+          {
+            if (str.charAt(i) != source.charAt(start + i))
+                return false;
+          }
+
+        return true;
+      }
+
+
+    /**
+     * Spreads the higher bits of a hash code to the lower bits, which
+     * select the slot in the table.
+     */
+    private static int spread(int hashCode)
+      {
+        return hashCode ^ (hashCode >>> 16);
+      }
+
+
+    /**
+     * Doubles the capacity of the table.
+     */
+    private void grow()
+      {
+        String[] oldIdentifiers = identifiers;
+        int[]    oldHashCodes   = hashCodes;
+
+        identifiers = new String[2*oldIdentifiers.length];
+        hashCodes   = new int[2*oldIdentifiers.length];
+        int mask    = identifiers.length - 1;
+
+        for (int i = 0;  i < oldIdentifiers.length;  ++i)
+          {
+            if (oldIdentifiers[i] != null)
+              {
+                int index = spread(oldHashCodes[i]) & mask;
+                while (identifiers[index] != null)
+                    index = (index + 1) & mask;
+
+                identifiers[index] = oldIdentifiers[i];
+                hashCodes[index]   = oldHashCodes[i];
+              }
+          }
+      }
+  }
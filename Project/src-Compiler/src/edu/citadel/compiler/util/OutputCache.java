@@ -0,0 +1,173 @@
+package edu.citadel.compiler.util;
+
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+
+/**
+ * An on-disk cache for the output of a tool (e.g., the compiler or the
+ * assembler), keyed by a SHA-256 hash of the tool version, the options
+ * that affect the output, and the source text.  Each entry is a file in
+ * the cache directory whose name is the key.  The last-modified time of
+ * an entry is updated when it is used, and when the total size of the
+ * entries exceeds the maximum size, the least recently used entries are
+ * removed.  Entries are written to a temporary file and then renamed, so
+ * several tools can share a cache directory.  Problems reading or writing
+ * the cache are not errors; the tool simply produces its output again.
+ */
+public class OutputCache
+  {
+    /** the default maximum total size of the entries in bytes */
+    public static final long DEFAULT_MAX_SIZE = 64L*1024*1024;
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    // serializes eviction within a JVM
+    private static final Object lock = new Object();
+
+    private Path directory;
+    private long maxSize;
+
+
+    /**
+     * Construct a cache that stores entries in the specified directory,
+     * which is created if necessary.
+     */
+    public OutputCache(File directory, long maxSize)
+      {
+        this.directory = directory.toPath();
+        this.maxSize   = maxSize;
+      }
+
+
+    /**
+     * Returns the default cache directory, ".cprl-cache" in the user's
+     * home directory.
+     */
+    public static File getDefaultDirectory()
+      {
+        return new File(System.getProperty("user.home"), ".cprl-cache");
+      }
+
+
+    /**
+     * Returns the key for the output of a tool.
+     *
+     * @param toolVersion    identifies the tool and the version of its output
+     * @param configuration  the options that affect the output
+     * @param sourceText     the contents of the source file
+     */
+    public static String computeKey(String toolVersion, String configuration, byte[] sourceText)
+      {
+        try
+          {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            update(digest, toolVersion.getBytes(StandardCharsets.UTF_8));
+            update(digest, configuration.getBytes(StandardCharsets.UTF_8));
+            update(digest, sourceText);
+
+            StringBuilder key = new StringBuilder(64);
+            for (byte b : digest.digest())
+                key.append(String.format("%02x", b));
+
+            return key.toString();
+          }
+        catch (NoSuchAlgorithmException e)
+          {
+            // every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+          }
+      }
+
+
+    /**
+     * Adds the length of the bytes followed by the bytes to the digest,
+     * so that different sequences of parts can't produce the same key.
+     */
+    private static void update(MessageDigest digest, byte[] bytes)
+      {
+        digest.update(ByteUtil.intToBytes(bytes.length));
+        digest.update(bytes);
+      }
+
+
+    /**
+     * Returns the output cached for the key, or null if there is none.
+     */
+    public byte[] get(String key)
+      {
+        Path entry = directory.resolve(key);
+
+        try
+          {
+            byte[] output = Files.readAllBytes(entry);
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+            return output;
+          }
+        catch (IOException e)
+          {
+            return null;
+          }
+      }
+
+
+    /**
+     * Caches the output for the key, removing the least recently
+     * used entries if the cache has grown too large.
+     */
+    public void put(String key, byte[] output)
+      {
+        try
+          {
+            Files.createDirectories(directory);
+
+            Path temp = Files.createTempFile(directory, key, TEMP_SUFFIX);
+            Files.write(temp, output);
+            Files.move(temp, directory.resolve(key), StandardCopyOption.REPLACE_EXISTING,
+                                                     StandardCopyOption.ATOMIC_MOVE);
+            evict();
+          }
+        catch (IOException e)
+          {
+            // the output is simply not cached
+          }
+      }
+
+
+    /**
+     * Removes the least recently used entries until the total size
+     * of the entries is at most the maximum size.
+     */
+    private void evict()
+      {
+        synchronized (lock)
+          {
+            File[] entries = directory.toFile().listFiles(f -> !f.getName().endsWith(TEMP_SUFFIX));
+            if (entries == null)
+                return;
+
+            long size = 0;
+            for (File entry : entries)
+                size = size + entry.length();
+
+            if (size <= maxSize)
+                return;
+
+            Arrays.sort(entries, Comparator.comparingLong(File::lastModified));
+            for (int i = 0;  i < entries.length && size > maxSize;  ++i)
+              {
+                long length = entries[i].length();
+                if (entries[i].delete())
+                    size = size - length;
+              }
+          }
+      }
+  }
@@ -2,7 +2,7 @@ package edu.citadel.compiler.util;
 
 
 /**
- * Utility class for formatting strings.
+ * Utility class for formatting and converting strings.
  */
 public class StringUtil
   {
@@ -30,4 +30,47 @@ public class StringUtil
             return buffer.toString();
           }
       }
+
+
+    /**
+     * Returns the characters with escaped characters (e.g., \n) replaced
+     * by the characters that they represent.  The escapes are the same as
+     * in the literals of CPRL and CVM assembly language.
+     *
+     * @throws IllegalArgumentException if an escape is not valid.
+     */
+    public static String unescape(String chars)
+      {
+        if (chars.indexOf('\\') < 0)
+            return chars;
+
+        StringBuilder buffer = new StringBuilder(chars.length());
+        for (int i = 0;  i < chars.length();  ++i)
+          {
+            char c = chars.charAt(i);
+            if (c != '\\')
+              {
+                buffer.append(c);
+                continue;
+              }
+
+            if (++i == chars.length())
+                throw new IllegalArgumentException("Illegal escape character.");
+
+            switch (chars.charAt(i))
+              {
+                case 'b'  : buffer.append('\b');   break;   // backspace
+                case 't'  : buffer.append('\t');   break;   // tab
+                case 'n'  : buffer.append('\n');   break;   // linefeed (a.k.a. newline)
+                case 'f'  : buffer.append('\f');   break;   // form feed
+                case 'r'  : buffer.append('\r');   break;   // carriage return
+                case '\"' : buffer.append('\"');   break;   // double quote
+                case '\'' : buffer.append('\'');   break;   // single quote
+                case '\\' : buffer.append('\\');   break;   // backslash
+                default   : throw new IllegalArgumentException("Illegal escape character.");
+              }
+          }
+
+        return buffer.toString();
+      }
   }
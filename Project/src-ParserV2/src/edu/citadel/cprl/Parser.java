@@ -396,14 +396,15 @@ public class Parser
     /**
      * Parse the following grammar rule:<br>
      * <code>statement = assignmentStmt | ifStmt | loopStmt | exitStmt | readStmt
-     *                 | writeStmt | writelnStmt | procedureCallStmt | returnStmt .</code>
+     *                 | writeStmt | writelnStmt | procedureCallStmt | returnStmt
+     *                 | parallelStmt .</code>
      */
     public void parseStatement() throws IOException
       {
         // assumes that scanner.getSymbol() can start a statement
         assert scanner.getSymbol().isStmtStarter() : "Invalid statement.";
 
-// ...
+// ...  Hint: a statement starting with "parallel" is a parallelStmt
 
         // Error recovery here is complicated for identifiers since they can both
         // start a statement and appear elsewhere in the statement.  (Consider,
@@ -521,6 +522,37 @@ public class Parser
       }
 
 
+    /**
+     * Parse the following grammar rule:<br>
+     * <code>parallelStmt = "parallel" ( procedureCallStmt )+ "end" "parallel" ";" .</code>
+     */
+    public void parseParallelStmt() throws IOException
+      {
+        try
+          {
+            match(Symbol.parallelRW);
+
+            do
+              {
+                if (scanner.getSymbol() != Symbol.identifier)
+                    throw error("Expecting a procedure call in a parallel statement.");
+
+                parseProcedureCallStmt();
+              }
+            while (scanner.getSymbol() == Symbol.identifier);
+
+            match(Symbol.endRW);
+            match(Symbol.parallelRW);
+            match(Symbol.semicolon);
+          }
+        catch (ParserException e)
+          {
+            ErrorHandler.getInstance().reportError(e);
+            recover(stmtFollowers);
+          }
+      }
+
+
     /**
      * Parse the following grammar rule:<br>
      * <code>actualParameters = "(" expressions ")" .</code>
@@ -0,0 +1,116 @@
+package edu.citadel.cprl;
+
+
+import edu.citadel.compiler.ErrorHandler;
+import edu.citadel.cprl.ast.Inliner;
+
+
+/**
+ * The state of a single compilation: the error handler, the inliner, and the
+ * buffer that records the labels and instructions generated for the program.  Each source
+ * file is compiled with its own context, which is handed to the parser and
+ * to every AST node, so several files can be compiled at the same time in
+ * one JVM.
+ */
+public class CompilationContext
+  {
+    private ErrorHandler errorHandler;
+
+    // inlines calls to small subprograms when the program is simplified
+    private Inliner inliner;
+
+    // records the labels and instructions until code generation is complete
+    private InstructionBuffer instructions;
+
+
+    /**
+     * Construct a compilation context that reports errors to the specified
+     * error handler and has an empty instruction buffer.
+     */
+    public CompilationContext(ErrorHandler errorHandler)
+      {
+        this.errorHandler = errorHandler;
+        this.inliner      = new Inliner(this);
+        this.instructions = new InstructionBuffer();
+      }
+
+
+    public ErrorHandler getErrorHandler()
+      {
+        return errorHandler;
+      }
+
+
+    public Inliner getInliner()
+      {
+        return inliner;
+      }
+
+
+    /**
+     * Returns the buffer with the labels and instructions emitted so far.
+     * After code generation, the buffer is written as assembly language
+     * or handed to the assembler or the object code generator.
+     */
+    public InstructionBuffer getInstructions()
+      {
+        return instructions;
+      }
+
+
+    /**
+     * Returns the ID of a new label that is unique within this compilation.
+     */
+    public int getNewLabel()
+      {
+        return instructions.newLabel();
+      }
+
+
+    /**
+     * Adds the label with the specified ID to the instruction buffer
+     * for the next assembly instruction.
+     */
+    public void emitLabel(int label)
+      {
+        instructions.addLabel(label);
+      }
+
+
+    /**
+     * Emit an assembly instruction without arguments.
+     */
+    public void emit(byte opCode)
+      {
+        instructions.addInstruction(opCode);
+      }
+
+
+    /**
+     * Emit an assembly instruction with an integer argument.
+     */
+    public void emit(byte opCode, int arg)
+      {
+        instructions.addInstruction(opCode, arg);
+      }
+
+
+    /**
+     * Emit an assembly instruction whose argument is a label
+     * (e.g., a branch or a call).
+     */
+    public void emitLabelArg(byte opCode, int label)
+      {
+        instructions.addLabelInstruction(opCode, label);
+      }
+
+
+    /**
+     * Emit an assembly instruction with a char or string literal
+     * argument written as in assembly language (including the quotes).
+     */
+    public void emit(byte opCode, String literal)
+      {
+        instructions.addInstruction(opCode, literal);
+      }
+  }
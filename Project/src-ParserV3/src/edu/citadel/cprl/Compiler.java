@@ -3,100 +3,356 @@ package edu.citadel.cprl;
 
 import edu.citadel.compiler.CodeGenException;
 import edu.citadel.compiler.ErrorHandler;
+import edu.citadel.compiler.FatalErrorException;
 import edu.citadel.compiler.Source;
-import edu.citadel.cprl.ast.AST;
+import edu.citadel.compiler.util.OutputCache;
 import edu.citadel.cprl.ast.Program;
+import edu.citadel.cvm.ObjectFile;
+import edu.citadel.cvm.assembler.Assembler;
+import edu.citadel.cvm.assembler.ProgramBuilder;
+import edu.citadel.cvm.assembler.optimize.Optimizations;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 
 /**
- * Compiler for the CPRL programming language.
+ * Compiler for the CPRL programming language.  Normally the compiler writes
+ * assembly code to a ".asm" file for the assembler.  With option -pipeline,
+ * the generated instructions are handed directly to the assembler, which
+ * writes the ".obj" file without the assembly code being written as text
+ * and scanned and parsed again.  With option -obj, the compiler generates
+ * the ".obj" file itself (see ObjectCodeGenerator), so that a program is
+ * compiled in one step.  In both cases, the ".asm" file is written only
+ * with option -asm (e.g., for debugging).
+ * <p>
+ * When more than one source file or a directory of source files is
+ * specified on the command line, the files are compiled in parallel in
+ * one JVM, each with its own CompilationContext.  The messages for each
+ * file are printed together in the order of the files, followed by the
+ * number of files compiled per second for the whole batch.
+ * <p>
+ * Before code generation, the abstract syntax tree is simplified, and calls
+ * to small subprograms are inlined (see Inliner).  Option -noinline turns off
+ * inlining, and option -inline: names subprograms that are inlined regardless
+ * of their size.  A call after which a subprogram returns is emitted as a
+ * tail call (TAIL) that reuses the frame of the subprogram, so recursion in
+ * tail position runs in constant stack space.
  */
 public class Compiler
   {
     private static final String SUFFIX  = ".cprl";
     private static final int    FAILURE = -1;
 
+    /** size of the buffer for the assembly file */
+    private static final int BUFFER_SIZE = 64*1024;
+
+    /**
+     * Identifies the compiler in the keys of cached assembly files.  Change
+     * this whenever a change to the compiler changes the assembly code
+     * produced for a source file.
+     */
+    private static final String VERSION = "CPRL Compiler 1.3";
+
+    // cache for assembly or object files (null if the cache is not used)
+    private static OutputCache cache = null;
+
+    // true if the compiler assembles the generated code in memory
+    private static boolean pipeline = false;
+
+    // true if the compiler generates object code directly
+    private static boolean direct = false;
+
+    // true if the assembly code is written to a file when an object file is produced
+    private static boolean writeAsm = false;
+
+    // true if the compile time of each file in a batch is printed
+    private static boolean printTiming = false;
+
+    // true if calls to small subprograms are inlined
+    private static boolean inline = true;
+
+    // names of subprograms that are inlined regardless of their size
+    private static Set<String> inlineHints = new TreeSet<>();
+
     private File sourceFile;
+    private PrintWriter out;
+    private PrintWriter err;
 
 
     /**
-     * Construct a compiler with the specified source file.
+     * The messages and statistics for a source file compiled in a batch.
+     */
+    private static class BatchResult
+      {
+        String  out;
+        String  err;
+        boolean succeeded;
+        long    compileTime;   // in nanoseconds
+      }
+
+
+    /**
+     * Construct a compiler with the specified source file that writes
+     * messages to System.out and System.err.
      */
     public Compiler(File sourceFile)
+      {
+        this(sourceFile, new PrintWriter(System.out, true, StandardCharsets.UTF_8),
+                         new PrintWriter(System.err, true, StandardCharsets.UTF_8));
+      }
+
+
+    /**
+     * Construct a compiler with the specified source file that writes
+     * progress messages to out and error messages to err.
+     */
+    public Compiler(File sourceFile, PrintWriter out, PrintWriter err)
       {
         this.sourceFile = sourceFile;
+        this.out        = out;
+        this.err        = err;
       }
 
 
     /**
      * Compile the source file.  If there are no errors in the source file,
      * the object code is placed in a file with the same base file name as
-     * the source file but with a ".asm" suffix.
+     * the source file but with a ".asm" suffix, or with a ".obj" suffix in
+     * pipeline mode or when object code is generated directly.  If the cache
+     * is used and contains the output for the same source text and options,
+     * the cached output is used instead.  The cache holds only one output
+     * file per source file, so it is not used when an assembly file is also
+     * written for an object file.
+     *
+     * @return true if the source file was compiled without errors.
      *
      * @throws IOException if there are problems reading the source file
      *                     or writing to the target file.
      */
-    public void compile() throws IOException
+    public boolean compile() throws IOException
       {
-        FileReader reader  = new FileReader(sourceFile, StandardCharsets.UTF_8);
-        Source     source  = new Source(reader);
-        Scanner    scanner = new Scanner(source);
-        Parser     parser  = new Parser(scanner);
+        byte[] sourceText = Files.readAllBytes(sourceFile.toPath());
+        File   asmFile    = getTargetFile(sourceFile, ".asm");
+        File   targetFile = pipeline || direct ? getTargetFile(sourceFile, ".obj") : asmFile;
 
-        ErrorHandler errorHandler = ErrorHandler.getInstance();
+        // only the target file is cached, so the cache can't supply the assembly file as well
+        boolean useCache = cache != null && !(writeAsm && (pipeline || direct));
 
-        printProgressMessage("Starting compilation for " + sourceFile.getName() + "...");
+        String key = null;
+        if (useCache)
+          {
+            String configuration = "";
+            if (pipeline)
+                configuration = "obj " + Optimizations.getConfiguration();
+            else if (direct)
+                configuration = "direct";
 
-        // parse source file
-        Program program = parser.parseProgram();
+            configuration = configuration + (inline ? " inline " + inlineHints : " noinline");
 
-        // check constraints
-        if (!errorHandler.errorsExist())
-          {
-            printProgressMessage("Checking constraints...");
-            program.checkConstraints();
+            key = OutputCache.computeKey(VERSION, configuration, sourceText);
+            byte[] output = cache.get(key);
+            if (output != null)
+              {
+                Files.write(targetFile.toPath(), output);
+                printProgressMessage("Using cached " + (pipeline || direct ? "object" : "assembly")
+                                   + " code for " + sourceFile.getName() + ".");
+                return true;
+              }
           }
 
-        // generate code
-        if (!errorHandler.errorsExist())
+        ErrorHandler       errorHandler = new ErrorHandler();
+        CompilationContext context      = new CompilationContext(errorHandler);
+        errorHandler.setPrintWriter(err);
+        context.getInliner().setEnabled(inline);
+        context.getInliner().setHints(inlineHints);
+
+        Source     source  = new Source(StandardCharsets.UTF_8.decode(ByteBuffer.wrap(sourceText)));
+        Scanner    scanner = new Scanner(source, errorHandler);
+        Parser     parser  = new Parser(scanner, context);
+
+        printProgressMessage("Starting compilation for " + sourceFile.getName() + "...");
+
+        Assembler           assembler  = null;
+        ProgramBuilder      builder    = null;
+        ObjectCodeGenerator generator  = null;
+        ObjectFile          objectFile = null;
+
+        try
           {
-            printProgressMessage("Generating code...");
+            // parse source file
+            Program program = parser.parseProgram();
 
-            // no error recovery from errors detected during code generation
-            try
+            // check constraints
+            if (!errorHandler.errorsExist())
               {
-                AST.setPrintWriter(getTargetPrintWriter(sourceFile));
-                program.emit();
+                printProgressMessage("Checking constraints...");
+                program.checkConstraints();
               }
-            catch (CodeGenException ex)
+
+            // fold constant expressions, remove branches that are never taken,
+            // inline calls to small subprograms, and find tail calls
+            if (!errorHandler.errorsExist())
+                program.simplify();
+
+            // generate code
+            if (!errorHandler.errorsExist())
               {
-                errorHandler.reportError(ex);
+                printProgressMessage("Generating code...");
+
+                if (pipeline)
+                  {
+                    assembler = new Assembler(asmFile, out, err);
+                    builder   = assembler.newProgramBuilder();
+                  }
+                else if (direct)
+                    generator = new ObjectCodeGenerator();
+
+                // no error recovery from errors detected during code generation
+                try
+                  {
+                    program.emit();
+
+                    // write or hand over the buffered instructions in a single pass
+                    InstructionBuffer instructions = context.getInstructions();
+
+                    if (!pipeline && !direct || writeAsm)
+                      {
+                        try (Writer out = getTargetWriter(asmFile))
+                          {
+                            instructions.writeTo(out);
+                          }
+                      }
+
+                    if (builder != null)
+                        instructions.addTo(builder);
+
+                    if (generator != null)
+                      {
+                        instructions.addTo(generator);
+                        objectFile = generator.generate();
+                      }
+                  }
+                catch (CodeGenException ex)
+                  {
+                    errorHandler.reportError(ex);
+                  }
               }
           }
+        catch (FatalErrorException e)
+          {
+            // the error has been reported; only this compilation is stopped
+          }
 
         if (errorHandler.errorsExist())
+          {
             errorHandler.printMessage("Errors detected in " + sourceFile.getName()
                                     + " -- compilation terminated.");
-        else
-            printProgressMessage("Compilation complete.");
+            return false;
+          }
+
+        if (pipeline)
+          {
+            objectFile = assembler.assembleObjectFile(builder);
+            if (objectFile == null)
+                return false;   // errors have been reported by the assembler
+          }
+
+        byte[] output = null;
+        if (objectFile != null)
+          {
+            output = objectFile.toByteBuffer().array();
+            Files.write(targetFile.toPath(), output);
+          }
+
+        if (useCache)
+            cache.put(key, output != null ? output : Files.readAllBytes(targetFile.toPath()));
+
+        printProgressMessage("Compilation complete.");
+        return true;
       }
 
 
     /**
      * This method drives the compilation process.
      *
-     * @param args must include the name of the CPRL source file, either the complete
-     *             file name or the base file name with suffix ".cprl" omitted.
+     * @param args must include the names of the CPRL source files, either the
+     *             complete file name or the base file name with suffix ".cprl"
+     *             omitted, or the names of directories containing source files,
+     *             optionally preceded by options.
      */
     public static void main(String[] args) throws Exception
       {
-        if (args.length == 0 || args.length > 1)
+        // options precede the file names
+        int argNum = 0;
+        while (argNum < args.length && args[argNum].startsWith("-"))
+            processOption(args[argNum++]);
+
+        if (argNum == args.length)
             printUsageAndExit();
 
-        String fileName = args[0];
+        List<File> sourceFiles = new ArrayList<>(args.length - argNum);
+        for (;  argNum < args.length;  ++argNum)
+            addSourceFiles(sourceFiles, args[argNum]);
+
+        if (sourceFiles.isEmpty())
+          {
+            System.err.println("*** No CPRL source files found ***");
+            System.exit(FAILURE);
+          }
+
+        if (sourceFiles.size() == 1)
+          {
+            Compiler compiler = new Compiler(sourceFiles.get(0));
+            compiler.compile();
+            System.out.println();
+          }
+        else
+            compileAll(sourceFiles);
+      }
+
+
+    /**
+     * Adds the source files for a name on the command line to the list.
+     * For a directory, the ".cprl" files in the directory are added in
+     * the order of their names.  Otherwise the suffix ".cprl" is appended
+     * to the name if necessary.  Exits if the file can't be found.
+     */
+    private static void addSourceFiles(List<File> sourceFiles, String fileName)
+      {
+        File file = new File(fileName);
+
+        if (file.isDirectory())
+          {
+            File[] files = file.listFiles(f -> f.isFile() && f.getName().endsWith(SUFFIX));
+            if (files != null)
+              {
+                Arrays.sort(files);
+                sourceFiles.addAll(Arrays.asList(files));
+              }
+          }
+        else
+            sourceFiles.add(getSourceFile(fileName));
+      }
+
+
+    /**
+     * Returns the source file with the specified name, appending the suffix
+     * ".cprl" if necessary.  Exits if the file can't be found.
+     */
+    private static File getSourceFile(String fileName)
+      {
         File sourceFile = new File(fileName);
 
         if (!sourceFile.isFile())
@@ -123,19 +379,108 @@ public class Compiler
               }
           }
 
-        Compiler compiler = new Compiler(sourceFile);
-        compiler.compile();
+        return sourceFile;
+      }
 
-        System.out.println();
+
+    /**
+     * Compiles the source files in parallel.  The messages for each file
+     * are buffered and printed after the file has been compiled, so that
+     * messages for different files are not interleaved.  After the last
+     * file, the number of files and the throughput of the batch are printed.
+     */
+    private static void compileAll(List<File> sourceFiles) throws InterruptedException
+      {
+        int numThreads = Math.min(sourceFiles.size(), Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+
+        long startTime = System.nanoTime();
+
+        List<Future<BatchResult>> results = new ArrayList<>(sourceFiles.size());
+        for (File sourceFile : sourceFiles)
+            results.add(executor.submit(() -> compileBuffered(sourceFile)));
+
+        executor.shutdown();
+
+        int  numErrors  = 0;
+        long sourceSize = 0;
+        for (int i = 0;  i < results.size();  ++i)
+          {
+            sourceSize = sourceSize + sourceFiles.get(i).length();
+
+            try
+              {
+                BatchResult result = results.get(i).get();
+                System.out.print(result.out);
+                System.out.flush();
+                System.err.print(result.err);
+                System.err.flush();
+
+                if (!result.succeeded)
+                    ++numErrors;
+              }
+            catch (ExecutionException e)
+              {
+                ++numErrors;
+                System.err.println("*** Unable to compile " + sourceFiles.get(i).getName() + " ***");
+                e.getCause().printStackTrace();
+              }
+          }
+
+        double seconds = (System.nanoTime() - startTime)/1.0e9;
+        System.out.printf("Compiled %d files (%d with errors) in %.2f s on %d %s:"
+                        + " %.1f files/s, %.1f KB/s%n",
+                          sourceFiles.size(), numErrors, seconds, numThreads,
+                          numThreads == 1 ? "thread" : "threads",
+                          sourceFiles.size()/seconds, sourceSize/1024.0/seconds);
+      }
+
+
+    /**
+     * Compiles the source file and returns the progress messages and the
+     * error messages written during the compilation, together with the
+     * compile time.
+     */
+    private static BatchResult compileBuffered(File sourceFile)
+      {
+        StringWriter outBuffer = new StringWriter();
+        StringWriter errBuffer = new StringWriter();
+        BatchResult  result    = new BatchResult();
+
+        try (PrintWriter out = new PrintWriter(outBuffer);
+             PrintWriter err = new PrintWriter(errBuffer))
+          {
+            Compiler compiler  = new Compiler(sourceFile, out, err);
+            long     startTime = System.nanoTime();
+            try
+              {
+                result.succeeded = compiler.compile();
+              }
+            catch (IOException e)
+              {
+                err.println("*** " + sourceFile.getName() + ": " + e.getMessage() + " ***");
+              }
+
+            result.compileTime = System.nanoTime() - startTime;
+
+            if (printTiming)
+                out.printf("Compile time for %s: %.1f ms%n", sourceFile.getName(),
+                           result.compileTime/1.0e6);
+
+            out.println();
+          }
+
+        result.out = outBuffer.toString();
+        result.err = errBuffer.toString();
+        return result;
       }
 
 
     /**
-     * Returns a PrintWriter used for writing the assembly code.  The target
-     * print writer writes to a file with the same base file name as the source
-     * file but with a ".asm" suffix.
+     * Returns a target file with the same base file name as the source
+     * file but with the specified suffix (e.g., ".asm").
      */
-    private PrintWriter getTargetPrintWriter(File sourceFile)
+    private File getTargetFile(File sourceFile, String targetSuffix)
       {
         // get source file name minus the suffix
         String baseName = sourceFile.getName();
@@ -143,32 +488,75 @@ public class Compiler
         if (suffixIndex > 0)
             baseName = sourceFile.getName().substring(0, suffixIndex);
 
-        String targetFileName = baseName + ".asm";
+        String targetFileName = baseName + targetSuffix;
 
-        try
-          {
-            File targetFile = new File(sourceFile.getParent(), targetFileName);
-            return new PrintWriter(new FileWriter(targetFile, StandardCharsets.UTF_8), true);
-          }
-        catch (IOException e)
-          {
-            e.printStackTrace();
-            System.exit(FAILURE);
-            return null;   // will never execute
-          }
+        return new File(sourceFile.getParent(), targetFileName);
       }
 
 
-    private static void printProgressMessage(String message)
+    /**
+     * Returns a buffered Writer used for writing the assembly code to the target file.
+     *
+     * @throws IOException if the target file can't be opened for writing.
+     */
+    private Writer getTargetWriter(File targetFile) throws IOException
       {
-        System.out.println(message);
+        return new BufferedWriter(new FileWriter(targetFile, StandardCharsets.UTF_8), BUFFER_SIZE);
+      }
+
+
+    private void printProgressMessage(String message)
+      {
+        out.println(message);
       }
 
 
     private static void printUsageAndExit()
       {
-        System.out.println("Usage: java edu.citadel.cprl.Compiler <source file>");
+        System.out.println("Usage: java edu.citadel.cprl.Compiler <options> <source files or directories>");
+        System.out.println("where the options are omitted or are the following:");
+        System.out.println("-pipeline      Assembles the code in memory and writes the object file");
+        System.out.println("-obj           Generates the object file directly, without the assembler");
+        System.out.println("-asm           Also writes the assembly file with -pipeline or -obj (bypasses -cache)");
+        System.out.println("-cache         Reuses output files cached in " + OutputCache.getDefaultDirectory());
+        System.out.println("-cache:<dir>   Reuses output files cached in the specified directory");
+        System.out.println("-timing        Prints the compile time of each file in a batch");
+        System.out.println("-noinline      Does not inline calls to small subprograms");
+        System.out.println("-inline:<list> Inlines the subprograms in the comma-separated list");
+        System.out.println("               regardless of their size");
         System.out.println();
         System.exit(0);
       }
+
+
+    private static void processOption(String option)
+      {
+        if (option.equals("-pipeline"))
+          {
+            pipeline = true;
+            direct   = false;
+          }
+        else if (option.equals("-obj"))
+          {
+            direct   = true;
+            pipeline = false;
+          }
+        else if (option.equals("-asm"))
+            writeAsm = true;
+        else if (option.equals("-cache"))
+            cache = new OutputCache(OutputCache.getDefaultDirectory(), OutputCache.DEFAULT_MAX_SIZE);
+        else if (option.startsWith("-cache:"))
+          {
+            File cacheDir = new File(option.substring("-cache:".length()));
+            cache = new OutputCache(cacheDir, OutputCache.DEFAULT_MAX_SIZE);
+          }
+        else if (option.equals("-timing"))
+            printTiming = true;
+        else if (option.equals("-noinline"))
+            inline = false;
+        else if (option.startsWith("-inline:"))
+            inlineHints.addAll(Arrays.asList(option.substring("-inline:".length()).split(",")));
+        else
+            printUsageAndExit();
+      }
   }
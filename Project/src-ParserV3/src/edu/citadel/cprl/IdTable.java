@@ -4,9 +4,8 @@ package edu.citadel.cprl;
 import edu.citadel.compiler.ParserException;
 import edu.citadel.cprl.ast.Declaration;
 
-import java.util.HashMap;
-import java.util.Map;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 
 /**
@@ -15,16 +14,42 @@ import java.util.ArrayList;
  */
 public final class IdTable
   {
-    // NOTE: IdTable is implemented as a stack of maps, where each map associates
-    // the identifier string with its declaration.  The stack is implemented using an
-    // array list.  When a when a new scope is opened, a new map is pushed onto the
-    // stack.  Searching for a declaration involves searching at the current level
-    // (top map in the stack) and then at enclosing scopes (maps under the top)
+    // NOTE: IdTable is implemented as a single open addressing hash table keyed by
+    // the identifier string.  The slot for an identifier holds a chain of entries,
+    // one for each open scope that declares the identifier, with the innermost
+    // scope first.  Searching for a declaration involves only looking at the first
+    // entry in the chain, no matter how deeply scopes are nested.  The entries are
+    // also kept in a list in the order that they are added, and the position in
+    // the list where each open scope starts is kept on a stack, so closing a scope
+    // removes just the entries added in that scope from their chains.  Since the
+    // scanner interns identifiers, two tokens for the same identifier usually
+    // have the same string, and comparing them is a reference comparison.
+
+    private static final int INITIAL_CAPACITY_BITS = 7;
+    private static final int INITIAL_SCOPE_LEVELS  = 2;
+
+    // multiplier that scatters the hash codes of similar identifiers (e.g., x1,
+    // x2, ...), which are close together, over the table (Fibonacci hashing)
+    private static final int MULTIPLIER = 0x9E3779B9;
 
-    private static final int INITIAL_SCOPE_LEVELS = 2;
-    private static final int INITIAL_MAP_SIZE     = 50;
+    /**
+     * A declaration of an identifier in one scope.
+     */
+    private static class Entry
+      {
+        Declaration decl;
+        int         level;
+        Entry       next;   // declaration in an enclosing scope (or null)
+      }
+
+    private String[] identifiers;   // null for an empty slot
+    private int[]    hashCodes;
+    private Entry[]  chains;        // innermost declaration for each slot (or null)
+    private int      size;          // number of slots in use
+    private int      shift;         // 32 minus the number of bits of a slot index
 
-    private ArrayList<Map<String, Declaration>> table;
+    private ArrayList<Entry> entries;
+    private int[] scopeStarts;
     private int currentLevel;
 
 
@@ -33,9 +58,14 @@ public final class IdTable
      */
     public IdTable()
       {
-        table = new ArrayList<Map<String, Declaration>>(INITIAL_SCOPE_LEVELS);
+        identifiers  = new String[1 << INITIAL_CAPACITY_BITS];
+        hashCodes    = new int[identifiers.length];
+        chains       = new Entry[identifiers.length];
+        size         = 0;
+        shift        = 32 - INITIAL_CAPACITY_BITS;
+        entries      = new ArrayList<>(identifiers.length);
+        scopeStarts  = new int[INITIAL_SCOPE_LEVELS];
         currentLevel = 0;
-        table.add(currentLevel, new HashMap<>(INITIAL_MAP_SIZE));
       }
 
 
@@ -54,7 +84,11 @@ public final class IdTable
     public void openScope()
       {
         ++currentLevel;
-        table.add(currentLevel, new HashMap<String, Declaration>(INITIAL_MAP_SIZE));
+
+        if (currentLevel == scopeStarts.length)
+            scopeStarts = Arrays.copyOf(scopeStarts, 2*scopeStarts.length);
+
+        scopeStarts[currentLevel] = entries.size();
       }
 
 
@@ -63,7 +97,17 @@ public final class IdTable
      */
     public void closeScope()
       {
-        table.remove(currentLevel);
+        int start = scopeStarts[currentLevel];
+
+        // remove the entries in the reverse order that they were added
+        for (int i = entries.size() - 1;  i >= start;  --i)
+          {
+            Entry  entry      = entries.remove(i);
+            String identifier = entry.decl.getIdToken().getText();
+            int    slot       = findSlot(identifier, identifier.hashCode());
+            chains[slot] = entry.next;
+          }
+
         --currentLevel;
       }
 
@@ -82,16 +126,40 @@ public final class IdTable
         assert idToken.getSymbol() == Symbol.identifier :
             "IdTable.add(): The symbol for idToken is not an identifier.";
 
-        Map<String, Declaration> idMap = table.get(currentLevel);
-        Declaration oldDecl = idMap.put(idToken.getText(), decl);
+        String identifier = idToken.getText();
+        int    hashCode   = identifier.hashCode();
+        int    slot       = findSlot(identifier, hashCode);
+
+        if (identifiers[slot] == null)
+          {
+            identifiers[slot] = identifier;
+            hashCodes[slot]   = hashCode;
+
+            if (++size*2 > identifiers.length)
+              {
+                grow();
+                slot = findSlot(identifier, hashCode);
+              }
+          }
+
+        Entry oldEntry = chains[slot];
 
         // check that the identifier has not been defined previously
-        if (oldDecl != null)
+        if (oldEntry != null && oldEntry.level == currentLevel)
           {
-            String errorMsg = "Identifier \"" + idToken.getText()
+            oldEntry.decl = decl;
+            String errorMsg = "Identifier \"" + identifier
                             + "\" is already defined in the current scope.";
             throw new ParserException(idToken.getPosition(), errorMsg);
           }
+
+        Entry entry = new Entry();
+        entry.decl  = decl;
+        entry.level = currentLevel;
+        entry.next  = oldEntry;
+
+        chains[slot] = entry;
+        entries.add(entry);
       }
 
 
@@ -106,16 +174,58 @@ public final class IdTable
         assert idToken.getSymbol() == Symbol.identifier :
             "IdTable.get(): The symbol for idToken is not an identifier.";
 
-        Declaration decl = null;
-        int level = currentLevel;
+        String identifier = idToken.getText();
+        Entry  entry      = chains[findSlot(identifier, identifier.hashCode())];
 
-        while (level >= 0 && decl == null)
+        return entry != null ? entry.decl : null;
+      }
+
+
+    /**
+     * Returns the slot for the identifier, or the empty slot
+     * where it would be added if it is not in the table.
+     */
+    private int findSlot(String identifier, int hashCode)
+      {
+        int mask = identifiers.length - 1;
+        int slot = (hashCode*MULTIPLIER) >>> shift;
+
+        while (identifiers[slot] != null)
           {
-            Map<String, Declaration> idMap = table.get(level);
-            decl = idMap.get(idToken.getText());
-            --level;
+            if (identifiers[slot] == identifier
+                    || hashCodes[slot] == hashCode && identifiers[slot].equals(identifier))
+                return slot;
+
+            slot = (slot + 1) & mask;
           }
 
-        return decl;
+        return slot;
+      }
+
+
+    /**
+     * Doubles the capacity of the table.
+     */
+    private void grow()
+      {
+        String[] oldIdentifiers = identifiers;
+        int[]    oldHashCodes   = hashCodes;
+        Entry[]  oldChains      = chains;
+
+        identifiers = new String[2*oldIdentifiers.length];
+        hashCodes   = new int[2*oldIdentifiers.length];
+        chains      = new Entry[2*oldIdentifiers.length];
+        --shift;
+
+        for (int i = 0;  i < oldIdentifiers.length;  ++i)
+          {
+            if (oldIdentifiers[i] != null)
+              {
+                int slot = findSlot(oldIdentifiers[i], oldHashCodes[i]);
+                identifiers[slot] = oldIdentifiers[i];
+                hashCodes[slot]   = oldHashCodes[i];
+                chains[slot]      = oldChains[i];
+              }
+          }
       }
   }
@@ -0,0 +1,315 @@
+package edu.citadel.cprl;
+
+
+import edu.citadel.cvm.OpCode;
+import edu.citadel.cvm.OperandFormat;
+import edu.citadel.cvm.assembler.ProgramBuilder;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+
+/**
+ * Records the labels and instructions generated for a CPRL program as
+ * compact records in a growable int array, without building a string for
+ * each instruction.  Each record consists of two ints; the first one holds
+ * the opcode and the kind of the record, and the second one holds the
+ * argument, which is an integer value, a label ID, or the index of a char
+ * or string literal.  Labels are IDs returned by newLabel() and are named
+ * "L" followed by the ID only when the records are written.  When code
+ * generation is complete, the records are written as assembly language
+ * text or handed to a program builder or an object code generator in a
+ * single pass.
+ */
+public class InstructionBuffer
+  {
+    // number of spaces to print before opcode
+    private static final String SPACES = "   ";
+
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    // kinds of records
+    private static final int LABEL     = 0;   // definition of the label with ID arg
+    private static final int NO_ARG    = 1;
+    private static final int INT_ARG   = 2;
+    private static final int LABEL_ARG = 3;   // arg is a label ID
+    private static final int TEXT_ARG  = 4;   // arg is an index into literals
+
+    private static final int KIND_BITS = 3;
+    private static final int KIND_MASK = (1 << KIND_BITS) - 1;
+
+    private int[] records;
+    private int   size;   // number of ints in use
+
+    // number of labels returned by newLabel()
+    private int numLabels;
+
+    // arguments that are written as text (e.g., char and string literals)
+    private List<String> literals;
+
+
+    /**
+     * Construct an empty instruction buffer.
+     */
+    public InstructionBuffer()
+      {
+        records   = new int[2*INITIAL_CAPACITY];
+        size      = 0;
+        numLabels = 0;
+        literals  = new ArrayList<>();
+      }
+
+
+    /**
+     * Returns the ID of a new label that is unique within this buffer.
+     */
+    public int newLabel()
+      {
+        return numLabels++;
+      }
+
+
+    /**
+     * Adds a label for the next instruction.
+     *
+     * @throws IllegalArgumentException if the label was not returned by newLabel().
+     */
+    public void addLabel(int label)
+      {
+        checkLabel(label);
+        add(LABEL, 0, label);
+      }
+
+
+    /**
+     * Adds an instruction without arguments.
+     *
+     * @throws IllegalArgumentException if the opcode is not valid or requires an argument.
+     */
+    public void addInstruction(byte opCode)
+      {
+        if (getOperandFormat(opCode) != OperandFormat.NONE)
+            throw invalidArg(opCode);
+
+        add(NO_ARG, opCode, 0);
+      }
+
+
+    /**
+     * Adds an instruction with an integer argument.
+     *
+     * @throws IllegalArgumentException if the opcode is not valid or its
+     *                                  argument is not an integer.
+     */
+    public void addInstruction(byte opCode, int arg)
+      {
+        OperandFormat format = getOperandFormat(opCode);
+        if (format != OperandFormat.BYTE && format != OperandFormat.SHORT
+                && format != OperandFormat.INT || hasLabelArg(opCode))
+            throw invalidArg(opCode);
+
+        add(INT_ARG, opCode, arg);
+      }
+
+
+    /**
+     * Adds an instruction whose argument is a label; e.g., a branch or a call.
+     *
+     * @throws IllegalArgumentException if the opcode is not valid, its argument
+     *                                  is not a label, or the label was not
+     *                                  returned by newLabel().
+     */
+    public void addLabelInstruction(byte opCode, int label)
+      {
+        if (!hasLabelArg(opCode))
+            throw invalidArg(opCode);
+
+        checkLabel(label);
+        add(LABEL_ARG, opCode, label);
+      }
+
+
+    /**
+     * Adds an instruction with a char or string literal argument written
+     * as in assembly language; i.e., including the quotes.
+     *
+     * @throws IllegalArgumentException if the opcode is not valid or its
+     *                                  argument is not a char or string literal.
+     */
+    public void addInstruction(byte opCode, String literal)
+      {
+        OperandFormat format = getOperandFormat(opCode);
+        if (format != OperandFormat.CHAR && format != OperandFormat.STRING)
+            throw invalidArg(opCode);
+
+        add(TEXT_ARG, opCode, literals.size());
+        literals.add(literal);
+      }
+
+
+    /**
+     * Writes the labels and instructions as assembly language text,
+     * one label or instruction per line.
+     *
+     * @throws IOException if there are problems writing to out.
+     */
+    public void writeTo(Writer out) throws IOException
+      {
+        StringBuilder line = new StringBuilder(80);
+
+        for (int i = 0;  i < size;  i += 2)
+          {
+            int kind = records[i] & KIND_MASK;
+            int arg  = records[i + 1];
+
+            line.setLength(0);
+
+            if (kind == LABEL)
+                line.append('L').append(arg).append(':');
+            else
+              {
+                line.append(SPACES).append(OpCode.toString(getOpCode(i)));
+
+                if (kind == INT_ARG)
+                    line.append(' ').append(arg);
+                else if (kind == LABEL_ARG)
+                    line.append(' ').append('L').append(arg);
+                else if (kind == TEXT_ARG)
+                    line.append(' ').append(literals.get(arg));
+              }
+
+            line.append(LINE_SEPARATOR);
+            out.append(line);
+          }
+      }
+
+
+    /**
+     * Hands the labels and instructions to the program builder.
+     */
+    public void addTo(ProgramBuilder builder)
+      {
+        for (int i = 0;  i < size;  i += 2)
+          {
+            int  kind   = records[i] & KIND_MASK;
+            int  arg    = records[i + 1];
+            byte opCode = getOpCode(i);
+
+            if (kind == LABEL)
+                builder.addLabel(arg);
+            else if (kind == NO_ARG)
+                builder.addInstruction(opCode);
+            else if (kind == INT_ARG)
+                builder.addInstruction(opCode, arg);
+            else if (kind == LABEL_ARG)
+                builder.addLabelInstruction(opCode, arg);
+            else
+                builder.addInstruction(opCode, literals.get(arg));
+          }
+      }
+
+
+    /**
+     * Hands the labels and instructions to the object code generator.
+     */
+    public void addTo(ObjectCodeGenerator generator)
+      {
+        for (int i = 0;  i < size;  i += 2)
+          {
+            int  kind   = records[i] & KIND_MASK;
+            int  arg    = records[i + 1];
+            byte opCode = getOpCode(i);
+
+            if (kind == LABEL)
+                generator.addLabel(getLabelName(arg));
+            else if (kind == NO_ARG)
+                generator.addInstruction(opCode);
+            else if (kind == INT_ARG)
+                generator.addInstruction(opCode, arg);
+            else if (kind == LABEL_ARG)
+                generator.addLabelInstruction(opCode, getLabelName(arg));
+            else
+                generator.addInstruction(opCode, literals.get(arg));
+          }
+      }
+
+
+    /**
+     * Appends a record, doubling the capacity of the buffer if necessary.
+     */
+    private void add(int kind, int opCode, int arg)
+      {
+        if (size == records.length)
+            records = Arrays.copyOf(records, 2*records.length);
+
+        records[size++] = opCode << KIND_BITS | kind;
+        records[size++] = arg;
+      }
+
+
+    /**
+     * Returns the opcode of the record starting at index i.
+     */
+    private byte getOpCode(int i)
+      {
+        return (byte) (records[i] >>> KIND_BITS);
+      }
+
+
+    /**
+     * Returns the name of the label with the specified ID.
+     */
+    private static String getLabelName(int label)
+      {
+        return "L" + label;
+      }
+
+
+    /**
+     * Checks that the label was returned by newLabel().
+     *
+     * @throws IllegalArgumentException if the label was not returned by newLabel().
+     */
+    private void checkLabel(int label)
+      {
+        if (label < 0 || label >= numLabels)
+            throw new IllegalArgumentException("Invalid label " + label + ".");
+      }
+
+
+    /**
+     * Returns the format of the operands of the opcode.
+     *
+     * @throws IllegalArgumentException if the opcode is not valid.
+     */
+    private static OperandFormat getOperandFormat(byte opCode)
+      {
+        OperandFormat format = OpCode.getOperandFormat(opCode);
+        if (format == null)
+            throw new IllegalArgumentException("Invalid opcode " + opCode + ".");
+
+        return format;
+      }
+
+
+    /**
+     * Returns true if the argument of the opcode is a label; i.e., the
+     * opcode is a branch or calls or spawns a subprogram.
+     */
+    private static boolean hasLabelArg(byte opCode)
+      {
+        return OpCode.isBranch(opCode) || OpCode.isCall(opCode);
+      }
+
+
+    private static IllegalArgumentException invalidArg(byte opCode)
+      {
+        return new IllegalArgumentException("Invalid argument for opcode "
+                                          + OpCode.toString(opCode) + ".");
+      }
+  }
@@ -0,0 +1,595 @@
+package edu.citadel.cprl;
+
+
+import edu.citadel.compiler.CodeGenException;
+import edu.citadel.compiler.util.StringUtil;
+import edu.citadel.cvm.Constants;
+import edu.citadel.cvm.ObjectFile;
+import edu.citadel.cvm.OpCode;
+import edu.citadel.cvm.OperandFormat;
+import edu.citadel.cvm.StringPool;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+
+
+/**
+ * Generates CVM object code directly from the labels and instructions
+ * emitted for the abstract syntax tree, so that a CPRL program can be
+ * compiled into an object file in one step, without the assembler.  The
+ * generator resolves labels itself, and instructions with compact encodings
+ * (branches, CALL, LDLADDR, LDGADDR, ALLOC, and LEAVE) get their smallest
+ * encoding by branch relaxation, the same way as in the assembler.
+ *
+ * <p>As instructions are emitted, the following subset of the peephole
+ * optimizations of the assembler is applied to the end of the code:
+ * <ul>
+ *   <li> constant folding of ADD, SUB, MUL, DIV, MOD, and NEG
+ *   <li> LDCINT 1; ADD (SUB) is replaced by INC (DEC)
+ *   <li> LDCINT n; MUL is replaced by SHL log2(n) if n is a power of 2
+ *   <li> two consecutive ALLOC instructions are combined
+ *   <li> a conditional branch over a BR instruction is inverted
+ *   <li> a BR instruction to the next instruction is removed
+ *   <li> unreachable instructions after BR, RET, LEAVE, TAIL, or HALT are removed
+ *   <li> LDCINT 0 (1) and LDCB 0 (1) are encoded as LDCINT0 (LDCINT1)
+ *        and LDCB0 (LDCB1)
+ * </ul>
+ * Only the first instruction of a sequence that is replaced can have labels.
+ * The object file contains the label addresses and, as line numbers, the
+ * lines that the instructions would have in an assembly language file with
+ * one label or instruction per line.
+ */
+public class ObjectCodeGenerator
+  {
+    /** maps opcodes with compact encodings to their 1-byte and 2-byte variants */
+    private static final Map<Byte, byte[]> compactOpCodes = makeCompactOpCodes();
+
+    /** maps conditional branches to the branches with the opposite condition */
+    private static final Map<Byte, Byte> invertedBranches = makeInvertedBranches();
+
+    private ArrayList<Instruction> instructions;
+
+    // labels for the next instruction
+    private List<String> labels;
+
+    private StringPool stringPool;
+
+    // line number of the last label or instruction
+    private int lineNumber;
+
+    // true after an instruction that does not fall through, until the next label
+    private boolean unreachable;
+
+
+    /**
+     * Construct a generator without any instructions.
+     */
+    public ObjectCodeGenerator()
+      {
+        instructions = new ArrayList<>(200);
+        labels       = new ArrayList<>();
+        stringPool   = new StringPool();
+        lineNumber   = 0;
+        unreachable  = false;
+      }
+
+
+    /**
+     * Adds a label for the next instruction.  The label is specified
+     * without the colon at the end.
+     */
+    public void addLabel(String label)
+      {
+        ++lineNumber;
+
+        Instruction last = getLast(0);
+        if (last != null && last.opCode == OpCode.BR && label.equals(last.target))
+          {
+            // remove the branch to the next instruction, but keep its labels
+            instructions.remove(instructions.size() - 1);
+            labels.addAll(last.labels);
+          }
+        else if (last != null && last.opCode == OpCode.BR && last.labels.isEmpty())
+          {
+            // invert a conditional branch over the branch
+            Instruction branch = getLast(1);
+            if (branch != null && invertedBranches.containsKey(branch.opCode)
+                    && label.equals(branch.target))
+              {
+                branch.opCode = invertedBranches.get(branch.opCode);
+                branch.target = last.target;
+                instructions.remove(instructions.size() - 1);
+              }
+          }
+
+        labels.add(label);
+        unreachable = false;
+      }
+
+
+    /**
+     * Adds an instruction without arguments.
+     *
+     * @throws IllegalArgumentException if the opcode is not valid.
+     */
+    public void addInstruction(byte opCode)
+      {
+        if (getOperandFormat(opCode) != OperandFormat.NONE)
+            throw invalidArg(opCode);
+
+        addInstruction(new Instruction(opCode, ++lineNumber));
+      }
+
+
+    /**
+     * Adds an instruction with an integer argument.
+     *
+     * @throws IllegalArgumentException if the opcode or argument is not valid.
+     */
+    public void addInstruction(byte opCode, int arg)
+      {
+        OperandFormat format = getOperandFormat(opCode);
+        if (format != OperandFormat.BYTE && format != OperandFormat.SHORT
+                && format != OperandFormat.INT || isLabelArg(opCode))
+            throw invalidArg(opCode);
+
+        Instruction inst = new Instruction(opCode, ++lineNumber);
+        inst.arg = arg;
+        addInstruction(inst);
+      }
+
+
+    /**
+     * Adds an instruction whose argument is a label; e.g., a branch or a call.
+     * The label is specified without the colon at the end.
+     *
+     * @throws IllegalArgumentException if the opcode or argument is not valid.
+     */
+    public void addLabelInstruction(byte opCode, String label)
+      {
+        if (!isLabelArg(opCode))
+            throw invalidArg(opCode);
+
+        Instruction inst = new Instruction(opCode, ++lineNumber);
+        inst.target = label;
+        addInstruction(inst);
+      }
+
+
+    /**
+     * Adds an instruction with a char or string literal argument, which is
+     * written the same way as in assembly language; i.e., it includes the
+     * quotes and may contain escaped characters.
+     *
+     * @throws IllegalArgumentException if the opcode or argument is not valid.
+     */
+    public void addInstruction(byte opCode, String literal)
+      {
+        OperandFormat format = getOperandFormat(opCode);
+        if (format != OperandFormat.CHAR && format != OperandFormat.STRING)
+            throw invalidArg(opCode);
+
+        Instruction inst = new Instruction(opCode, ++lineNumber);
+        String text = StringUtil.unescape(literal.substring(1, literal.length() - 1));
+        inst.arg = format == OperandFormat.CHAR ? text.charAt(0) : stringPool.add(text);
+        addInstruction(inst);
+      }
+
+
+    /**
+     * Adds the instruction to the end of the code unless it is unreachable,
+     * and applies the peephole optimizations.
+     */
+    private void addInstruction(Instruction inst)
+      {
+        if (unreachable)
+            return;
+
+        inst.labels = labels;
+        labels = new ArrayList<>();
+        instructions.add(inst);
+
+        while (optimize())
+          {
+            // repeat until no optimization applies
+          }
+
+        if (!OpCode.fallsThrough(inst.opCode))
+            unreachable = true;
+      }
+
+
+    /**
+     * Applies one of the peephole optimizations to the end of the code.
+     * Returns true if the code changed.
+     */
+    private boolean optimize()
+      {
+        Instruction inst1 = getLast(2);
+        Instruction inst2 = getLast(1);
+        Instruction inst3 = getLast(0);
+
+        // constant folding of binary operators
+        if (inst1 != null && inst1.opCode == OpCode.LDCINT && inst2.opCode == OpCode.LDCINT
+                && inst2.labels.isEmpty() && inst3.labels.isEmpty())
+          {
+            int a = inst1.arg;
+            int b = inst2.arg;
+            switch (inst3.opCode)
+              {
+                case OpCode.ADD: return replace(3, inst1, a + b);
+                case OpCode.SUB: return replace(3, inst1, a - b);
+                case OpCode.MUL: return replace(3, inst1, a*b);
+                case OpCode.DIV: return b != 0 && replace(3, inst1, a/b);
+                case OpCode.MOD: return b != 0 && replace(3, inst1, a%b);
+                default:         break;
+              }
+          }
+
+        if (inst2 == null || !inst3.labels.isEmpty())
+            return false;
+
+        if (inst2.opCode == OpCode.LDCINT)
+          {
+            int n = inst2.arg;
+            if (inst3.opCode == OpCode.NEG)
+                return replace(2, inst2, -n);
+            else if (n == 1 && inst3.opCode == OpCode.ADD)
+                return replace(2, inst2, OpCode.INC);
+            else if (n == 1 && inst3.opCode == OpCode.SUB)
+                return replace(2, inst2, OpCode.DEC);
+            else if (n > 1 && Integer.bitCount(n) == 1 && inst3.opCode == OpCode.MUL)
+              {
+                replace(2, inst2, OpCode.SHL);
+                inst2.arg = Integer.numberOfTrailingZeros(n);
+                return true;
+              }
+          }
+        else if (inst2.opCode == OpCode.ALLOC && inst3.opCode == OpCode.ALLOC)
+          {
+            inst2.arg = inst2.arg + inst3.arg;
+            instructions.remove(instructions.size() - 1);
+            return true;
+          }
+
+        return false;
+      }
+
+
+    /**
+     * Replaces the last n instructions with first, which is one of them,
+     * changed to LDCINT with the specified value.
+     */
+    private boolean replace(int n, Instruction first, int value)
+      {
+        replace(n, first, OpCode.LDCINT);
+        first.arg = value;
+        return true;
+      }
+
+
+    /**
+     * Replaces the last n instructions with first, which is one of them,
+     * changed to the specified opcode.
+     */
+    private boolean replace(int n, Instruction first, byte opCode)
+      {
+        instructions.subList(instructions.size() - n, instructions.size()).clear();
+        first.opCode = opCode;
+        first.target = null;
+        instructions.add(first);
+        return true;
+      }
+
+
+    /**
+     * Returns the instruction that is the specified number of instructions
+     * before the last one (0 for the last one), or null if there is none.
+     */
+    private Instruction getLast(int offset)
+      {
+        int index = instructions.size() - 1 - offset;
+        return index >= 0 ? instructions.get(index) : null;
+      }
+
+
+    /**
+     * Resolves the labels, sets the addresses of the instructions, and
+     * returns the object file containing the machine code.  Labels after
+     * the last instruction have the address of the end of the code.
+     *
+     * @throws CodeGenException if a label is not defined, or if the label
+     *                          of an ENTER or TAIL instruction is not the
+     *                          label of a PROC instruction.
+     */
+    public ObjectFile generate() throws CodeGenException
+      {
+        int numInsts = instructions.size();
+
+        // maps labels to the indexes of the instructions having the labels
+        Map<String, Integer> labelMap = new HashMap<>();
+        for (int i = 0;  i < numInsts;  ++i)
+          {
+            for (String label : instructions.get(i).labels)
+                labelMap.put(label, i);
+          }
+        for (String label : labels)
+            labelMap.put(label, numInsts);
+
+        for (Instruction inst : instructions)
+          {
+            if (inst.target == null)
+                continue;
+
+            Integer index = labelMap.get(inst.target);
+            if (index == null)
+                throw new CodeGenException("Label " + inst.target + " is not defined.");
+
+            inst.targetIndex = index;
+            if ((inst.opCode == OpCode.ENTER || inst.opCode == OpCode.TAIL)
+                    && (index == numInsts || instructions.get(index).opCode != OpCode.PROC))
+                throw new CodeGenException("Label " + inst.target + " is not the label of a PROC instruction.");
+          }
+
+        // the starting address of each instruction, followed by the code size
+        int[] addresses = new int[numInsts + 1];
+        for (Instruction inst : instructions)
+          {
+            if (inst.target == null && compactOpCodes.containsKey(inst.opCode))
+                inst.argSize = getCompactSize(inst.arg);
+          }
+        setAddresses(addresses);
+
+        // Sizes only grow during relaxation, so the loop terminates.
+        while (relax(addresses))
+            setAddresses(addresses);
+
+        ByteBuffer code = ByteBuffer.allocate(addresses[numInsts]);
+        for (int i = 0;  i < numInsts;  ++i)
+            emit(code, instructions.get(i), addresses);
+
+        ObjectFile objectFile = new ObjectFile(code.array());
+        objectFile.setRoData(stringPool.toByteArray());
+
+        for (Map.Entry<String, Integer> label : labelMap.entrySet())
+            objectFile.addSymbol(label.getKey(), addresses[label.getValue()]);
+
+        for (int i = 0;  i < numInsts;  ++i)
+            objectFile.addLineNumber(addresses[i], instructions.get(i).lineNumber);
+
+        return objectFile;
+      }
+
+
+    /**
+     * Sets the addresses of the instructions for their current sizes.
+     */
+    private void setAddresses(int[] addresses)
+      {
+        int address = 0;
+        for (int i = 0;  i < instructions.size();  ++i)
+          {
+            addresses[i] = address;
+            address = address + getSize(instructions.get(i));
+          }
+
+        addresses[instructions.size()] = address;
+      }
+
+
+    /**
+     * Grows the arguments of compact branches and calls whose displacements
+     * don't fit.  Returns true if any instruction changed size.
+     */
+    private boolean relax(int[] addresses)
+      {
+        boolean changed = false;
+
+        for (int i = 0;  i < instructions.size();  ++i)
+          {
+            Instruction inst = instructions.get(i);
+            if (inst.target != null && compactOpCodes.containsKey(inst.opCode))
+              {
+                int size = getCompactSize(addresses[inst.targetIndex] - addresses[i]);
+                if (size > inst.argSize)
+                  {
+                    inst.argSize = size;
+                    changed = true;
+                  }
+              }
+          }
+
+        return changed;
+      }
+
+
+    /**
+     * Returns the number of bytes needed for the value of a compact argument.
+     */
+    private static int getCompactSize(int value)
+      {
+        if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE)
+            return 1;
+        else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE)
+            return 2;
+        else
+            return Constants.BYTES_PER_INTEGER;
+      }
+
+
+    /**
+     * Returns the number of bytes of machine code for the instruction.
+     */
+    private static int getSize(Instruction inst)
+      {
+        if (compactOpCodes.containsKey(inst.opCode))
+            return Constants.BYTES_PER_OPCODE + inst.argSize;
+        else if (isConstant(inst))
+            return Constants.BYTES_PER_OPCODE;
+        else
+            return Constants.BYTES_PER_OPCODE + OpCode.getOperandFormat(inst.opCode).getSize();
+      }
+
+
+    /**
+     * Returns true if the instruction is LDCINT or LDCB with an argument
+     * of 0 or 1, which is encoded without the argument.
+     */
+    private static boolean isConstant(Instruction inst)
+      {
+        return (inst.opCode == OpCode.LDCINT || inst.opCode == OpCode.LDCB)
+            && (inst.arg == 0 || inst.arg == 1);
+      }
+
+
+    /**
+     * Emits the machine code for an instruction.
+     */
+    private void emit(ByteBuffer code, Instruction inst, int[] addresses)
+      {
+        int address = code.position();
+        int value   = inst.arg;
+        if (inst.target != null)
+            value = addresses[inst.targetIndex] - address;
+
+        if (compactOpCodes.containsKey(inst.opCode))
+          {
+            byte[] variants = compactOpCodes.get(inst.opCode);
+            switch (inst.argSize)
+              {
+                case 1:
+                    code.put(variants[0]);
+                    code.put((byte) value);
+                    break;
+                case 2:
+                    code.put(variants[1]);
+                    code.putShort((short) value);
+                    break;
+                default:
+                    code.put(inst.opCode);
+                    code.putInt(value);
+              }
+          }
+        else if (isConstant(inst))
+          {
+            if (inst.opCode == OpCode.LDCINT)
+                code.put(inst.arg == 0 ? OpCode.LDCINT0 : OpCode.LDCINT1);
+            else
+                code.put(inst.arg == 0 ? OpCode.LDCB0 : OpCode.LDCB1);
+          }
+        else
+          {
+            code.put(inst.opCode);
+            switch (OpCode.getOperandFormat(inst.opCode))
+              {
+                case NONE:
+                    break;
+                case BYTE:
+                    code.put((byte) value);
+                    break;
+                case SHORT:
+                    code.putShort((short) value);
+                    break;
+                case CHAR:
+                    code.putChar((char) value);
+                    break;
+                case INT_INT:
+                    // ENTER and TAIL: the displacement to the instruction
+                    // following the PROC instruction and the argument of PROC
+                    Instruction proc = instructions.get(inst.targetIndex);
+                    code.putInt(value + getSize(proc));
+                    code.putInt(proc.arg);
+                    break;
+                default:
+                    code.putInt(value);
+              }
+          }
+      }
+
+
+    /**
+     * Returns the format of the operands of the opcode.
+     *
+     * @throws IllegalArgumentException if the opcode is not valid.
+     */
+    private static OperandFormat getOperandFormat(byte opCode)
+      {
+        OperandFormat format = OpCode.getOperandFormat(opCode);
+        if (format == null)
+            throw new IllegalArgumentException("Invalid opcode " + opCode + ".");
+
+        return format;
+      }
+
+
+    /**
+     * Returns true if the argument of the opcode is a label; i.e., the
+     * opcode is a branch or calls or spawns a subprogram.
+     */
+    private static boolean isLabelArg(byte opCode)
+      {
+        return OpCode.isBranch(opCode) || OpCode.isCall(opCode);
+      }
+
+
+    private static IllegalArgumentException invalidArg(byte opCode)
+      {
+        return new IllegalArgumentException("Invalid argument for opcode "
+                                          + OpCode.toString(opCode) + ".");
+      }
+
+
+    private static Map<Byte, byte[]> makeCompactOpCodes()
+      {
+        Map<Byte, byte[]> compactOpCodes = new HashMap<>();
+        compactOpCodes.put(OpCode.BR,      new byte[] { OpCode.BR1B,      OpCode.BR2B      });
+        compactOpCodes.put(OpCode.BNZ,     new byte[] { OpCode.BNZ1B,     OpCode.BNZ2B     });
+        compactOpCodes.put(OpCode.BZ,      new byte[] { OpCode.BZ1B,      OpCode.BZ2B      });
+        compactOpCodes.put(OpCode.BG,      new byte[] { OpCode.BG1B,      OpCode.BG2B      });
+        compactOpCodes.put(OpCode.BGE,     new byte[] { OpCode.BGE1B,     OpCode.BGE2B     });
+        compactOpCodes.put(OpCode.BL,      new byte[] { OpCode.BL1B,      OpCode.BL2B      });
+        compactOpCodes.put(OpCode.BLE,     new byte[] { OpCode.BLE1B,     OpCode.BLE2B     });
+        compactOpCodes.put(OpCode.CALL,    new byte[] { OpCode.CALL1B,    OpCode.CALL2B    });
+        compactOpCodes.put(OpCode.LDLADDR, new byte[] { OpCode.LDLADDR1B, OpCode.LDLADDR2B });
+        compactOpCodes.put(OpCode.LDGADDR, new byte[] { OpCode.LDGADDR1B, OpCode.LDGADDR2B });
+        compactOpCodes.put(OpCode.ALLOC,   new byte[] { OpCode.ALLOC1B,   OpCode.ALLOC2B   });
+        compactOpCodes.put(OpCode.LEAVE,   new byte[] { OpCode.LEAVE1B,   OpCode.LEAVE2B   });
+        return compactOpCodes;
+      }
+
+
+    private static Map<Byte, Byte> makeInvertedBranches()
+      {
+        Map<Byte, Byte> invertedBranches = new HashMap<>();
+        invertedBranches.put(OpCode.BNZ, OpCode.BZ);
+        invertedBranches.put(OpCode.BZ,  OpCode.BNZ);
+        invertedBranches.put(OpCode.BG,  OpCode.BLE);
+        invertedBranches.put(OpCode.BLE, OpCode.BG);
+        invertedBranches.put(OpCode.BGE, OpCode.BL);
+        invertedBranches.put(OpCode.BL,  OpCode.BGE);
+        return invertedBranches;
+      }
+
+
+    /**
+     * An instruction before it is encoded.  Compact instructions are
+     * identified by their 4-byte opcode (e.g., BR for BR1B and BR2B).
+     */
+    private static class Instruction
+      {
+        byte   opCode;
+        int    arg;            // an integer, a char, or an index in the string pool
+        String target;         // the label argument of a branch or call
+        int    targetIndex;    // the index of the instruction with the target label
+        int    argSize;        // the size of the argument of a compact instruction
+        int    lineNumber;
+        List<String> labels;
+
+        Instruction(byte opCode, int lineNumber)
+          {
+            this.opCode     = opCode;
+            this.lineNumber = lineNumber;
+            this.argSize    = 1;
+          }
+      }
+  }
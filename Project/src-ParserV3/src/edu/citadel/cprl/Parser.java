@@ -4,7 +4,6 @@ package edu.citadel.cprl;
 import edu.citadel.compiler.Position;
 import edu.citadel.compiler.ParserException;
 import edu.citadel.compiler.InternalCompilerException;
-import edu.citadel.compiler.ErrorHandler;
 import edu.citadel.cprl.ast.*;
 
 import java.io.IOException;
@@ -60,17 +59,21 @@ public class Parser
 
 
     private Scanner scanner;
+    private CompilationContext context;
     private IdTable idTable;
     private LoopContext loopContext;
     private SubprogramContext subprogramContext;
 
 
     /**
-     * Construct a parser with the specified scanner.
+     * Construct a parser with the specified scanner.  Errors are reported to
+     * the error handler of the compilation context, and the context is handed
+     * to every AST node created by the parser.
      */
-    public Parser(Scanner scanner)
+    public Parser(Scanner scanner, CompilationContext context)
       {
         this.scanner = scanner;
+        this.context = context;
         idTable = new IdTable();
         loopContext = new LoopContext();
         subprogramContext = new SubprogramContext();
@@ -91,11 +94,11 @@ public class Parser
             StatementPart stmtPart = parseStatementPart();
             match(Symbol.dot);
             match(Symbol.EOF);
-            return new Program(declPart, stmtPart);
+            return new Program(context, declPart, stmtPart);
           }
         catch (ParserException e)
           {
-            ErrorHandler.getInstance().reportError(e);
+            context.getErrorHandler().reportError(e);
             Symbol[] followers = {Symbol.EOF};
             recover(followers);
             return null;
@@ -114,7 +117,7 @@ public class Parser
         List<InitialDecl>    initialDecls = parseInitialDecls();
         List<SubprogramDecl> subprogDecls = parseSubprogramDecls();
 
-        return new DeclarativePart(initialDecls, subprogDecls);
+        return new DeclarativePart(context, initialDecls, subprogDecls);
       }
 
 
@@ -193,7 +196,7 @@ public class Parser
           }
         catch (ParserException e)
           {
-            ErrorHandler.getInstance().reportError(e);
+            context.getErrorHandler().reportError(e);
             recover(factorFollowers);
             return null;
           }
@@ -216,7 +219,7 @@ public class Parser
             Type varType = parseTypeName();
             match(Symbol.semicolon);
 
-            VarDecl varDecl = new VarDecl(identifiers, varType, idTable.getScopeLevel());
+            VarDecl varDecl = new VarDecl(context, identifiers, varType, idTable.getScopeLevel());
 
             for (SingleVarDecl decl : varDecl.getSingleVarDecls())
                 idTable.add(decl);
@@ -225,7 +228,7 @@ public class Parser
           }
         catch (ParserException e)
           {
-            ErrorHandler.getInstance().reportError(e);
+            context.getErrorHandler().reportError(e);
             recover(initialDeclFollowers);
             return null;
           }
@@ -259,7 +262,7 @@ public class Parser
           }
         catch (ParserException e)
           {
-            ErrorHandler.getInstance().reportError(e);
+            context.getErrorHandler().reportError(e);
             Symbol[] followers = {Symbol.colon};
             recover(followers);
             return Collections.emptyList();
@@ -333,7 +336,7 @@ public class Parser
           }
         catch (ParserException e)
           {
-            ErrorHandler.getInstance().reportError(e);
+            context.getErrorHandler().reportError(e);
             Symbol[] followers = {Symbol.semicolon,  Symbol.comma,
                                   Symbol.rightParen, Symbol.isRW};
             recover(followers);
@@ -381,7 +384,7 @@ public class Parser
             match(Symbol.procedureRW);
             Token procId = scanner.getToken();
             match(Symbol.identifier);
-            ProcedureDecl procDecl = new ProcedureDecl(procId);
+            ProcedureDecl procDecl = new ProcedureDecl(context, procId);
             idTable.add(procDecl);
             idTable.openScope();
 
@@ -407,7 +410,7 @@ public class Parser
           }
         catch (ParserException e)
           {
-            ErrorHandler.getInstance().reportError(e);
+            context.getErrorHandler().reportError(e);
             recover(subprogDeclFollowers);
             return null;
           }
@@ -464,11 +467,11 @@ public class Parser
             match(Symbol.beginRW);
             List<Statement> statements = parseStatements();
             match(Symbol.endRW);
-            return new StatementPart(statements);
+            return new StatementPart(context, statements);
           }
         catch (ParserException e)
           {
-            ErrorHandler.getInstance().reportError(e);
+            context.getErrorHandler().reportError(e);
             Symbol[] followers = {Symbol.dot, Symbol.identifier};
             recover(followers);
             return null;
@@ -491,7 +494,8 @@ public class Parser
     /**
      * Parse the following grammar rule:<br>
      * <code>statement = assignmentStmt | ifStmt | loopStmt | exitStmt | readStmt
-     *                 | writeStmt | writelnStmt | procedureCallStmt | returnStmt .</code>
+     *                 | writeStmt | writelnStmt | procedureCallStmt | returnStmt
+     *                 | parallelStmt .</code>
      *
      * @return the parsed statement.  Returns null if parsing fails.
      */
@@ -500,7 +504,7 @@ public class Parser
         // assumes that scanner.getSymbol() can start a statement
         assert scanner.getSymbol().isStmtStarter() : "Invalid statement.";
 
-// ...
+// ...  Hint: a statement starting with "parallel" is a parallelStmt
 
         // Error recovery here is complicated for identifiers since they can both
         // start a statement and appear elsewhere in the statement.  (Consider,
@@ -618,11 +622,11 @@ public class Parser
                 expressions = Collections.emptyList();
 
             match(Symbol.semicolon);
-            return new WritelnStmt(expressions);
+            return new WritelnStmt(context, expressions);
           }
         catch (ParserException e)
           {
-            ErrorHandler.getInstance().reportError(e);
+            context.getErrorHandler().reportError(e);
             recover(stmtFollowers);
             return null;
           }
@@ -641,6 +645,45 @@ public class Parser
       }
 
 
+    /**
+     * Parse the following grammar rule:<br>
+     * <code>parallelStmt = "parallel" ( procedureCallStmt )+ "end" "parallel" ";" .</code>
+     *
+     * @return the parsed parallel statement.  Returns null if parsing fails.
+     */
+    public ParallelStmt parseParallelStmt() throws IOException
+      {
+        try
+          {
+            match(Symbol.parallelRW);
+
+            List<ProcedureCallStmt> procCalls = new ArrayList<>();
+            do
+              {
+                if (scanner.getSymbol() != Symbol.identifier)
+                    throw error("Expecting a procedure call in a parallel statement.");
+
+                ProcedureCallStmt procCall = parseProcedureCallStmt();
+                if (procCall != null)
+                    procCalls.add(procCall);
+              }
+            while (scanner.getSymbol() == Symbol.identifier);
+
+            match(Symbol.endRW);
+            match(Symbol.parallelRW);
+            match(Symbol.semicolon);
+
+            return new ParallelStmt(context, procCalls);
+          }
+        catch (ParserException e)
+          {
+            context.getErrorHandler().reportError(e);
+            recover(stmtFollowers);
+            return null;
+          }
+      }
+
+
     /**
      * Parse the following grammar rule:<br>
      * <code>actualParameters = "(" expressions ")" .</code>
@@ -706,7 +749,7 @@ public class Parser
             match(Symbol.rightBracket);
           }
 
-        return new Variable(namedDecl, idToken.getPosition(), indexExprs);
+        return new Variable(context, namedDecl, idToken.getPosition(), indexExprs);
       }
 
 
@@ -724,7 +767,7 @@ public class Parser
           }
         catch (ParserException e)
           {
-            ErrorHandler.getInstance().reportError(e);
+            context.getErrorHandler().reportError(e);
             Symbol[] followers = {Symbol.assign, Symbol.semicolon};
             recover(followers);
             return null;
@@ -748,7 +791,7 @@ public class Parser
             Token operator = scanner.getToken();
             matchCurrentSymbol();
             Expression expr2 = parseRelation();
-            expr = new LogicalExpr(expr, operator, expr2);
+            expr = new LogicalExpr(context, expr, operator, expr2);
           }
 
         return expr;
@@ -812,7 +855,7 @@ public class Parser
                 Token operator = scanner.getToken();
                 matchCurrentSymbol();
                 Expression factorExpr = parseFactor();
-                expr = new NotExpr(operator, factorExpr);
+                expr = new NotExpr(context, operator, factorExpr);
               }
             else if (scanner.getSymbol().isLiteral())
               {
@@ -855,7 +898,7 @@ public class Parser
           }
         catch (ParserException e)
           {
-            ErrorHandler.getInstance().reportError(e);
+            context.getErrorHandler().reportError(e);
             recover(factorFollowers);
             return null;
           }
@@ -889,7 +932,7 @@ public class Parser
           }
         catch (ParserException e)
           {
-            ErrorHandler.getInstance().reportError(e);
+            context.getErrorHandler().reportError(e);
             recover(factorFollowers);
             return null;
           }
@@ -4,9 +4,9 @@ package edu.citadel.cprl.ast;
 import edu.citadel.compiler.CodeGenException;
 import edu.citadel.compiler.ConstraintException;
 import edu.citadel.compiler.Position;
+import edu.citadel.cprl.CompilationContext;
 import edu.citadel.cprl.Type;
-
-import java.io.PrintWriter;
+import edu.citadel.cvm.OpCode;
 
 
 /**
@@ -14,21 +14,24 @@ import java.io.PrintWriter;
  */
 public abstract class AST
   {
-    // number of spaces to print before opcode
-    private static final String SPACES = "   ";
+    private CompilationContext context;
 
-    private static PrintWriter out = new PrintWriter(System.out);
 
-    // current label number for control flow
-    private static int currentLabelNum = -1;
+    /**
+     * Construct an AST for the specified compilation context.
+     */
+    public AST(CompilationContext context)
+      {
+        this.context = context;
+      }
 
 
     /**
-     * Set the PrintWriter to be used for code generation.
+     * Returns the context of the compilation that this AST belongs to.
      */
-    public static void setPrintWriter(PrintWriter out)
+    public CompilationContext getContext()
       {
-        AST.out = out;
+        return context;
       }
 
 
@@ -59,10 +62,9 @@ public abstract class AST
      * Returns a new value for a label number.  This method should
      * be called once for each label before code generation.
      */
-    protected String getNewLabel()
+    protected int getNewLabel()
       {
-        ++currentLabelNum;
-        return "L" + currentLabelNum;
+        return context.getNewLabel();
       }
 
 
@@ -84,13 +86,13 @@ public abstract class AST
         int numBytes = t.getSize();
 
         if (numBytes == 4)
-            emit("LOADW");
+            emit(OpCode.LOADW);
         else if (numBytes == 2)
-            emit("LOAD2B");
+            emit(OpCode.LOAD2B);
         else if (numBytes == 1)
-            emit("LOADB");
+            emit(OpCode.LOADB);
         else
-            emit("LOAD " + numBytes);
+            emit(OpCode.LOAD, numBytes);
       }
 
 
@@ -102,31 +104,61 @@ public abstract class AST
         int numBytes = t.getSize();
 
         if (numBytes == 4)
-            emit("STOREW");
+            emit(OpCode.STOREW);
         else if (numBytes == 2)
-            emit("STORE2B");
+            emit(OpCode.STORE2B);
         else if (numBytes == 1)
-            emit("STOREB");
+            emit(OpCode.STOREB);
         else
-            emit("STORE " + numBytes);
+            emit(OpCode.STORE, numBytes);
+      }
+
+
+    /**
+     * Emit label for the next assembly instruction.  Only the label ID
+     * (returned by getNewLabel()) is recorded in the instruction buffer;
+     * the name of the label is created when the code is written out.
+     */
+    protected void emitLabel(int label)
+      {
+        context.emitLabel(label);
+      }
+
+
+    /**
+     * Emit an assembly instruction without arguments.
+     */
+    protected void emit(byte opCode)
+      {
+        context.emit(opCode);
+      }
+
+
+    /**
+     * Emit an assembly instruction with an integer argument.
+     */
+    protected void emit(byte opCode, int arg)
+      {
+        context.emit(opCode, arg);
       }
 
 
     /**
-     * Emit label for assembly instruction.  This instruction appends a colon
-     * to the end of the label and writes out the result on a single line.
+     * Emit an assembly instruction whose argument is a label
+     * (e.g., a branch or a call).
      */
-    protected void emitLabel(String label)
+    protected void emitLabelArg(byte opCode, int label)
       {
-        out.println(label + ":");
+        context.emitLabelArg(opCode, label);
       }
 
 
     /**
-     * Emit string representation for an assembly instruction.
+     * Emit an assembly instruction with a char or string literal
+     * argument written as in assembly language (including the quotes).
      */
-    protected void emit(String instruction)
+    protected void emit(byte opCode, String literal)
       {
-        out.println(SPACES + instruction);
+        context.emit(opCode, literal);
       }
   }
@@ -3,10 +3,11 @@ package edu.citadel.cprl.ast;
 
 import edu.citadel.compiler.CodeGenException;
 import edu.citadel.compiler.ConstraintException;
-import edu.citadel.compiler.ErrorHandler;
+import edu.citadel.cprl.CompilationContext;
 import edu.citadel.cprl.Symbol;
 import edu.citadel.cprl.Token;
 import edu.citadel.cprl.Type;
+import edu.citadel.cvm.OpCode;
 
 
 /**
@@ -20,9 +21,12 @@ public class AddingExpr extends BinaryExpr
      * Construct an adding expression with the operator ("+" or "-")
      * and the two operands.
      */
-    public AddingExpr(Expression leftOperand, Token operator, Expression rightOperand)
+    public AddingExpr(CompilationContext context,
+                      Expression leftOperand,
+                      Token operator,
+                      Expression rightOperand)
       {
-        super(leftOperand, operator, rightOperand);
+        super(context, leftOperand, operator, rightOperand);
         setType(Type.Integer);
         assert operator.getSymbol().isAddingOperator() : "Operator is not an adding operator.";
       }
@@ -55,11 +59,41 @@ public class AddingExpr extends BinaryExpr
           }
         catch (ConstraintException e)
           {
-            ErrorHandler.getInstance().reportError(e);
+            getContext().getErrorHandler().reportError(e);
           }
       }
 
 
+    /**
+     * Folds an adding expression with constant operands,
+     * and simplifies x + 0, 0 + x, and x - 0 to x.
+     */
+    @Override
+    public Expression simplify()
+      {
+        simplifyOperands();
+
+        Expression leftOperand  = getLeftOperand();
+        Expression rightOperand = getRightOperand();
+        Symbol     operatorSym  = getOperator().getSymbol();
+
+        if (leftOperand instanceof ConstValue && rightOperand instanceof ConstValue)
+          {
+            int leftValue  = ((ConstValue) leftOperand).getLiteralIntValue();
+            int rightValue = ((ConstValue) rightOperand).getLiteralIntValue();
+            int value = operatorSym == Symbol.plus ? leftValue + rightValue
+                                                   : leftValue - rightValue;
+            return new ConstValue(getContext(), Type.Integer, value, getPosition());
+          }
+        else if (rightOperand.isConstValue(0))
+            return leftOperand;
+        else if (leftOperand.isConstValue(0) && operatorSym == Symbol.plus)
+            return rightOperand;
+        else
+            return this;
+      }
+
+
     @Override
     public void emit() throws CodeGenException
       {
@@ -71,8 +105,8 @@ public class AddingExpr extends BinaryExpr
         rightOperand.emit();
 
         if (operatorSym == Symbol.plus)
-            emit("ADD");
+            emit(OpCode.ADD);
         else if (operatorSym == Symbol.minus)
-            emit("SUB");
+            emit(OpCode.SUB);
       }
   }
@@ -2,8 +2,8 @@ package edu.citadel.cprl.ast;
 
 
 import edu.citadel.compiler.ConstraintException;
-import edu.citadel.compiler.ErrorHandler;
 import edu.citadel.cprl.ArrayType;
+import edu.citadel.cprl.CompilationContext;
 import edu.citadel.cprl.Token;
 import edu.citadel.cprl.Type;
 
@@ -20,9 +20,13 @@ public class ArrayTypeDecl extends InitialDecl
      * Construct an array type declaration with its identifier, element type, and
      * number of elements.  Note that the index type is always Integer in CPRL.
      */
-    public ArrayTypeDecl(Token typeId, Type elemType, ConstValue numElements)
+    public ArrayTypeDecl(CompilationContext context,
+                         Token typeId,
+                         Type elemType,
+                         ConstValue numElements)
       {
-        super(typeId, new ArrayType(typeId.getText(), numElements.getLiteralIntValue(), elemType));
+        super(context, typeId,
+              new ArrayType(typeId.getText(), numElements.getLiteralIntValue(), elemType));
         this.numElements = numElements;
       }
 
@@ -3,8 +3,11 @@ package edu.citadel.cprl.ast;
 
 import edu.citadel.compiler.CodeGenException;
 import edu.citadel.compiler.ConstraintException;
-import edu.citadel.compiler.ErrorHandler;
 import edu.citadel.compiler.Position;
+import edu.citadel.cprl.CompilationContext;
+
+import java.util.Collections;
+import java.util.List;
 
 
 /**
@@ -27,12 +30,55 @@ public class AssignmentStmt extends Statement
      * @param expr the expression on the right side of the assignment operator
      * @param assignPosition the position of the assignment operator (for error reporting)
      */
-    public AssignmentStmt(Variable variable, Expression expr, Position assignPosition)
+    public AssignmentStmt(CompilationContext context,
+                          Variable variable,
+                          Expression expr,
+                          Position assignPosition)
       {
+        super(context);
 // ...
       }
 
 
+    /**
+     * Returns the variable on the left side of the assignment operator.
+     */
+    public Variable getVariable()
+      {
+        return variable;
+      }
+
+
+    /**
+     * Returns the expression on the right side of the assignment operator.
+     */
+    public Expression getExpr()
+      {
+        return expr;
+      }
+
+
+    /**
+     * Returns the position of the assignment operator.
+     */
+    public Position getAssignPosition()
+      {
+        return assignPosition;
+      }
+
+
+    /**
+     * Simplifies the variable and the expression.
+     */
+    @Override
+    public List<Statement> simplify()
+      {
+        variable = variable.simplify();
+        expr     = expr.simplify();
+        return Collections.singletonList(this);
+      }
+
+
     @Override
     public void checkConstraints()
       {
@@ -1,6 +1,7 @@
 package edu.citadel.cprl.ast;
 
 
+import edu.citadel.cprl.CompilationContext;
 import edu.citadel.cprl.Token;
 
 
@@ -19,9 +20,12 @@ public abstract class BinaryExpr extends Expression
     /**
      * Construct a binary expression with its left operand, operator, and right operand.
      */
-    public BinaryExpr(Expression leftOperand, Token operator, Expression rightOperand)
+    public BinaryExpr(CompilationContext context,
+                      Expression leftOperand,
+                      Token operator,
+                      Expression rightOperand)
       {
-        super(operator.getPosition());
+        super(context, operator.getPosition());
 
         this.leftOperand  = leftOperand;
         this.operator     = operator;
@@ -54,4 +58,21 @@ public abstract class BinaryExpr extends Expression
       {
         return rightOperand;
       }
+
+
+    /**
+     * Replaces the left and right operands by their simplified versions.
+     */
+    protected void simplifyOperands()
+      {
+        leftOperand  = leftOperand.simplify();
+        rightOperand = rightOperand.simplify();
+      }
+
+
+    @Override
+    public boolean hasSideEffects()
+      {
+        return leftOperand.hasSideEffects() || rightOperand.hasSideEffects();
+      }
   }
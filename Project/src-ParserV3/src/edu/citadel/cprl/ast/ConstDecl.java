@@ -2,7 +2,7 @@ package edu.citadel.cprl.ast;
 
 
 import edu.citadel.compiler.ConstraintException;
-import edu.citadel.compiler.ErrorHandler;
+import edu.citadel.cprl.CompilationContext;
 import edu.citadel.cprl.Symbol;
 import edu.citadel.cprl.Token;
 import edu.citadel.cprl.Type;
@@ -19,9 +19,9 @@ public class ConstDecl extends InitialDecl
     /**
      * Construct a constant declaration with its identifier, type, and literal.
      */
-    public ConstDecl(Token identifier, Type constType, Token literal)
+    public ConstDecl(CompilationContext context, Token identifier, Type constType, Token literal)
       {
-        super(identifier, constType);
+        super(context, identifier, constType);
         this.literal = literal;
       }
 
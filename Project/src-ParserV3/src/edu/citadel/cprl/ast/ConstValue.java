@@ -3,10 +3,12 @@ package edu.citadel.cprl.ast;
 
 import edu.citadel.compiler.CodeGenException;
 import edu.citadel.compiler.ConstraintException;
-import edu.citadel.compiler.ErrorHandler;
+import edu.citadel.compiler.Position;
+import edu.citadel.cprl.CompilationContext;
 import edu.citadel.cprl.Symbol;
 import edu.citadel.cprl.Token;
 import edu.citadel.cprl.Type;
+import edu.citadel.cvm.OpCode;
 
 
 /**
@@ -25,9 +27,9 @@ public class ConstValue extends Expression
     /**
      * Construct a constant value from a literal token.
      */
-    public ConstValue(Token literal)
+    public ConstValue(CompilationContext context, Token literal)
       {
-        super(Type.getTypeOf(literal.getSymbol()), literal.getPosition());
+        super(context, Type.getTypeOf(literal.getSymbol()), literal.getPosition());
         this.literal = literal;
       }
 
@@ -36,13 +38,42 @@ public class ConstValue extends Expression
      * Construct a constant value from a constant identifier
      * token and its corresponding constant declaration.
      */
-    public ConstValue(Token identifier, ConstDecl decl)
+    public ConstValue(CompilationContext context, Token identifier, ConstDecl decl)
       {
-        super(decl.getType(), identifier.getPosition());
+        super(context, decl.getType(), identifier.getPosition());
         this.literal = decl.getLiteral();
       }
 
 
+    /**
+     * Construct a constant value of type Integer or Boolean with the specified
+     * value (0 for false and 1 for true).  This constructor is used when an
+     * expression with constant operands is simplified.
+     */
+    public ConstValue(CompilationContext context, Type type, int value, Position position)
+      {
+        super(context, type, position);
+        this.literal = makeLiteral(type, value, position);
+      }
+
+
+    /**
+     * Returns the literal token for a value of type Integer or Boolean.
+     */
+    private static Token makeLiteral(Type type, int value, Position position)
+      {
+        assert type == Type.Integer || type == Type.Boolean :
+            "Constant value is not an integer or a boolean.";
+
+        if (type == Type.Integer)
+            return new Token(Symbol.intLiteral, position, Integer.toString(value));
+        else if (value != 0)
+            return new Token(Symbol.trueRW, position, "true");
+        else
+            return new Token(Symbol.falseRW, position, "false");
+      }
+
+
     /**
      * Returns an integer value for the declaration literal.  For an integer
      * literal, this method simply returns its integer value.  For a char
@@ -66,6 +97,20 @@ public class ConstValue extends Expression
       }
 
 
+    @Override
+    public boolean isConstValue(int value)
+      {
+        return getType() != Type.String && getLiteralIntValue() == value;
+      }
+
+
+    @Override
+    public boolean hasSideEffects()
+      {
+        return false;
+      }
+
+
     @Override
     public void checkConstraints()
       {
@@ -88,7 +133,7 @@ public class ConstValue extends Expression
           }
         catch (ConstraintException e)
           {
-            ErrorHandler.getInstance().reportError(e);
+            getContext().getErrorHandler().reportError(e);
           }
       }
 
@@ -99,13 +144,13 @@ public class ConstValue extends Expression
         Type exprType = getType();
 
         if (exprType == Type.Integer)
-            emit("LDCINT " + getLiteralIntValue());
+            emit(OpCode.LDCINT, getLiteralIntValue());
         else if (exprType == Type.Boolean)
-            emit("LDCB " + getLiteralIntValue());
+            emit(OpCode.LDCB, getLiteralIntValue());
         else if (exprType == Type.Char)
-            emit("LDCCH " + literal.getText());
+            emit(OpCode.LDCCH, literal.getText());
         else if (exprType == Type.String)
-            emit("LDCSTR " + literal.getText());
+            emit(OpCode.LDCSTR, literal.getText());
         else
           {
             String errorMsg = "Invalid type for constant value.";
@@ -3,6 +3,7 @@ package edu.citadel.cprl.ast;
 
 import edu.citadel.compiler.CodeGenException;
 import edu.citadel.compiler.Position;
+import edu.citadel.cprl.CompilationContext;
 import edu.citadel.cprl.Token;
 import edu.citadel.cprl.Type;
 
@@ -19,8 +20,10 @@ public abstract class Declaration extends AST
     /**
      * Construct a declaration with its identifier token and type.
      */
-    public Declaration(Token idToken, Type type)
+    public Declaration(CompilationContext context, Token idToken, Type type)
       {
+        super(context);
+
         this.idToken = idToken;
         this.type    = type;
       }
@@ -30,9 +33,9 @@ public abstract class Declaration extends AST
      * Construct a declaration with its idToken token.  The type for the
      * declaration is initialized to Type.none (e.g. for procedures).
      */
-    public Declaration(Token idToken)
+    public Declaration(CompilationContext context, Token idToken)
       {
-        this(idToken, Type.none);
+        this(context, idToken, Type.none);
       }
 
 
@@ -2,6 +2,7 @@ package edu.citadel.cprl.ast;
 
 
 import edu.citadel.compiler.CodeGenException;
+import edu.citadel.cprl.CompilationContext;
 import java.util.List;
 
 
@@ -17,8 +18,11 @@ public class DeclarativePart extends AST
     /**
      * Construct a DeclarativePart with the lists of initial and subprogram declarations.
      */
-    public DeclarativePart(List<InitialDecl> initialDecls, List<SubprogramDecl> subprogramDecls)
+    public DeclarativePart(CompilationContext context,
+                           List<InitialDecl> initialDecls,
+                           List<SubprogramDecl> subprogramDecls)
       {
+        super(context);
 // ...
       }
 
@@ -41,6 +45,16 @@ public class DeclarativePart extends AST
       }
 
 
+    /**
+     * Simplifies the statements of the subprograms.
+     */
+    public void simplify()
+      {
+        for (SubprogramDecl decl : subprogDecls)
+            decl.simplify();
+      }
+
+
     @Override
     public void checkConstraints()
       {
@@ -3,8 +3,9 @@ package edu.citadel.cprl.ast;
 
 import edu.citadel.compiler.CodeGenException;
 import edu.citadel.compiler.ConstraintException;
-import edu.citadel.compiler.ErrorHandler;
+import edu.citadel.cprl.CompilationContext;
 import edu.citadel.cprl.Type;
+import edu.citadel.cvm.OpCode;
 
 import java.util.List;
 
@@ -16,9 +17,9 @@ public class ElsifPart extends AST
   {
     private Expression booleanExpr;
     private List<Statement> thenStmts;   // List of Statement objects following "then"
-    private String endIfLabel;           // the label at the end of the if statement
+    private int endIfLabel;              // the label at the end of the if statement
 
-    private String L1;   // label at end of statements
+    private int L1;   // label at end of statements
 
 
     /**
@@ -30,8 +31,10 @@ public class ElsifPart extends AST
      * @param thenStmts   the statements to be executed when the boolean
      *                    expression evaluates to true.
      */
-    public ElsifPart(Expression booleanExpr, List<Statement> thenStmts)
+    public ElsifPart(CompilationContext context, Expression booleanExpr, List<Statement> thenStmts)
       {
+        super(context);
+
         this.booleanExpr = booleanExpr;
         this.thenStmts   = thenStmts;
 
@@ -39,6 +42,15 @@ public class ElsifPart extends AST
       }
 
 
+    /**
+     * Returns the boolean expression for this elsif part.
+     */
+    public Expression getBooleanExpr()
+      {
+        return booleanExpr;
+      }
+
+
     /**
      * Returns the list of "then" statements for this elsif part.
      */
@@ -52,12 +64,22 @@ public class ElsifPart extends AST
      * Set the label associated with the end of the if statement
      * (used for code generation.)
      */
-    public void setEndIfLabel(String endIfLabel)
+    public void setEndIfLabel(int endIfLabel)
       {
         this.endIfLabel = endIfLabel;
       }
 
 
+    /**
+     * Simplifies the boolean expression and the "then" statements.
+     */
+    public void simplify()
+      {
+        booleanExpr = booleanExpr.simplify();
+        thenStmts   = Statement.simplifyAll(thenStmts);
+      }
+
+
     @Override
     public void checkConstraints()
       {
@@ -76,7 +98,7 @@ public class ElsifPart extends AST
           }
         catch (ConstraintException e)
           {
-            ErrorHandler.getInstance().reportError(e);
+            getContext().getErrorHandler().reportError(e);
           }
       }
 
@@ -91,7 +113,7 @@ public class ElsifPart extends AST
             stmt.emit();
 
         // branch to end of if statement
-        emit("BR " + endIfLabel);
+        emitLabelArg(OpCode.BR, endIfLabel);
 
         // L1:
         emitLabel(L1);
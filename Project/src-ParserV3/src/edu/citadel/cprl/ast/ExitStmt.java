@@ -3,9 +3,12 @@ package edu.citadel.cprl.ast;
 
 import edu.citadel.compiler.CodeGenException;
 import edu.citadel.compiler.ConstraintException;
-import edu.citadel.compiler.ErrorHandler;
+import edu.citadel.cprl.CompilationContext;
 import edu.citadel.cprl.Type;
 
+import java.util.Collections;
+import java.util.List;
+
 
 /**
  * The abstract syntax tree node for an exit statement.
@@ -21,12 +24,34 @@ public class ExitStmt extends Statement
      * expression (which should be null if there is no "when"
      * expression) and a reference to the enclosing loop statement.
      */
-    public ExitStmt(Expression whenExpr, LoopStmt loopStmt)
+    public ExitStmt(CompilationContext context, Expression whenExpr, LoopStmt loopStmt)
       {
+        super(context);
 // ...
       }
 
 
+    /**
+     * Removes an exit statement whose "when" expression is false,
+     * and removes a "when" expression that is true.
+     */
+    @Override
+    public List<Statement> simplify()
+      {
+        if (whenExpr != null)
+          {
+            whenExpr = whenExpr.simplify();
+
+            if (whenExpr.isConstValue(0))
+                return Collections.emptyList();
+            else if (whenExpr.isConstValue(1))
+                whenExpr = null;
+          }
+
+        return Collections.singletonList(this);
+      }
+
+
     @Override
     public void checkConstraints()
       {
@@ -3,7 +3,9 @@ package edu.citadel.cprl.ast;
 
 import edu.citadel.compiler.CodeGenException;
 import edu.citadel.compiler.Position;
+import edu.citadel.cprl.CompilationContext;
 import edu.citadel.cprl.Type;
+import edu.citadel.cvm.OpCode;
 
 
 /**
@@ -12,10 +14,10 @@ import edu.citadel.cprl.Type;
 public abstract class Expression extends AST
   {
     /** constant for false */
-    public static final String FALSE = "0";
+    public static final int FALSE = 0;
 
     /** constant for true */
-    public static final String TRUE = "1";
+    public static final int TRUE = 1;
 
     private Type     exprType;
     private Position exprPosition;   // position of the expression
@@ -24,8 +26,10 @@ public abstract class Expression extends AST
     /**
      * Construct an expression with the specified type and position.
      */
-    public Expression(Type exprType, Position exprPosition)
+    public Expression(CompilationContext context, Type exprType, Position exprPosition)
       {
+        super(context);
+
         this.exprType     = exprType;
         this.exprPosition = exprPosition;
       }
@@ -35,9 +39,9 @@ public abstract class Expression extends AST
      * Construct an expression with the specified position.  Initializes
      * the type of the expression to UNKNOWN.
      */
-    public Expression(Position exprPosition)
+    public Expression(CompilationContext context, Position exprPosition)
       {
-        this(Type.UNKNOWN, exprPosition);
+        this(context, Type.UNKNOWN, exprPosition);
       }
 
 
@@ -68,6 +72,40 @@ public abstract class Expression extends AST
       }
 
 
+    /**
+     * Returns an equivalent expression that is simpler to evaluate; e.g., an
+     * expression whose operands are constants is replaced by a constant value.
+     * This method is called only after the constraints have been checked without
+     * errors.  The method defined in this class returns the expression itself.
+     */
+    public Expression simplify()
+      {
+        return this;
+      }
+
+
+    /**
+     * Returns true if this expression is a constant with the specified integer
+     * value.  For Boolean constants, false is 0 and true is 1.
+     */
+    public boolean isConstValue(int value)
+      {
+        return false;
+      }
+
+
+    /**
+     * Returns true if evaluating this expression can do more than compute its
+     * value (e.g., call a function or fail at run time), so that the expression
+     * can't be removed when its value is not needed.  The method defined in this
+     * class returns true.
+     */
+    public boolean hasSideEffects()
+      {
+        return true;
+      }
+
+
     /**
      * For Boolean expressions, the method emits the appropriate branch opcode
      * based on the condition.  For example, if the expression is a "&lt;"
@@ -81,12 +119,12 @@ public abstract class Expression extends AST
      *
      * @throws CodeGenException  if the method is unable to generate appropriate target code.
      */
-    public void emitBranch(boolean condition, String label) throws CodeGenException
+    public void emitBranch(boolean condition, int label) throws CodeGenException
       {
         // default behavior unless overridden; correct for constants and named values
         assert exprType == Type.Boolean : "Expression type is not Boolean.";
 
         emit();  // leaves boolean value on top of stack
-        emit(condition ? "BNZ " + label : "BZ " + label);
+        emitLabelArg(condition ? OpCode.BNZ : OpCode.BZ, label);
       }
   }
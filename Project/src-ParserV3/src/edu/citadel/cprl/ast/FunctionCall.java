@@ -3,8 +3,9 @@ package edu.citadel.cprl.ast;
 
 import edu.citadel.compiler.CodeGenException;
 import edu.citadel.compiler.ConstraintException;
-import edu.citadel.compiler.ErrorHandler;
+import edu.citadel.cprl.CompilationContext;
 import edu.citadel.cprl.Token;
+import edu.citadel.cvm.OpCode;
 
 import java.util.List;
 
@@ -17,19 +18,87 @@ public class FunctionCall extends Expression
     private Token funcId;
     private List<Expression> actualParams;
     private FunctionDecl funcDecl;
+    private SubprogramDecl callingDecl;   // the calling function for a tail call, or null
 
 
     /**
      * Construct a function call with the function identifier (name), the
      * list of actual parameters, and a reference to the function declaration.
      */
-    public FunctionCall(Token funcId, List<Expression> actualParams, FunctionDecl funcDecl)
+    public FunctionCall(CompilationContext context,
+                        Token funcId,
+                        List<Expression> actualParams,
+                        FunctionDecl funcDecl)
       {
-        super(funcDecl.getType(), funcId.getPosition());
+        super(context, funcDecl.getType(), funcId.getPosition());
 
         this.funcId = funcId;
         this.actualParams = actualParams;
         this.funcDecl = funcDecl;
+        this.callingDecl = null;
+      }
+
+
+    /**
+     * Returns the identifier token for the function being called.
+     */
+    public Token getFuncId()
+      {
+        return funcId;
+      }
+
+
+    /**
+     * Returns the list of actual parameters for the function call.
+     */
+    public List<Expression> getActualParams()
+      {
+        return actualParams;
+      }
+
+
+    /**
+     * Returns the declaration of the function being called.
+     */
+    public FunctionDecl getFuncDecl()
+      {
+        return funcDecl;
+      }
+
+
+    /**
+     * Simplifies the actual parameters and returns the inlined
+     * function if the function can be inlined, or this function
+     * call otherwise.
+     */
+    @Override
+    public Expression simplify()
+      {
+        actualParams.replaceAll(Expression::simplify);
+
+        Expression inlinedExpr = getContext().getInliner().inline(this);
+        return inlinedExpr != null ? inlinedExpr : this;
+      }
+
+
+    /**
+     * Returns true if this call is emitted as a tail call.
+     */
+    public boolean isTailCall()
+      {
+        return callingDecl != null;
+      }
+
+
+    /**
+     * Marks this call as a tail call of the calling function, whose return
+     * statement returns the value of this call, if the called function can
+     * reuse the frame of the calling function.
+     */
+    public void findTailCall(SubprogramDecl callingDecl)
+      {
+        if (funcDecl.getType() == callingDecl.getType() && funcDecl.canTailCall(actualParams))
+            this.callingDecl = callingDecl;
       }
 
 
@@ -63,7 +132,7 @@ public class FunctionCall extends Expression
           }
         catch (ConstraintException e)
           {
-            ErrorHandler.getInstance().reportError(e);
+            getContext().getErrorHandler().reportError(e);
           }
       }
 
@@ -71,13 +140,18 @@ public class FunctionCall extends Expression
     @Override
     public void emit() throws CodeGenException
       {
-        // allocate space on the stack for the return value
-        emit("ALLOC " + funcDecl.getType().getSize());
+        // allocate space on the stack for the return value, except for
+        // a tail call, which uses the space of the calling function
+        if (callingDecl == null)
+            emit(OpCode.ALLOC, funcDecl.getType().getSize());
 
         // emit code for actual parameters
         for (Expression expr : actualParams)
             expr.emit();
 
-        emit("CALL " + funcDecl.getSubprogramLabel());
+        if (callingDecl == null)
+            funcDecl.emitCall();
+        else
+            funcDecl.emitTailCall(callingDecl);
       }
   }
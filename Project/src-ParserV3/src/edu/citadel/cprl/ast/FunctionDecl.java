@@ -3,7 +3,7 @@ package edu.citadel.cprl.ast;
 
 import edu.citadel.compiler.CodeGenException;
 import edu.citadel.compiler.ConstraintException;
-import edu.citadel.compiler.ErrorHandler;
+import edu.citadel.cprl.CompilationContext;
 import edu.citadel.cprl.Token;
 
 import java.util.List;
@@ -17,9 +17,9 @@ public class FunctionDecl extends SubprogramDecl
     /**
      * Construct a function declaration with its name (an identifier).
      */
-    public FunctionDecl(Token funcId)
+    public FunctionDecl(CompilationContext context, Token funcId)
       {
-        super(funcId);
+        super(context, funcId);
       }
 
 
@@ -3,9 +3,12 @@ package edu.citadel.cprl.ast;
 
 import edu.citadel.compiler.CodeGenException;
 import edu.citadel.compiler.ConstraintException;
-import edu.citadel.compiler.ErrorHandler;
+import edu.citadel.cprl.CompilationContext;
 import edu.citadel.cprl.Type;
+import edu.citadel.cvm.OpCode;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 
@@ -20,8 +23,8 @@ public class IfStmt extends Statement
     private List<Statement> elseStmts;      // List of Statement objects following "else"
 
     // labels used during code generation
-    private String L1;   // label of address at end of then statements
-    private String L2;   // label of address at end of if statement
+    private int L1;   // label of address at end of then statements
+    private int L2;   // label of address at end of if statement
 
 
     /**
@@ -35,11 +38,14 @@ public class IfStmt extends Statement
      * @param elsifParts  the elsif clauses for the if statement.
      * @param elseStmts   the list of statements that are in the else clause.
      */
-    public IfStmt(Expression booleanExpr,
+    public IfStmt(CompilationContext context,
+                  Expression booleanExpr,
                   List<Statement> thenStmts,
                   List<ElsifPart> elsifParts,
                   List<Statement> elseStmts)
       {
+        super(context);
+
         this.booleanExpr = booleanExpr;
         this.thenStmts   = thenStmts;
         this.elsifParts  = elsifParts;
@@ -77,6 +83,69 @@ public class IfStmt extends Statement
       }
 
 
+    /**
+     * Removes the elsif parts whose conditions are false, and the elsif parts
+     * and else statements following a part whose condition is true.  If the
+     * condition of the if statement is constant, the statement is replaced by
+     * the statements of the selected branch or by the first remaining elsif part.
+     */
+    @Override
+    public List<Statement> simplify()
+      {
+        booleanExpr = booleanExpr.simplify();
+        thenStmts   = Statement.simplifyAll(thenStmts);
+        elseStmts   = Statement.simplifyAll(elseStmts);
+
+        List<ElsifPart> simplifiedParts = new ArrayList<>(elsifParts.size());
+        for (ElsifPart part : elsifParts)
+          {
+            part.simplify();
+
+            Expression partExpr = part.getBooleanExpr();
+            if (partExpr.isConstValue(1))
+              {
+                // the statements of this part become the else statements
+                elseStmts = part.getThenStmts();
+                break;
+              }
+            else if (!partExpr.isConstValue(0))
+                simplifiedParts.add(part);
+          }
+        elsifParts = simplifiedParts;
+
+        if (booleanExpr.isConstValue(1))
+            return thenStmts;
+        else if (booleanExpr.isConstValue(0))
+          {
+            if (elsifParts.isEmpty())
+                return elseStmts;
+
+            // the first elsif part becomes the condition and "then" statements
+            ElsifPart part = elsifParts.remove(0);
+            booleanExpr = part.getBooleanExpr();
+            thenStmts   = part.getThenStmts();
+          }
+
+        return Collections.singletonList(this);
+      }
+
+
+    /**
+     * The statements of each branch end in tail position
+     * if this statement is in tail position.
+     */
+    @Override
+    public void findTailCalls(SubprogramDecl subprogramDecl, boolean isTailPosition)
+      {
+        Statement.findTailCalls(thenStmts, subprogramDecl, isTailPosition);
+
+        for (ElsifPart part : elsifParts)
+            Statement.findTailCalls(part.getThenStmts(), subprogramDecl, isTailPosition);
+
+        Statement.findTailCalls(elseStmts, subprogramDecl, isTailPosition);
+      }
+
+
     @Override
     public void checkConstraints()
       {
@@ -101,7 +170,7 @@ public class IfStmt extends Statement
           }
         catch (ConstraintException e)
           {
-            ErrorHandler.getInstance().reportError(e);
+            getContext().getErrorHandler().reportError(e);
           }
       }
 
@@ -118,7 +187,7 @@ public class IfStmt extends Statement
 
         // if there are elsif parts or an else part, branch to end of if statement
         if (elsifParts.size() > 0 || elseStmts.size() > 0)
-            emit("BR " + L2);
+            emitLabelArg(OpCode.BR, L2);
 
         // L1:
         emitLabel(L1);
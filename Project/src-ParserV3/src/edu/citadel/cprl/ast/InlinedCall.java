@@ -0,0 +1,65 @@
+package edu.citadel.cprl.ast;
+
+
+import edu.citadel.compiler.CodeGenException;
+import edu.citadel.compiler.Position;
+import edu.citadel.cprl.CompilationContext;
+
+import java.util.List;
+
+
+/**
+ * The abstract syntax tree node for an inlined function call.  The values of
+ * the actual parameters are assigned to variables in the frame of the caller,
+ * and then the expression of the function's return statement is evaluated
+ * with those variables in place of the formal parameters.  Inlined calls are
+ * created by the inliner after the constraints have been checked.
+ */
+public class InlinedCall extends Expression
+  {
+    private List<AssignmentStmt> paramAssignments;
+    private Expression expr;
+
+
+    /**
+     * Construct an inlined function call with the assignments of the actual
+     * parameters and the inlined expression.
+     */
+    public InlinedCall(CompilationContext context,
+                       List<AssignmentStmt> paramAssignments,
+                       Expression expr,
+                       Position position)
+      {
+        super(context, expr.getType(), position);
+
+        this.paramAssignments = paramAssignments;
+        this.expr             = expr;
+      }
+
+
+    @Override
+    public void checkConstraints()
+      {
+        // created only after the constraints have been checked
+      }
+
+
+    @Override
+    public void emit() throws CodeGenException
+      {
+        for (AssignmentStmt assignment : paramAssignments)
+            assignment.emit();
+
+        expr.emit();
+      }
+
+
+    @Override
+    public void emitBranch(boolean condition, int label) throws CodeGenException
+      {
+        for (AssignmentStmt assignment : paramAssignments)
+            assignment.emit();
+
+        expr.emitBranch(condition, label);
+      }
+  }
@@ -0,0 +1,558 @@
+package edu.citadel.cprl.ast;
+
+
+import edu.citadel.compiler.Position;
+import edu.citadel.cprl.ArrayType;
+import edu.citadel.cprl.CompilationContext;
+import edu.citadel.cprl.ScopeLevel;
+import edu.citadel.cprl.Symbol;
+import edu.citadel.cprl.Token;
+import edu.citadel.cprl.Type;
+
+import java.util.*;
+
+
+/**
+ * Replaces calls to small subprograms by copies of their statements while the
+ * program is simplified, so that the calls do not pay for the frame setup,
+ * the parameters, and the return.  A function can be inlined if its statement
+ * part is a single return statement, and a procedure can be inlined if its
+ * statements are assignment, write, writeln, and procedure call statements.
+ * In both cases, the subprogram must not declare variables or call itself,
+ * its parameters passed by value must not be arrays, and its statements must
+ * not have more than MAX_SIZE nodes unless its name is one of the hints given
+ * to the inliner (e.g., with the compiler option -inline:).  Calls in a
+ * parallel statement are never inlined.
+ *
+ * <p>The formal parameters in the copied statements are renamed as follows.
+ * A value parameter is replaced by a variable in the frame of the caller,
+ * which is assigned the value of the actual parameter before the copied
+ * statements, the same way that the actual parameters are evaluated before
+ * a call.  Such a variable is used only within the statement containing the
+ * call, so it is reused for calls in later statements of the caller.  For a function, a constant actual parameter replaces the formal
+ * parameter directly, and so does a variable if nothing evaluated before it
+ * is read could change it.  A var parameter is replaced by the actual
+ * parameter, so a procedure call is inlined only if each actual parameter
+ * for a var parameter is a variable without index expressions.
+ */
+public class Inliner
+  {
+    /** maximum number of AST nodes in the statements of a subprogram that is inlined */
+    public static final int MAX_SIZE = 16;
+
+    // size of statements or expressions that can't be inlined
+    private static final int NOT_INLINABLE = -1;
+
+    private CompilationContext context;
+
+    private boolean enabled;
+
+    // names of subprograms that are inlined regardless of their size
+    private Set<String> hints;
+
+    // subprograms that have been checked, mapped to whether they can be inlined
+    private Map<SubprogramDecl, Boolean> inlinable;
+
+    // subprograms whose calls are being inlined (so that mutually
+    // recursive subprograms are not inlined into each other forever)
+    private Set<SubprogramDecl> active;
+
+    // variables and scope level of the program or subprogram being simplified
+    private List<InitialDecl> frameDecls;
+    private ScopeLevel frameScopeLevel;
+
+    // variables added to the current frame for inlined calls, which are either
+    // in use by the statements being simplified or free to be reused
+    private List<SingleVarDecl> varsInUse;
+    private List<SingleVarDecl> freeVars;
+
+    // number of variables added for inlined calls
+    private int numVars;
+
+
+    /**
+     * Construct an inliner for the compilation context.  Inlining is enabled
+     * without hints, and calls are not inlined until the frame is set.
+     */
+    public Inliner(CompilationContext context)
+      {
+        this.context         = context;
+        this.enabled         = true;
+        this.hints           = Collections.emptySet();
+        this.inlinable       = new HashMap<>();
+        this.active          = new HashSet<>();
+        this.frameDecls      = null;
+        this.frameScopeLevel = null;
+        this.varsInUse       = new ArrayList<>();
+        this.freeVars        = new ArrayList<>();
+        this.numVars         = 0;
+      }
+
+
+    /**
+     * Enables or disables inlining.
+     */
+    public void setEnabled(boolean enabled)
+      {
+        this.enabled = enabled;
+      }
+
+
+    /**
+     * Set the names of subprograms that are inlined regardless of their size.
+     */
+    public void setHints(Set<String> hints)
+      {
+        this.hints = hints;
+      }
+
+
+    /**
+     * Set the variable declarations and the scope level of the program or
+     * subprogram whose statements are simplified next.  Variables for the
+     * parameters of inlined calls are added to the variable declarations.
+     */
+    public void setFrame(List<InitialDecl> frameDecls, ScopeLevel frameScopeLevel)
+      {
+        this.frameDecls      = frameDecls;
+        this.frameScopeLevel = frameScopeLevel;
+        varsInUse.clear();
+        freeVars.clear();
+      }
+
+
+    /**
+     * Returns the number of variables for inlined calls that are in use.
+     * This number is passed to releaseVars() after a statement is simplified.
+     */
+    public int getNumVarsInUse()
+      {
+        return varsInUse.size();
+      }
+
+
+    /**
+     * Frees the variables for inlined calls that were added after the
+     * specified number of variables were in use, so that they can be
+     * reused by later statements.
+     */
+    public void releaseVars(int numVarsInUse)
+      {
+        while (varsInUse.size() > numVarsInUse)
+            freeVars.add(varsInUse.remove(varsInUse.size() - 1));
+      }
+
+
+    /**
+     * Returns the inlined expression for the function call,
+     * or null if the function is not inlined.
+     */
+    public Expression inline(FunctionCall call)
+      {
+        FunctionDecl funcDecl = call.getFuncDecl();
+        if (!canInline(funcDecl))
+            return null;
+
+        Statement  stmt       = funcDecl.getStatementPart().getStatements().get(0);
+        Expression returnExpr = ((ReturnStmt) stmt).getReturnExpr();
+
+        List<Expression>    actualParams = call.getActualParams();
+        List<ParameterDecl> formalParams = funcDecl.getFormalParams();
+
+        // a variable read in place of a formal parameter must not be changed
+        // by an actual parameter or a function call in the return expression
+        boolean readInPlace = !containsCall(returnExpr);
+        for (Expression expr : actualParams)
+            readInPlace = readInPlace && !expr.hasSideEffects();
+
+        Map<NamedDecl, Expression> substitutions = new HashMap<>();
+        List<AssignmentStmt> paramAssignments = new ArrayList<>();
+
+        for (int i = 0;  i < actualParams.size();  ++i)
+          {
+            Expression expr = actualParams.get(i);
+
+            if (expr instanceof ConstValue || readInPlace && expr instanceof NamedValue
+                    && ((NamedValue) expr).getIndexExprs().isEmpty())
+                substitutions.put(formalParams.get(i), expr);
+            else
+              {
+                Variable var = newVariable(formalParams.get(i).getType(), call.getPosition());
+                paramAssignments.add(new AssignmentStmt(context, var, expr, call.getPosition()));
+                substitutions.put(formalParams.get(i), var);
+              }
+          }
+
+        active.add(funcDecl);
+        Expression inlinedExpr = copy(returnExpr, substitutions).simplify();
+        active.remove(funcDecl);
+
+        if (paramAssignments.isEmpty())
+            return inlinedExpr;
+        else
+            return new InlinedCall(context, paramAssignments, inlinedExpr, call.getPosition());
+      }
+
+
+    /**
+     * Returns the inlined statements for the procedure call,
+     * or null if the procedure is not inlined.
+     */
+    public List<Statement> inline(ProcedureCallStmt call)
+      {
+        ProcedureDecl procDecl = call.getProcDecl();
+        if (!canInline(procDecl))
+            return null;
+
+        List<Expression>    actualParams = call.getActualParams();
+        List<ParameterDecl> formalParams = procDecl.getFormalParams();
+
+        // an actual var parameter must be a variable that can replace the formal parameter
+        for (int i = 0;  i < actualParams.size();  ++i)
+          {
+            Expression expr = actualParams.get(i);
+
+            if (formalParams.get(i).isVarParam() && !(expr instanceof Variable
+                    && ((Variable) expr).getIndexExprs().isEmpty()))
+                return null;
+          }
+
+        Map<NamedDecl, Expression> substitutions = new HashMap<>();
+        List<Statement> inlinedStmts = new ArrayList<>();
+        Position position = call.getProcId().getPosition();
+
+        for (int i = 0;  i < actualParams.size();  ++i)
+          {
+            Expression    expr  = actualParams.get(i);
+            ParameterDecl param = formalParams.get(i);
+
+            if (param.isVarParam())
+                substitutions.put(param, expr);
+            else
+              {
+                Variable var = newVariable(param.getType(), position);
+                inlinedStmts.add(new AssignmentStmt(context, var, expr, position));
+                substitutions.put(param, var);
+              }
+          }
+
+        for (Statement stmt : procDecl.getStatementPart().getStatements())
+            inlinedStmts.add(copy(stmt, substitutions));
+
+        active.add(procDecl);
+        inlinedStmts = Statement.simplifyAll(inlinedStmts);
+        active.remove(procDecl);
+
+        return inlinedStmts;
+      }
+
+
+    /**
+     * Returns true if calls to the subprogram can be inlined.
+     */
+    private boolean canInline(SubprogramDecl decl)
+      {
+        if (!enabled || frameDecls == null || active.contains(decl))
+            return false;
+
+        Boolean result = inlinable.get(decl);
+        if (result == null)
+          {
+            result = checkInlinable(decl);
+            inlinable.put(decl, result);
+          }
+
+        return result;
+      }
+
+
+    /**
+     * Checks the declarations, parameters, and statements of the
+     * subprogram as described in the comment for this class.
+     */
+    private boolean checkInlinable(SubprogramDecl decl)
+      {
+        for (InitialDecl initialDecl : decl.getInitialDecls())
+          {
+            if (initialDecl instanceof SingleVarDecl || initialDecl instanceof VarDecl)
+                return false;
+          }
+
+        for (ParameterDecl param : decl.getFormalParams())
+          {
+            if (!param.isVarParam() && param.getType() instanceof ArrayType)
+                return false;
+          }
+
+        List<Statement> statements = decl.getStatementPart().getStatements();
+        int size = 0;
+
+        if (decl instanceof FunctionDecl)
+          {
+            if (statements.size() != 1 || !(statements.get(0) instanceof ReturnStmt))
+                return false;
+
+            Expression returnExpr = ((ReturnStmt) statements.get(0)).getReturnExpr();
+            size = returnExpr != null ? getSize(returnExpr, decl) : NOT_INLINABLE;
+          }
+        else
+          {
+            for (Statement stmt : statements)
+                size = add(size, getSize(stmt, decl));
+          }
+
+        if (size == NOT_INLINABLE)
+            return false;
+        else
+            return size <= MAX_SIZE || hints.contains(decl.getIdToken().getText());
+      }
+
+
+    /**
+     * Returns the number of AST nodes in the statement, or NOT_INLINABLE if
+     * the statement can't be copied or calls the specified subprogram.
+     */
+    private int getSize(Statement stmt, SubprogramDecl decl)
+      {
+        if (stmt instanceof AssignmentStmt)
+          {
+            AssignmentStmt assignmentStmt = (AssignmentStmt) stmt;
+            return add(add(1, getSize(assignmentStmt.getVariable(), decl)),
+                       getSize(assignmentStmt.getExpr(), decl));
+          }
+        else if (stmt instanceof WriteStmt || stmt instanceof WritelnStmt)
+          {
+            int size = 1;
+            for (Expression expr : ((OutputStmt) stmt).getExpressions())
+              {
+                if (expr != null)
+                    size = add(size, getSize(expr, decl));
+              }
+
+            return size;
+          }
+        else if (stmt instanceof ProcedureCallStmt)
+          {
+            ProcedureCallStmt callStmt = (ProcedureCallStmt) stmt;
+            if (callStmt.getProcDecl() == decl)
+                return NOT_INLINABLE;
+
+            return add(1, getSize(callStmt.getActualParams(), decl));
+          }
+        else
+            return NOT_INLINABLE;
+      }
+
+
+    /**
+     * Returns the number of AST nodes in the expression, or NOT_INLINABLE if
+     * the expression can't be copied or calls the specified subprogram.
+     */
+    private int getSize(Expression expr, SubprogramDecl decl)
+      {
+        if (expr instanceof ConstValue)
+            return 1;
+        else if (expr instanceof Variable)
+            return add(1, getSize(((Variable) expr).getIndexExprs(), decl));
+        else if (expr instanceof BinaryExpr)
+          {
+            BinaryExpr binaryExpr = (BinaryExpr) expr;
+            return add(add(1, getSize(binaryExpr.getLeftOperand(), decl)),
+                       getSize(binaryExpr.getRightOperand(), decl));
+          }
+        else if (expr instanceof UnaryExpr)
+            return add(1, getSize(((UnaryExpr) expr).getOperand(), decl));
+        else if (expr instanceof FunctionCall)
+          {
+            FunctionCall call = (FunctionCall) expr;
+            if (call.getFuncDecl() == decl)
+                return NOT_INLINABLE;
+
+            return add(1, getSize(call.getActualParams(), decl));
+          }
+        else
+            return NOT_INLINABLE;
+      }
+
+
+    private int getSize(List<Expression> exprs, SubprogramDecl decl)
+      {
+        int size = 0;
+        for (Expression expr : exprs)
+            size = add(size, getSize(expr, decl));
+
+        return size;
+      }
+
+
+    /**
+     * Returns the sum of two sizes, or NOT_INLINABLE if either size is NOT_INLINABLE.
+     */
+    private static int add(int size1, int size2)
+      {
+        return size1 < 0 || size2 < 0 ? NOT_INLINABLE : size1 + size2;
+      }
+
+
+    /**
+     * Returns true if the expression contains a function call.
+     */
+    private static boolean containsCall(Expression expr)
+      {
+        if (expr instanceof FunctionCall)
+            return true;
+        else if (expr instanceof Variable)
+          {
+            for (Expression indexExpr : ((Variable) expr).getIndexExprs())
+              {
+                if (containsCall(indexExpr))
+                    return true;
+              }
+
+            return false;
+          }
+        else if (expr instanceof BinaryExpr)
+          {
+            BinaryExpr binaryExpr = (BinaryExpr) expr;
+            return containsCall(binaryExpr.getLeftOperand())
+                || containsCall(binaryExpr.getRightOperand());
+          }
+        else if (expr instanceof UnaryExpr)
+            return containsCall(((UnaryExpr) expr).getOperand());
+        else
+            return false;
+      }
+
+
+    /**
+     * Returns a variable of the specified type in the current frame.  A free
+     * variable of the same type is reused, or else a new variable is added.
+     */
+    private Variable newVariable(Type type, Position position)
+      {
+        SingleVarDecl varDecl = null;
+        for (int i = 0;  i < freeVars.size() && varDecl == null;  ++i)
+          {
+            if (freeVars.get(i).getType().equals(type))
+                varDecl = freeVars.remove(i);
+          }
+
+        if (varDecl == null)
+          {
+            Token varId = new Token(Symbol.identifier, position, "inline$" + numVars++);
+            varDecl = new SingleVarDecl(context, varId, type, frameScopeLevel);
+            frameDecls.add(varDecl);
+          }
+
+        varsInUse.add(varDecl);
+        return new Variable(context, varDecl, position, new ArrayList<>());
+      }
+
+
+    /**
+     * Returns a copy of the statement in which the formal parameters are
+     * replaced as specified by the substitutions.  The statement must be
+     * one that getSize() accepts.
+     */
+    private Statement copy(Statement stmt, Map<NamedDecl, Expression> substitutions)
+      {
+        if (stmt instanceof AssignmentStmt)
+          {
+            AssignmentStmt assignmentStmt = (AssignmentStmt) stmt;
+            Variable   var  = (Variable) copy(assignmentStmt.getVariable(), substitutions);
+            Expression expr = copy(assignmentStmt.getExpr(), substitutions);
+            return new AssignmentStmt(context, var, expr, assignmentStmt.getAssignPosition());
+          }
+        else if (stmt instanceof WriteStmt)
+          {
+            List<Expression> exprs = copy(((OutputStmt) stmt).getExpressions(), substitutions);
+            return new WriteStmt(context, exprs);
+          }
+        else if (stmt instanceof WritelnStmt)
+          {
+            List<Expression> exprs = copy(((OutputStmt) stmt).getExpressions(), substitutions);
+            return new WritelnStmt(context, exprs);
+          }
+        else
+          {
+            ProcedureCallStmt callStmt = (ProcedureCallStmt) stmt;
+            List<Expression> actualParams = copy(callStmt.getActualParams(), substitutions);
+            return new ProcedureCallStmt(context, callStmt.getProcId(),
+                                         actualParams, callStmt.getProcDecl());
+          }
+      }
+
+
+    /**
+     * Returns a copy of the expression in which the formal parameters are
+     * replaced as specified by the substitutions.  The expression must be
+     * one that getSize() accepts.  Constant values are not copied.
+     */
+    private Expression copy(Expression expr, Map<NamedDecl, Expression> substitutions)
+      {
+        if (expr == null || expr instanceof ConstValue)
+            return expr;
+        else if (expr instanceof Variable)
+          {
+            Variable   var        = (Variable) expr;
+            Expression substitute = substitutions.get(var.getDecl());
+
+            // a constant replaces only a value parameter without index expressions
+            if (substitute instanceof ConstValue)
+                return substitute;
+
+            NamedDecl decl = substitute != null ? ((Variable) substitute).getDecl() : var.getDecl();
+            List<Expression> indexExprs = copy(var.getIndexExprs(), substitutions);
+
+            Variable copy = new Variable(context, decl, var.getPosition(), indexExprs);
+            if (var instanceof NamedValue)
+                copy = new NamedValue(copy);
+
+            // the type of a copy is the type after applying the index expressions
+            copy.setType(var.getType());
+            return copy;
+          }
+        else if (expr instanceof BinaryExpr)
+          {
+            BinaryExpr binaryExpr = (BinaryExpr) expr;
+            Expression left     = copy(binaryExpr.getLeftOperand(), substitutions);
+            Token      operator = binaryExpr.getOperator();
+            Expression right    = copy(binaryExpr.getRightOperand(), substitutions);
+
+            if (expr instanceof AddingExpr)
+                return new AddingExpr(context, left, operator, right);
+            else if (expr instanceof MultiplyingExpr)
+                return new MultiplyingExpr(context, left, operator, right);
+            else if (expr instanceof RelationalExpr)
+                return new RelationalExpr(context, left, operator, right);
+            else
+                return new LogicalExpr(context, left, operator, right);
+          }
+        else if (expr instanceof UnaryExpr)
+          {
+            UnaryExpr  unaryExpr = (UnaryExpr) expr;
+            Expression operand   = copy(unaryExpr.getOperand(), substitutions);
+
+            if (expr instanceof NegationExpr)
+                return new NegationExpr(context, unaryExpr.getOperator(), operand);
+            else
+                return new NotExpr(context, unaryExpr.getOperator(), operand);
+          }
+        else
+          {
+            FunctionCall call = (FunctionCall) expr;
+            List<Expression> actualParams = copy(call.getActualParams(), substitutions);
+            return new FunctionCall(context, call.getFuncId(), actualParams, call.getFuncDecl());
+          }
+      }
+
+
+    private List<Expression> copy(List<Expression> exprs, Map<NamedDecl, Expression> substitutions)
+      {
+        List<Expression> copies = new ArrayList<>(exprs.size());
+        for (Expression expr : exprs)
+            copies.add(copy(expr, substitutions));
+
+        return copies;
+      }
+  }
@@ -3,10 +3,11 @@ package edu.citadel.cprl.ast;
 
 import edu.citadel.compiler.CodeGenException;
 import edu.citadel.compiler.ConstraintException;
-import edu.citadel.compiler.ErrorHandler;
+import edu.citadel.cprl.CompilationContext;
 import edu.citadel.cprl.Symbol;
 import edu.citadel.cprl.Token;
 import edu.citadel.cprl.Type;
+import edu.citadel.cvm.OpCode;
 
 
 /**
@@ -17,17 +18,20 @@ import edu.citadel.cprl.Type;
 public class LogicalExpr extends BinaryExpr
   {
     // labels used during code generation for short-circuit version
-    private String L1;   // label at start of right operand
-    private String L2;   // label at end of logical expression
+    private int L1;   // label at start of right operand
+    private int L2;   // label at end of logical expression
 
 
     /**
      * Construct a logical expression with the operator ("and" or "or")
      * and the two operands.
      */
-    public LogicalExpr(Expression leftOperand, Token operator, Expression rightOperand)
+    public LogicalExpr(CompilationContext context,
+                       Expression leftOperand,
+                       Token operator,
+                       Expression rightOperand)
       {
-        super(leftOperand, operator, rightOperand);
+        super(context, leftOperand, operator, rightOperand);
         setType(Type.Boolean);
         assert operator.getSymbol().isLogicalOperator() : "Operator is not a logical operator.";
 
@@ -63,11 +67,43 @@ public class LogicalExpr extends BinaryExpr
           }
         catch (ConstraintException e)
           {
-            ErrorHandler.getInstance().reportError(e);
+            getContext().getErrorHandler().reportError(e);
           }
       }
 
 
+    /**
+     * Simplifies a logical expression with a constant operand.  A constant
+     * left operand either determines the value or is removed.  A constant
+     * right operand is removed if it does not determine the value; otherwise
+     * the expression is replaced by the constant if the left operand has no
+     * side effects.
+     */
+    @Override
+    public Expression simplify()
+      {
+        simplifyOperands();
+
+        Expression leftOperand  = getLeftOperand();
+        Expression rightOperand = getRightOperand();
+
+        // the value of an operand that determines the value of the expression
+        int decidingValue = getOperator().getSymbol() == Symbol.andRW ? 0 : 1;
+
+        if (leftOperand instanceof ConstValue)
+            return leftOperand.isConstValue(decidingValue) ? leftOperand : rightOperand;
+        else if (rightOperand instanceof ConstValue)
+          {
+            if (!rightOperand.isConstValue(decidingValue))
+                return leftOperand;
+            else if (!leftOperand.hasSideEffects())
+                return rightOperand;
+          }
+
+        return this;
+      }
+
+
     /**
      * Uses short-circuit evaluation for logical expressions.
      */
@@ -90,7 +126,7 @@ public class LogicalExpr extends BinaryExpr
 
             // otherwise, place "false" back on top of stack as value
             // for the compound "and" expression
-            emit("LDCB " + FALSE);
+            emit(OpCode.LDCB, FALSE);
           }
         else   // operatorSym must be Symbol.orRW
           {
@@ -99,11 +135,11 @@ public class LogicalExpr extends BinaryExpr
 
             // otherwise, place "true" back on top of stack as value
             // for the compound "or" expression
-            emit("LDCB " + TRUE);
+            emit(OpCode.LDCB, TRUE);
           }
 
         // branch to code following the expression
-        emit("BR " + L2);
+        emitLabelArg(OpCode.BR, L2);
 
         // L1:
         emitLabel(L1);
@@ -3,7 +3,7 @@ package edu.citadel.cprl.ast;
 
 import edu.citadel.compiler.CodeGenException;
 import edu.citadel.compiler.ConstraintException;
-import edu.citadel.compiler.ErrorHandler;
+import edu.citadel.cprl.CompilationContext;
 import edu.citadel.cprl.Type;
 
 import java.util.Collections;
@@ -19,16 +19,17 @@ public class LoopStmt extends Statement
     private List<Statement> statements;
 
     // labels used during code generation
-    private String L1;    // label for start of loop
-    private String L2;    // label for end of loop
+    private int L1;    // label for start of loop
+    private int L2;    // label for end of loop
 
 
     /**
-     * Default constructor.  Construct a loop statement with a null "while"
+     * Construct a loop statement with a null "while"
      * expression and an empty list of statements for the loop body.
      */
-    public LoopStmt()
+    public LoopStmt(CompilationContext context)
       {
+        super(context);
 // ...
       }
 
@@ -63,12 +64,46 @@ public class LoopStmt extends Statement
     /**
      * Returns the label for the end of the loop statement.
      */
-    public String getExitLabel()
+    public int getExitLabel()
       {
 // ...
       }
 
 
+    /**
+     * Removes a loop whose "while" expression is false, and removes
+     * a "while" expression that is true.
+     */
+    @Override
+    public List<Statement> simplify()
+      {
+        statements = Statement.simplifyAll(statements);
+
+        if (whileExpr != null)
+          {
+            whileExpr = whileExpr.simplify();
+
+            if (whileExpr.isConstValue(0))
+                return Collections.emptyList();
+            else if (whileExpr.isConstValue(1))
+                whileExpr = null;
+          }
+
+        return Collections.singletonList(this);
+      }
+
+
+    /**
+     * The loop body is never in tail position, but it can contain
+     * calls that are followed by return statements.
+     */
+    @Override
+    public void findTailCalls(SubprogramDecl subprogramDecl, boolean isTailPosition)
+      {
+        Statement.findTailCalls(statements, subprogramDecl, false);
+      }
+
+
     @Override
     public void checkConstraints()
       {
@@ -3,7 +3,7 @@ package edu.citadel.cprl.ast;
 
 import edu.citadel.compiler.CodeGenException;
 import edu.citadel.compiler.ConstraintException;
-import edu.citadel.compiler.ErrorHandler;
+import edu.citadel.cprl.CompilationContext;
 import edu.citadel.cprl.Symbol;
 import edu.citadel.cprl.Token;
 import edu.citadel.cprl.Type;
@@ -20,9 +20,12 @@ public class MultiplyingExpr extends BinaryExpr
      * Construct a multiplying expression with the operator ("*", "/", or "mod")
      * and the two operands.
      */
-    public MultiplyingExpr(Expression leftOperand, Token operator, Expression rightOperand)
+    public MultiplyingExpr(CompilationContext context,
+                           Expression leftOperand,
+                           Token operator,
+                           Expression rightOperand)
       {
-        super(leftOperand, operator, rightOperand);
+        super(context, leftOperand, operator, rightOperand);
         setType(Type.Integer);
         assert operator.getSymbol().isMultiplyingOperator() :
             "Operator is not a multiplying operator.";
@@ -36,6 +39,76 @@ public class MultiplyingExpr extends BinaryExpr
       }
 
 
+    /**
+     * Folds a multiplying expression with constant operands unless it divides
+     * by zero, simplifies x * 1, 1 * x, and x / 1 to x, and simplifies x * 0
+     * and 0 * x to 0 if x has no side effects.
+     */
+    @Override
+    public Expression simplify()
+      {
+        simplifyOperands();
+
+        Expression leftOperand  = getLeftOperand();
+        Expression rightOperand = getRightOperand();
+        Symbol     operatorSym  = getOperator().getSymbol();
+
+        if (leftOperand instanceof ConstValue && rightOperand instanceof ConstValue)
+          {
+            int leftValue  = ((ConstValue) leftOperand).getLiteralIntValue();
+            int rightValue = ((ConstValue) rightOperand).getLiteralIntValue();
+
+            if (operatorSym == Symbol.times)
+                return newConstValue(leftValue*rightValue);
+            else if (rightValue != 0)
+              {
+                // dividing by zero is left to fail at run time
+                return newConstValue(operatorSym == Symbol.divide ? leftValue/rightValue
+                                                                  : leftValue % rightValue);
+              }
+          }
+
+        if (operatorSym == Symbol.times)
+          {
+            if (rightOperand.isConstValue(1))
+                return leftOperand;
+            else if (leftOperand.isConstValue(1))
+                return rightOperand;
+            else if (rightOperand.isConstValue(0) && !leftOperand.hasSideEffects())
+                return rightOperand;
+            else if (leftOperand.isConstValue(0) && !rightOperand.hasSideEffects())
+                return leftOperand;
+          }
+        else if (operatorSym == Symbol.divide && rightOperand.isConstValue(1))
+            return leftOperand;
+
+        return this;
+      }
+
+
+    /**
+     * Returns true if an operand has side effects or if the
+     * expression divides by a value that could be zero.
+     */
+    @Override
+    public boolean hasSideEffects()
+      {
+        Expression rightOperand = getRightOperand();
+        boolean    divides      = getOperator().getSymbol() != Symbol.times;
+
+        if (divides && (!(rightOperand instanceof ConstValue) || rightOperand.isConstValue(0)))
+            return true;
+        else
+            return super.hasSideEffects();
+      }
+
+
+    private ConstValue newConstValue(int value)
+      {
+        return new ConstValue(getContext(), Type.Integer, value, getPosition());
+      }
+
+
     @Override
     public void emit() throws CodeGenException
       {
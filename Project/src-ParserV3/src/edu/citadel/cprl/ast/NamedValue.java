@@ -19,7 +19,7 @@ public class NamedValue extends Variable
      */
     public NamedValue(Variable var)
       {
-        super(var.getDecl(), var.getPosition(), var.getIndexExprs());
+        super(var.getContext(), var.getDecl(), var.getPosition(), var.getIndexExprs());
       }
 
 
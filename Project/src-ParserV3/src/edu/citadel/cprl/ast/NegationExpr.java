@@ -3,7 +3,7 @@ package edu.citadel.cprl.ast;
 
 import edu.citadel.compiler.CodeGenException;
 import edu.citadel.compiler.ConstraintException;
-import edu.citadel.compiler.ErrorHandler;
+import edu.citadel.cprl.CompilationContext;
 import edu.citadel.cprl.Symbol;
 import edu.citadel.cprl.Token;
 import edu.citadel.cprl.Type;
@@ -19,9 +19,9 @@ public class NegationExpr extends UnaryExpr
     /**
      * Construct a negation expression with the specified operator ("-") and operand.
      */
-    public NegationExpr(Token operator, Expression operand)
+    public NegationExpr(CompilationContext context, Token operator, Expression operand)
       {
-        super(operator, operand);
+        super(context, operator, operand);
         setType(Type.Integer);
         assert operator.getSymbol() == Symbol.minus : "Operator is not \"-\" operator.";
       }
@@ -34,6 +34,28 @@ public class NegationExpr extends UnaryExpr
       }
 
 
+    /**
+     * Folds the negation of a constant, and simplifies -(-x) to x.
+     */
+    @Override
+    public Expression simplify()
+      {
+        simplifyOperand();
+
+        Expression operand = getOperand();
+
+        if (operand instanceof ConstValue)
+          {
+            int value = -((ConstValue) operand).getLiteralIntValue();
+            return new ConstValue(getContext(), Type.Integer, value, getPosition());
+          }
+        else if (operand instanceof NegationExpr)
+            return ((NegationExpr) operand).getOperand();
+        else
+            return this;
+      }
+
+
     @Override
     public void emit() throws CodeGenException
       {
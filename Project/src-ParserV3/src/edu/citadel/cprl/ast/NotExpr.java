@@ -3,7 +3,7 @@ package edu.citadel.cprl.ast;
 
 import edu.citadel.compiler.CodeGenException;
 import edu.citadel.compiler.ConstraintException;
-import edu.citadel.compiler.ErrorHandler;
+import edu.citadel.cprl.CompilationContext;
 import edu.citadel.cprl.Symbol;
 import edu.citadel.cprl.Token;
 import edu.citadel.cprl.Type;
@@ -18,9 +18,9 @@ public class NotExpr extends UnaryExpr
     /**
      * Construct a not expression with the specified operator ("not") and operand.
      */
-    public NotExpr(Token operator, Expression operand)
+    public NotExpr(CompilationContext context, Token operator, Expression operand)
       {
-        super(operator, operand);
+        super(context, operator, operand);
         setType(Type.Boolean);
         assert operator.getSymbol() == Symbol.notRW :
             "Operator is not the reserved word \"not\".";
@@ -34,6 +34,28 @@ public class NotExpr extends UnaryExpr
       }
 
 
+    /**
+     * Folds the negation of a constant, and simplifies "not not b" to b.
+     */
+    @Override
+    public Expression simplify()
+      {
+        simplifyOperand();
+
+        Expression operand = getOperand();
+
+        if (operand instanceof ConstValue)
+          {
+            int value = operand.isConstValue(0) ? 1 : 0;
+            return new ConstValue(getContext(), Type.Boolean, value, getPosition());
+          }
+        else if (operand instanceof NotExpr)
+            return ((NotExpr) operand).getOperand();
+        else
+            return this;
+      }
+
+
     @Override
     public void emit() throws CodeGenException
       {
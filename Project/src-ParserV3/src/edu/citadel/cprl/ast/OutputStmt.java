@@ -2,8 +2,11 @@ package edu.citadel.cprl.ast;
 
 
 import edu.citadel.compiler.CodeGenException;
+import edu.citadel.cprl.CompilationContext;
 import edu.citadel.cprl.Type;
+import edu.citadel.cvm.OpCode;
 
+import java.util.Collections;
 import java.util.List;
 
 
@@ -18,8 +21,10 @@ public abstract class OutputStmt extends Statement
     /**
      * Construct an output statement with the list of expressions.
      */
-    public OutputStmt(List<Expression> expressions)
+    public OutputStmt(CompilationContext context, List<Expression> expressions)
       {
+        super(context);
+
         this.expressions = expressions;
       }
 
@@ -33,6 +38,17 @@ public abstract class OutputStmt extends Statement
       }
 
 
+    /**
+     * Simplifies the expressions to be written.
+     */
+    @Override
+    public List<Statement> simplify()
+      {
+        expressions.replaceAll(expr -> expr != null ? expr.simplify() : null);
+        return Collections.singletonList(this);
+      }
+
+
     /**
      * Calls method checkConstraints() for each expression.
      */
@@ -59,13 +75,13 @@ public abstract class OutputStmt extends Statement
                 Type exprType = expr.getType();
 
                 if (exprType == Type.Integer)
-                    emit("PUTINT");
+                    emit(OpCode.PUTINT);
                 else if (exprType == Type.Boolean)
-                    emit("PUTBYTE");
+                    emit(OpCode.PUTBYTE);
                 else if (exprType == Type.Char)
-                    emit("PUTCH");
+                    emit(OpCode.PUTCH);
                 else if (exprType == Type.String)
-                    emit("PUTSTR");
+                    emit(OpCode.PUTSTR);
                 else
                     throw new CodeGenException(expr.getPosition(), "Invalid type.");
               }
@@ -0,0 +1,116 @@
+package edu.citadel.cprl.ast;
+
+
+import edu.citadel.compiler.CodeGenException;
+import edu.citadel.compiler.ConstraintException;
+import edu.citadel.cprl.ArrayType;
+import edu.citadel.cprl.CompilationContext;
+import edu.citadel.cvm.OpCode;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+
+/**
+ * The abstract syntax tree node for a parallel statement.  The procedure
+ * calls in a parallel statement run as concurrent tasks, and the statement
+ * completes when all of the calls have returned.  The calls share memory,
+ * so the program must ensure that no call writes a variable that another
+ * call of the same parallel statement reads or writes.  Different calls
+ * may update disjoint parts of an array passed as a var parameter (e.g.,
+ * the two halves of a divide-and-conquer algorithm), and all writes are
+ * visible after the parallel statement.  The order of output produced by
+ * different calls is unspecified.
+ */
+public class ParallelStmt extends Statement
+  {
+    private List<ProcedureCallStmt> procCalls;
+
+
+    /**
+     * Construct a parallel statement with the specified list of procedure calls.
+     */
+    public ParallelStmt(CompilationContext context, List<ProcedureCallStmt> procCalls)
+      {
+        super(context);
+
+        this.procCalls = procCalls;
+      }
+
+
+    /**
+     * Returns the list of procedure calls for this parallel statement.
+     */
+    public List<ProcedureCallStmt> getProcCalls()
+      {
+        return procCalls;
+      }
+
+
+    /**
+     * Simplifies the actual parameters of the procedure calls.
+     */
+    @Override
+    public List<Statement> simplify()
+      {
+        // procedures called in parallel are never inlined
+        for (ProcedureCallStmt procCall : procCalls)
+            procCall.simplifyActualParams();
+
+        return Collections.singletonList(this);
+      }
+
+
+    @Override
+    public void checkConstraints()
+      {
+        for (ProcedureCallStmt procCall : procCalls)
+            procCall.checkConstraints();
+
+        try
+          {
+            // a whole non-array variable passed as a var parameter could be
+            // written by one call while it is being accessed by another call
+            Set<NamedDecl> varParams = new HashSet<>();
+            for (ProcedureCallStmt procCall : procCalls)
+              {
+                List<Expression>    actualParams = procCall.getActualParams();
+                List<ParameterDecl> formalParams = procCall.getProcDecl().getFormalParams();
+
+                for (int i = 0;  i < actualParams.size() && i < formalParams.size();  ++i)
+                  {
+                    Expression expr = actualParams.get(i);
+
+                    if (formalParams.get(i).isVarParam() && expr instanceof Variable)
+                      {
+                        Variable var = (Variable) expr;
+                        if (var.getIndexExprs().isEmpty()
+                            && !(var.getType() instanceof ArrayType)
+                            && !varParams.add(var.getDecl()))
+                          {
+                            String errorMsg = "A variable may not be passed as a var "
+                                            + "parameter to more than one parallel call.";
+                            throw error(expr.getPosition(), errorMsg);
+                          }
+                      }
+                  }
+              }
+          }
+        catch (ConstraintException e)
+          {
+            getContext().getErrorHandler().reportError(e);
+          }
+      }
+
+
+    @Override
+    public void emit() throws CodeGenException
+      {
+        for (ProcedureCallStmt procCall : procCalls)
+            procCall.emitSpawn();
+
+        emit(OpCode.JOIN);
+      }
+  }
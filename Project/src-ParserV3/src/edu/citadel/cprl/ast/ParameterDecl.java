@@ -1,6 +1,7 @@
 package edu.citadel.cprl.ast;
 
 
+import edu.citadel.cprl.CompilationContext;
 import edu.citadel.cprl.ScopeLevel;
 import edu.citadel.cprl.Token;
 import edu.citadel.cprl.Type;
@@ -19,9 +20,9 @@ public class ParameterDecl extends Declaration implements NamedDecl
      * Construct a parameter declaration with its identifier, type, and a boolean
      * value that indicates if it is a variable parameter declaration.
      */
-    public ParameterDecl(Token paramId, Type type, boolean isVarParam)
+    public ParameterDecl(CompilationContext context, Token paramId, Type type, boolean isVarParam)
       {
-        super(paramId, type);
+        super(context, paramId, type);
         this.isVarParam = isVarParam;
       }
 
@@ -3,9 +3,11 @@ package edu.citadel.cprl.ast;
 
 import edu.citadel.compiler.CodeGenException;
 import edu.citadel.compiler.ConstraintException;
-import edu.citadel.compiler.ErrorHandler;
+import edu.citadel.cprl.CompilationContext;
 import edu.citadel.cprl.Token;
+import edu.citadel.cvm.OpCode;
 
+import java.util.Collections;
 import java.util.List;
 
 
@@ -17,6 +19,7 @@ public class ProcedureCallStmt extends Statement
     private Token procId;
     private List<Expression> actualParams;
     private ProcedureDecl procDecl;
+    private SubprogramDecl callingDecl;   // the calling procedure for a tail call, or null
 
 
     /*
@@ -24,14 +27,88 @@ public class ProcedureCallStmt extends Statement
      * list of actual parameters being passed as part of the call,
      * and a reference to the declaration of the procedure being called.
      */
-    public ProcedureCallStmt(Token procId,
+    public ProcedureCallStmt(CompilationContext context,
+                             Token procId,
                              List<Expression> actualParams,
                              ProcedureDecl procDecl)
       {
+        super(context);
 // ...
       }
 
 
+    /**
+     * Returns the identifier token for the procedure being called.
+     */
+    public Token getProcId()
+      {
+        return procId;
+      }
+
+
+    /**
+     * Returns the list of actual parameters for this procedure call.
+     */
+    public List<Expression> getActualParams()
+      {
+        return actualParams;
+      }
+
+
+    /**
+     * Returns the declaration of the procedure being called.
+     */
+    public ProcedureDecl getProcDecl()
+      {
+        return procDecl;
+      }
+
+
+    /**
+     * Simplifies the actual parameters and returns the inlined statements
+     * of the procedure if the procedure can be inlined.
+     */
+    @Override
+    public List<Statement> simplify()
+      {
+        simplifyActualParams();
+
+        List<Statement> inlinedStmts = getContext().getInliner().inline(this);
+        return inlinedStmts != null ? inlinedStmts : Collections.singletonList(this);
+      }
+
+
+    /**
+     * Simplifies the actual parameters without inlining the procedure
+     * (e.g., for a call in a parallel statement).
+     */
+    public void simplifyActualParams()
+      {
+        actualParams.replaceAll(Expression::simplify);
+      }
+
+
+    /**
+     * Returns true if this call is emitted as a tail call.
+     */
+    public boolean isTailCall()
+      {
+        return callingDecl != null;
+      }
+
+
+    /**
+     * Marks this call as a tail call if it is in tail position and the
+     * procedure can reuse the frame of the calling procedure.
+     */
+    @Override
+    public void findTailCalls(SubprogramDecl subprogramDecl, boolean isTailPosition)
+      {
+        if (isTailPosition && procDecl.canTailCall(actualParams))
+            callingDecl = subprogramDecl;
+      }
+
+
     @Override
     public void checkConstraints()
       {
@@ -42,6 +119,38 @@ public class ProcedureCallStmt extends Statement
     @Override
     public void emit() throws CodeGenException
       {
-// ...
+// ...  Hint: use procDecl.emitCall() to call the procedure, or emitTailCall() if isTailCall().
+//           TAIL does not return here, so the code that follows a tail call (e.g., the
+//           return of the procedure) is dead code, which the assembler removes.
+      }
+
+
+    /**
+     * Emits code for this call as a tail call of the calling procedure;
+     * i.e., the procedure is called in the frame of the calling procedure.
+     */
+    public void emitTailCall() throws CodeGenException
+      {
+        // emit code for actual parameters
+        for (Expression expr : actualParams)
+            expr.emit();
+
+        procDecl.emitTailCall(callingDecl);
+      }
+
+
+    /**
+     * Emits code to run this procedure call as a task in parallel with
+     * the caller; see ParallelStmt.  The parameters are passed on the
+     * stack, followed by their total length.
+     */
+    public void emitSpawn() throws CodeGenException
+      {
+        // emit code for actual parameters
+        for (Expression expr : actualParams)
+            expr.emit();
+
+        emit(OpCode.LDCINT, procDecl.getParamLength());
+        emitLabelArg(OpCode.SPAWN, procDecl.getSubprogramLabel());
       }
   }
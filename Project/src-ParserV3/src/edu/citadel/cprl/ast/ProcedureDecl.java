@@ -2,6 +2,7 @@ package edu.citadel.cprl.ast;
 
 
 import edu.citadel.compiler.CodeGenException;
+import edu.citadel.cprl.CompilationContext;
 import edu.citadel.cprl.Token;
 
 
@@ -13,9 +14,9 @@ public class ProcedureDecl extends SubprogramDecl
     /**
      * Construct a procedure declaration with its name (an identifier).
      */
-    public ProcedureDecl(Token procId)
+    public ProcedureDecl(CompilationContext context, Token procId)
       {
-        super(procId);
+        super(context, procId);
       }
 
 
@@ -25,6 +26,7 @@ public class ProcedureDecl extends SubprogramDecl
     @Override
     public void emit() throws CodeGenException
       {
-// ...
+// ...  Hint: start with OpCode.PROC at the subprogram label (ENTER targets it),
+//           and end with emitReturn()
       }
   }
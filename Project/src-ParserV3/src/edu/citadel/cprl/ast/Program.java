@@ -2,6 +2,9 @@ package edu.citadel.cprl.ast;
 
 
 import edu.citadel.compiler.CodeGenException;
+import edu.citadel.cprl.CompilationContext;
+import edu.citadel.cprl.ScopeLevel;
+import edu.citadel.cvm.OpCode;
 
 
 /**
@@ -16,14 +19,16 @@ public class Program extends AST
 
 
     // label for first program statement (used during code generation)
-    private String L1;
+    private int L1;
 
 
     /**
      * Construct a program with the specified declarative and statement parts.
      */
-    public Program(DeclarativePart declPart, StatementPart stmtPart)
+    public Program(CompilationContext context, DeclarativePart declPart, StatementPart stmtPart)
       {
+        super(context);
+
         this.declPart = declPart;
         this.stmtPart = stmtPart;
         this.varLength = 0;
@@ -32,6 +37,20 @@ public class Program extends AST
       }
 
 
+    /**
+     * Simplifies the statements of the subprograms and the program.  This
+     * method is called after the constraints have been checked without errors.
+     */
+    public void simplify()
+      {
+        declPart.simplify();
+
+        // variables for inlined calls in the statement part are program variables
+        getContext().getInliner().setFrame(declPart.getInitialDecls(), ScopeLevel.PROGRAM);
+        stmtPart.simplify();
+      }
+
+
     @Override
     public void checkConstraints()
       {
@@ -76,18 +95,18 @@ public class Program extends AST
 
         // no need to emit PROGRAM instruction if varLength == 0
         if (varLength > 0)
-            emit("PROGRAM " + varLength);
+            emit(OpCode.PROGRAM, varLength);
 
         // emit branch over subprograms only if necessary
         if (!declPart.getSubprogramDecls().isEmpty())
           {
             // jump over code for subprograms
-            emit("BR " + L1);
+            emitLabelArg(OpCode.BR, L1);
             declPart.emit();
             emitLabel(L1);
           }
 
         stmtPart.emit();
-        emit("HALT");
+        emit(OpCode.HALT);
       }
   }
@@ -3,9 +3,12 @@ package edu.citadel.cprl.ast;
 
 import edu.citadel.compiler.CodeGenException;
 import edu.citadel.compiler.ConstraintException;
-import edu.citadel.compiler.ErrorHandler;
+import edu.citadel.cprl.CompilationContext;
 import edu.citadel.cprl.Type;
 
+import java.util.Collections;
+import java.util.List;
+
 
 /**
  * The abstract syntax tree node for a read statement.
@@ -18,12 +21,24 @@ public class ReadStmt extends Statement
     /**
      * Construct a read statement with the specified variable for storing the input.
      */
-    public ReadStmt(Variable variable)
+    public ReadStmt(CompilationContext context, Variable variable)
       {
+        super(context);
 // ...
       }
 
 
+    /**
+     * Simplifies the index expressions of the variable.
+     */
+    @Override
+    public List<Statement> simplify()
+      {
+        variable = variable.simplify();
+        return Collections.singletonList(this);
+      }
+
+
     @Override
     public void checkConstraints()
       {
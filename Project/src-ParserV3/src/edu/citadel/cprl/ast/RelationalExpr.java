@@ -3,10 +3,11 @@ package edu.citadel.cprl.ast;
 
 import edu.citadel.compiler.CodeGenException;
 import edu.citadel.compiler.ConstraintException;
-import edu.citadel.compiler.ErrorHandler;
+import edu.citadel.cprl.CompilationContext;
 import edu.citadel.cprl.Symbol;
 import edu.citadel.cprl.Token;
 import edu.citadel.cprl.Type;
+import edu.citadel.cvm.OpCode;
 
 
 /**
@@ -17,17 +18,20 @@ import edu.citadel.cprl.Type;
 public class RelationalExpr extends BinaryExpr
   {
     // labels used during code generation
-    private String L1;   // label at start of right operand
-    private String L2;   // label at end of the relational expression
+    private int L1;   // label at start of right operand
+    private int L2;   // label at end of the relational expression
 
 
     /**
      * Construct a relational expression with the operator ("=", "&lt;=", etc.)
      * and the two operands.
      */
-    public RelationalExpr(Expression leftOperand, Token operator, Expression rightOperand)
+    public RelationalExpr(CompilationContext context,
+                          Expression leftOperand,
+                          Token operator,
+                          Expression rightOperand)
       {
-        super(leftOperand, operator, rightOperand);
+        super(context, leftOperand, operator, rightOperand);
         setType(Type.Boolean);
         assert operator.getSymbol().isRelationalOperator() :
             "Operator is not a relational operator.";
@@ -44,22 +48,66 @@ public class RelationalExpr extends BinaryExpr
       }
 
 
+    /**
+     * Folds a relational expression with constant operands.
+     */
+    @Override
+    public Expression simplify()
+      {
+        simplifyOperands();
+
+        Expression leftOperand  = getLeftOperand();
+        Expression rightOperand = getRightOperand();
+
+        if (leftOperand instanceof ConstValue && rightOperand instanceof ConstValue
+                && leftOperand.getType() != Type.String)
+          {
+            int leftValue  = ((ConstValue) leftOperand).getLiteralIntValue();
+            int rightValue = ((ConstValue) rightOperand).getLiteralIntValue();
+            int value = compare(getOperator().getSymbol(), leftValue, rightValue) ? 1 : 0;
+            return new ConstValue(getContext(), Type.Boolean, value, getPosition());
+          }
+        else
+            return this;
+      }
+
+
+    /**
+     * Returns the result of comparing two values with the relational operator.
+     */
+    private static boolean compare(Symbol operatorSym, int leftValue, int rightValue)
+      {
+        if (operatorSym == Symbol.equals)
+            return leftValue == rightValue;
+        else if (operatorSym == Symbol.notEqual)
+            return leftValue != rightValue;
+        else if (operatorSym == Symbol.lessThan)
+            return leftValue < rightValue;
+        else if (operatorSym == Symbol.lessOrEqual)
+            return leftValue <= rightValue;
+        else if (operatorSym == Symbol.greaterThan)
+            return leftValue > rightValue;
+        else   // operatorSym must be Symbol.greaterOrEqual
+            return leftValue >= rightValue;
+      }
+
+
     @Override
     public void emit() throws CodeGenException
       {
         emitBranch(false, L1);
 
         // emit true
-        emit("LDCB " + TRUE);
+        emit(OpCode.LDCB, TRUE);
 
         // jump over code to emit false
-        emit("BR " + L2);
+        emitLabelArg(OpCode.BR, L2);
 
         // L1:
         emitLabel(L1);
 
         // emit false
-        emit("LDCB " + FALSE);
+        emit(OpCode.LDCB, FALSE);
 
         // L2:
         emitLabel(L2);
@@ -67,27 +115,27 @@ public class RelationalExpr extends BinaryExpr
 
 
     @Override
-    public void emitBranch(boolean condition, String label) throws CodeGenException
+    public void emitBranch(boolean condition, int label) throws CodeGenException
       {
         Token operator = getOperator();
 
         emitOperands();
-        emit("CMP");
+        emit(OpCode.CMP);
 
         Symbol operatorSym = operator.getSymbol();
 
         if (operatorSym == Symbol.equals)
-            emit(condition ? "BZ "  + label : "BNZ " + label);
+            emitLabelArg(condition ? OpCode.BZ : OpCode.BNZ, label);
         else if (operatorSym == Symbol.notEqual)
-            emit(condition ? "BNZ " + label : "BZ "  +  label);
+            emitLabelArg(condition ? OpCode.BNZ : OpCode.BZ, label);
         else if (operatorSym == Symbol.lessThan)
-            emit(condition ? "BL "  + label : "BGE " + label);
+            emitLabelArg(condition ? OpCode.BL : OpCode.BGE, label);
         else if (operatorSym == Symbol.lessOrEqual)
-            emit(condition ? "BLE " + label : "BG "  + label);
+            emitLabelArg(condition ? OpCode.BLE : OpCode.BG, label);
         else if (operatorSym == Symbol.greaterThan)
-            emit(condition ? "BG "  + label : "BLE " + label);
+            emitLabelArg(condition ? OpCode.BG : OpCode.BLE, label);
         else if (operatorSym == Symbol.greaterOrEqual)
-            emit(condition ? "BGE " + label : "BL "  + label);
+            emitLabelArg(condition ? OpCode.BGE : OpCode.BL, label);
         else
             throw new CodeGenException(operator.getPosition(), "Invalid relational operator.");
       }
@@ -101,12 +149,12 @@ public class RelationalExpr extends BinaryExpr
         // Relational operators compare integers only, so we need to make sure
         // that we have enough bytes on the stack.  Pad with zero bytes.
         for (int n = 1;  n <= (Type.Integer.getSize() - leftOperand.getType().getSize());  ++n)
-            emit("LDCB 0");
+            emit(OpCode.LDCB, 0);
 
         leftOperand.emit();
 
         for (int n = 1;  n <= (Type.Integer.getSize() - rightOperand.getType().getSize());  ++n)
-            emit("LDCB 0");
+            emit(OpCode.LDCB, 0);
 
         rightOperand.emit();
       }
@@ -3,8 +3,11 @@ package edu.citadel.cprl.ast;
 
 import edu.citadel.compiler.CodeGenException;
 import edu.citadel.compiler.ConstraintException;
-import edu.citadel.compiler.ErrorHandler;
 import edu.citadel.compiler.Position;
+import edu.citadel.cprl.CompilationContext;
+
+import java.util.Collections;
+import java.util.List;
 
 
 /**
@@ -23,12 +26,49 @@ public class ReturnStmt extends Statement
      * Construct a return statement with a reference to the enclosing subprogram
      * and the expression for the value being returned, which may be null.
      */
-    public ReturnStmt(SubprogramDecl subprogramDecl, Expression returnExpr, Position returnPosition)
+    public ReturnStmt(CompilationContext context,
+                      SubprogramDecl subprogramDecl,
+                      Expression returnExpr,
+                      Position returnPosition)
       {
+        super(context);
 // ...
       }
 
 
+    /**
+     * Returns the expression for the value being returned, or null.
+     */
+    public Expression getReturnExpr()
+      {
+        return returnExpr;
+      }
+
+
+    /**
+     * Simplifies the return expression, if any.
+     */
+    @Override
+    public List<Statement> simplify()
+      {
+        if (returnExpr != null)
+            returnExpr = returnExpr.simplify();
+
+        return Collections.singletonList(this);
+      }
+
+
+    /**
+     * A function call that is the return expression is a tail call.
+     */
+    @Override
+    public void findTailCalls(SubprogramDecl subprogramDecl, boolean isTailPosition)
+      {
+        if (returnExpr instanceof FunctionCall)
+            ((FunctionCall) returnExpr).findTailCall(subprogramDecl);
+      }
+
+
     @Override
     public void checkConstraints()
       {
@@ -41,6 +81,9 @@ public class ReturnStmt extends Statement
     @Override
     public void emit() throws CodeGenException
       {
-// ...
+// ...  Hint: use subprogramDecl.emitReturn() to return.  If returnExpr is a FunctionCall
+//           with isTailCall(), emit only returnExpr.  TAIL does not return here, so
+//           the store of the return value and emitReturn() would be dead code, and
+//           the address of the return value (LDLADDR) would be discarded by TAIL.
       }
   }
@@ -1,6 +1,7 @@
 package edu.citadel.cprl.ast;
 
 
+import edu.citadel.cprl.CompilationContext;
 import edu.citadel.cprl.ScopeLevel;
 import edu.citadel.cprl.Token;
 import edu.citadel.cprl.Type;
@@ -24,9 +25,12 @@ public class SingleVarDecl extends InitialDecl implements NamedDecl
     /**
      * Construct a single variable declaration with its identifier, type, and scope level.
      */
-    public SingleVarDecl(Token identifier, Type varType, ScopeLevel scopeLevel)
+    public SingleVarDecl(CompilationContext context,
+                         Token identifier,
+                         Type varType,
+                         ScopeLevel scopeLevel)
       {
-        super(identifier, varType);
+        super(context, identifier, varType);
         this.scopeLevel = scopeLevel;
       }
 
@@ -1,9 +1,98 @@
 package edu.citadel.cprl.ast;
 
 
+import edu.citadel.cprl.CompilationContext;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+
 /**
  * Base class for all CPRL statements.
  */
 public abstract class Statement extends AST
   {
+    /**
+     * Construct a statement for the specified compilation context.
+     */
+    public Statement(CompilationContext context)
+      {
+        super(context);
+      }
+
+
+    /**
+     * Simplifies the expressions and nested statements of this statement and
+     * returns the statements that replace it; e.g., an if statement with a
+     * constant condition is replaced by the statements of the selected branch.
+     * This method is called only after the constraints have been checked
+     * without errors.  The method defined in this class returns a list
+     * containing only this statement.
+     */
+    public List<Statement> simplify()
+      {
+        return Collections.singletonList(this);
+      }
+
+
+    /**
+     * Simplifies the statements and returns the list of
+     * statements that replace them.
+     */
+    public static List<Statement> simplifyAll(List<Statement> statements)
+      {
+        List<Statement> simplifiedStmts = new ArrayList<>(statements.size());
+
+        for (Statement stmt : statements)
+          {
+            // variables for calls inlined in this statement can be reused by later statements
+            Inliner inliner = stmt.getContext().getInliner();
+            int numVarsInUse = inliner.getNumVarsInUse();
+            simplifiedStmts.addAll(stmt.simplify());
+            inliner.releaseVars(numVarsInUse);
+          }
+
+        return simplifiedStmts;
+      }
+
+
+    /**
+     * Marks the calls in this statement after which the specified subprogram
+     * returns, so that they can be emitted as tail calls.  This statement is
+     * in tail position if the subprogram returns after it.  This method is
+     * called only after the statements have been simplified.  The method
+     * defined in this class does nothing.
+     */
+    public void findTailCalls(SubprogramDecl subprogramDecl, boolean isTailPosition)
+      {
+        // no calls to mark by default
+      }
+
+
+    /**
+     * Marks the tail calls in the statements.  A statement is in tail position
+     * if it is the last statement and the statements are in tail position, or
+     * if it is followed by a return statement without a return expression.
+     */
+    public static void findTailCalls(List<Statement> statements,
+                                     SubprogramDecl subprogramDecl,
+                                     boolean isTailPosition)
+      {
+        for (int i = 0;  i < statements.size();  ++i)
+          {
+            boolean isLast = i == statements.size() - 1;
+            boolean isTail = isLast ? isTailPosition : isReturn(statements.get(i + 1));
+            statements.get(i).findTailCalls(subprogramDecl, isTail);
+          }
+      }
+
+
+    /**
+     * Returns true if the statement is a return statement without a return expression.
+     */
+    private static boolean isReturn(Statement stmt)
+      {
+        return stmt instanceof ReturnStmt && ((ReturnStmt) stmt).getReturnExpr() == null;
+      }
   }
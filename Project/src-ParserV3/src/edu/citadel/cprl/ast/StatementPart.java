@@ -2,6 +2,7 @@ package edu.citadel.cprl.ast;
 
 
 import edu.citadel.compiler.CodeGenException;
+import edu.citadel.cprl.CompilationContext;
 import java.util.List;
 
 
@@ -16,8 +17,9 @@ public class StatementPart extends AST
     /**
      * Construct a statement part with the specified list of statements.
      */
-    public StatementPart(List<Statement> statements)
+    public StatementPart(CompilationContext context, List<Statement> statements)
       {
+        super(context);
 // ...
       }
 
@@ -28,6 +30,15 @@ public class StatementPart extends AST
       }
 
 
+    /**
+     * Replaces the statements by their simplified versions.
+     */
+    public void simplify()
+      {
+        statements = Statement.simplifyAll(statements);
+      }
+
+
     @Override
     public void checkConstraints()
       {
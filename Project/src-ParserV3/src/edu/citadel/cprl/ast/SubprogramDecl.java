@@ -1,8 +1,12 @@
 package edu.citadel.cprl.ast;
 
 
+import edu.citadel.compiler.CodeGenException;
+import edu.citadel.cprl.CompilationContext;
+import edu.citadel.cprl.ScopeLevel;
 import edu.citadel.cprl.Token;
 import edu.citadel.cvm.Constants;
+import edu.citadel.cvm.OpCode;
 
 import java.util.*;
 
@@ -18,16 +22,16 @@ public abstract class SubprogramDecl extends Declaration
 
     private int varLength;   // # bytes of all declared variables
 
-    private String L1;       // label of address of first statement
+    private int L1;       // label of address of first statement
                              // (used during code generation)
 
 
     /**
      * Construct a subprogram declaration with the specified subprogram identifier.
      */
-    public SubprogramDecl(Token subprogId)
+    public SubprogramDecl(CompilationContext context, Token subprogId)
       {
-        super(subprogId);
+        super(context, subprogId);
 
         this.formalParams = new ArrayList<>();
         this.initialDecls = null;
@@ -38,6 +42,15 @@ public abstract class SubprogramDecl extends Declaration
       }
 
 
+    /**
+     * Returns the list of initial declarations for this subprogram.
+     */
+    public List<InitialDecl> getInitialDecls()
+      {
+        return initialDecls;
+      }
+
+
     /**
      * Set the list of initial declarations for this subprogram.
      */
@@ -95,7 +108,7 @@ public abstract class SubprogramDecl extends Declaration
     /**
      * Returns the label associated with the first statement of the subprogram.
      */
-    protected String getSubprogramLabel()
+    protected int getSubprogramLabel()
       {
         return L1;
       }
@@ -115,6 +128,84 @@ public abstract class SubprogramDecl extends Declaration
       }
 
 
+    /**
+     * Emits code to call this subprogram.  The caller must first allocate
+     * space for the return value (functions only) and emit the actual
+     * parameters.  ENTER calls the subprogram and allocates its local
+     * variables in one step.
+     */
+    public void emitCall() throws CodeGenException
+      {
+        emitLabelArg(OpCode.ENTER, getSubprogramLabel());
+      }
+
+
+    /**
+     * Emits code to return from this subprogram.  LEAVE removes the
+     * frame and the parameters in one step.
+     */
+    public void emitReturn() throws CodeGenException
+      {
+        emit(OpCode.LEAVE, getParamLength());
+      }
+
+
+    /**
+     * Returns true if a call to this subprogram with the specified actual
+     * parameters can reuse the frame of the calling subprogram; i.e., if no
+     * actual parameter for a var parameter is a variable in that frame.
+     */
+    public boolean canTailCall(List<Expression> actualParams)
+      {
+        for (int i = 0;  i < actualParams.size();  ++i)
+          {
+            if (!formalParams.get(i).isVarParam())
+                continue;
+
+            if (!(actualParams.get(i) instanceof Variable))
+                return false;
+
+            // a var parameter of the calling subprogram refers to a variable outside its frame
+            NamedDecl decl = ((Variable) actualParams.get(i)).getDecl();
+            if (decl.getScopeLevel() != ScopeLevel.PROGRAM
+                    && !(decl instanceof ParameterDecl && ((ParameterDecl) decl).isVarParam()))
+                return false;
+          }
+
+        return true;
+      }
+
+
+    /**
+     * Emits code to call this subprogram in place of the calling subprogram
+     * (a tail call).  The caller must first emit the actual parameters.  TAIL
+     * moves them over the parameters of the calling subprogram and reuses its
+     * frame, so this subprogram returns directly to the caller of the calling
+     * subprogram.  For a function, no space is allocated for the return value
+     * since the calling function returns the same value.
+     */
+    public void emitTailCall(SubprogramDecl callingDecl) throws CodeGenException
+      {
+        emit(OpCode.LDCINT, callingDecl.getParamLength());
+        emit(OpCode.LDCINT, getParamLength());
+        emitLabelArg(OpCode.TAIL, getSubprogramLabel());
+      }
+
+
+    /**
+     * Simplifies the statements of the subprogram and marks its tail calls.
+     * Variables for inlined calls are added to the variables of the subprogram.
+     */
+    public void simplify()
+      {
+        getContext().getInliner().setFrame(initialDecls, ScopeLevel.SUBPROGRAM);
+        stmtPart.simplify();
+
+        // a procedure also returns at the end of its statements
+        Statement.findTailCalls(stmtPart.getStatements(), this, this instanceof ProcedureDecl);
+      }
+
+
     @Override
     public void checkConstraints()
       {
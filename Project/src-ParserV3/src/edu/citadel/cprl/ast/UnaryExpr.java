@@ -1,6 +1,7 @@
 package edu.citadel.cprl.ast;
 
 
+import edu.citadel.cprl.CompilationContext;
 import edu.citadel.cprl.Token;
 
 
@@ -18,9 +19,9 @@ public abstract class UnaryExpr extends Expression
     /**
      * Construct a unary expression with the specified operator and operand.
      */
-    public UnaryExpr(Token operator, Expression operand)
+    public UnaryExpr(CompilationContext context, Token operator, Expression operand)
       {
-        super(operator.getPosition());
+        super(context, operator.getPosition());
 
         this.operator = operator;
         this.operand  = operand;
@@ -43,4 +44,20 @@ public abstract class UnaryExpr extends Expression
       {
         return operand;
       }
+
+
+    /**
+     * Replaces the operand by its simplified version.
+     */
+    protected void simplifyOperand()
+      {
+        operand = operand.simplify();
+      }
+
+
+    @Override
+    public boolean hasSideEffects()
+      {
+        return operand.hasSideEffects();
+      }
   }
@@ -3,11 +3,12 @@ package edu.citadel.cprl.ast;
 
 import edu.citadel.compiler.CodeGenException;
 import edu.citadel.compiler.ConstraintException;
-import edu.citadel.compiler.ErrorHandler;
 import edu.citadel.compiler.Position;
 import edu.citadel.cprl.ArrayType;
+import edu.citadel.cprl.CompilationContext;
 import edu.citadel.cprl.ScopeLevel;
 import edu.citadel.cprl.Type;
+import edu.citadel.cvm.OpCode;
 
 import java.util.List;
 
@@ -26,9 +27,12 @@ public class Variable extends Expression
      * Construct a variable with a reference to its declaration,
      * its position, and a list of index expressions.
      */
-    public Variable(NamedDecl decl, Position position, List<Expression> indexExprs)
+    public Variable(CompilationContext context,
+                    NamedDecl decl,
+                    Position position,
+                    List<Expression> indexExprs)
       {
-        super(decl.getType(), position);
+        super(context, decl.getType(), position);
         this.decl       = decl;
         this.indexExprs = indexExprs;
       }
@@ -39,7 +43,7 @@ public class Variable extends Expression
      */
     public Variable(NamedValue nv)
       {
-        this(nv.getDecl(), nv.getPosition(), nv.getIndexExprs());
+        this(nv.getContext(), nv.getDecl(), nv.getPosition(), nv.getIndexExprs());
       }
 
 
@@ -62,6 +66,28 @@ public class Variable extends Expression
       }
 
 
+    /**
+     * Simplifies the index expressions and returns this variable.
+     */
+    @Override
+    public Variable simplify()
+      {
+        indexExprs.replaceAll(Expression::simplify);
+        return this;
+      }
+
+
+    /**
+     * Returns true if the variable has index expressions, since
+     * an index outside the bounds of the array can fail at run time.
+     */
+    @Override
+    public boolean hasSideEffects()
+      {
+        return !indexExprs.isEmpty();
+      }
+
+
     @Override
     public void checkConstraints()
       {
@@ -98,7 +124,7 @@ public class Variable extends Expression
           }
         catch (ConstraintException e)
           {
-            ErrorHandler.getInstance().reportError(e);
+            getContext().getErrorHandler().reportError(e);
           }
       }
 
@@ -109,13 +135,13 @@ public class Variable extends Expression
         if (decl instanceof ParameterDecl && ((ParameterDecl)decl).isVarParam())
           {
             // address of actual parameter is value of var parameter
-            emit("LDLADDR " + decl.getRelAddr());
-            emit("LOADW");
+            emit(OpCode.LDLADDR, decl.getRelAddr());
+            emit(OpCode.LOADW);
           }
         else if (decl.getScopeLevel() == ScopeLevel.PROGRAM)
-            emit("LDGADDR " + decl.getRelAddr());
+            emit(OpCode.LDGADDR, decl.getRelAddr());
         else
-            emit("LDLADDR " + decl.getRelAddr());
+            emit(OpCode.LDLADDR, decl.getRelAddr());
 
         // For an array, at this point the base address of the array
         // is on the top of the stack.  We need to replace it by the
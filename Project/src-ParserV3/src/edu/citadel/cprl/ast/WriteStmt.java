@@ -1,6 +1,8 @@
 package edu.citadel.cprl.ast;
 
 
+import edu.citadel.cprl.CompilationContext;
+
 import java.util.List;
 
 
@@ -12,9 +14,9 @@ public class WriteStmt extends OutputStmt
     /**
      * Construct a write statement with the list of expressions.
      */
-    public WriteStmt(List<Expression> expressions)
+    public WriteStmt(CompilationContext context, List<Expression> expressions)
       {
-        super(expressions);
+        super(context, expressions);
         assert expressions.size() > 0 : "A \"write\" statement must have an expression.";
       }
 
@@ -2,6 +2,7 @@ package edu.citadel.cprl.ast;
 
 
 import edu.citadel.compiler.CodeGenException;
+import edu.citadel.cprl.CompilationContext;
 import java.util.List;
 
 
@@ -13,9 +14,9 @@ public class WritelnStmt extends OutputStmt
     /**
      * Construct a writeln statement with the list of expressions.
      */
-    public WritelnStmt(List<Expression> expressions)
+    public WritelnStmt(CompilationContext context, List<Expression> expressions)
       {
-        super(expressions);
+        super(context, expressions);
       }
 
 
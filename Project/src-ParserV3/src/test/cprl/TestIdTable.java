@@ -0,0 +1,206 @@
+package test.cprl;
+
+
+import edu.citadel.compiler.ErrorHandler;
+import edu.citadel.compiler.ParserException;
+import edu.citadel.compiler.Position;
+
+import edu.citadel.cprl.CompilationContext;
+import edu.citadel.cprl.IdTable;
+import edu.citadel.cprl.ScopeLevel;
+import edu.citadel.cprl.Symbol;
+import edu.citadel.cprl.Token;
+import edu.citadel.cprl.Type;
+import edu.citadel.cprl.ast.Declaration;
+import edu.citadel.cprl.ast.SingleVarDecl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+
+/**
+ * Test the identifier table for the CPRL programming language by applying
+ * the same random sequence of operations to the identifier table and to a
+ * reference implementation (the stack of maps that the identifier table
+ * replaced) and comparing the results.  The optional arguments are the
+ * seed for the random numbers and the number of operations.
+ */
+public class TestIdTable
+  {
+    private static final int  NUM_IDENTIFIERS  = 300;
+    private static final int  MAX_SCOPE_LEVELS = 6;
+    private static final long DEFAULT_SEED     = 46;
+    private static final int  DEFAULT_NUM_OPS  = 1000000;
+
+
+    public static void main(String[] args)
+      {
+        long seed   = args.length > 0 ? Long.parseLong(args[0]) : DEFAULT_SEED;
+        int  numOps = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_NUM_OPS;
+
+        Random random = new Random(seed);
+        CompilationContext context = new CompilationContext(new ErrorHandler());
+        Position position = new Position(1, 1);
+
+        IdTable         idTable  = new IdTable();
+        MapStackIdTable refTable = new MapStackIdTable();
+        int numErrors = 0;
+
+        for (int i = 0;  i < numOps && numErrors < 10;  ++i)
+          {
+            // a new string for each token, so that identifiers are not always the same object
+            String identifier = new String("x" + random.nextInt(NUM_IDENTIFIERS));
+            Token  idToken    = new Token(Symbol.identifier, position, identifier);
+            int    operation  = random.nextInt(100);
+            String result;
+            String expected;
+
+            if (operation < 3 && refTable.currentLevel < MAX_SCOPE_LEVELS)
+              {
+                idTable.openScope();
+                refTable.openScope();
+                result   = idTable.getScopeLevel().toString();
+                expected = refTable.getScopeLevel().toString();
+              }
+            else if (operation < 6 && refTable.currentLevel > 0)
+              {
+                idTable.closeScope();
+                refTable.closeScope();
+                result   = idTable.getScopeLevel().toString();
+                expected = refTable.getScopeLevel().toString();
+              }
+            else if (operation < 50)
+              {
+                Declaration decl = new SingleVarDecl(context, idToken, Type.Integer, idTable.getScopeLevel());
+                result   = add(idTable, decl);
+                expected = add(refTable, decl);
+              }
+            else
+              {
+                Declaration decl    = idTable.get(idToken);
+                Declaration refDecl = refTable.get(idToken);
+                result   = toString(decl);
+                expected = decl == refDecl ? result : toString(refDecl);
+              }
+
+            if (!result.equals(expected))
+              {
+                System.out.println("Operation " + i + " (" + identifier + "): "
+                                 + result + " instead of " + expected);
+                ++numErrors;
+              }
+          }
+
+        if (numErrors == 0)
+            System.out.println("IdTable: " + numOps + " operations OK (seed " + seed + ")");
+        else
+            System.out.println("IdTable: FAILED (seed " + seed + ")");
+      }
+
+
+    private static String add(IdTable idTable, Declaration decl)
+      {
+        try
+          {
+            idTable.add(decl);
+            return "added";
+          }
+        catch (ParserException e)
+          {
+            return e.getMessage();
+          }
+      }
+
+
+    private static String add(MapStackIdTable idTable, Declaration decl)
+      {
+        try
+          {
+            idTable.add(decl);
+            return "added";
+          }
+        catch (ParserException e)
+          {
+            return e.getMessage();
+          }
+      }
+
+
+    /**
+     * Returns a string that identifies the declaration object (or null).
+     */
+    private static String toString(Declaration decl)
+      {
+        return decl == null ? "null" : decl.getIdToken().getText() + "@" + System.identityHashCode(decl);
+      }
+
+
+    /**
+     * The identifier table implemented as a stack of maps, where each map
+     * associates the identifier string with its declaration.
+     */
+    private static class MapStackIdTable
+      {
+        private ArrayList<Map<String, Declaration>> table;
+        private int currentLevel;
+
+
+        public MapStackIdTable()
+          {
+            table = new ArrayList<>();
+            currentLevel = 0;
+            table.add(currentLevel, new HashMap<>());
+          }
+
+
+        public ScopeLevel getScopeLevel()
+          {
+            return currentLevel == 0 ? ScopeLevel.PROGRAM : ScopeLevel.SUBPROGRAM;
+          }
+
+
+        public void openScope()
+          {
+            ++currentLevel;
+            table.add(currentLevel, new HashMap<>());
+          }
+
+
+        public void closeScope()
+          {
+            table.remove(currentLevel);
+            --currentLevel;
+          }
+
+
+        public void add(Declaration decl) throws ParserException
+          {
+            Token idToken = decl.getIdToken();
+            Declaration oldDecl = table.get(currentLevel).put(idToken.getText(), decl);
+
+            if (oldDecl != null)
+              {
+                String errorMsg = "Identifier \"" + idToken.getText()
+                                + "\" is already defined in the current scope.";
+                throw new ParserException(idToken.getPosition(), errorMsg);
+              }
+          }
+
+
+        public Declaration get(Token idToken)
+          {
+            Declaration decl = null;
+            int level = currentLevel;
+
+            while (level >= 0 && decl == null)
+              {
+                decl = table.get(level).get(idToken.getText());
+                --level;
+              }
+
+            return decl;
+          }
+      }
+  }
@@ -0,0 +1,105 @@
+package edu.citadel.cprl;
+
+
+import edu.citadel.compiler.Source;
+import edu.citadel.compiler.util.IdentifierPool;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Recognizes the reserved words of CPRL directly from the characters of
+ * the source with a perfect hash table; i.e., each reserved word has its
+ * own slot in the table, so a lookup compares the characters with at most
+ * one reserved word.  The slot is computed from the hash code of the
+ * characters (computed the same way as String.hashCode()), which the
+ * scanner computes while it scans an identifier.  The multiplier of the
+ * hash function is found when the class is initialized.
+ */
+final class ReservedWords
+  {
+    /** the reserved words, indexed by their slots in the table */
+    private static Symbol[] table;
+
+    private static int multiplier;
+    private static int shift;
+
+    static
+      {
+        List<Symbol> reservedWords = new ArrayList<>();
+        for (Symbol symbol : Symbol.values())
+          {
+            if (symbol.isReservedWord())
+                reservedWords.add(symbol);
+          }
+
+        // start with the smallest table of at least twice the number of words
+        int bits = 32 - Integer.numberOfLeadingZeros(2*reservedWords.size() - 1);
+        while (!findMultiplier(reservedWords, bits))
+            ++bits;
+      }
+
+
+    private ReservedWords()
+      {
+      }
+
+
+    /**
+     * Tries odd multipliers for a table with 2^bits slots until one gives
+     * each reserved word its own slot.  Returns true if one was found.
+     */
+    private static boolean findMultiplier(List<Symbol> reservedWords, int bits)
+      {
+        for (int m = 0x9E3779B1, tries = 0;  tries < 10000;  m += 2, ++tries)
+          {
+            multiplier = m;
+            shift      = 32 - bits;
+            table      = new Symbol[1 << bits];
+
+            boolean perfect = true;
+            for (Symbol symbol : reservedWords)
+              {
+                int slot = getSlot(symbol.toString().hashCode());
+                if (table[slot] != null)
+                  {
+                    perfect = false;
+                    break;
+                  }
+
+                table[slot] = symbol;
+              }
+
+            if (perfect)
+                return true;
+          }
+
+        return false;
+      }
+
+
+    private static int getSlot(int hashCode)
+      {
+        return (hashCode*multiplier) >>> shift;
+      }
+
+
+    /**
+     * Returns the symbol for the characters of the source from offset start
+     * (inclusive) to offset end (exclusive); i.e., the reserved word with
+     * those characters or Symbol.identifier if there is none.
+     *
+     * @param hashCode  the hash code of the characters, computed the same
+     *                  way as String.hashCode()
+     */
+    static Symbol getSymbol(Source source, int start, int end, int hashCode)
+      {
+        Symbol symbol = table[getSlot(hashCode)];
+
+        if (symbol != null && IdentifierPool.matches(symbol.toString(), source, start, end))
+            return symbol;
+        else
+            return Symbol.identifier;
+      }
+  }
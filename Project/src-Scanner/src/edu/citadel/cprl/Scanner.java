@@ -5,40 +5,73 @@ import edu.citadel.compiler.ErrorHandler;
 import edu.citadel.compiler.Position;
 import edu.citadel.compiler.ScannerException;
 import edu.citadel.compiler.Source;
+import edu.citadel.compiler.util.IdentifierPool;
 
 import java.io.IOException;
 
 
 /**
- * Performs lexical analysis for the CPRL programming language.
+ * Performs lexical analysis for the CPRL programming language.  Reserved
+ * words are recognized directly from the characters of the source (see
+ * ReservedWords), and the text of identifiers is interned in an identifier
+ * pool, so that scanning most tokens does not create any objects.  The
+ * position of the current token and a token object for it are created only
+ * when they are requested (e.g., when the parser keeps the token).
  */
 public class Scanner
   {
     private Source   source;
     private Symbol   symbol;
-    private Position position;
     private String   text;
 
+    // offset of the current token in the source
+    private int tokenOffset;
+
+    // position of and token for the current token (null until requested)
+    private Position position;
+    private Token    token;
+
+    private IdentifierPool identifiers;
+
     private StringBuilder scanBuffer;
 
+    private ErrorHandler errorHandler;
+
 
     /**
      * Initialize scanner with its associated source and advance to the first token.
+     * Errors are reported to the error handler returned by ErrorHandler.getInstance().
      */
     public Scanner(Source source) throws IOException
       {
-        this.source = source;
+        this(source, ErrorHandler.getInstance());
+      }
+
+
+    /**
+     * Initialize scanner with its associated source and the error handler
+     * for the compilation, and advance to the first token.
+     */
+    public Scanner(Source source, ErrorHandler errorHandler) throws IOException
+      {
+        this.source       = source;
+        this.errorHandler = errorHandler;
+        identifiers = new IdentifierPool();
         scanBuffer  = new StringBuilder(100);
         advance();      // advance to the first token
       }
 
 
     /**
-     * Returns a copy of the current token in the source file.
+     * Returns the current token in the source file.  The token is created
+     * the first time that it is requested.
      */
     public Token getToken()
       {
-        return new Token(symbol, position, text);
+        if (token == null)
+            token = new Token(symbol, getPosition(), text);
+
+        return token;
       }
 
 
@@ -56,6 +89,9 @@ public class Scanner
      */
     public Position getPosition()
       {
+        if (position == null)
+            position = source.getPosition(tokenOffset);
+
         return position;
       }
 
@@ -70,8 +106,10 @@ public class Scanner
             skipWhiteSpace();
 
             // currently at starting character of next token
-            position = source.getCharPosition();
-            text = null;
+            tokenOffset = source.getCharOffset();
+            position = null;
+            token    = null;
+            text     = null;
 
             if (source.getChar() == Source.EOF)
               {
@@ -80,11 +118,11 @@ public class Scanner
               }
             else if (Character.isLetter((char) source.getChar()))
               {
-                String idString = scanIdentifier();
-                symbol = getIdentifierSymbol(idString);
+                int hashCode = scanIdentifier();
+                symbol = getIdentifierSymbol(hashCode);
 
                 if (symbol == Symbol.identifier)
-                    text = idString;
+                    text = identifiers.intern(source, tokenOffset, source.getCharOffset(), hashCode);
               }
             else if (Character.isDigit((char) source.getChar()))
               {
@@ -127,7 +165,7 @@ public class Scanner
           }
         catch (ScannerException e)
           {
-            ErrorHandler.getInstance().reportError(e);
+            errorHandler.reportError(e);
 
             // set token to either EOF or unknown
             symbol = source.getChar() == Source.EOF ? Symbol.EOF : Symbol.unknown;
@@ -137,11 +175,13 @@ public class Scanner
 
     /**
      * Returns the symbol associated with an identifier
-     * (Symbol.arrayRW, Symbol.ifRW, Symbol.identifier, etc.)
+     * (Symbol.arrayRW, Symbol.ifRW, Symbol.identifier, etc.) that was just
+     * scanned, given the hash code of its characters.
      */
-    private Symbol getIdentifierSymbol(String idString)
+    private Symbol getIdentifierSymbol(int hashCode)
       {
-// ...  Hint: Need an efficient search based on the text of the identifier (parameter idString)
+// ...  Hint: Need an efficient search based on the text of the identifier, which starts at
+//            tokenOffset in the source; see ReservedWords.getSymbol(source, start, end, hashCode)
       }
 
 
@@ -204,13 +244,16 @@ public class Scanner
 
     /**
      * Scans characters in the source file for a valid identifier using the
-     * lexical rule: identifier = letter ( letter | digit)* .
+     * lexical rule: identifier = letter ( letter | digit)* .  The characters
+     * remain in the source, so no string is created.
      *
-     * @return the string of letters and digits for the identifier.
+     * @return the hash code of the letters and digits of the identifier,
+     *         computed the same way as String.hashCode().
      */
-    private String scanIdentifier() throws IOException
+    private int scanIdentifier() throws IOException
       {
-// ...
+// ...  Hint: Compute the hash code while advancing over the letters and digits
+//            (hashCode = 31*hashCode + character, as in String.hashCode())
       }
 
 
@@ -227,16 +270,15 @@ public class Scanner
             "scanIntegerLiteral(): check integer literal start for digit at position "
             + getPosition();
 
-        clearScanBuffer();
+        int start = source.getCharOffset();
 
         do
           {
-            scanBuffer.append((char) source.getChar());
             source.advance();
           }
         while (Character.isDigit((char) source.getChar()));
 
-        return scanBuffer.toString();
+        return source.getText(start, source.getCharOffset());
       }
 
 
@@ -356,7 +398,7 @@ public class Scanner
             default   : // report error but return the invalid string
                         String errMessage = "Illegal escape character.";
                         ScannerException ex = new ScannerException(backslashPosition, errMessage);
-                        ErrorHandler.getInstance().reportError(ex);
+                        errorHandler.reportError(ex);
                         return "\\" + c;
           }
       }
@@ -33,6 +33,7 @@ public enum Symbol
     notRW("not"),
     ofRW("of"),
     orRW("or"),
+    parallelRW("parallel"),
     privateRW("private"),
     procedureRW("procedure"),
     programRW("program"),
@@ -133,7 +134,8 @@ public enum Symbol
       {
         return this == exitRW  || this == identifier || this == ifRW
             || this == loopRW  || this == whileRW    || this == readRW
-            || this == writeRW || this == writelnRW  || this == returnRW;
+            || this == writeRW || this == writelnRW  || this == returnRW
+            || this == parallelRW;
       }
 
 